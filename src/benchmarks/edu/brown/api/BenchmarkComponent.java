@@ -79,6 +79,7 @@ import org.voltdb.catalog.Catalog;
 import org.voltdb.catalog.Database;
 import org.voltdb.catalog.Site;
 import org.voltdb.catalog.Table;
+import org.voltdb.client.BulkLoader;
 import org.voltdb.client.Client;
 import org.voltdb.client.ClientFactory;
 import org.voltdb.client.ClientResponse;
@@ -324,6 +325,12 @@ public abstract class BenchmarkComponent {
     private final ReentrantLock m_loaderBlock = new ReentrantLock();
     private final ClientResponse m_dummyResponse = new ClientResponseImpl(-1, -1, -1, Status.OK, HStoreConstants.EMPTY_RESULT, "");
     
+    /**
+     * Client-side bulk loader for partitioned tables
+     * This is only created if ${client.bulk_loader} is enabled
+     */
+    private BulkLoader m_bulkLoader;
+    
     /**
      * Keep track of the number of tuples loaded so that we can generate table statistics
      */
@@ -1011,7 +1018,18 @@ public abstract class BenchmarkComponent {
         
         // Load up this dirty mess...
         ClientResponse cr = null;
-        if (m_noUploading == false) {
+        BulkLoader bulkLoader = (m_noUploading ? null : this.getBulkLoader());
+        if (bulkLoader != null && bulkLoader.canLoad(tableName)) {
+            // The tuples are sent asynchronously, so any errors will either be thrown here
+            // or when we drain the BulkLoader at the end of the loading phase
+            try {
+                bulkLoader.load(tableName, vt);
+            } catch (Throwable ex) {
+                throw new RuntimeException("Error when trying load data for '" + tableName + "'", ex);
+            }
+            cr = m_dummyResponse;
+        }
+        else if (m_noUploading == false) {
             boolean locked = m_hstoreConf.client.blocking_loader;
             if (locked) m_loaderBlock.lock();
             try {
@@ -1079,6 +1097,21 @@ public abstract class BenchmarkComponent {
         return (cr);
     }
     
+    /**
+     * Return the BulkLoader that loadVoltTable() should use for partitioned tables.
+     * Returns null if ${client.bulk_loader} is not enabled.
+     * @return
+     */
+    private synchronized BulkLoader getBulkLoader() {
+        if (m_bulkLoader == null && m_hstoreConf.client.bulk_loader) {
+            m_bulkLoader = new BulkLoader(m_voltClient,
+                                          this.getCatalogContext(),
+                                          m_hstoreConf.client.bulk_loader_batch_size,
+                                          m_hstoreConf.client.bulk_loader_max_outstanding);
+        }
+        return (m_bulkLoader);
+    }
+    
     /**
      * Return an overridden transaction weight
      * @param txnName
@@ -1224,6 +1257,18 @@ public abstract class BenchmarkComponent {
     }
     
     protected final void invokeStopCallback() {
+        // Make sure that all of the data that we gave to the BulkLoader actually got loaded
+        if (m_bulkLoader != null) {
+            try {
+                m_bulkLoader.drain();
+            } catch (Exception ex) {
+                throw new RuntimeException("Failed to finish bulk loading data", ex);
+            }
+            LOG.info(String.format("Bulk loaded %d tuples in %d txns [retries=%d]",
+                     m_bulkLoader.getLoadedTupleCount(), m_bulkLoader.getSentBatchCount(),
+                     m_bulkLoader.getRetryCount()));
+        }
+        
         // If we were generating stats, then get the final WorkloadStatistics object
         // and write it out to a file for them to use
         if (m_tableStats) {
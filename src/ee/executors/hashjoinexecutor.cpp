@@ -0,0 +1,275 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2010 VoltDB L.L.C.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB L.L.C. are licensed under the following
+ * terms and conditions:
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/* Copyright (C) 2008 by H-Store Project
+ * Brown University
+ * Massachusetts Institute of Technology
+ * Yale University
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <algorithm>
+#include <vector>
+#include <string>
+#include "hashjoinexecutor.h"
+#include "nestloopexecutor.h"
+#include "common/debuglog.h"
+#include "common/common.h"
+#include "common/tabletuple.h"
+#include "common/TupleSchema.h"
+#include "expressions/abstractexpression.h"
+#include "expressions/tuplevalueexpression.h"
+#include "storage/table.h"
+#include "storage/temptable.h"
+#include "storage/tableiterator.h"
+#include "storage/tablefactory.h"
+#include "plannodes/hashjoinnode.h"
+
+namespace voltdb {
+
+bool HashJoinExecutor::p_init(AbstractPlanNode* abstract_node, const catalog::Database* catalog_db, int* tempTableMemoryInBytes) {
+    VOLT_TRACE("init HashJoin Executor");
+    assert(tempTableMemoryInBytes);
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(abstract_node);
+    assert(node);
+
+    // produce the fully joined schema relying on a later projection
+    // to narrow the output later as required.
+    assert(node->getInputTables().size() == 2);
+    const TupleSchema *first = node->getInputTables()[0]->schema();
+    const TupleSchema *second = node->getInputTables()[1]->schema();
+    TupleSchema *schema = TupleSchema::createTupleSchema(first, second);
+
+    int combinedColumnCount = first->columnCount() + second->columnCount();
+    std::string *columnNames = new std::string[combinedColumnCount];
+    std::vector<int> outputColumnGuids;
+    int index = 0;
+
+    for (int ctr = 0; ctr < 2; ctr++) {
+        assert(node->getInputTables()[ctr]);
+        for (int col_ctr = 0, col_cnt = node->getInputTables()[ctr]->columnCount();
+             col_ctr < col_cnt;
+             col_ctr++, index++)
+        {
+            outputColumnGuids.
+                push_back(node->getChildren()[ctr]->getOutputColumnGuids()[col_ctr]);
+            columnNames[index] = node->getInputTables()[ctr]->columnName(col_ctr);
+        }
+    }
+
+    // Set the mapping of column names to column indexes in output tables
+    node->setOutputColumnGuids(outputColumnGuids);
+
+    // create the output table
+    node->setOutputTable(
+        TableFactory::getTempTable(
+            node->getInputTables()[0]->databaseId(), "temp", schema, columnNames, tempTableMemoryInBytes));
+    delete[] columnNames;
+
+    // The key expressions are always evaluated against a single tuple,
+    // so we only need to fix up the tuple indexes for the leftover predicate.
+    if (node->getPredicate() != NULL &&
+        !assignTupleValueIndexes(node->getPredicate(),
+                                 node->getInputTables()[0]->name(),
+                                 node->getInputTables()[1]->name())) {
+        return false;
+    }
+
+    // The planner only generates keys that are column references with the
+    // same type on both sides. We make each key column big enough to hold
+    // the values from either side so that we never have to truncate strings.
+    const std::vector<AbstractExpression*> &outerKeys = node->getOuterKeyExpressions();
+    const std::vector<AbstractExpression*> &innerKeys = node->getInnerKeyExpressions();
+    assert(outerKeys.size() == innerKeys.size());
+    if (innerKeys.empty()) {
+        VOLT_ERROR("HashJoin node is missing its key expressions");
+        return false;
+    }
+    std::vector<ValueType> keyColumnTypes;
+    std::vector<int32_t> keyColumnSizes;
+    std::vector<bool> keyColumnAllowNull;
+    for (int ii = 0; ii < innerKeys.size(); ii++) {
+        const TupleValueExpression *outer = dynamic_cast<const TupleValueExpression*>(outerKeys[ii]);
+        const TupleValueExpression *inner = dynamic_cast<const TupleValueExpression*>(innerKeys[ii]);
+        if (outer == NULL || inner == NULL) {
+            VOLT_ERROR("HashJoin key #%d is not a column reference", ii);
+            return false;
+        }
+        const int outerColumn = outer->getColumnId();
+        const int innerColumn = inner->getColumnId();
+        if (first->columnType(outerColumn) != second->columnType(innerColumn)) {
+            VOLT_ERROR("HashJoin key #%d has mismatched types [outer=%s, inner=%s]", ii,
+                       getTypeName(first->columnType(outerColumn)).c_str(),
+                       getTypeName(second->columnType(innerColumn)).c_str());
+            return false;
+        }
+        keyColumnTypes.push_back(second->columnType(innerColumn));
+        keyColumnSizes.push_back(std::max(first->columnLength(outerColumn),
+                                          second->columnLength(innerColumn)));
+        keyColumnAllowNull.push_back(true);
+    }
+    m_keySchema = TupleSchema::createTupleSchema(keyColumnTypes,
+                                                 keyColumnSizes,
+                                                 keyColumnAllowNull,
+                                                 true);
+    return true;
+}
+
+HashJoinExecutor::~HashJoinExecutor() {
+    if (m_keySchema != NULL) {
+        TupleSchema::freeTupleSchema(m_keySchema);
+    }
+}
+
+/**
+ * Evaluate the key expressions against the given tuple and store the
+ * values in keyTuple. Returns false if any of the values are null,
+ * since a null key can never be equal to anything.
+ */
+inline bool HashJoinExecutor::buildKey(const std::vector<AbstractExpression*> &keys,
+                                       const TableTuple &tuple, TableTuple &keyTuple) {
+    for (int ii = 0, cnt = (int)keys.size(); ii < cnt; ii++) {
+        NValue value = keys[ii]->eval(&tuple, NULL);
+        if (value.isNull()) return false;
+        keyTuple.setNValue(ii, value);
+    }
+    return true;
+}
+
+bool HashJoinExecutor::p_execute(const NValueArray &params) {
+    VOLT_DEBUG("executing HashJoin...");
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(abstract_node);
+    assert(node);
+    assert(node->getInputTables().size() == 2);
+
+    Table* output_table_ptr = node->getOutputTable();
+    assert(output_table_ptr);
+
+    // output table must be a temp table
+    TempTable* output_table = dynamic_cast<TempTable*>(output_table_ptr);
+    assert(output_table);
+
+    Table* outer_table = node->getInputTables()[0];
+    assert(outer_table);
+
+    Table* inner_table = node->getInputTables()[1];
+    assert(inner_table);
+
+    VOLT_TRACE ("input table left:\n %s", outer_table->debug().c_str());
+    VOLT_TRACE ("input table right:\n %s", inner_table->debug().c_str());
+
+    //
+    // Leftover Join Expression
+    //
+    AbstractExpression *predicate = node->getPredicate();
+    if (predicate) {
+        predicate->substitute(params);
+        VOLT_TRACE ("predicate: %s", predicate == NULL ?
+                    "NULL" : predicate->debug(true).c_str());
+    }
+    const std::vector<AbstractExpression*> &outerKeys = node->getOuterKeyExpressions();
+    const std::vector<AbstractExpression*> &innerKeys = node->getInnerKeyExpressions();
+    for (int ii = 0; ii < innerKeys.size(); ii++) {
+        outerKeys[ii]->substitute(params);
+        innerKeys[ii]->substitute(params);
+    }
+
+    int outer_cols = outer_table->columnCount();
+    int inner_cols = inner_table->columnCount();
+    TableTuple outer_tuple(outer_table->schema());
+    TableTuple inner_tuple(inner_table->schema());
+    TableTuple &joined = output_table->tempTuple();
+
+    //
+    // Build Phase
+    // The key tuples are allocated out of our pool and are only valid for
+    // this invocation. The inner tuples stay in the input table.
+    //
+    m_memoryPool.purge();
+    HashJoinMapType hashTable(static_cast<size_t>(inner_table->activeTupleCount()));
+    TableTuple key_tuple(m_keySchema);
+    key_tuple.moveNoHeader(m_memoryPool.allocate(m_keySchema->tupleLength()));
+
+    TableIterator iterator1(inner_table);
+    while (iterator1.next(inner_tuple)) {
+        if (buildKey(innerKeys, inner_tuple, key_tuple) == false) continue;
+        hashTable.insert(HashJoinMapType::value_type(key_tuple, inner_tuple));
+        key_tuple.moveNoHeader(m_memoryPool.allocate(m_keySchema->tupleLength()));
+    } // WHILE
+    VOLT_DEBUG("Built HashJoin table with %d entries from %d inner tuples",
+               (int)hashTable.size(), (int)inner_table->activeTupleCount());
+
+    //
+    // Probe Phase
+    // We can reuse the last key tuple that we allocated above since
+    // it did not get put into the hash table
+    //
+    if (hashTable.empty() == false) {
+        TableIterator iterator0(outer_table);
+        while (iterator0.next(outer_tuple)) {
+            if (buildKey(outerKeys, outer_tuple, key_tuple) == false) continue;
+
+            std::pair<HashJoinMapType::const_iterator,
+                      HashJoinMapType::const_iterator> range = hashTable.equal_range(key_tuple);
+            if (range.first == range.second) continue;
+
+            // populate output table's temp tuple with outer table's values
+            // once per outer tuple that has at least one match
+            for (int col_ctr = 0; col_ctr < outer_cols; col_ctr++) {
+                joined.setNValue(col_ctr, outer_tuple.getNValue(col_ctr));
+            }
+
+            for (HashJoinMapType::const_iterator iter = range.first; iter != range.second; iter++) {
+                const TableTuple &match = iter->second;
+                if (predicate == NULL || predicate->eval(&outer_tuple, &match).isTrue()) {
+                    // Matched! Complete the joined tuple with the inner column values.
+                    for (int col_ctr = 0; col_ctr < inner_cols; col_ctr++) {
+                        joined.setNValue(col_ctr + outer_cols, match.getNValue(col_ctr));
+                    }
+                    output_table->insertTupleNonVirtual(joined);
+                }
+            } // FOR
+        } // WHILE
+    }
+
+    return (true);
+}
+
+}
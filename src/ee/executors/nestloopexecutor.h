@@ -50,10 +50,23 @@
 #include "common/valuevector.h"
 #include "executors/abstractexecutor.h"
 
+#include <string>
+
 namespace voltdb {
 
 class UndoLog;
 class ReadWriteSet;
+class AbstractExpression;
+
+/**
+ * Set the tuple index of every TupleValueExpression in the given join
+ * predicate so that eval() reads outer columns from its first tuple and
+ * inner columns from its second. Returns false if a column cannot be
+ * matched to either input table.
+ */
+bool assignTupleValueIndexes(const AbstractExpression *predicate,
+                             const std::string &oname,
+                             const std::string &iname);
 
 /**
  *
@@ -176,40 +176,76 @@ OrderByExecutor::p_execute(const NValueArray &params)
     //
     // OPTIMIZATION: NESTED LIMIT
     // How nice! We can also cut off our scanning with a nested limit!
+    // Instead of sorting the entire input table, we only keep the best
+    // offset+limit tuples that we have seen so far in a bounded heap.
     //
     int limit = -1;
-    int offset = -1;
+    int offset = 0;
     if (limit_node != NULL)
     {
         limit_node->getLimitAndOffsetByReference(params, limit, offset);
-        if (offset > 0)
-        {
-            VOLT_ERROR("Nested Limit Offset is not yet supported for PlanNode"
-                       " '%s'", node->debug().c_str());
-            return false;
-        }
+        if (offset < 0) offset = 0;
     }
 
     VOLT_TRACE("Running OrderBy '%s'", abstract_node->debug().c_str());
     VOLT_TRACE("Input Table:\n '%s'", input_table->debug().c_str());
     TableIterator iterator(input_table);
     TableTuple tuple(input_table->schema());
+    TupleComparer comparer(node->getSortColumns(), node->getSortDirections());
     vector<TableTuple> xs;
-    while (iterator.next(tuple))
+
+    if (limit >= 0)
+    {
+        // The heap is ordered so that the worst tuple that we are keeping
+        // is always at the front. A new tuple only gets in if it sorts
+        // before that one.
+        const size_t heapSize = static_cast<size_t>(limit) + offset;
+        xs.reserve(heapSize);
+        while (heapSize > 0 && iterator.next(tuple))
+        {
+            assert(tuple.isActive());
+            if (xs.size() < heapSize)
+            {
+                xs.push_back(tuple);
+                push_heap(xs.begin(), xs.end(), comparer);
+            }
+            else if (comparer(tuple, xs.front()))
+            {
+                pop_heap(xs.begin(), xs.end(), comparer);
+                xs.back() = tuple;
+                push_heap(xs.begin(), xs.end(), comparer);
+            }
+        }
+        sort_heap(xs.begin(), xs.end(), comparer);
+        VOLT_TRACE("Kept %d tuples out of %d for Top-N [limit=%d, offset=%d]",
+                   (int)xs.size(), (int)input_table->activeTupleCount(), limit, offset);
+    }
+    else
     {
-        assert(tuple.isActive());
-        xs.push_back(tuple);
+        while (iterator.next(tuple))
+        {
+            assert(tuple.isActive());
+            xs.push_back(tuple);
+        }
+        VOLT_TRACE("\n***** Input Table PreSort:\n '%s'",
+                   input_table->debug().c_str());
+        sort(xs.begin(), xs.end(), comparer);
     }
-    VOLT_TRACE("\n***** Input Table PreSort:\n '%s'",
-               input_table->debug().c_str());
-    sort(xs.begin(), xs.end(), TupleComparer(node->getSortColumns(),
-                                             node->getSortDirections()));
 
     int tuple_ctr = 0;
-    for (vector<TableTuple>::iterator it = xs.begin(); it != xs.end(); it++)
+    vector<TableTuple>::iterator it = xs.begin();
+    if (offset > 0)
     {
-        VOLT_TRACE("\n***** Input Table PostSort:\n '%s'",
-                   input_table->debug().c_str());
+        it += min(static_cast<size_t>(offset), xs.size());
+    }
+    for (; it != xs.end(); it++)
+    {
+        //
+        // Check whether we have gone past our limit
+        //
+        if (limit >= 0 && tuple_ctr++ >= limit) {
+            break;
+        }
         if (!output_table->insertTuple(*it))
         {
             VOLT_ERROR("Failed to insert order-by tuple from input table '%s'"
@@ -218,12 +254,6 @@ OrderByExecutor::p_execute(const NValueArray &params)
                        output_table->name().c_str());
             return false;
         }
-        //
-        // Check whether we have gone past our limit
-        //
-        if (limit >= 0 && ++tuple_ctr >= limit) {
-            break;
-        }
     }
     VOLT_TRACE("Result of OrderBy:\n '%s'", output_table->debug().c_str());
 
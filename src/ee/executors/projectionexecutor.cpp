@@ -145,55 +145,42 @@ bool ProjectionExecutor::p_execute(const NValueArray &params) {
     }
 
     //
-    // Now loop through all the tuples and push them through our output
-    // expression This will generate new tuple values that we will insert into
-    // our output table
+    // If every output column is a parameter, then each input tuple produces
+    // the same output tuple and there is nothing to gain from batching
     //
     TableIterator iterator(input_table);
     assert (tuple.sizeInValues() == input_table->columnCount());
-    while (iterator.next(tuple)) {
-        //
-        // Project (or replace) values from input tuple
-        //
-        TableTuple &temp_tuple = output_table->tempTuple();
-        if (all_tuple_array != NULL) {
-            VOLT_TRACE("sweet, all tuples");
-            for (int ctr = num_of_columns - 1; ctr >= 0; --ctr) {
-                try {
-                    temp_tuple.setNValue(ctr, tuple.getNValue(all_tuple_array[ctr]));
-                } catch (SerializableEEException &e) {
-                    VOLT_ERROR("[Type0] Failed to project column #%02d: %s", ctr, e.message().c_str());
-                    throw e;
-                }
-            } // FOR
-        } else if (all_param_array != NULL) {
-            VOLT_TRACE("sweet, all params");
+    if (all_param_array != NULL) {
+        VOLT_TRACE("sweet, all params");
+        while (iterator.next(tuple)) {
+            TableTuple &temp_tuple = output_table->tempTuple();
             for (int ctr = num_of_columns - 1; ctr >= 0; --ctr) {
                 try {
                     temp_tuple.setNValue(ctr, params[all_param_array[ctr]]);
                 } catch (SerializableEEException &e) {
                     VOLT_ERROR("[Type1] Failed to project column #%02d: %s", ctr, e.message().c_str());
                     throw e;
-                }   
-            } // FOR
-        } else {
-            for (int ctr = num_of_columns - 1; ctr >= 0; --ctr) {
-                try {
-                    temp_tuple.setNValue(ctr, expression_array[ctr]->eval(&tuple, NULL));
-                } catch (SerializableEEException &e) {
-                    VOLT_ERROR("[Type2] Failed to project column #%02d: %s", ctr, e.message().c_str());
-                    throw e;
                 }
             } // FOR
-        }
-        output_table->insertTupleNonVirtual(temp_tuple);
-        /*if (!output_table->insertTupleNonVirtual(temp_tuple)) {
-            // TODO: DEBUG
-            VOLT_ERROR("Failed to insert projection tuple from input table '%s' into output table '%s'", input_table->name().c_str(), output_table->name().c_str());
-            return (false);
-        }*/
+            output_table->insertTupleNonVirtual(temp_tuple);
+        } // WHILE
+        return (true);
     }
 
+    //
+    // Now loop through the input tuples one batch at a time and push each
+    // batch through our output expressions. This will generate new tuple
+    // values that we will append to our output table
+    //
+    while (batch.fill(iterator, tuple) > 0) {
+        try {
+            batch.projectInto(output_table, tuple, expression_array, all_tuple_array, num_of_columns);
+        } catch (SerializableEEException &e) {
+            VOLT_ERROR("Failed to project batch of %d tuples: %s", batch.size(), e.message().c_str());
+            throw e;
+        }
+    } // WHILE
+
     //VOLT_TRACE("PROJECTED TABLE: %s\n", output_table->debug().c_str());
 
     return (true);
@@ -50,6 +50,7 @@
 #include "common/tabletuple.h"
 #include "common/FatalException.hpp"
 #include "expressions/abstractexpression.h"
+#include "expressions/expressionutil.h"
 #include "plannodes/seqscannode.h"
 #include "plannodes/projectionnode.h"
 #include "plannodes/limitnode.h"
@@ -85,6 +86,8 @@ bool SeqScanExecutor::p_init(AbstractPlanNode *abstract_node,
         //
         assert(projection_node->getOutputTable());
         node->setOutputTable(projection_node->getOutputTable());
+        all_tuple_array_ptr =
+          expressionutil::convertIfAllTupleValues(projection_node->getOutputColumnExpressions());
     //
     // FULL TABLE SCHEMA
     //
@@ -185,10 +188,13 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
         limit_node != NULL)
     {
         //
-        // Just walk through the table using our iterator and apply
-        // the predicate to each tuple. For each tuple that satisfies
-        // our expression, we'll insert them into the output table.
+        // Walk through the table using our iterator one batch of tuples at
+        // a time. Each batch is filtered by the predicate and then the
+        // surviving tuples are either projected or copied into the output
+        // table in bulk.
         //
+        TempTable* output_temp_table = dynamic_cast<TempTable*>(output_table);
+        assert(output_temp_table);
         TableTuple tuple(target_table->schema());
         TableIterator iterator(target_table);
         AbstractExpression *predicate = node->getPredicate();
@@ -203,59 +209,49 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
         }
 
         int tuple_ctr = 0;
-        while (iterator.next(tuple))
+        while (limit < 0 || tuple_ctr < limit)
         {
-            target_table->updateTupleAccessCount();
-            VOLT_TRACE("INPUT TUPLE: %s, %d/%d\n",
-                       tuple.debug(target_table->name()).c_str(), tuple_ctr,
-                       (int)target_table->activeTupleCount());
             //
-            // For each tuple we need to evaluate it against our predicate
+            // Never read more tuples than we still need to emit. With a
+            // predicate this can take a few smaller batches at the end, but
+            // we never read (or count as accessed for the anti-cache) any tuple
+            // that comes after the last one that we emit
             //
-            if (predicate == NULL || predicate->eval(&tuple, NULL).isTrue())
+            int max_size = TupleBatch::MAX_BATCH_SIZE;
+            if (limit >= 0 && limit - tuple_ctr < max_size) {
+                max_size = limit - tuple_ctr;
+            }
+            if (batch.fill(iterator, tuple, target_table, max_size) == 0) {
+                break;
+            }
+            VOLT_TRACE("INPUT BATCH: %d tuples, %d/%d\n", batch.size(),
+                       tuple_ctr, (int)target_table->activeTupleCount());
+            //
+            // Evaluate the whole batch against our predicate
+            //
+            if (predicate != NULL) {
+                batch.filter(predicate, tuple);
+            }
+            assert(limit < 0 || batch.size() <= limit - tuple_ctr);
+
+            //
+            // Nested Projection
+            // Project (or replace) values from the input tuples
+            //
+            if (projection_node != NULL)
+            {
+                batch.projectInto(output_temp_table, tuple,
+                                  &projection_node->getOutputColumnExpressions()[0],
+                                  all_tuple_array_ptr.get(), num_of_columns);
+            }
+            else
             {
                 //
-                // Nested Projection
-                // Project (or replace) values from input tuple
+                // Insert the tuples into our output table
                 //
-                if (projection_node != NULL)
-                {
-                    TableTuple &temp_tuple = output_table->tempTuple();
-                    for (int ctr = 0; ctr < num_of_columns; ctr++)
-                    {
-                        NValue value =
-                            projection_node->
-                          getOutputColumnExpressions()[ctr]->eval(&tuple, NULL);
-                        temp_tuple.setNValue(ctr, value);
-                    }
-                    if (!output_table->insertTuple(temp_tuple))
-                    {
-                        VOLT_ERROR("Failed to insert tuple from table '%s' into"
-                                   " output table '%s'",
-                                   target_table->name().c_str(),
-                                   output_table->name().c_str());
-                        return false;
-                    }
-                }
-                else
-                {
-                    //
-                    // Insert the tuple into our output table
-                    //
-                    if (!output_table->insertTuple(tuple)) {
-                        VOLT_ERROR("Failed to insert tuple from table '%s' into"
-                                   " output table '%s'",
-                                   target_table->name().c_str(),
-                                   output_table->name().c_str());
-                        return false;
-                    }
-                }
-                ++tuple_ctr;
-                // Check whether we have gone past our limit
-                if (limit >= 0 && tuple_ctr >= limit) {
-                    break;
-                }
+                batch.insertInto(output_temp_table, target_table->schema());
             }
+            tuple_ctr += batch.size();
         }
     }
     VOLT_TRACE("\n%s\n", output_table->debug().c_str());
@@ -46,9 +46,11 @@
 #ifndef HSTORESEQSCANEXECUTOR_H
 #define HSTORESEQSCANEXECUTOR_H
 
+#include "boost/shared_array.hpp"
 #include "common/common.h"
 #include "common/valuevector.h"
 #include "executors/abstractexecutor.h"
+#include "executors/tuplebatch.h"
 
 namespace voltdb
 {
@@ -65,6 +67,12 @@ namespace voltdb
                     const catalog::Database* catalog_db, int* tempTableMemoryInBytes);
         bool p_execute(const NValueArray& params);
         bool needsOutputTableClear();
+
+    private:
+        // If every column of the inline projection is a plain column
+        // reference, this holds the input column offset for each output column
+        boost::shared_array<int> all_tuple_array_ptr;
+        TupleBatch batch;
     };
 }
 
@@ -0,0 +1,165 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2010 VoltDB Inc.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB Inc. are licensed under the following
+ * terms and conditions:
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/* Copyright (C) 2008 by H-Store Project
+ * Brown University
+ * Massachusetts Institute of Technology
+ * Yale University
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#ifndef HSTORETUPLEBATCH_H
+#define HSTORETUPLEBATCH_H
+
+#include "common/common.h"
+#include "common/tabletuple.h"
+#include "expressions/abstractexpression.h"
+#include "storage/table.h"
+#include "storage/temptable.h"
+#include "storage/tableiterator.h"
+
+namespace voltdb {
+
+/**
+ * A block of tuple addresses that the scan and projection executors pass
+ * through their predicate and output expressions one batch at a time instead
+ * of one tuple at a time. Filtering compacts the block in place, and the
+ * surviving tuples are appended to the output TempTable in bulk. Projections
+ * are evaluated column by column over the whole block so that each output
+ * expression is only looked up once per batch.
+ */
+class TupleBatch {
+    public:
+        static const int MAX_BATCH_SIZE = 1024;
+
+        TupleBatch() : m_size(0) {}
+
+        inline int size() const {
+            return (m_size);
+        }
+
+        /**
+         * Pull up to max_size active tuples out of the iterator. Returns the
+         * number of tuples in the batch, which is zero once the iterator is done.
+         * If access_table is not NULL, then its tuple access counter is
+         * incremented for every tuple that we read.
+         */
+        inline int fill(TableIterator &iterator, TableTuple &tuple,
+                        Table *access_table = NULL, int max_size = MAX_BATCH_SIZE) {
+            assert(max_size <= MAX_BATCH_SIZE);
+            m_size = 0;
+            while (m_size < max_size && iterator.next(tuple)) {
+                if (access_table != NULL) access_table->updateTupleAccessCount();
+                m_addresses[m_size++] = tuple.address();
+            } // WHILE
+            return (m_size);
+        }
+
+        /**
+         * Remove every tuple from the batch that does not satisfy the predicate.
+         * The order of the remaining tuples is preserved.
+         */
+        inline int filter(const AbstractExpression *predicate, TableTuple &tuple) {
+            int kept = 0;
+            for (int i = 0; i < m_size; i++) {
+                tuple.move(m_addresses[i]);
+                if (predicate->eval(&tuple, NULL).isTrue()) {
+                    m_addresses[kept++] = m_addresses[i];
+                }
+            } // FOR
+            m_size = kept;
+            return (m_size);
+        }
+
+        inline void truncate(int size) {
+            if (size < m_size) m_size = size;
+        }
+
+        /**
+         * Shallow copy all of the tuples in the batch into the output table
+         */
+        inline void insertInto(TempTable *output_table, const TupleSchema *schema) const {
+            output_table->insertTupleBatchNonVirtual(schema, m_addresses, m_size);
+        }
+
+        /**
+         * Evaluate the output expressions over the batch and append the results
+         * to the output table. If all_tuple_array is not NULL, then every output
+         * column is a plain column reference and the values are copied over directly
+         * without going through the expressions.
+         * If an expression throws, then none of the batch's tuples are left in the
+         * output table, because some of their columns were never set.
+         */
+        inline void projectInto(TempTable *output_table, TableTuple &tuple,
+                                AbstractExpression* const* expressions,
+                                const int *all_tuple_array, int num_of_columns) {
+            output_table->allocateTupleBatchNonVirtual(m_outputAddresses, m_size);
+            TableTuple out(output_table->schema());
+            try {
+                for (int ctr = 0; ctr < num_of_columns; ctr++) {
+                    if (all_tuple_array != NULL) {
+                        const int col_idx = all_tuple_array[ctr];
+                        for (int i = 0; i < m_size; i++) {
+                            tuple.move(m_addresses[i]);
+                            out.move(m_outputAddresses[i]);
+                            out.setNValue(ctr, tuple.getNValue(col_idx));
+                        } // FOR
+                    } else {
+                        const AbstractExpression *expression = expressions[ctr];
+                        for (int i = 0; i < m_size; i++) {
+                            tuple.move(m_addresses[i]);
+                            out.move(m_outputAddresses[i]);
+                            out.setNValue(ctr, expression->eval(&tuple, NULL));
+                        } // FOR
+                    }
+                } // FOR
+            } catch (...) {
+                output_table->releaseTupleBatchNonVirtual(m_size);
+                throw;
+            }
+        }
+
+    private:
+        int m_size;
+        char* m_addresses[MAX_BATCH_SIZE];
+        char* m_outputAddresses[MAX_BATCH_SIZE];
+};
+
+}
+
+#endif
@@ -49,6 +49,7 @@
 #include "common/common.h"
 #include "common/serializeio.h"
 #include "common/valuevector.h"
+#include "common/ValuePeeker.hpp"
 
 #include "expressions/abstractexpression.h"
 #include "expressions/parametervalueexpression.h"
@@ -62,26 +63,32 @@ namespace voltdb {
 class CmpEq {
 public:
     inline NValue cmp(NValue l, NValue r) const { return l.op_equals(r);}
+    inline bool cmpInt(int64_t l, int64_t r) const { return l == r;}
 };
 class CmpNe {
 public:
     inline NValue cmp(NValue l, NValue r) const { return l.op_notEquals(r);}
+    inline bool cmpInt(int64_t l, int64_t r) const { return l != r;}
 };
 class CmpLt {
 public:
     inline NValue cmp(NValue l, NValue r) const { return l.op_lessThan(r);}
+    inline bool cmpInt(int64_t l, int64_t r) const { return l < r;}
 };
 class CmpGt {
 public:
     inline NValue cmp(NValue l, NValue r) const { return l.op_greaterThan(r);}
+    inline bool cmpInt(int64_t l, int64_t r) const { return l > r;}
 };
 class CmpLte {
 public:
     inline NValue cmp(NValue l, NValue r) const { return l.op_lessThanOrEqual(r);}
+    inline bool cmpInt(int64_t l, int64_t r) const { return l <= r;}
 };
 class CmpGte {
 public:
     inline NValue cmp(NValue l, NValue r) const { return l.op_greaterThanOrEqual(r);}
+    inline bool cmpInt(int64_t l, int64_t r) const { return l >= r;}
 };
 
 template <typename C>
@@ -155,5 +162,97 @@ public:
     C compare;
 };
 
+/**
+ * Returns true if NValue::compare() compares values of this type as
+ * int64_ts when the other side is also one of these types
+ */
+inline bool isIntegerComparable(ValueType type) {
+    switch (type) {
+        case VALUE_TYPE_TINYINT:
+        case VALUE_TYPE_SMALLINT:
+        case VALUE_TYPE_INTEGER:
+        case VALUE_TYPE_BIGINT:
+        case VALUE_TYPE_TIMESTAMP:
+            return true;
+        default:
+            return false;
+    }
+}
+
+/**
+ * Comparison between a column of the input tuple and either a constant
+ * or a parameter (in either order). The constant/parameter is only
+ * evaluated once when the expression is built or when new parameters
+ * are substituted. When both the column and that value are integers, the
+ * column is read straight out of the tuple storage and compared as an
+ * int64_t instead of building an NValue for it and going through
+ * NValue::compare() for every tuple. Anything else falls back to the
+ * regular NValue comparison.
+ */
+template <typename C>
+class TupleValueComparisonExpression : public AbstractExpression {
+public:
+    TupleValueComparisonExpression(ExpressionType type,
+                                   AbstractExpression *left,
+                                   AbstractExpression *right)
+        : AbstractExpression(type, left, right)
+    {
+        m_tupleValue = dynamic_cast<TupleValueExpression*>(left);
+        m_reversed = (m_tupleValue == NULL);
+        if (m_reversed) {
+            m_tupleValue = dynamic_cast<TupleValueExpression*>(right);
+            m_valueExpr = left;
+        } else {
+            m_valueExpr = right;
+        }
+        assert (m_tupleValue != NULL);
+        assert (m_valueExpr != NULL);
+        cacheValue();
+    };
+
+    inline NValue eval(const TableTuple *tuple1, const TableTuple *tuple2) const {
+        const TableTuple *tuple = (m_tupleValue->getTupleIndex() == 0 ? tuple1 : tuple2);
+        const int column = m_tupleValue->getColumnId();
+
+        if (m_valueIsInteger && isIntegerComparable(tuple->getSchema()->columnType(column))) {
+            const int64_t columnValue = tuple->getIntegerAsBigInt(column);
+            const bool result = (m_reversed ?
+                                 this->compare.cmpInt(m_integerValue, columnValue) :
+                                 this->compare.cmpInt(columnValue, m_integerValue));
+            return (result ? NValue::getTrue() : NValue::getFalse());
+        }
+
+        if (m_reversed) {
+            return this->compare.cmp(m_value, tuple->getNValue(column));
+        }
+        return this->compare.cmp(tuple->getNValue(column), m_value);
+    }
+
+    void substitute(const NValueArray &params) {
+        AbstractExpression::substitute(params);
+        cacheValue();
+    }
+
+    std::string debugInfo(const std::string &spacer) const {
+        return (spacer + "TupleValueComparisonExpression\n");
+    }
+
+private:
+    inline void cacheValue() {
+        m_value = m_valueExpr->eval(NULL, NULL);
+        m_valueIsInteger = isIntegerComparable(m_value.getValueType());
+        m_integerValue = (m_valueIsInteger ? ValuePeeker::peekAsBigInt(m_value) : 0);
+    }
+
+    TupleValueExpression *m_tupleValue;
+    AbstractExpression *m_valueExpr;
+    bool m_reversed;
+
+    NValue m_value;
+    bool m_valueIsInteger;
+    int64_t m_integerValue;
+    C compare;
+};
+
 }
 #endif
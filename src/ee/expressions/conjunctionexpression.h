@@ -82,18 +82,27 @@ class ConjunctionExpression : public AbstractExpression
     AbstractExpression *m_right;
 };
 
+// Both conjunctions short-circuit: the right side is only evaluated
+// when the left side does not already decide the result
+
 template<> inline NValue
 ConjunctionExpression<ConjunctionAnd>::eval(const TableTuple *tuple1,
                                             const TableTuple *tuple2) const
 {
-    return m_left->eval(tuple1, tuple2).op_and(m_right->eval(tuple1, tuple2));
+    if (m_left->eval(tuple1, tuple2).isFalse()) {
+        return NValue::getFalse();
+    }
+    return m_right->eval(tuple1, tuple2).isTrue() ? NValue::getTrue() : NValue::getFalse();
 }
 
 template<> inline NValue
 ConjunctionExpression<ConjunctionOr>::eval(const TableTuple *tuple1,
                                            const TableTuple *tuple2) const
 {
-    return m_left->eval(tuple1, tuple2).op_or(m_right->eval(tuple1, tuple2));
+    if (m_left->eval(tuple1, tuple2).isTrue()) {
+        return NValue::getTrue();
+    }
+    return m_right->eval(tuple1, tuple2).isTrue() ? NValue::getTrue() : NValue::getFalse();
 }
 
 }
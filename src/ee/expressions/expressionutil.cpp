@@ -119,6 +119,36 @@ getMoreSpecialized(ExpressionType c, L* l, R* r)
     }
 }
 
+/** Comparisons between a tuple column and a constant or parameter
+    get an evaluator that can skip NValues for integer columns. */
+AbstractExpression*
+getTupleValueComparison(ExpressionType c,
+                        AbstractExpression *l,
+                        AbstractExpression *r)
+{
+    assert (l);
+    assert (r);
+    switch (c) {
+    case (EXPRESSION_TYPE_COMPARE_EQUAL):
+        return new TupleValueComparisonExpression<CmpEq>(c, l, r);
+    case (EXPRESSION_TYPE_COMPARE_NOTEQUAL):
+        return new TupleValueComparisonExpression<CmpNe>(c, l, r);
+    case (EXPRESSION_TYPE_COMPARE_LESSTHAN):
+        return new TupleValueComparisonExpression<CmpLt>(c, l, r);
+    case (EXPRESSION_TYPE_COMPARE_GREATERTHAN):
+        return new TupleValueComparisonExpression<CmpGt>(c, l, r);
+    case (EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO):
+        return new TupleValueComparisonExpression<CmpLte>(c, l, r);
+    case (EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO):
+        return new TupleValueComparisonExpression<CmpGte>(c, l, r);
+    default:
+        char message[256];
+        sprintf(message, "Invalid ExpressionType '%s' called for"
+                " ComparisonExpression", expressionutil::getTypeName(c).c_str());
+        throw SerializableEEException(VOLT_EE_EXCEPTION_TYPE_EEEXCEPTION, message);
+    }
+}
+
 /** convert the enumerated value type into a concrete c type for the
  * comparison helper templates. */
 AbstractExpression *
@@ -158,16 +188,20 @@ comparisonFactory(ExpressionType c,
     TupleValueExpression *r_tuple =
       dynamic_cast<TupleValueExpression*>(rc);
 
+    ParameterValueExpression *l_param =
+      dynamic_cast<ParameterValueExpression*>(lc);
+
+    ParameterValueExpression *r_param =
+      dynamic_cast<ParameterValueExpression*>(rc);
+
     // this will inline getValue(), hooray!
     if (l_const != NULL && r_const != NULL) { // CONST-CONST can it happen?
         return getMoreSpecialized<ConstantValueExpression,
             ConstantValueExpression>(c, l_const, r_const);
-    } else if (l_const != NULL && r_tuple != NULL) { // CONST-TUPLE
-        return getMoreSpecialized<ConstantValueExpression,
-          TupleValueExpression>(c, l_const, r_tuple);
-    } else if (l_tuple != NULL && r_const != NULL) { // TUPLE-CONST
-        return getMoreSpecialized<TupleValueExpression,
-          ConstantValueExpression >(c, l_tuple, r_const);
+    } else if ((l_const != NULL || l_param != NULL) && r_tuple != NULL) { // CONST/PARAM-TUPLE
+        return getTupleValueComparison(c, lc, rc);
+    } else if (l_tuple != NULL && (r_const != NULL || r_param != NULL)) { // TUPLE-CONST/PARAM
+        return getTupleValueComparison(c, lc, rc);
     } else if (l_tuple != NULL && r_tuple != NULL) { // TUPLE-TUPLE
         return getMoreSpecialized<TupleValueExpression,
           TupleValueExpression>(c, l_tuple, r_tuple);
@@ -0,0 +1,373 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2010 VoltDB Inc.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB Inc. are licensed under the following
+ * terms and conditions:
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/* Copyright (C) 2008 by H-Store Project
+ * Brown University
+ * Massachusetts Institute of Technology
+ * Yale University
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#ifndef BPLUSTREEINDEX_H_
+#define BPLUSTREEINDEX_H_
+
+#include <iostream>
+#include "stx/btree_set.h"
+#include "common/debuglog.h"
+#include "common/tabletuple.h"
+#include "indexes/tableindex.h"
+
+namespace voltdb {
+
+/**
+ * Target size in bytes of a single node in a BPlusTreeIndex. This is
+ * eight 64-byte cache lines, which is twice as wide as the default nodes
+ * in the stx::btree containers. Wider nodes make the tree shallower and
+ * let range scans walk long runs of contiguous entries in each leaf.
+ */
+#define BPLUSTREE_NODE_SIZE 512
+
+/**
+ * Node sizing for the stx::btree_set used by BPlusTreeIndex
+ */
+template <typename EntryType>
+struct BPlusTreeTraits
+{
+    static const bool selfverify = false;
+    static const bool debug = false;
+    static const int leafslots = BTREE_MAX(8, BPLUSTREE_NODE_SIZE / sizeof(EntryType));
+    static const int innerslots = BTREE_MAX(8, BPLUSTREE_NODE_SIZE / (sizeof(EntryType) + sizeof(void*)));
+};
+
+/**
+ * Index implemented as a B+Tree with wide nodes.
+ *
+ * Every entry in the tree is the index key together with the address
+ * of its tuple, and entries are ordered by the key and then by the address.
+ * This means that the index never has to store a separate node per key or
+ * per duplicate value: a leaf holds as many (key, address) pairs as fit in
+ * BPLUSTREE_NODE_SIZE bytes and the leaves are chained together for scans.
+ * It also means that removing one tuple from a non-unique key is a
+ * single lookup instead of a walk through all of the key's duplicates.
+ *
+ * The same implementation is used for both unique and non-unique indexes.
+ * @see TableIndex
+ */
+template<typename KeyType, class KeyComparator, class KeyEqualityChecker>
+class BPlusTreeIndex : public TableIndex
+{
+    friend class TableIndexFactory;
+
+    struct Entry {
+        KeyType key;
+        const void* address;
+
+        Entry() : address(NULL) {}
+        Entry(const KeyType &k, const void* a) : key(k), address(a) {}
+    };
+
+    /**
+     * Orders entries by their key first and then by their tuple address
+     */
+    class EntryComparator {
+    public:
+        KeyComparator m_keyComp;
+        EntryComparator(const KeyComparator &keyComp) : m_keyComp(keyComp) {}
+
+        inline bool operator()(const Entry &lhs, const Entry &rhs) const {
+            if (m_keyComp(lhs.key, rhs.key)) return true;
+            if (m_keyComp(rhs.key, lhs.key)) return false;
+            return (reinterpret_cast<uintptr_t>(lhs.address) < reinterpret_cast<uintptr_t>(rhs.address));
+        }
+    };
+
+    typedef BPlusTreeTraits<Entry> TraitsType;
+    typedef stx::btree_set<Entry, EntryComparator, TraitsType> SetType;
+    typedef typename SetType::const_iterator SetCIter;
+    typedef typename SetType::const_reverse_iterator SetCRIter;
+
+public:
+
+    ~BPlusTreeIndex() {};
+
+    bool addEntry(const TableTuple *tuple)
+    {
+        m_tmp1.setFromTuple(tuple, column_indices_, m_keySchema);
+        return addEntryPrivate(tuple->address(), m_tmp1);
+    }
+
+    bool deleteEntry(const TableTuple *tuple)
+    {
+        m_tmp1.setFromTuple(tuple, column_indices_, m_keySchema);
+        return deleteEntryPrivate(tuple->address(), m_tmp1);
+    }
+
+    bool replaceEntry(const TableTuple *oldTupleValue,
+                      const TableTuple* newTupleValue)
+    {
+        m_tmp1.setFromTuple(oldTupleValue, column_indices_, m_keySchema);
+        m_tmp2.setFromTuple(newTupleValue, column_indices_, m_keySchema);
+        if (m_eq(m_tmp1, m_tmp2))
+        {
+            // no update is needed for this index
+            return true;
+        }
+
+        // The entry for the old key points at the current tuple
+        // (which already has the new key value), so that is the
+        // address that we need to remove
+        bool deleted = deleteEntryPrivate(newTupleValue->address(), m_tmp1);
+        bool inserted = addEntryPrivate(newTupleValue->address(), m_tmp2);
+        --m_deletes;
+        --m_inserts;
+        ++m_updates;
+        return (deleted && inserted);
+    }
+
+    bool setEntryToNewAddress(const TableTuple *tuple, const void* address)
+    {
+        m_tmp1.setFromTuple(tuple, column_indices_, m_keySchema);
+        ++m_updates;
+
+        if (!eraseEntry(tuple->address(), m_tmp1)) {
+            // key exists, but not this tuple
+            return false;
+        }
+        return m_entries.insert(Entry(m_tmp1, address)).second;
+    }
+
+    bool checkForIndexChange(const TableTuple *lhs, const TableTuple *rhs)
+    {
+        m_tmp1.setFromTuple(lhs, column_indices_, m_keySchema);
+        m_tmp2.setFromTuple(rhs, column_indices_, m_keySchema);
+        return !(m_eq(m_tmp1, m_tmp2));
+    }
+
+    bool exists(const TableTuple* values)
+    {
+        ++m_lookups;
+        m_tmp1.setFromTuple(values, column_indices_, m_keySchema);
+        return (findFirst(m_tmp1) != m_entries.end());
+    }
+
+    bool moveToKey(const TableTuple *searchKey)
+    {
+        m_tmp1.setFromKey(searchKey);
+        return moveToKey(m_tmp1);
+    }
+
+    bool moveToTuple(const TableTuple *searchTuple)
+    {
+        m_tmp1.setFromTuple(searchTuple, column_indices_, m_keySchema);
+        return moveToKey(m_tmp1);
+    }
+
+    void moveToKeyOrGreater(const TableTuple *searchKey)
+    {
+        ++m_lookups;
+        m_begin = true;
+        m_tmp1.setFromKey(searchKey);
+        m_seqIter = m_entries.lower_bound(Entry(m_tmp1, MIN_ADDRESS));
+    }
+
+    void moveToGreaterThanKey(const TableTuple *searchKey)
+    {
+        ++m_lookups;
+        m_begin = true;
+        m_tmp1.setFromKey(searchKey);
+        m_seqIter = m_entries.upper_bound(Entry(m_tmp1, MAX_ADDRESS));
+    }
+
+    void moveToEnd(bool begin)
+    {
+        ++m_lookups;
+        m_begin = begin;
+        if (begin)
+            m_seqIter = m_entries.begin();
+        else
+            m_seqRIter = m_entries.rbegin();
+    }
+
+    TableTuple nextValue()
+    {
+        TableTuple retval(m_tupleSchema);
+
+        if (m_begin) {
+            if (m_seqIter == m_entries.end())
+                return TableTuple();
+            retval.move(const_cast<void*>(m_seqIter->address));
+            ++m_seqIter;
+        } else {
+            if (m_seqRIter == (SetCRIter) m_entries.rend())
+                return TableTuple();
+            retval.move(const_cast<void*>(m_seqRIter->address));
+            ++m_seqRIter;
+        }
+
+        return retval;
+    }
+
+    TableTuple nextValueAtKey()
+    {
+        if (m_match.isNullTuple()) return m_match;
+        TableTuple retval = m_match;
+        ++m_keyIter;
+        if (m_keyIter == m_entries.end() || !m_eq(m_keyIter->key, m_matchKey))
+            m_match.move(NULL);
+        else
+            m_match.move(const_cast<void*>(m_keyIter->address));
+        return retval;
+    }
+
+    bool advanceToNextKey()
+    {
+        SetCIter next = m_entries.upper_bound(Entry(m_matchKey, MAX_ADDRESS));
+        if (next == m_entries.end())
+        {
+            m_match.move(NULL);
+            return false;
+        }
+        return moveToKey(next->key);
+    }
+
+    size_t getSize() const { return m_entries.size(); }
+
+    int64_t getMemoryEstimate() const
+    {
+        const typename SetType::tree_stats &stats = m_entries.get_stats();
+        int64_t leafBytes = (TraitsType::leafslots * sizeof(Entry)) + (2 * sizeof(void*));
+        int64_t innerBytes = (TraitsType::innerslots * sizeof(Entry)) + ((TraitsType::innerslots + 1) * sizeof(void*));
+        return (stats.leaves * leafBytes) + (stats.innernodes * innerBytes);
+    }
+
+    std::string getTypeName() const { return "BPlusTreeIndex"; };
+
+protected:
+    BPlusTreeIndex(const TableIndexScheme &scheme) :
+        TableIndex(scheme),
+        m_entries(EntryComparator(KeyComparator(m_keySchema))),
+        m_begin(true),
+        m_eq(m_keySchema)
+    {
+        m_match = TableTuple(m_tupleSchema);
+    }
+
+    /**
+     * Return the first entry with the given key or end() if there isn't one
+     */
+    inline SetCIter findFirst(const KeyType &key) const
+    {
+        SetCIter iter = m_entries.lower_bound(Entry(key, MIN_ADDRESS));
+        if (iter != m_entries.end() && !m_eq(iter->key, key))
+            return m_entries.end();
+        return iter;
+    }
+
+    inline bool addEntryPrivate(const void* address, const KeyType &key)
+    {
+        ++m_inserts;
+        if (is_unique_index_ && findFirst(key) != m_entries.end())
+            return false;
+        return m_entries.insert(Entry(key, address)).second;
+    }
+
+    inline bool deleteEntryPrivate(const void* address, const KeyType &key)
+    {
+        ++m_deletes;
+        return eraseEntry(address, key);
+    }
+
+    inline bool eraseEntry(const void* address, const KeyType &key)
+    {
+        Entry entry(key, address);
+        if (is_unique_index_) {
+            // There is only ever one entry for a key, so we don't
+            // need the tuple's address to figure out which one to remove
+            SetCIter iter = findFirst(key);
+            if (iter == m_entries.end())
+                return false;
+            entry = *iter;
+        }
+        return (m_entries.erase(entry) > 0);
+    }
+
+    bool moveToKey(const KeyType &key)
+    {
+        ++m_lookups;
+        m_begin = true;
+        m_keyIter = findFirst(key);
+        if (m_keyIter == m_entries.end())
+        {
+            m_match.move(NULL);
+            return false;
+        }
+        m_matchKey = m_keyIter->key;
+        m_match.move(const_cast<void*>(m_keyIter->address));
+        return !m_match.isNullTuple();
+    }
+
+    static const void* const MIN_ADDRESS;
+    static const void* const MAX_ADDRESS;
+
+    SetType m_entries;
+    KeyType m_tmp1;
+    KeyType m_tmp2;
+
+    // iteration stuff
+    bool m_begin;
+    SetCIter m_keyIter;
+    SetCIter m_seqIter;
+    SetCRIter m_seqRIter;
+    KeyType m_matchKey;
+    TableTuple m_match;
+
+    // comparison stuff
+    KeyEqualityChecker m_eq;
+};
+
+template<typename KeyType, class KeyComparator, class KeyEqualityChecker>
+const void* const BPlusTreeIndex<KeyType, KeyComparator, KeyEqualityChecker>::MIN_ADDRESS =
+    reinterpret_cast<const void*>(static_cast<uintptr_t>(0));
+
+template<typename KeyType, class KeyComparator, class KeyEqualityChecker>
+const void* const BPlusTreeIndex<KeyType, KeyComparator, KeyEqualityChecker>::MAX_ADDRESS =
+    reinterpret_cast<const void*>(~static_cast<uintptr_t>(0));
+
+}
+
+#endif // BPLUSTREEINDEX_H_
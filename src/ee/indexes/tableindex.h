@@ -115,7 +115,7 @@ public:
  * column types and numbers for higher performance.
  *
  * See IntsUniqueIndex, IntsMultimapIndex, GenericUniqueIndex,
- * GenericMultimapIndex and ArrayUniqueIndex.
+ * GenericMultimapIndex, ArrayUniqueIndex and BPlusTreeIndex.
  *
  * @see TableIndexFactory
  */
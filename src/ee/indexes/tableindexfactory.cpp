@@ -55,6 +55,7 @@
 #include "indexes/BinaryTreeMultiMapIndex.h"
 #include "indexes/HashTableUniqueIndex.h"
 #include "indexes/HashTableMultiMapIndex.h"
+#include "indexes/BPlusTreeIndex.h"
 
 namespace voltdb {
 
@@ -87,6 +88,20 @@ TableIndex *TableIndexFactory::getInstance(const TableIndexScheme &scheme) {
     if ((ints_only) && (unique) && (type == ARRAY_INDEX)) {
         return new ArrayUniqueIndex(schemeCopy);
     }
+    if ((ints_only) && (type == BPLUS_TREE_INDEX)) {
+        if (keySize <= sizeof(uint64_t)) {
+            return new BPlusTreeIndex<IntsKey<1>, IntsComparator<1>, IntsEqualityChecker<1> >(schemeCopy);
+        } else if (keySize <= sizeof(int64_t) * 2) {
+            return new BPlusTreeIndex<IntsKey<2>, IntsComparator<2>, IntsEqualityChecker<2> >(schemeCopy);
+        } else if (keySize <= sizeof(int64_t) * 3) {
+            return new BPlusTreeIndex<IntsKey<3>, IntsComparator<3>, IntsEqualityChecker<3> >(schemeCopy);
+        } else if (keySize <= sizeof(int64_t) * 4) {
+            return new BPlusTreeIndex<IntsKey<4>, IntsComparator<4>, IntsEqualityChecker<4> >(schemeCopy);
+        } else {
+            throwFatalException("We currently only support B+tree index on integer keys of size 32 bytes or smaller...");
+        }
+    }
+
     if ((ints_only) && (type == BALANCED_TREE_INDEX) && (unique)) {
         if (keySize <= sizeof(uint64_t)) {
             return new BinaryTreeUniqueIndex<IntsKey<1>, IntsComparator<1>, IntsEqualityChecker<1> >(schemeCopy);
@@ -143,6 +158,36 @@ TableIndex *TableIndexFactory::getInstance(const TableIndexScheme &scheme) {
         }
     }
 
+    if (type == BPLUS_TREE_INDEX) {
+        if (keySize <= 4) {
+            return new BPlusTreeIndex<GenericKey<4>, GenericComparator<4>, GenericEqualityChecker<4> >(schemeCopy);
+        } else if (keySize <= 8) {
+            return new BPlusTreeIndex<GenericKey<8>, GenericComparator<8>, GenericEqualityChecker<8> >(schemeCopy);
+        } else if (keySize <= 12) {
+            return new BPlusTreeIndex<GenericKey<12>, GenericComparator<12>, GenericEqualityChecker<12> >(schemeCopy);
+        } else if (keySize <= 16) {
+            return new BPlusTreeIndex<GenericKey<16>, GenericComparator<16>, GenericEqualityChecker<16> >(schemeCopy);
+        } else if (keySize <= 24) {
+            return new BPlusTreeIndex<GenericKey<24>, GenericComparator<24>, GenericEqualityChecker<24> >(schemeCopy);
+        } else if (keySize <= 32) {
+            return new BPlusTreeIndex<GenericKey<32>, GenericComparator<32>, GenericEqualityChecker<32> >(schemeCopy);
+        } else if (keySize <= 48) {
+            return new BPlusTreeIndex<GenericKey<48>, GenericComparator<48>, GenericEqualityChecker<48> >(schemeCopy);
+        } else if (keySize <= 64) {
+            return new BPlusTreeIndex<GenericKey<64>, GenericComparator<64>, GenericEqualityChecker<64> >(schemeCopy);
+        } else if (keySize <= 96) {
+            return new BPlusTreeIndex<GenericKey<96>, GenericComparator<96>, GenericEqualityChecker<96> >(schemeCopy);
+        } else if (keySize <= 128) {
+            return new BPlusTreeIndex<GenericKey<128>, GenericComparator<128>, GenericEqualityChecker<128> >(schemeCopy);
+        } else if (keySize <= 256) {
+            return new BPlusTreeIndex<GenericKey<256>, GenericComparator<256>, GenericEqualityChecker<256> >(schemeCopy);
+        } else if (keySize <= 512) {
+            return new BPlusTreeIndex<GenericKey<512>, GenericComparator<512>, GenericEqualityChecker<512> >(schemeCopy);
+        } else {
+            throwFatalException( "We currently only support B+tree index keys of up to 512 bytes..." );
+        }
+    }
+
     if (/*(type == BALANCED_TREE_INDEX) &&*/ (unique)) {
         if (type == HASH_TABLE_INDEX) {
             VOLT_INFO("Producing a tree index for %s: "
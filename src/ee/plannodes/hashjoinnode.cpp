@@ -0,0 +1,150 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2010 VoltDB L.L.C.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB L.L.C. are licensed under the following
+ * terms and conditions:
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/* Copyright (C) 2008 by H-Store Project
+ * Brown University
+ * Massachusetts Institute of Technology
+ * Yale University
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "hashjoinnode.h"
+
+#include "expressions/abstractexpression.h"
+#include "storage/table.h"
+
+#include <sstream>
+
+using namespace json_spirit;
+using namespace std;
+using namespace voltdb;
+
+namespace {
+
+void loadKeyExpressions(Object& obj, const char* key,
+                        vector<AbstractExpression*>& expressions)
+{
+    Value keysValue = find_value(obj, key);
+    if (keysValue == Value::null)
+    {
+        throw SerializableEEException(VOLT_EE_EXCEPTION_TYPE_EEEXCEPTION,
+                                      string("HashJoinPlanNode::loadFromJSONObject:"
+                                             " Can't find ") + key);
+    }
+    Array keysArray = keysValue.get_array();
+    for (int ii = 0; ii < keysArray.size(); ii++)
+    {
+        Object keyObject = keysArray[ii].get_obj();
+        expressions.push_back(AbstractExpression::buildExpressionTree(keyObject));
+    }
+}
+
+}
+
+HashJoinPlanNode::HashJoinPlanNode(CatalogId id)
+  : AbstractJoinPlanNode(id)
+{
+    // Do nothing
+}
+
+HashJoinPlanNode::HashJoinPlanNode()
+  : AbstractJoinPlanNode()
+{
+    // Do nothing
+}
+
+HashJoinPlanNode::~HashJoinPlanNode()
+{
+    for (int ii = 0; ii < m_outerKeyExpressions.size(); ii++) {
+        delete m_outerKeyExpressions[ii];
+    }
+    for (int ii = 0; ii < m_innerKeyExpressions.size(); ii++) {
+        delete m_innerKeyExpressions[ii];
+    }
+    // must delete the output table that was created in the
+    // executor (and stored here in the plannode).
+    delete getOutputTable();
+}
+
+PlanNodeType
+HashJoinPlanNode::getPlanNodeType() const
+{
+    return PLAN_NODE_TYPE_HASHJOIN;
+}
+
+const vector<AbstractExpression*>&
+HashJoinPlanNode::getOuterKeyExpressions() const
+{
+    return m_outerKeyExpressions;
+}
+
+const vector<AbstractExpression*>&
+HashJoinPlanNode::getInnerKeyExpressions() const
+{
+    return m_innerKeyExpressions;
+}
+
+string HashJoinPlanNode::debugInfo(const string& spacer) const
+{
+    ostringstream buffer;
+    buffer << AbstractJoinPlanNode::debugInfo(spacer);
+    buffer << spacer << "OuterKeyExpressions[" << m_outerKeyExpressions.size() << "]\n";
+    for (int ii = 0; ii < m_outerKeyExpressions.size(); ii++) {
+        buffer << m_outerKeyExpressions[ii]->debug(spacer);
+    }
+    buffer << spacer << "InnerKeyExpressions[" << m_innerKeyExpressions.size() << "]\n";
+    for (int ii = 0; ii < m_innerKeyExpressions.size(); ii++) {
+        buffer << m_innerKeyExpressions[ii]->debug(spacer);
+    }
+    return (buffer.str());
+}
+
+void
+HashJoinPlanNode::loadFromJSONObject(Object& obj,
+                                     const catalog::Database* catalog_db)
+{
+    AbstractJoinPlanNode::loadFromJSONObject(obj, catalog_db);
+    loadKeyExpressions(obj, "OUTER_KEY_EXPRESSIONS", m_outerKeyExpressions);
+    loadKeyExpressions(obj, "INNER_KEY_EXPRESSIONS", m_innerKeyExpressions);
+    if (m_outerKeyExpressions.size() != m_innerKeyExpressions.size())
+    {
+        throw SerializableEEException(VOLT_EE_EXCEPTION_TYPE_EEEXCEPTION,
+                                      "HashJoinPlanNode::loadFromJSONObject:"
+                                      " Mismatched number of key expressions");
+    }
+}
@@ -95,6 +95,27 @@ class TempTable : public Table {
          * Does a shallow copy that copies the pointer to uninlined columns.
          */
         void insertTupleNonVirtual(TableTuple &source);
+
+        /**
+         * Shallow copies every tuple in a batch of tuple addresses. All of the
+         * tuples in the batch must use the given schema.
+         */
+        void insertTupleBatchNonVirtual(const TupleSchema *schema, char* const* addresses, int count);
+
+        /**
+         * Appends count empty active tuples to the end of the table and writes
+         * their addresses into the given array so that the caller can fill them
+         * in one column at a time. Every column must be set before the table is read.
+         */
+        void allocateTupleBatchNonVirtual(char** addresses, int count);
+
+        /**
+         * Gives back the last count tuples that were handed out by
+         * allocateTupleBatchNonVirtual(). Their uninlined columns are not freed
+         * because they may not have been set yet. The slots are zeroed so that
+         * nothing can mistake what is left in them for a real object pointer.
+         */
+        void releaseTupleBatchNonVirtual(int count);
         void updateTupleNonVirtual(TableTuple &source, TableTuple &target);
 
         // ------------------------------------------------------------------
@@ -153,6 +174,39 @@ inline void TempTable::insertTupleNonVirtual(TableTuple &source) {
     m_tmpTarget1.setDeletedFalse();
 }
 
+inline void TempTable::insertTupleBatchNonVirtual(const TupleSchema *schema, char* const* addresses, int count) {
+    TableTuple source(schema);
+    for (int i = 0; i < count; i++) {
+        source.move(addresses[i]);
+        getNextFreeTupleInlined(&m_tmpTarget1);
+        m_tmpTarget1.copy(source);
+        m_tmpTarget1.setDeletedFalse();
+    }
+    m_tupleCount += static_cast<uint32_t>(count);
+}
+
+inline void TempTable::allocateTupleBatchNonVirtual(char** addresses, int count) {
+    for (int i = 0; i < count; i++) {
+        getNextFreeTupleInlined(&m_tmpTarget1);
+        m_tmpTarget1.setDeletedFalse();
+        m_tmpTarget1.setDirtyFalse();
+        m_tmpTarget1.setEvictedFalse();
+        addresses[i] = m_tmpTarget1.address();
+    }
+    m_tupleCount += static_cast<uint32_t>(count);
+}
+
+inline void TempTable::releaseTupleBatchNonVirtual(int count) {
+    assert (count >= 0 && static_cast<uint32_t>(count) <= m_tupleCount);
+    assert (m_tupleCount == m_usedTuples);
+    const int tupleLength = m_schema->tupleLength() + TUPLE_HEADER_SIZE;
+    for (int i = 0; i < count; i++) {
+        --m_usedTuples;
+        ::memset(dataPtrForTuple((int) m_usedTuples), 0, tupleLength);
+    }
+    m_tupleCount -= static_cast<uint32_t>(count);
+}
+
 inline void TempTable::updateTupleNonVirtual(TableTuple &source, TableTuple &target) {
     // Copy the source tuple into the target
     target.copy(source);
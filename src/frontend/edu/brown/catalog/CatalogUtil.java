@@ -13,6 +13,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.collections15.CollectionUtils;
 import org.apache.commons.collections15.map.ListOrderedMap;
@@ -59,6 +60,7 @@ import org.voltdb.plannodes.AbstractJoinPlanNode;
 import org.voltdb.plannodes.AbstractOperationPlanNode;
 import org.voltdb.plannodes.AbstractPlanNode;
 import org.voltdb.plannodes.AbstractScanPlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.InsertPlanNode;
 import org.voltdb.plannodes.MaterializePlanNode;
@@ -244,7 +246,7 @@ public abstract class CatalogUtil extends org.voltdb.utils.CatalogUtil {
 
     }
 
-    private static final Map<Database, CatalogUtil.Cache> CACHE = new HashMap<Database, CatalogUtil.Cache>();
+    private static final ConcurrentHashMap<Database, CatalogUtil.Cache> CACHE = new ConcurrentHashMap<Database, CatalogUtil.Cache>();
 
     /**
      * Get the Cache handle for the Database catalog object If one doesn't exist
@@ -258,7 +260,9 @@ public abstract class CatalogUtil extends org.voltdb.utils.CatalogUtil {
         CatalogUtil.Cache ret = CACHE.get(catalog_db);
         if (ret == null) {
             ret = new CatalogUtil.Cache();
-            CACHE.put(catalog_db, ret);
+            CatalogUtil.Cache existing = CACHE.putIfAbsent(catalog_db, ret);
+            if (existing != null)
+                ret = existing;
         }
         assert (ret != null) : "Failed to cache for " + catalog_item.fullName();
         return (ret);
@@ -2165,6 +2169,15 @@ public abstract class CatalogUtil extends org.voltdb.utils.CatalogUtil {
                         if (debug.val)
                             LOG.debug("Added join node predicate: " + ExpressionUtil.debug(exps.get(exps.size() - 1)));
                     }
+                    // The equality clauses for HashJoins are stored as separate keys
+                    if (cast_node instanceof HashJoinPlanNode) {
+                        HashJoinPlanNode hj_node = (HashJoinPlanNode) cast_node;
+                        for (int i = 0, cnt = hj_node.getOuterKeyExpressions().size(); i < cnt; i++) {
+                            exps.add(new ComparisonExpression(ExpressionType.COMPARE_EQUAL,
+                                                              hj_node.getOuterKeyExpressions().get(i),
+                                                              hj_node.getInnerKeyExpressions().get(i)));
+                        } // FOR
+                    }
                 }
 
                 if (debug.val)
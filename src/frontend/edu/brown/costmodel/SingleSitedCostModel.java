@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -116,6 +117,33 @@ public class SingleSitedCostModel extends AbstractCostModel {
 
     private final Set<Long> last_invalidateTxns = new HashSet<Long>();
 
+    // ----------------------------------------------------
+    // INCREMENTAL ESTIMATION
+    // ----------------------------------------------------
+
+    /**
+     * If enabled, then estimateWorkloadCost() will only re-examine the txns
+     * that were invalidated since the last time that it was called with the
+     * same workload and filter. The cost of all other txns comes from their
+     * cached TransactionCacheEntries.
+     */
+    private boolean use_incremental = true;
+    /**
+     * The Workload and Filter used in the last complete pass. If the next
+     * estimate uses anything different, then we have to do a full pass.
+     */
+    private Workload incremental_workload = null;
+    private Filter incremental_filter = null;
+    /**
+     * The total cost of all of the txns with an incremental_cost
+     */
+    private double incremental_cost = 0d;
+    /**
+     * The txns that must be re-examined on the next incremental pass because
+     * they were invalidated or were not complete at the end of the last pass
+     */
+    private final Set<Long> incremental_dirtyTxns = new HashSet<Long>();
+
     /**
      * Cost Estimate Explanation
      */
@@ -132,6 +160,11 @@ public class SingleSitedCostModel extends AbstractCostModel {
         private int multisite_queries = 0;
         private int unknown_queries = 0;
         private ObjectHistogram<Integer> touched_partitions = new ObjectHistogram<Integer>();
+        /**
+         * The cost of this txn that is included in the cost model's
+         * incremental_cost. Null if it is not included.
+         */
+        private Double incremental_cost = null;
 
         private TransactionCacheEntry(String proc_key, long txn_trace_id, int weight, int total_queries) {
             this.proc_key = proc_key;
@@ -449,6 +482,7 @@ public class SingleSitedCostModel extends AbstractCostModel {
 
         this.txn_entries.clear();
         this.last_invalidateTxns.clear();
+        this.resetIncremental();
 
         for (Collection<QueryCacheEntry> c : this.cache_tableXref.values()) {
             c.clear();
@@ -466,6 +500,29 @@ public class SingleSitedCostModel extends AbstractCostModel {
         assert (this.histogram_query_partitions.getValueCount() == 0);
     }
 
+    public boolean isIncrementalEnabled() {
+        return (this.use_incremental);
+    }
+
+    /**
+     * Enable incremental workload cost estimation. This only has an effect if
+     * caching is also enabled.
+     * 
+     * @param incremental
+     */
+    public void setIncrementalEnabled(boolean incremental) {
+        if (debug.val)
+            LOG.debug("Cost Model Incremental Estimation: " + (incremental ? "ENABLED" : "DISABLED"));
+        this.use_incremental = incremental;
+        this.resetIncremental();
+    }
+
+    @Override
+    public void setCachingEnabled(boolean caching) {
+        super.setCachingEnabled(caching);
+        this.resetIncremental();
+    }
+
     public int getWeightedTransactionCount() {
         int ctr = 0;
         for (TransactionCacheEntry txn_entry : this.txn_entries.values()) {
@@ -776,6 +833,9 @@ public class SingleSitedCostModel extends AbstractCostModel {
             // don't get screwed up
             txn_entry.touched_partitions.setKeepZeroEntries(false);
 
+            // Make sure that the next incremental estimate looks at this txn again
+            this.markIncrementalDirty(txn_entry);
+
             // Then check whether we're still considered multi-partition
             boolean new_singlesited = (txn_entry.multisite_queries == 0);
             if (!txn_entry.singlesited && new_singlesited) {
@@ -826,6 +886,136 @@ public class SingleSitedCostModel extends AbstractCostModel {
         }
     }
 
+    // --------------------------------------------------------------------------------------------
+    // INCREMENTAL ESTIMATION METHODS
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Throw away the cost totals from the last complete pass. The next call
+     * to estimateWorkloadCost() will examine the entire workload.
+     */
+    private void resetIncremental() {
+        this.incremental_workload = null;
+        this.incremental_filter = null;
+        this.incremental_cost = 0d;
+        this.incremental_dirtyTxns.clear();
+        for (TransactionCacheEntry txn_entry : this.txn_entries.values()) {
+            txn_entry.incremental_cost = null;
+        } // FOR
+    }
+
+    /**
+     * Remove the given txn's cost from the incremental total and queue it up
+     * to be re-examined on the next pass
+     * 
+     * @param txn_entry
+     */
+    private void markIncrementalDirty(TransactionCacheEntry txn_entry) {
+        if (this.incremental_workload == null)
+            return;
+        if (txn_entry.incremental_cost != null) {
+            this.incremental_cost -= txn_entry.incremental_cost;
+            txn_entry.incremental_cost = null;
+        }
+        this.incremental_dirtyTxns.add(txn_entry.txn_id);
+    }
+
+    /**
+     * Returns true if processTransaction() would use the given
+     * TransactionCacheEntry without examining any of the txn's queries
+     * 
+     * @param txn_entry
+     * @param txn_trace
+     * @return
+     */
+    private boolean isCompleteEntry(TransactionCacheEntry txn_entry, TransactionTrace txn_trace) {
+        return (txn_entry.base_partition != HStoreConstants.NULL_PARTITION_ID && txn_entry.examined_queries == txn_trace.getQueries().size());
+    }
+
+    /**
+     * Estimate the cost of a single txn and then record it in the incremental
+     * totals. If the txn's TransactionCacheEntry is not complete, then it
+     * will be examined again on the next pass.
+     */
+    private double estimateIncrementalTransactionCost(CatalogContext catalogContext, Workload workload, Filter filter, TransactionTrace txn_trace) throws Exception {
+        double cost = this.estimateTransactionCost(catalogContext, workload, filter, txn_trace);
+        TransactionCacheEntry txn_entry = this.txn_entries.get(txn_trace.getTransactionId());
+        if (txn_entry != null && this.isCompleteEntry(txn_entry, txn_trace)) {
+            txn_entry.incremental_cost = cost;
+            this.incremental_cost += cost;
+        } else {
+            this.incremental_dirtyTxns.add(txn_trace.getTransactionId());
+        }
+        return (cost);
+    }
+
+    /**
+     * When caching is enabled, the only txns whose cost can change between
+     * two estimates are the ones that invalidateCache() touched and the ones
+     * that we could not completely examine before. So if we are given the
+     * same workload and filter as the last complete pass, then we only need
+     * to look at those txns and can use the cached cost for the rest.
+     */
+    @Override
+    protected double estimateWorkloadCostImpl(CatalogContext catalogContext, Workload workload, Filter filter, Double upper_bound) throws Exception {
+        if (this.use_caching == false || this.use_incremental == false || (filter != null && filter.isStateless() == false)) {
+            this.resetIncremental();
+            return (super.estimateWorkloadCostImpl(catalogContext, workload, filter, upper_bound));
+        }
+
+        // INCREMENTAL PASS
+        if (this.incremental_workload == workload && this.incremental_filter == filter) {
+            if (debug.val)
+                LOG.debug(String.format("Incremental estimate: re-examining %d out of %d txns", this.incremental_dirtyTxns.size(), this.txn_entries.size()));
+            Long dirty[] = this.incremental_dirtyTxns.toArray(new Long[this.incremental_dirtyTxns.size()]);
+            this.incremental_dirtyTxns.clear();
+            double dirty_cost = 0d;
+            for (Long txn_id : dirty) {
+                TransactionTrace txn_trace = workload.getTransaction(txn_id);
+                assert (txn_trace != null) : "Missing txn #" + txn_id;
+                double cost = this.estimateIncrementalTransactionCost(catalogContext, workload, filter, txn_trace);
+                // Txns that are still not complete stay out of the incremental
+                // total, so we have to add them in ourselves
+                TransactionCacheEntry txn_entry = this.txn_entries.get(txn_id);
+                if (txn_entry == null || txn_entry.incremental_cost == null)
+                    dirty_cost += cost;
+            } // FOR
+            return (this.incremental_cost + dirty_cost);
+        }
+
+        // FULL PASS
+        this.resetIncremental();
+        double cost = 0.0d;
+        boolean complete = true;
+        Iterator<TransactionTrace> it = workload.iterator(filter);
+        while (it.hasNext()) {
+            TransactionTrace txn_trace = it.next();
+            try {
+                cost += this.estimateIncrementalTransactionCost(catalogContext, workload, filter, txn_trace);
+            } catch (Exception ex) {
+                LOG.error("Failed to estimate cost for " + txn_trace.getCatalogItemName());
+                CatalogUtil.saveCatalog(catalogContext.catalog, CatalogUtil.CATALOG_FILENAME);
+                this.resetIncremental();
+                throw ex;
+            }
+            if (upper_bound != null && cost > upper_bound.doubleValue()) {
+                if (debug.val)
+                    LOG.debug("Exceeded upper bound. Halting estimation early!");
+                complete = false;
+                break;
+            }
+        } // WHILE
+
+        // We can only do an incremental pass next time if we looked at every txn
+        if (complete) {
+            this.incremental_workload = workload;
+            this.incremental_filter = filter;
+        } else {
+            this.resetIncremental();
+        }
+        return (cost);
+    }
+
     // --------------------------------------------------------------------------------------------
     // ESTIMATION METHODS
     // --------------------------------------------------------------------------------------------
@@ -947,7 +1137,7 @@ public class SingleSitedCostModel extends AbstractCostModel {
             // If we have a TransactionCacheEntry then we need to check that:
             // (1) It has a base partition
             // (2) All of its queries have been examined
-            if (txn_entry != null && txn_entry.base_partition != HStoreConstants.NULL_PARTITION_ID && txn_entry.examined_queries == txn_trace.getQueries().size()) {
+            if (txn_entry != null && this.isCompleteEntry(txn_entry, txn_trace)) {
                 if (trace.val)
                     LOG.trace("Using complete cached entry " + txn_entry);
                 return (txn_entry);
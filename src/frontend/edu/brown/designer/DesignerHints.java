@@ -150,6 +150,12 @@ public class DesignerHints implements Cloneable, JSONSerializable {
     /** Enable caching in cost models */
     public boolean enable_costmodel_caching = false;
 
+    /**
+     * Estimate the costs of the candidate attributes for a table in parallel.
+     * Each thread gets its own copy of the catalog and cost model.
+     */
+    public boolean enable_costmodel_parallel = false;
+
     /** Enable skew calculations in cost models */
     public boolean enable_costmodel_skew = true;
 
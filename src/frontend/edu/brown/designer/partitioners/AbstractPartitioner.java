@@ -232,6 +232,11 @@ public abstract class AbstractPartitioner {
             return (FilterResult.HALT);
         }
 
+        @Override
+        protected boolean isStatelessImpl() {
+            return (true);
+        }
+
         @Override
         protected void resetImpl() {
             // Nothing...
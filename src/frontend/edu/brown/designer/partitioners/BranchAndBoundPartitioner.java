@@ -15,6 +15,7 @@ import java.util.Set;
 
 import org.apache.commons.collections15.CollectionUtils;
 import org.apache.log4j.Logger;
+import org.voltdb.CatalogContext;
 import org.voltdb.catalog.CatalogType;
 import org.voltdb.catalog.Column;
 import org.voltdb.catalog.Database;
@@ -25,6 +26,7 @@ import org.voltdb.catalog.Table;
 import org.voltdb.types.TimestampType;
 import org.voltdb.utils.Pair;
 
+import edu.brown.catalog.CatalogCloner;
 import edu.brown.catalog.CatalogKey;
 import edu.brown.catalog.CatalogUtil;
 import edu.brown.catalog.special.MultiColumn;
@@ -32,6 +34,7 @@ import edu.brown.catalog.special.NullProcParameter;
 import edu.brown.catalog.special.ReplicatedColumn;
 import edu.brown.catalog.special.VerticalPartitionColumn;
 import edu.brown.costmodel.AbstractCostModel;
+import edu.brown.costmodel.SingleSitedCostModel;
 import edu.brown.designer.AccessGraph;
 import edu.brown.designer.Designer;
 import edu.brown.designer.DesignerHints;
@@ -46,6 +49,8 @@ import edu.brown.statistics.TableStatistics;
 import edu.brown.utils.MathUtil;
 import edu.brown.utils.StringBoxUtil;
 import edu.brown.utils.StringUtil;
+import edu.brown.utils.ThreadUtil;
+import edu.brown.workload.Workload;
 import edu.brown.workload.filters.Filter;
 
 /**
@@ -239,6 +244,138 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
         }
     } // END CLASS
 
+    /**
+     * Estimates the cost of candidate partitioning attributes for tables using
+     * its own copy of the catalog and its own cost model. This allows the
+     * TraverseThread to estimate multiple candidates at the same time without
+     * touching the catalog that it is searching with.
+     */
+    protected static class CandidateEvaluator implements Runnable {
+        private final CatalogContext catalogContext;
+        private final SingleSitedCostModel cost_model;
+
+        /** The candidates that we need to estimate in the next round */
+        private final List<Pair<Column, Column>> candidates = new ArrayList<Pair<Column, Column>>();
+        /** Original Candidate Column -> <Cost, SinglePartitionTxnRatio> */
+        private final Map<Column, Pair<Double, Double>> results = new HashMap<Column, Pair<Double, Double>>();
+        private Workload workload;
+        private Filter filter;
+        private Double upper_bound;
+        private Throwable error;
+
+        public CandidateEvaluator(DesignerInfo info, DesignerHints hints) throws Exception {
+            Database clone_db = CatalogCloner.cloneDatabase(info.catalogContext.database);
+            this.catalogContext = new CatalogContext(clone_db.getCatalog());
+            this.cost_model = new SingleSitedCostModel(this.catalogContext);
+            this.cost_model.applyDesignerHints(hints);
+        }
+
+        /**
+         * Return the Column in our catalog that corresponds to the given
+         * Column from the original catalog
+         */
+        private Column getColumn(Table clone_tbl, Column orig_col) {
+            if (orig_col == null) {
+                return (null);
+            } else if (orig_col instanceof ReplicatedColumn) {
+                return (ReplicatedColumn.get(clone_tbl));
+            } else if (orig_col instanceof MultiColumn) {
+                return (CatalogKey.getFromKey(this.catalogContext.database, CatalogKey.createKey(orig_col), Column.class));
+            }
+            return (clone_tbl.getColumns().get(orig_col.getName()));
+        }
+
+        /**
+         * Copy the current partitioning attributes from the original catalog
+         * into our catalog. We only invalidate the cost model's cache for the
+         * items that actually changed.
+         * 
+         * @param orig_db
+         */
+        public void sync(Database orig_db) {
+            Database clone_db = this.catalogContext.database;
+            for (Table orig_tbl : orig_db.getTables()) {
+                if (orig_tbl.getSystable())
+                    continue;
+                Table clone_tbl = clone_db.getTables().get(orig_tbl.getName());
+                Column clone_col = this.getColumn(clone_tbl, orig_tbl.getPartitioncolumn());
+                if (clone_tbl.getIsreplicated() != orig_tbl.getIsreplicated() || clone_tbl.getPartitioncolumn() != clone_col) {
+                    clone_tbl.setIsreplicated(orig_tbl.getIsreplicated());
+                    clone_tbl.setPartitioncolumn(clone_col);
+                    this.cost_model.invalidateCache(clone_tbl);
+                }
+            } // FOR
+            for (Procedure orig_proc : orig_db.getProcedures()) {
+                Procedure clone_proc = clone_db.getProcedures().get(orig_proc.getName());
+                if (clone_proc.getPartitionparameter() != orig_proc.getPartitionparameter()) {
+                    clone_proc.setPartitionparameter(orig_proc.getPartitionparameter());
+                    this.cost_model.invalidateCache(clone_proc);
+                }
+            } // FOR
+        }
+
+        /**
+         * Prepare this evaluator for the next round of estimates
+         */
+        public void init(Workload workload, Filter filter, Double upper_bound) {
+            this.workload = workload;
+            this.filter = filter;
+            this.upper_bound = upper_bound;
+            this.candidates.clear();
+            this.results.clear();
+            this.error = null;
+        }
+
+        /**
+         * Queue up the given candidate Column from the original catalog.
+         * Returns false if we are unable to map the candidate into our catalog,
+         * in which case the caller will have to estimate it itself.
+         */
+        public boolean addCandidate(Table orig_tbl, Column orig_col) {
+            Table clone_tbl = this.catalogContext.database.getTables().get(orig_tbl.getName());
+            Column clone_col = this.getColumn(clone_tbl, orig_col);
+            if (clone_col == null || clone_col.getParent() != clone_tbl) return (false);
+            this.candidates.add(Pair.of(orig_col, clone_col));
+            return (true);
+        }
+
+        /**
+         * Returns the estimates from the last round
+         * Original Candidate Column -> <Cost, SinglePartitionTxnRatio>
+         */
+        public Map<Column, Pair<Double, Double>> getResults() {
+            return (this.results);
+        }
+
+        /**
+         * Returns the error that caused the last round to fail, or null
+         * if it completed successfully
+         */
+        public Throwable getError() {
+            return (this.error);
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (Pair<Column, Column> p : this.candidates) {
+                    Column clone_col = p.getSecond();
+                    Table clone_tbl = (Table) clone_col.getParent();
+                    clone_tbl.setIsreplicated(clone_col instanceof ReplicatedColumn);
+                    clone_tbl.setPartitioncolumn(clone_col);
+                    this.cost_model.invalidateCache(clone_tbl);
+
+                    double cost = this.cost_model.estimateWorkloadCost(this.catalogContext, this.workload, this.filter, this.upper_bound);
+                    double singlep_txns = this.cost_model.getSinglePartitionProcedureHistogram().getSampleCount() /
+                                          (double) this.cost_model.getProcedureHistogram().getSampleCount();
+                    this.results.put(p.getFirst(), Pair.of(cost, singlep_txns));
+                } // FOR
+            } catch (Throwable ex) {
+                this.error = ex;
+            }
+        }
+    } // END CLASS
+
     // --------------------------------------------------------------------------------------------
     // DATA MEMBERS
     // --------------------------------------------------------------------------------------------
@@ -639,6 +776,12 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
         private HaltReason halt_reason = null;
         private boolean completed_search = false;
 
+        /**
+         * Evaluators for estimating the cost of table candidates in parallel.
+         * These are created the first time that we need them.
+         */
+        private final List<CandidateEvaluator> evaluators = new ArrayList<CandidateEvaluator>();
+
         /**
          * Constructor
          * 
@@ -806,6 +949,54 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
             LOG.info(String.format("Search Halted - %s [%.2f sec]", this.halt_reason, timer.getTotalThinkTimeSeconds()));
         }
 
+        /**
+         * Estimate the cost of each of the given candidate attributes for a
+         * table in parallel. Each CandidateEvaluator is synchronized with the
+         * current state of the catalog before it starts. Returns null if we
+         * were unable to compute the estimates, in which case the caller
+         * should estimate the candidates itself.
+         * 
+         * @param current_tbl
+         * @param current_attributes
+         * @param filter
+         * @return Candidate Column -> <Cost, SinglePartitionTxnRatio>
+         */
+        private Map<Column, Pair<Double, Double>> estimateCandidates(Table current_tbl, Collection<CatalogType> current_attributes, Filter filter) {
+            int num_threads = Math.min(ThreadUtil.getMaxGlobalThreads(), current_attributes.size());
+            try {
+                while (this.evaluators.size() < num_threads) {
+                    this.evaluators.add(new CandidateEvaluator(this.info, this.hints));
+                } // WHILE
+            } catch (Throwable ex) {
+                LOG.warn("Failed to create CandidateEvaluators. Disabling parallel cost estimation", ex);
+                this.hints.enable_costmodel_parallel = false;
+                this.evaluators.clear();
+                return (null);
+            }
+            List<CandidateEvaluator> round = this.evaluators.subList(0, num_threads);
+            for (CandidateEvaluator e : round) {
+                e.sync(this.info.catalogContext.database);
+                e.init(this.info.workload, filter, best_vertex.cost);
+            } // FOR
+            int ctr = 0;
+            for (CatalogType attribute : current_attributes) {
+                round.get(ctr++ % num_threads).addCandidate(current_tbl, (Column) attribute);
+            } // FOR
+            ThreadUtil.runGlobalPool(round);
+
+            Map<Column, Pair<Double, Double>> estimates = new HashMap<Column, Pair<Double, Double>>();
+            for (CandidateEvaluator e : round) {
+                if (e.getError() != null) {
+                    LOG.warn("Failed to estimate candidates for " + current_tbl + " in parallel", e.getError());
+                    return (null);
+                }
+                estimates.putAll(e.getResults());
+            } // FOR
+            if (debug.val)
+                LOG.debug(String.format("Estimated %d/%d candidates for %s in parallel [threads=%d]", estimates.size(), current_attributes.size(), current_tbl.getName(), num_threads));
+            return (estimates);
+        }
+
         /**
          * @param parent
          * @param idx
@@ -889,6 +1080,16 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
                 }
             } // FOR
 
+            // Estimate the cost of all of the table's candidates up front in
+            // parallel. We only use these estimates for the candidates that we
+            // know we are going to prune, since our own cost model's cache
+            // needs to be up-to-date before we go down to the next level
+            Map<Column, Pair<Double, Double>> estimates = null;
+            if (is_table && hints.enable_costmodel_parallel && num_attributes > 1 && hints.enable_vertical_partitioning == false && hints.exhaustive_search == false
+                    && this.cost_model instanceof SingleSitedCostModel) {
+                estimates = this.estimateCandidates((Table) current, current_attributes, filter);
+            }
+
             // Iterate through the columns and find the one with the best cost
             int attribute_ctr = 0;
             for (CatalogType attribute : current_attributes) {
@@ -1015,8 +1216,14 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
                 Double singlep_txns = null;
                 // Don't estimate the cost if it doesn't fit
                 if (!memory_exceeded) {
-                    cost = this.cost_model.estimateWorkloadCost(info.catalogContext, info.workload, filter, best_vertex.cost);
-                    singlep_txns = this.cost_model.getSinglePartitionProcedureHistogram().getSampleCount() / (double) this.cost_model.getProcedureHistogram().getSampleCount();
+                    Pair<Double, Double> estimate = (estimates != null ? estimates.get(attribute) : null);
+                    if (estimate != null && (last_attribute && hints.greedy_search) == false && estimate.getFirst() >= best_vertex.cost) {
+                        cost = estimate.getFirst();
+                        singlep_txns = estimate.getSecond();
+                    } else {
+                        cost = this.cost_model.estimateWorkloadCost(info.catalogContext, info.workload, filter, best_vertex.cost);
+                        singlep_txns = this.cost_model.getSinglePartitionProcedureHistogram().getSampleCount() / (double) this.cost_model.getProcedureHistogram().getSampleCount();
+                    }
                 } else {
                     cost = Double.MAX_VALUE;
                 }
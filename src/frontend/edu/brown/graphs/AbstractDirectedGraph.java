@@ -51,6 +51,13 @@ public abstract class AbstractDirectedGraph<V extends AbstractVertex, E extends
     public int getGraphId() {
         return this.inner.getGraphId();
     }
+    /**
+     * Restore the id of this graph when deserializing it
+     * @param id
+     */
+    protected void setGraphId(int id) {
+        this.inner.setGraphId(id);
+    }
     public Set<V> getDescendants(V vertex) {
         return (this.inner.getDescendants(vertex));
     }
@@ -28,14 +28,11 @@ package edu.brown.hstore;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
@@ -55,13 +52,13 @@ import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.plannodes.PlanNodeUtil;
 import edu.brown.profilers.BatchPlannerProfiler;
+import edu.brown.profilers.ProfileMeasurement;
 import edu.brown.profilers.ProfileMeasurementUtil;
 import edu.brown.statistics.FastIntHistogram;
 import edu.brown.statistics.Histogram;
 import edu.brown.utils.PartitionEstimator;
 import edu.brown.utils.PartitionSet;
 import edu.brown.utils.StringUtil;
-import edu.uci.ics.jung.graph.DirectedSparseMultigraph;
 
 /**
  * @author pavlo
@@ -110,13 +107,15 @@ public class BatchPlanner {
     private BatchPlan plan;
     private final Map<Integer, PlanGraph> plan_graphs = new HashMap<Integer, PlanGraph>();
     private final Map<Integer, WorkFragment.Builder> round_builders = new HashMap<Integer, WorkFragment.Builder>();
+    private final List<WorkFragment.Builder> round_builders_list = new ArrayList<WorkFragment.Builder>();
+    private final Map<Integer, Double> round_arrivals = new HashMap<Integer, Double>();
+    private CostModel costs = new CostModel();
 
     private final boolean enable_unique_ids;
+    private final boolean enable_cost_packing;
     private final boolean force_singlePartition;
     private boolean prefetch = false;
 
-    private final Map<Integer, Set<PlanVertex>> output_dependency_xref = new HashMap<Integer, Set<PlanVertex>>();
-    private final List<Integer> output_dependency_xref_clear = new ArrayList<Integer>();
     private final List<PlanVertex> sorted_vertices = new ArrayList<PlanVertex>();
 
     // FAST SINGLE-PARTITION LOOKUP CACHE
@@ -138,18 +137,25 @@ public class BatchPlanner {
         final int stmt_index;
         final int round;
         final int input_dependency_id;
+        final int input_frag_id;
         final int output_dependency_id;
         final int hash_code;
         final boolean read_only;
 
         public PlanVertex(PlanFragment catalog_frag, int stmt_index, int round, int input_dependency_id,
                           int output_dependency_id, boolean is_local) {
+            this(catalog_frag, stmt_index, round, input_dependency_id, -1, output_dependency_id, is_local);
+        }
+
+        public PlanVertex(PlanFragment catalog_frag, int stmt_index, int round, int input_dependency_id,
+                          int input_frag_id, int output_dependency_id, boolean is_local) {
             // super(catalog_frag);
             this.catalog_frag = catalog_frag;
             this.frag_id = catalog_frag.getId();
             this.stmt_index = stmt_index;
             this.round = round;
             this.input_dependency_id = input_dependency_id;
+            this.input_frag_id = input_frag_id;
             this.output_dependency_id = output_dependency_id;
             this.read_only = catalog_frag.getReadonly();
 
@@ -175,15 +181,27 @@ public class BatchPlanner {
         }
     } // END CLASS
 
-    protected static class PlanGraph extends DirectedSparseMultigraph<PlanVertex, Integer> {
-        private static final long serialVersionUID = 1L;
-
+    /**
+     * The dependency graph of the PlanFragments in a batch. Every PlanVertex has at most
+     * one child (the vertex that generates its input dependency), so the edges are stored
+     * as a flat array of offsets into the sorted list of vertices.
+     */
+    protected static class PlanGraph {
         /**
          * The number of dispatch rounds that we have in this plan
          */
         private int num_rounds = 0;
         
+        /**
+         * All of the vertices in this graph sorted by their stmt_index and then their round
+         */
         private PlanVertex sorted_vertices[];
+        
+        /**
+         * Vertex Offset -> The offset of the vertex that generates its input dependency
+         * This will be -1 if the vertex does not need an input dependency.
+         */
+        private int child_offsets[];
 
         /**
          * Single-Partition
@@ -193,7 +211,82 @@ public class BatchPlanner {
         private int output_ids[];
 
         public PlanGraph() {
-            // super(catalog_db);
+            // Nothing to do...
+        }
+        
+        public int getRoundCount() {
+            return (this.num_rounds);
+        }
+        public int getVertexCount() {
+            return (this.sorted_vertices.length);
+        }
+        public PlanVertex[] getVertices() {
+            return (this.sorted_vertices);
+        }
+        /**
+         * Return the vertex that generates the input dependency for the vertex
+         * at the given offset. Returns null if it doesn't need any input.
+         * @param offset
+         * @return
+         */
+        public PlanVertex getChild(int offset) {
+            int child_offset = this.child_offsets[offset];
+            return (child_offset == -1 ? null : this.sorted_vertices[child_offset]);
+        }
+    } // END CLASS
+
+    /**
+     * The execution costs that the base partition has observed for the distributed
+     * batches that it has already dispatched. The BatchPlanner uses these to decide
+     * whether PlanFragments that are waiting on different input dependencies should
+     * be packed together into a single WorkFragment.
+     * This is not thread-safe. It should only be updated by the PartitionExecutor
+     * that owns the BatchPlanners that use it.
+     */
+    public static class CostModel {
+        /**
+         * PlanFragmentId -> Time from when its batch was dispatched until its output arrived
+         */
+        private final Map<Integer, ProfileMeasurement> fragment_times = new HashMap<Integer, ProfileMeasurement>();
+
+        /**
+         * Time from when a WorkFragment without any input was sent to a remote
+         * partition until its results came back
+         */
+        private final ProfileMeasurement message_time = new ProfileMeasurement("MESSAGE");
+
+        public void addFragmentTime(int frag_id, long time) {
+            ProfileMeasurement pm = this.fragment_times.get(frag_id);
+            if (pm == null) {
+                pm = new ProfileMeasurement("FRAGMENT");
+                this.fragment_times.put(frag_id, pm);
+            }
+            pm.appendTime(0, time);
+        }
+        public void addMessageTime(long time) {
+            this.message_time.appendTime(0, time);
+        }
+        /**
+         * Return the average time (ms) that it took for the output of the given
+         * PlanFragment to arrive. Returns -1 if we have never seen it.
+         * @param frag_id
+         * @return
+         */
+        public double getFragmentTime(int frag_id) {
+            ProfileMeasurement pm = this.fragment_times.get(frag_id);
+            return (pm == null ? -1 : pm.getAverageThinkTimeMS());
+        }
+        /**
+         * Return the average round-trip time (ms) of a WorkFragment that was
+         * sent to a remote partition. Returns zero if we have never seen one.
+         * @return
+         */
+        public double getMessageTime() {
+            return (this.message_time.getInvocations() == 0 ? 0 : this.message_time.getAverageThinkTimeMS());
+        }
+        public void clear() {
+            this.fragment_times.clear();
+            this.message_time.reset();
         }
     } // END CLASS
 
@@ -218,7 +311,7 @@ public class BatchPlanner {
         private final List<PlanFragment> frag_list[];
 
         /** Round# -> Map{PartitionId, Set{PlanFragments}} **/
-        private final Collection<PlanVertex> rounds[][];
+        private Collection<PlanVertex> rounds[][];
         private int rounds_length;
 
         /**
@@ -258,18 +351,15 @@ public class BatchPlanner {
 
         /**
          * Default Constructor Must call init() before this BatchPlan can be used
+         * @param round_size The initial number of rounds to allocate space for
          */
         @SuppressWarnings("unchecked")
-        public BatchPlan(int max_round_size) {
+        public BatchPlan(int round_size) {
             int batch_size = BatchPlanner.this.batchSize;
-            int num_partitions = BatchPlanner.this.catalogContext.numberOfPartitions;
 
             // Round Data
-            this.rounds = (Collection<PlanVertex>[][]) new Collection<?>[max_round_size][];
-            for (int i = 0; i < this.rounds.length; i++) {
-                this.rounds[i] = (Collection<PlanVertex>[]) new Collection<?>[num_partitions];
-                // These lists will only be allocated when needed
-            } // FOR
+            this.rounds = (Collection<PlanVertex>[][]) new Collection<?>[0][];
+            this.ensureRounds(round_size);
 
             // Batch Data
             this.frag_list = (List<PlanFragment>[]) new List<?>[batch_size];
@@ -284,6 +374,22 @@ public class BatchPlanner {
             } // FOR
         }
 
+        /**
+         * Make sure that we have space for at least the given number of rounds.
+         * @param round_size
+         */
+        @SuppressWarnings("unchecked")
+        private void ensureRounds(int round_size) {
+            if (round_size <= this.rounds.length) return;
+            int num_partitions = BatchPlanner.this.catalogContext.numberOfPartitions;
+            int orig_size = this.rounds.length;
+            this.rounds = Arrays.copyOf(this.rounds, round_size);
+            for (int i = orig_size; i < this.rounds.length; i++) {
+                this.rounds[i] = (Collection<PlanVertex>[]) new Collection<?>[num_partitions];
+                // These lists will only be allocated when needed
+            } // FOR
+        }
+
         /**
          * @param base_partition
          * @param txn_id
@@ -470,6 +576,7 @@ public class BatchPlanner {
         this.plan = new BatchPlan(hstore_conf.site.planner_max_round_size);
         this.force_singlePartition = forceSinglePartition;
         this.enable_unique_ids = hstore_conf.site.planner_unique_dependency_ids;
+        this.enable_cost_packing = hstore_conf.site.planner_cost_packing;
 
         this.sorted_singlep_fragments = (List<PlanFragment>[]) new List<?>[this.batchSize];
         this.sorted_multip_fragments = (List<PlanFragment>[]) new List<?>[this.batchSize];
@@ -539,6 +646,18 @@ public class BatchPlanner {
     public void setPrefetchFlag(boolean val) {
         this.prefetch = val;
     }
+    public CostModel getCostModel() {
+        return (this.costs);
+    }
+    /**
+     * Use the given CostModel instead of this BatchPlanner's own. This allows
+     * all of the BatchPlanners at a partition to share what they have observed.
+     * @param costs
+     */
+    public void setCostModel(CostModel costs) {
+        assert(costs != null);
+        this.costs = costs;
+    }
 
     /**
      * Return the Statement within this batch at the given offset
@@ -775,13 +894,19 @@ public class BatchPlanner {
                         // PARTITION ESTIMATOR
                         if (hstore_conf.site.planner_profiling && profiler != null)
                             ProfileMeasurementUtil.swap(profiler.plan_time, profiler.partest_time);
-                        this.p_estimator.getAllFragmentPartitions(frag_partitions,
-                                                                  stmt_all_partitions,
-                                                                  fragments.values(),
-                                                                  params,
-                                                                  base_partition);
-                        if (hstore_conf.site.planner_profiling && profiler != null)
+                        boolean partest_cached = this.p_estimator.getAllFragmentPartitions(frag_partitions,
+                                                                                           stmt_all_partitions,
+                                                                                           fragments.values(),
+                                                                                           params,
+                                                                                           base_partition);
+                        if (hstore_conf.site.planner_profiling && profiler != null) {
                             ProfileMeasurementUtil.swap(profiler.partest_time, profiler.plan_time);
+                            if (partest_cached) {
+                                profiler.partest_cached.incrementAndGet();
+                            } else {
+                                profiler.partest_uncached.incrementAndGet();
+                            }
+                        }
 
                         int stmt_all_partitions_size = stmt_all_partitions.size();
                         if (is_singlePartition && stmt_all_partitions_size > 1) {
@@ -955,6 +1080,7 @@ public class BatchPlanner {
         }
         plan.graph = graph;
         plan.rounds_length = graph.num_rounds;
+        plan.ensureRounds(graph.num_rounds);
 
         if (hstore_conf.site.planner_profiling && profiler != null)
             profiler.plan_time.stop();
@@ -1022,6 +1148,10 @@ public class BatchPlanner {
 
         // The main idea of what we're trying to do here is to group together
         // all of the PlanFragments with the same input dependency ids into a single WorkFragment
+        // If we know how long it takes for the inputs to arrive, then we will also pack together
+        // PlanFragments whose inputs are expected to arrive within one remote round-trip
+        // of each other so that we don't have to dispatch them separately.
+        final double pack_window = (this.enable_cost_packing ? this.costs.getMessageTime() : 0);
         if (trace.val)
             LOG.trace("Generated " + plan.rounds_length + " rounds of tasks for txn #" + txn_id);
         for (int round = 0; round < plan.rounds_length; round++) {
@@ -1031,15 +1161,27 @@ public class BatchPlanner {
                 if (vertices == null || vertices.isEmpty()) continue;
 
                 this.round_builders.clear();
+                this.round_builders_list.clear();
+                this.round_arrivals.clear();
                 for (PlanVertex v : vertices) { // Does this order matter?
+                    boolean needs_input = (v.input_dependency_id != HStoreConstants.NULL_DEPENDENCY_ID);
+                    
                     // Check whether we can use an existing WorkFragment builder
                     WorkFragment.Builder partitionBuilder = this.round_builders.get(v.input_dependency_id);
+                    if (partitionBuilder == null && needs_input && pack_window > 0) {
+                        partitionBuilder = this.getPackedBuilder(v, pack_window);
+                    }
                     if (partitionBuilder == null) {
                         partitionBuilder = WorkFragment.newBuilder().setPartitionId(partition);
-                        this.round_builders.put(v.input_dependency_id, partitionBuilder);
+                        this.round_builders_list.add(partitionBuilder);
                         partitionBuilder.setReadOnly(true);
                         partitionBuilder.setPrefetch(this.prefetch);
+                        if (needs_input && pack_window > 0) {
+                            double arrival = this.costs.getFragmentTime(v.input_frag_id);
+                            if (arrival >= 0) this.round_arrivals.put(v.input_dependency_id, arrival);
+                        }
                     }
+                    this.round_builders.put(v.input_dependency_id, partitionBuilder);
 
                     // Fragment Id
                     partitionBuilder.addFragmentId(v.frag_id);
@@ -1082,7 +1224,7 @@ public class BatchPlanner {
                     
                 } // FOR (frag_idx)
 
-                for (WorkFragment.Builder builder : this.round_builders.values()) {
+                for (WorkFragment.Builder builder : this.round_builders_list) {
                     int fragmentCount = builder.getFragmentIdCount();
                     if (fragmentCount == 0) {
                         if (trace.val) {
@@ -1130,8 +1272,32 @@ public class BatchPlanner {
     }
 
     /**
-     * Construct
-     * 
+     * Return the WorkFragment builder in the current round whose input is expected
+     * to arrive within the given window (ms) of the input for the given PlanVertex.
+     * Returns null if there is no such builder or if we have never seen the
+     * PlanVertex's input arrive before.
+     * @param v
+     * @param window
+     * @return
+     */
+    private WorkFragment.Builder getPackedBuilder(PlanVertex v, double window) {
+        double arrival = this.costs.getFragmentTime(v.input_frag_id);
+        if (arrival < 0) return (null);
+        for (Entry<Integer, Double> e : this.round_arrivals.entrySet()) {
+            if (Math.abs(e.getValue() - arrival) <= window) {
+                if (trace.val)
+                    LOG.trace(String.format("Packing %s with input dependency %d [arrival=%.2f, window=%.2f]",
+                              v, e.getKey(), arrival, window));
+                return (this.round_builders.get(e.getKey()));
+            }
+        } // FOR
+        return (null);
+    }
+
+    /**
+     * Construct the PlanGraph for the given BatchPlan. Since we add the vertices
+     * for each Statement in the order of their rounds, the child of each vertex
+     * (i.e., the one that produces its input) is always the vertex right before it.
      * @param plan
      * @return
      */
@@ -1141,8 +1307,6 @@ public class BatchPlanner {
         PlanGraph graph = new PlanGraph();
 
         this.sorted_vertices.clear();
-        this.output_dependency_xref_clear.clear();
-
         int last_id = FIRST_DEPENDENCY_ID;
         for (int stmt_index = 0; stmt_index < this.batchSize; stmt_index++) {
             Map<PlanFragment, PartitionSet> frag_partitions = plan.frag_partitions[stmt_index];
@@ -1155,6 +1319,7 @@ public class BatchPlanner {
 
             // Generate the synthetic DependencyIds for the query
             int last_output_id = HStoreConstants.NULL_DEPENDENCY_ID;
+            int last_frag_id = -1;
             for (int round = 0, cnt = num_fragments; round < cnt; round++) {
                 PlanFragment catalog_frag = fragments.get(round);
                 PartitionSet f_partitions = frag_partitions.get(catalog_frag);
@@ -1162,73 +1327,46 @@ public class BatchPlanner {
                     String.format("No PartitionIds for [%02d] %s in Statement #%d", round,
                                   catalog_frag.fullName(), stmt_index);
                 boolean f_local = (f_partitions.size() == 1 && f_partitions.contains(plan.base_partition));
-                final Integer output_id = Integer.valueOf(this.enable_unique_ids ?
+                int output_id = (this.enable_unique_ids ?
                             BatchPlanner.NEXT_DEPENDENCY_ID.getAndIncrement() : last_id++);
 
                 PlanVertex v = new PlanVertex(catalog_frag,
                                               stmt_index,
                                               round,
                                               last_output_id,
-                                              output_id.intValue(),
+                                              last_frag_id,
+                                              output_id,
                                               f_local);
-                Set<PlanVertex> dependencies = output_dependency_xref.get(output_id);
-                if (dependencies == null) {
-                    dependencies = new HashSet<PlanVertex>();
-                    this.output_dependency_xref.put(output_id, dependencies);
-                } else if (this.output_dependency_xref_clear.contains(output_id) == false) {
-                    dependencies.clear();
-                    this.output_dependency_xref_clear.add(output_id);
-                }
-                dependencies.add(v);
-
-                graph.addVertex(v);
                 this.sorted_vertices.add(v);
                 last_output_id = output_id;
-            }
-        } // FOR
-
-        // Setup Edges
-        for (PlanVertex v0 : graph.getVertices()) {
-            if (v0.input_dependency_id == HStoreConstants.NULL_DEPENDENCY_ID)
-                continue;
-            for (PlanVertex v1 : output_dependency_xref.get(v0.input_dependency_id)) {
-                assert (!v0.equals(v1)) : v0;
-                if (!graph.findEdgeSet(v0, v1).isEmpty())
-                    continue;
-                graph.addEdge(v0.input_dependency_id, v0, v1);
+                last_frag_id = v.frag_id;
             } // FOR
         } // FOR
 
-        // Single-Partition Cache
-        Collections.sort(this.sorted_vertices, PLANVERTEX_COMPARATOR);
+        // Flatten everything out into arrays
         final int num_vertices = this.sorted_vertices.size();
+        graph.sorted_vertices = this.sorted_vertices.toArray(new PlanVertex[num_vertices]);
+        graph.child_offsets = new int[num_vertices];
         graph.fragmentIds = new long[num_vertices];
         graph.input_ids = new int[num_vertices];
         graph.output_ids = new int[num_vertices];
-        int i = 0;
-        for (PlanVertex v : this.sorted_vertices) {
+        for (int i = 0; i < num_vertices; i++) {
+            PlanVertex v = graph.sorted_vertices[i];
+            if (v.input_dependency_id == HStoreConstants.NULL_DEPENDENCY_ID) {
+                graph.child_offsets[i] = -1;
+            } else {
+                assert (i > 0 && graph.sorted_vertices[i-1].output_dependency_id == v.input_dependency_id) : v;
+                graph.child_offsets[i] = i - 1;
+            }
             graph.fragmentIds[i] = v.frag_id;
             graph.output_ids[i] = v.output_dependency_id;
             graph.input_ids[i] = v.input_dependency_id;
-            i += 1;
         } // FOR
-        graph.sorted_vertices = this.sorted_vertices.toArray(new PlanVertex[0]);
 
         if (hstore_conf.site.planner_profiling && profiler != null)
             ProfileMeasurementUtil.swap(profiler.graph_time, profiler.plan_time);
         return (graph);
     }
-
-    private static Comparator<PlanVertex> PLANVERTEX_COMPARATOR = new Comparator<PlanVertex>() {
-        @Override
-        public int compare(PlanVertex o1, PlanVertex o2) {
-            if (o1.stmt_index != o2.stmt_index)
-                return (o1.stmt_index - o2.stmt_index);
-            if (o1.round != o2.round)
-                return (o1.round - o2.round);
-            return (o1.frag_id - o2.frag_id);
-        }
-    };
     
     // ----------------------------------------------------------------------------
     // DEBUG METHODS
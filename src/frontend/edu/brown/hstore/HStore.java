@@ -29,6 +29,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
@@ -36,7 +39,6 @@ import org.voltdb.BackendTarget;
 import org.voltdb.CatalogContext;
 import org.voltdb.ProcedureProfiler;
 import org.voltdb.TheHashinator;
-import org.voltdb.catalog.Database;
 
 import edu.brown.hstore.conf.HStoreConf;
 import edu.brown.hstore.estimators.TransactionEstimator;
@@ -48,6 +50,7 @@ import edu.brown.mappings.ParameterMappingsSet;
 import edu.brown.markov.MarkovUtil;
 import edu.brown.markov.containers.MarkovGraphContainersUtil;
 import edu.brown.markov.containers.MarkovGraphsContainer;
+import edu.brown.profilers.StartupProfiler;
 import edu.brown.utils.ArgumentsParser;
 import edu.brown.utils.ClassUtil;
 import edu.brown.utils.PartitionEstimator;
@@ -116,60 +119,81 @@ public abstract class HStore {
     /**
      * Initialize the HStore server.
      */
-    public synchronized static final HStoreSite initialize(CatalogContext catalogContext, int site_id, HStoreConf hstore_conf) {
+    public synchronized static final HStoreSite initialize(final CatalogContext catalogContext, int site_id, HStoreConf hstore_conf) {
         singleton = new HStoreSite(site_id, catalogContext, hstore_conf);
         
         // For every partition in our local site, we want to setup a new ExecutionSite
         // Thankfully I had enough sense to have PartitionEstimator take in the local partition
         // as a parameter, so we can share a single instance across all ExecutionSites
-        PartitionEstimator p_estimator = singleton.getPartitionEstimator();
+        final PartitionEstimator p_estimator = singleton.getPartitionEstimator();
+        
+        final StartupProfiler profiler = singleton.getStartupProfiler();
+        final int num_threads = (hstore_conf.site.startup_threads > 0 ?
+                                    hstore_conf.site.startup_threads : ThreadUtil.availableProcessors());
         
         // ----------------------------------------------------------------------------
-        // MarkovGraphs
+        // MarkovGraphs + ParameterMappings
+        // We load these at the same time since they do not depend on each other
         // ----------------------------------------------------------------------------
-        Map<Integer, MarkovGraphsContainer> markovs = null;
+        final Map<Integer, MarkovGraphsContainer> markovs = new HashMap<Integer, MarkovGraphsContainer>();
+        final ParameterMappingsSet mappings = new ParameterMappingsSet();
+        List<Runnable> loaders = new ArrayList<Runnable>();
         if (hstore_conf.site.markov_path != null) {
-            File path = new File(hstore_conf.site.markov_path);
+            final File path = new File(hstore_conf.site.markov_path);
             if (path.exists()) {
-                long start = System.currentTimeMillis();
-                try {
-                    markovs = MarkovGraphContainersUtil.loadIds(catalogContext.database,
-                                                                path, 
-                                                                singleton.getLocalPartitionIds());
-                } catch (Exception ex) {
-                    throw new RuntimeException(ex);
-                }
-                MarkovGraphContainersUtil.setHasher(markovs, singleton.getPartitionEstimator().getHasher());
-                long load_time = System.currentTimeMillis() - start;
-                LOG.info(String.format("Finished loading %s '%s' in %.1f sec",
-                         path, MarkovGraphsContainer.class.getSimpleName(), (load_time / 1000d)));
+                loaders.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        long start = System.currentTimeMillis();
+                        try {
+                            markovs.putAll(MarkovGraphContainersUtil.loadIds(catalogContext.database,
+                                                                             path, 
+                                                                             singleton.getLocalPartitionIds()));
+                        } catch (Exception ex) {
+                            throw new RuntimeException(ex);
+                        }
+                        MarkovGraphContainersUtil.setHasher(markovs, singleton.getPartitionEstimator().getHasher());
+                        long load_time = System.currentTimeMillis() - start;
+                        LOG.info(String.format("Finished loading %s '%s' in %.1f sec",
+                                 path, MarkovGraphsContainer.class.getSimpleName(), (load_time / 1000d)));
+                    }
+                });
             } else if (debug.val) LOG.warn("The Markov Graphs file '" + path + "' does not exist");
-            ThreadUtil.shutdownGlobalPool(); // HACK
         }
-        
-        // ----------------------------------------------------------------------------
-        // ParameterMappings
-        // ----------------------------------------------------------------------------
-        ParameterMappingsSet mappings = new ParameterMappingsSet(); 
         if (hstore_conf.site.mappings_path != null) {
-            File path = new File(hstore_conf.site.mappings_path);
+            final File path = new File(hstore_conf.site.mappings_path);
             if (path.exists()) {
-                Database catalog_db = catalogContext.database;
-                try {
-                    mappings.load(path, catalog_db);
-                } catch (IOException ex) {
-                    throw new RuntimeException(ex);
-                }
+                loaders.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            mappings.load(path, catalogContext.database);
+                        } catch (IOException ex) {
+                            throw new RuntimeException(ex);
+                        }
+                    }
+                });
             } else if (debug.val) LOG.warn("The ParameterMappings file '" + path + "' does not exist");
         }
+        profiler.load_models.start();
+        try {
+            HStore.run(loaders, num_threads);
+        } finally {
+            profiler.load_models.stop();
+            if (hstore_conf.site.markov_path != null) ThreadUtil.shutdownGlobalPool(); // HACK
+        }
         
         // ----------------------------------------------------------------------------
-        // PartitionExecutor Initialization
+        // TransactionEstimator Initialization
+        // These are created one at a time because they populate caches that
+        // are shared by all of the partitions at this site.
         // ----------------------------------------------------------------------------
+        profiler.estimators.start();
+        final TransactionEstimator t_estimators[] = new TransactionEstimator[catalogContext.numberOfPartitions];
         boolean first = true;
         for (int local_partition : singleton.getLocalPartitionIds().values()) {
             MarkovGraphsContainer local_markovs = null;
-            if (markovs != null) {
+            if (markovs.isEmpty() == false) {
                 if (markovs.containsKey(MarkovUtil.GLOBAL_MARKOV_CONTAINER_ID)) {
                     local_markovs = markovs.get(MarkovUtil.GLOBAL_MARKOV_CONTAINER_ID);
                 } else {
@@ -186,7 +210,7 @@ public abstract class HStore {
             if (debug.val) LOG.debug("Creating TransactionEstimator for " + singleton.getSiteName());
             TransactionEstimator t_estimator = null;
             if (hstore_conf.site.markov_enable) {
-                if (hstore_conf.site.markov_fixed == false && markovs != null) {
+                if (hstore_conf.site.markov_fixed == false && markovs.isEmpty() == false) {
                     t_estimator = new MarkovEstimator(catalogContext, p_estimator, local_markovs);
                 } else if (hstore_conf.site.markov_fixed) {
                     t_estimator = AbstractFixedEstimator.factory(p_estimator, singleton.getCatalogContext());
@@ -196,24 +220,72 @@ public abstract class HStore {
                 LOG.info(String.format("All incoming txn requests will be processed with %s at this site",
                          t_estimator.getClass().getSimpleName()));
             }
-
-            // setup the EE
-            if (debug.val) LOG.debug("Creating ExecutionSite for Partition #" + local_partition);
-            PartitionExecutor executor = new PartitionExecutor(
-                                                local_partition,
-                                                singleton.getCatalogContext(),
-                                                BackendTarget.NATIVE_EE_JNI, // BackendTarget.NULL,
-                                                p_estimator,
-                                                t_estimator);
-            singleton.addPartitionExecutor(local_partition, executor);
+            t_estimators[local_partition] = t_estimator;
             first = false;
         } // FOR
+        profiler.estimators.stop();
+        
+        // ----------------------------------------------------------------------------
+        // PartitionExecutor Initialization
+        // We set up the EEs in parallel and they all use the same serialized catalog
+        // from the CatalogContext. Note that ExecutionEngineJNI only lets one EE
+        // load its catalog at a time, so only the rest of the setup overlaps.
+        // The StartupProfiler's LOAD_CATALOG tells you how much of it was serialized.
+        // ----------------------------------------------------------------------------
+        profiler.executors.start();
+        final PartitionExecutor executors[] = new PartitionExecutor[catalogContext.numberOfPartitions];
+        List<Runnable> builders = new ArrayList<Runnable>();
+        for (final int local_partition : singleton.getLocalPartitionIds().values()) {
+            builders.add(new Runnable() {
+                @Override
+                public void run() {
+                    if (debug.val) LOG.debug("Creating ExecutionSite for Partition #" + local_partition);
+                    executors[local_partition] = new PartitionExecutor(
+                                                        local_partition,
+                                                        singleton.getCatalogContext(),
+                                                        BackendTarget.NATIVE_EE_JNI, // BackendTarget.NULL,
+                                                        p_estimator,
+                                                        t_estimators[local_partition]);
+                }
+            });
+        } // FOR
+        try {
+            HStore.run(builders, num_threads);
+        } finally {
+            profiler.executors.stop();
+        }
+        // The HStoreSite needs to get them in order
+        long catalogLoadTime = 0;
+        for (int local_partition : singleton.getLocalPartitionIds().values()) {
+            singleton.addPartitionExecutor(local_partition, executors[local_partition]);
+            catalogLoadTime += executors[local_partition].getCatalogLoadTime();
+        } // FOR
+        profiler.load_catalog.appendTime(0, catalogLoadTime * 1000000l, builders.size());
         
         TheHashinator.initialize(catalogContext.catalog);
         
         return (singleton);
     }
     
+    /**
+     * Execute the given startup tasks using up to max_threads threads and
+     * block until they are all finished. If there is only one thread (or only one task),
+     * then we will just execute them in the caller's thread.
+     * @param tasks
+     * @param max_threads
+     */
+    private static void run(List<Runnable> tasks, int max_threads) {
+        if (tasks.isEmpty()) return;
+        int num_threads = Math.min(max_threads, tasks.size());
+        if (num_threads <= 1) {
+            for (Runnable r : tasks) {
+                r.run();
+            } // FOR
+        } else {
+            ThreadUtil.runNewPool(tasks, num_threads);
+        }
+    }
+    
     /**
      * Main Start-up Method
      * @param vargs
@@ -55,6 +55,7 @@ public abstract class HStoreConstants {
     public static final String THREAD_NAME_MAPREDUCE = "mr";
     public static final String THREAD_NAME_DEBUGSTATUS = "status";
     public static final String THREAD_NAME_TXNCLEANER = "cleaner";
+    public static final String THREAD_NAME_MARKOVUPDATER = "markov";
     
     public static final String THREAD_NAME_VOLTNETWORK = "voltnetwork";
     public static final String THREAD_NAME_INCOMINGNETWORK= "incoming";
@@ -281,9 +281,10 @@ public class HStoreCoordinator implements Shutdownable {
         
         // Initialized QueryPrefetchPlanner if we're allowed to execute
         // prefetch queries and we actually have some in the catalog 
+        // or we are allowed to figure out what queries to prefetch on our own
         PrefetchQueryPlanner tmpPlanner = null;
         if (hstore_conf.site.exec_prefetch_queries) {
-            boolean has_prefetch = false;
+            boolean has_prefetch = hstore_conf.site.exec_prefetch_queries_auto;
             for (Procedure catalog_proc : this.catalogContext.procedures.values()) {
                 if (catalog_proc.getPrefetchable()) {
                     has_prefetch = true;
@@ -432,6 +433,14 @@ public class HStoreCoordinator implements Shutdownable {
         return (this.transactionFinish_handler);
     }
     
+    /**
+     * Returns the PrefetchQueryPlanner for this HStoreSite.
+     * This will be null if prefetching is not enabled.
+     */
+    public PrefetchQueryPlanner getPrefetchQueryPlanner() {
+        return (this.prefetchPlanner);
+    }
+    
     /**
      * Initialize all the network connections to remote
      *  
@@ -770,7 +779,10 @@ public class HStoreCoordinator implements Shutdownable {
         // request for each site that we want to execute different queries on.
         // TODO: We probably don't want to bother prefetching for txns that only touch
         //       partitions that are in its same local HStoreSite
-        if (hstore_conf.site.exec_prefetch_queries && ts.getProcedure().getPrefetchable() && ts.getEstimatorState() != null) {
+        if (hstore_conf.site.exec_prefetch_queries &&
+                this.prefetchPlanner != null &&
+                this.prefetchPlanner.isPrefetchable(ts.getProcedure()) &&
+                ts.getEstimatorState() != null) {
             if (debug.val)
                 LOG.debug(String.format("%s - Generating %s with prefetchable queries",
                           ts, TransactionInitRequest.class.getSimpleName()));
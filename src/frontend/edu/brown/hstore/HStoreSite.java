@@ -73,6 +73,7 @@ import org.voltdb.network.VoltNetwork;
 import org.voltdb.utils.DBBPool;
 import org.voltdb.utils.EstTime;
 import org.voltdb.utils.EstTimeUpdater;
+import org.voltdb.utils.HTTPAdminListener;
 import org.voltdb.utils.Pair;
 import org.voltdb.utils.SystemStatsCollector;
 
@@ -94,6 +95,8 @@ import edu.brown.hstore.cmdlog.CommandLogWriter;
 import edu.brown.hstore.conf.HStoreConf;
 import edu.brown.hstore.estimators.EstimatorState;
 import edu.brown.hstore.estimators.TransactionEstimator;
+import edu.brown.hstore.estimators.markov.MarkovEstimator;
+import edu.brown.hstore.estimators.markov.MarkovModelUpdater;
 import edu.brown.hstore.estimators.remote.RemoteEstimator;
 import edu.brown.hstore.estimators.remote.RemoteEstimatorState;
 import edu.brown.hstore.internal.SetDistributedTxnMessage;
@@ -123,6 +126,7 @@ import edu.brown.logging.RingBufferAppender;
 import edu.brown.markov.EstimationThresholds;
 import edu.brown.plannodes.PlanNodeUtil;
 import edu.brown.profilers.HStoreSiteProfiler;
+import edu.brown.profilers.StartupProfiler;
 import edu.brown.statistics.FastIntHistogram;
 import edu.brown.utils.ClassUtil;
 import edu.brown.utils.CollectionUtil;
@@ -251,6 +255,12 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     private TransactionProfilerStats txnProfilerStats;
     private MemoryStats memoryStats;
     
+    /**
+     * Out-of-band HTTP listener for our StatsSources
+     * This is only created if ${site.status_http_port} is greater than zero
+     */
+    private HTTPAdminListener statsListener;
+    
     // ----------------------------------------------------------------------------
     // NETWORKING STUFF
     // ----------------------------------------------------------------------------
@@ -323,6 +333,11 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
      */
     private final List<TransactionCleaner> txnCleaners = new ArrayList<TransactionCleaner>();
     
+    /**
+     * Background MarkovGraph updater
+     */
+    private MarkovModelUpdater markovUpdater = null;
+    
     /**
      * MapReduceHelperThread
      */
@@ -415,6 +430,12 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
      */
     private HStoreSiteProfiler profiler = new HStoreSiteProfiler();
     
+    /**
+     * Startup Phase Profiler
+     * This is always enabled because we only use it once.
+     */
+    private final StartupProfiler startupProfiler = new StartupProfiler();
+    
     // ----------------------------------------------------------------------------
     // CACHED STRINGS
     // ----------------------------------------------------------------------------
@@ -433,6 +454,7 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     protected HStoreSite(int site_id, CatalogContext catalogContext, HStoreConf hstore_conf) {
         assert(hstore_conf != null);
         assert(catalogContext != null);
+        this.startupProfiler.total.start();
         this.hstore_conf = hstore_conf;
         this.catalogContext = catalogContext;
         
@@ -460,6 +482,7 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
                                              new Object[]{ this.catalogContext, num_partitions },
                                              new Class<?>[]{ CatalogContext.class, int.class });
         this.p_estimator = new PartitionEstimator(this.catalogContext, this.hasher);
+        this.p_estimator.setEstimationCacheSize(hstore_conf.site.planner_estimation_cache_size);
         this.remoteTxnEstimator = new RemoteEstimator(this.p_estimator);
 
         // **IMPORTANT**
@@ -472,6 +495,7 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         // Only preload stuff if we were asked to
         if (hstore_conf.site.preload) {
             if (debug.val) LOG.debug("Preloading cached objects");
+            this.startupProfiler.preload.start();
             try {
                 // Don't forget our CatalogUtil friend!
                 CatalogUtil.preload(this.catalogContext.database);
@@ -483,6 +507,8 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
                 this.p_estimator.preload();
             } catch (Exception ex) {
                 throw new RuntimeException("Failed to prepare HStoreSite", ex);
+            } finally {
+                this.startupProfiler.preload.stop();
             }
         }
         
@@ -684,6 +710,22 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
             } // FOR
         }
         
+        // MarkovGraph Updater
+        // This needs to be attached to the MarkovEstimators before the PartitionExecutors start
+        if (hstore_conf.site.markov_enable && hstore_conf.site.markov_updater) {
+            this.markovUpdater = new MarkovModelUpdater(this);
+            for (int partition : this.local_partitions.values()) {
+                TransactionEstimator t_estimator = this.getPartitionExecutor(partition).getTransactionEstimator();
+                if (t_estimator instanceof MarkovEstimator) {
+                    ((MarkovEstimator)t_estimator).setMarkovModelUpdater(this.markovUpdater);
+                }
+            } // FOR
+            t = new Thread(auxGroup, this.markovUpdater);
+            t.setDaemon(true);
+            t.setUncaughtExceptionHandler(this.exceptionHandler);
+            t.start();
+        }
+        
         // Then we need to start all of the PartitionExecutor in threads
         if (debug.val)
             LOG.debug(String.format("Starting PartitionExecutor threads for %s partitions on %s",
@@ -714,6 +756,20 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         
         this.initPeriodicWorks();
         
+        // Start the out-of-band stats listener
+        if (hstore_conf.site.status_http_port > 0) {
+            int port = hstore_conf.site.status_http_port + this.site_id;
+            try {
+                this.statsListener = new HTTPAdminListener(port, this.statsAgent);
+                if (debug.val)
+                    LOG.debug(String.format("Started %s for %s on port %d",
+                              HTTPAdminListener.class.getSimpleName(), this.getSiteName(), port));
+            } catch (IOException ex) {
+                LOG.warn(String.format("Failed to start %s for %s on port %d",
+                         HTTPAdminListener.class.getSimpleName(), this.getSiteName(), port), ex);
+            }
+        }
+        
         // Add in our shutdown hook
         // Runtime.getRuntime().addShutdownHook(new Thread(new ShutdownHook()));
         
@@ -1119,6 +1175,9 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     public HStoreSiteProfiler getProfiler() {
         return (this.profiler);
     }
+    public StartupProfiler getStartupProfiler() {
+        return (this.startupProfiler);
+    }
     public DBBPool getBufferPool() {
         return (this.buffer_pool);
     }
@@ -1278,7 +1337,9 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
             throw new RuntimeException("Trying to start " + this.getSiteName() + " more than once");
         }
         
+        this.startupProfiler.start_threads.start();
         this.init();
+        this.startupProfiler.start_threads.stop();
         
         try {
             this.clientInterface.startAcceptingConnections();
@@ -1292,6 +1353,9 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
 //        }
         this.ready = true;
         this.ready_observable.notifyObservers(this);
+        this.startupProfiler.total.stop();
+        LOG.info(String.format("Startup phases for %s:\n%s",
+                 this.getSiteName(), StringUtil.formatMaps(this.startupProfiler.debugMap())));
 
         // IMPORTANT: This message must always be printed in order for the BenchmarkController
         //            to know that we're ready! That's why we have to use System.out instead of LOG
@@ -1382,6 +1446,9 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         for (TransactionCleaner t : this.txnCleaners) {
             t.prepareShutdown(error);
         } // FOR
+        if (this.markovUpdater != null) {
+            this.markovUpdater.prepareShutdown(error);
+        }
 
         if (this.adhoc_helper_started) {
             if (this.asyncCompilerWorkThread != null)
@@ -1444,6 +1511,7 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
 
         // Stop the monitor thread
         if (this.status_monitor != null) this.status_monitor.shutdown();
+        if (this.statsListener != null) this.statsListener.shutdown(false);
         
         // Kill the queue manager
         this.txnQueueManager.shutdown();
@@ -1460,6 +1528,9 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         for (TransactionCleaner t : this.txnCleaners) {
             t.shutdown();
         } // FOR
+        if (this.markovUpdater != null) {
+            this.markovUpdater.shutdown();
+        }
       
         // this.threadManager.getPeriodicWorkExecutor().shutdown();
         
@@ -713,8 +713,8 @@ public class HStoreSiteStatus extends ExceptionHandlingRunnable implements Shutd
             if (first) header[0] = "";
             for (TransactionCounter tc : cnts_to_include) {
                 if (first) header[j] = tc.toString().replace("partition", "P");
-                Long cnt = tc.get(proc);
-                rows[i][j++] = (cnt != null ? cnt.toString() : "-");
+                long cnt = tc.get(proc);
+                rows[i][j++] = (cnt != 0 ? Long.toString(cnt) : "-");
             } // FOR
             first = false;
         } // FOR
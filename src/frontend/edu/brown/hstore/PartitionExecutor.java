@@ -101,6 +101,7 @@ import org.voltdb.messaging.FastDeserializer;
 import org.voltdb.messaging.FastSerializer;
 import org.voltdb.types.SpecExecSchedulerPolicyType;
 import org.voltdb.types.SpeculationType;
+import org.voltdb.types.WaitStrategyType;
 import org.voltdb.utils.DBBPool;
 import org.voltdb.utils.DBBPool.BBContainer;
 import org.voltdb.utils.Encoder;
@@ -160,6 +161,7 @@ import edu.brown.hstore.util.ArrayCache.LongArrayCache;
 import edu.brown.hstore.util.ParameterSetArrayCache;
 import edu.brown.hstore.util.TransactionCounter;
 import edu.brown.hstore.util.TransactionWorkRequestBuilder;
+import edu.brown.hstore.util.WaitStrategy;
 import edu.brown.interfaces.Configurable;
 import edu.brown.interfaces.DebugContext;
 import edu.brown.interfaces.Shutdownable;
@@ -309,6 +311,13 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
      */
     private final PartitionMessageQueue work_queue;
     
+    /**
+     * How this PartitionExecutor waits for new messages to show up in the work_queue.
+     * Anything that adds a message to the work_queue must call signal() on this
+     * afterwards so that we wake up if we are parked.
+     */
+    private final WaitStrategy<InternalMessage> work_wait;
+    
     // ----------------------------------------------------------------------------
     // Internal Execution State
     // ----------------------------------------------------------------------------
@@ -351,6 +360,13 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
      */
     private long lastTickTime = 0;
 
+    /**
+     * How long in ms it took to load the catalog into our EE when we were created.
+     * This includes any time that we had to wait for other EEs in the same
+     * process to finish loading theirs.
+     */
+    private long catalogLoadTime = 0;
+
     /**
      * The time in ms since last stats update
      */
@@ -425,6 +441,12 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
      */
     private final Map<Integer, BatchPlanner> batchPlanners = new HashMap<Integer, BatchPlanner>(100);
     
+    /**
+     * The costs that we have observed for the distributed batches that we have dispatched.
+     * This is shared by all of our BatchPlanners.
+     */
+    private final BatchPlanner.CostModel batchCostModel = new BatchPlanner.CostModel();
+    
     // ----------------------------------------------------------------------------
     // DISTRIBUTED TRANSACTION TEMPORARY DATA COLLECTIONS
     // ----------------------------------------------------------------------------
@@ -604,6 +626,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
     protected PartitionExecutor() {
         this.catalogContext = null;
         this.work_queue = null;
+        this.work_wait = null;
         this.ee = null;
         this.hsql = null;
         this.specExecChecker = null;
@@ -637,6 +660,14 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                              final TransactionEstimator t_estimator) {
         this.hstore_conf = HStoreConf.singleton();
         this.work_queue = new PartitionMessageQueue();
+        WaitStrategyType waitType = WaitStrategyType.get(hstore_conf.site.exec_wait_strategy);
+        if (waitType == null) {
+            LOG.warn(String.format("Invalid %s '%s'. Using %s instead",
+                     WaitStrategyType.class.getSimpleName(),
+                     hstore_conf.site.exec_wait_strategy, WaitStrategyType.BLOCKING));
+            waitType = WaitStrategyType.BLOCKING;
+        }
+        this.work_wait = WaitStrategy.create(waitType, hstore_conf.site.exec_wait_spin_count);
         this.backend_target = target;
         this.catalogContext = catalogContext;
         this.partition = catalogContext.getPartitionById(partitionId);
@@ -702,8 +733,10 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                     eeTemp.antiCacheInitialize(acFile, blockSize);
                 }
                 
-                eeTemp.loadCatalog(catalogContext.catalog.serialize());
+                long catalogStart = System.currentTimeMillis();
+                eeTemp.loadCatalog(catalogContext.getSerializedCatalog());
                 this.lastTickTime = System.currentTimeMillis();
+                this.catalogLoadTime = this.lastTickTime - catalogStart;
                 eeTemp.tick(this.lastTickTime, 0);
                 
                 snapshotter = new SnapshotSiteProcessor(new Runnable() {
@@ -711,6 +744,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                     @Override
                     public void run() {
                         PartitionExecutor.this.work_queue.add(this.msg);
+                        PartitionExecutor.this.work_wait.signal();
                     }
                 });
             }
@@ -723,8 +757,10 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                                                 this.site.getHost().getId(),
                                                 "localhost",
                                                 target);
-                eeTemp.loadCatalog(catalogContext.catalog.serialize());
+                long catalogStart = System.currentTimeMillis();
+                eeTemp.loadCatalog(catalogContext.getSerializedCatalog());
                 this.lastTickTime = System.currentTimeMillis();
+                this.catalogLoadTime = this.lastTickTime - catalogStart;
                 eeTemp.tick(this.lastTickTime, 0);
             }
         }
@@ -959,7 +995,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                         if (hstore_conf.site.specexec_enable && this.lockQueue.approximateIsEmpty() == false) {
                             nextWork = this.work_queue.poll();
                         } else {
-                            nextWork = this.work_queue.poll(WORK_QUEUE_POLL_TIME, WORK_QUEUE_POLL_TIMEUNIT);    
+                            nextWork = this.work_wait.poll(this.work_queue, WORK_QUEUE_POLL_TIME, WORK_QUEUE_POLL_TIMEUNIT);
                         }
                     } catch (InterruptedException ex) {
                         continue;
@@ -1416,6 +1452,9 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
     public final Partition getPartition() {
         return (this.partition);
     }
+    public final long getCatalogLoadTime() {
+        return (this.catalogLoadTime);
+    }
     public final int getPartitionId() {
         return (this.partitionId);
     }
@@ -1673,6 +1712,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         } // WHILE
         // assert(this.work_queue.isEmpty());
         this.work_queue.addAll(toKeep);
+        this.work_wait.signal();
         
         // For now we'll set it back so that we can execute new stuff. Clearing out
         // the queue should enough for now
@@ -1951,6 +1991,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         assert(ts.isInitialized()) : "Unexpected uninitialized transaction: " + ts;
         SetDistributedTxnMessage work = ts.getSetDistributedTxnMessage();
         boolean success = this.work_queue.offer(work);
+        this.work_wait.signal();
         assert(success) :
             String.format("Failed to queue %s at partition %d for %s",
                           work, this.partitionId, ts);
@@ -1973,6 +2014,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         assert(ts.isInitialized()) : "Unexpected uninitialized transaction: " + ts;
         WorkFragmentMessage work = ts.getWorkFragmentMessage(fragment);
         boolean success = this.work_queue.offer(work); // , true);
+        this.work_wait.signal();
         assert(success) :
             String.format("Failed to queue %s at partition %d for %s",
                           work, this.partitionId, ts);
@@ -1994,6 +2036,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
             LOG.debug(String.format("Added utility work %s to partition %d",
                       work.getClass().getSimpleName(), this.partitionId));
         this.work_queue.offer(work);
+        this.work_wait.signal();
     }
 
     
@@ -2006,6 +2049,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         assert(ts.isInitialized()) : "Unexpected uninitialized transaction: " + ts;
         PrepareTxnMessage work = ts.getPrepareTxnMessage();
         boolean success = this.work_queue.offer(work);
+        this.work_wait.signal();
         assert(success) :
             String.format("Failed to queue %s at partition %d for %s",
                           work, this.partitionId, ts);
@@ -2026,6 +2070,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         assert(ts.isInitialized()) : "Unexpected uninitialized transaction: " + ts;
         FinishTxnMessage work = ts.getFinishTxnMessage(status);
         boolean success = this.work_queue.offer(work); // , true);
+        this.work_wait.signal();
         assert(success) :
             String.format("Failed to queue %s at partition %d for %s",
                           work, this.partitionId, ts);
@@ -2063,7 +2108,9 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                       "[currentDtxn=%s, queueSize=%d, mode=%s]",
                       work.getClass().getSimpleName(), catalog_proc.getName(), this.partitionId,
                       this.currentDtxn, this.work_queue.size(), this.currentExecMode));
-        return (this.work_queue.offer(work));
+        boolean success = this.work_queue.offer(work);
+        if (success) this.work_wait.signal();
+        return (success);
     }
     
     /**
@@ -2098,6 +2145,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                       work.getClass().getSimpleName(), ts.getProcedure().getName(), this.partitionId,
                       this.currentDtxn, this.work_queue.size(), this.currentExecMode));
         boolean success = this.work_queue.offer(work); // , force);
+        if (success) this.work_wait.signal();
         if (debug.val && force && success == false) {
             String msg = String.format("Failed to add %s even though force flag was true!", ts);
             throw new ServerFaultException(msg, ts.getTransactionId());
@@ -3109,6 +3157,27 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                           allowELT != 0);
     }
 
+    /**
+     * Load the given VoltTable into the EE without using undo logging.
+     * This is only meant for bulk loading, since none of the tuples that are
+     * inserted can be rolled back if the txn aborts afterwards.
+     * @param ts
+     * @param catalog_tbl
+     * @param data
+     * @param allowELT
+     * @throws VoltAbortException
+     */
+    public void loadTableWithoutUndo(AbstractTransaction ts, Table catalog_tbl, VoltTable data, boolean allowELT) throws VoltAbortException {
+        assert(ts.isSpeculative() == false) :
+            String.format("Trying to load %s without undo logging for speculative %s", catalog_tbl, ts);
+        ts.markExecutedWork(this.partitionId);
+        this.ee.loadTable(catalog_tbl.getRelativeIndex(), data,
+                          ts.getTransactionId(),
+                          this.lastCommittedTxnId.longValue(),
+                          HStoreConstants.DISABLE_UNDO_LOGGING_TOKEN,
+                          allowELT);
+    }
+
     /**
      * <B>NOTE:</B> This should only be used for testing
      * @param txnId
@@ -3143,6 +3212,147 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                                            ParameterSet batchParams[],
                                            boolean finalTask,
                                            boolean forceSinglePartition) {
+        return this.executeSQLStmtBatch(ts, batchSize, batchStmts, batchParams,
+                                        finalTask, forceSinglePartition, false);
+    }
+    
+    /**
+     * Execute a SQLStmt batch at this partition. If async is true and the batch needs
+     * to be sent out to remote partitions, then this will return null as soon as the 
+     * first round of WorkFragments has been dispatched. The caller then must invoke
+     * finishSQLStmtBatch() to get the results before the txn can execute another batch.
+     * @param ts The txn handle that is executing this query batch
+     * @param batchSize The number of SQLStmts that the txn queued up using voltQueueSQL()
+     * @param batchStmts The SQLStmts that the txn is trying to execute
+     * @param batchParams The input parameters for the SQLStmts
+     * @param finalTask Whether the txn has marked this as the last batch that they will ever execute
+     * @param forceSinglePartition Whether to force the BatchPlanner to only generate a single-partition plan
+     * @param async Whether to return without waiting for the results of a distributed batch
+     * @return
+     */
+    public VoltTable[] executeSQLStmtBatch(LocalTransaction ts,
+                                           int batchSize,
+                                           SQLStmt batchStmts[],
+                                           ParameterSet batchParams[],
+                                           boolean finalTask,
+                                           boolean forceSinglePartition,
+                                           boolean async) {
+        if (hstore_conf.site.exec_reuse_query_results == false) {
+            return this.planAndExecuteSQLStmtBatch(ts, batchSize, batchStmts, batchParams,
+                                                   finalTask, forceSinglePartition, async);
+        }
+        
+        // We can only reuse results if every query in the batch is read-only.
+        // If this batch is going to modify the database, then anything that we 
+        // stored for this txn is now stale. We also can't skip queries if somebody
+        // else needs to see every one of them (i.e., prefetching or the estimator)
+        ExecutionState execState = ts.getExecutionState();
+        boolean readOnly = (ts.hasPrefetchQueries() == false);
+        EstimatorState t_state = ts.getEstimatorState();
+        if (this.localTxnEstimator != null && t_state != null && t_state.isUpdatesEnabled()) {
+            readOnly = false;
+        }
+        for (int i = 0; i < batchSize && readOnly; i++) {
+            readOnly = batchStmts[i].getStatement().getReadonly();
+        } // FOR
+        if (readOnly == false) {
+            execState.clearQueryResults();
+            return this.planAndExecuteSQLStmtBatch(ts, batchSize, batchStmts, batchParams,
+                                                   finalTask, forceSinglePartition, async);
+        }
+        
+        // NOTE: We always wait for the results of the batch below even if the txn 
+        // asked us not to, because we need to store them for the next time
+        
+        // Figure out which queries we actually need to execute. For each query in the
+        // batch, sources[i] is the offset of the query in our reduced batch that will
+        // produce its result, or -1 if the txn already has the result from before
+        int sources[] = new int[batchSize];
+        int paramHashes[] = new int[batchSize];
+        VoltTable results[] = new VoltTable[batchSize];
+        SQLStmt uniqueStmts[] = new SQLStmt[batchSize];
+        ParameterSet uniqueParams[] = new ParameterSet[batchSize];
+        int uniqueCount = 0;
+        for (int i = 0; i < batchSize; i++) {
+            Statement catalog_stmt = batchStmts[i].getStatement();
+            results[i] = execState.getQueryResult(catalog_stmt, batchParams[i]);
+            if (results[i] != null) {
+                sources[i] = -1;
+                continue;
+            }
+            paramHashes[i] = batchParams[i].hashCode();
+            sources[i] = uniqueCount;
+            for (int j = 0; j < i; j++) {
+                if (sources[j] != -1 &&
+                    paramHashes[j] == paramHashes[i] &&
+                    batchStmts[j].getStatement().equals(catalog_stmt) &&
+                    Arrays.deepEquals(batchParams[j].toArray(), batchParams[i].toArray())) {
+                    sources[i] = sources[j];
+                    break;
+                }
+            } // FOR
+            if (sources[i] == uniqueCount) {
+                uniqueStmts[uniqueCount] = batchStmts[i];
+                uniqueParams[uniqueCount] = batchParams[i];
+                uniqueCount++;
+            }
+        } // FOR
+        if (debug.val && uniqueCount != batchSize)
+            LOG.debug(String.format("%s - Reusing query results for %d out of %d queries in batch",
+                      ts, batchSize - uniqueCount, batchSize));
+        
+        VoltTable uniqueResults[] = null;
+        if (uniqueCount == batchSize) {
+            uniqueResults = this.planAndExecuteSQLStmtBatch(ts, batchSize, batchStmts, batchParams,
+                                                            finalTask, forceSinglePartition, false);
+        } else if (uniqueCount > 0) {
+            uniqueResults = this.planAndExecuteSQLStmtBatch(ts, uniqueCount, uniqueStmts, uniqueParams,
+                                                            finalTask, forceSinglePartition, false);
+        }
+        if (uniqueCount > 0) {
+            if (uniqueResults == null) return (null);
+            for (int i = 0; i < uniqueCount; i++) {
+                execState.addQueryResult(uniqueStmts[i].getStatement(), uniqueParams[i], uniqueResults[i]);
+            } // FOR
+        }
+        
+        // Every query gets its own read-only view of the shared result so that
+        // they each have their own cursor but nobody can change it for the others
+        for (int i = 0; i < batchSize; i++) {
+            VoltTable vt = (sources[i] == -1 ? results[i] : uniqueResults[sources[i]]);
+            results[i] = new VoltTable(vt.getTableDataReference(), true);
+        } // FOR
+        return (results);
+    }
+    
+    /**
+     * Block until all of the results come back for the distributed SQLStmt batch
+     * that the txn started with executeSQLStmtBatch() without waiting.
+     * @param ts
+     * @return
+     */
+    public VoltTable[] finishSQLStmtBatch(LocalTransaction ts) {
+        boolean needs_profiling = (hstore_conf.site.txn_profiling && ts.profiler != null);
+        if (needs_profiling) ts.profiler.stopExecJava();
+        try {
+            return (this.finishWorkFragments(ts));
+        } finally {
+            if (needs_profiling) ts.profiler.startExecJava();
+        }
+    }
+    
+    /**
+     * Plan and execute a SQLStmt batch without checking whether the txn
+     * already has the results for any of its queries.
+     * @see PartitionExecutor#executeSQLStmtBatch
+     */
+    private VoltTable[] planAndExecuteSQLStmtBatch(LocalTransaction ts,
+                                                   int batchSize,
+                                                   SQLStmt batchStmts[],
+                                                   ParameterSet batchParams[],
+                                                   boolean finalTask,
+                                                   boolean forceSinglePartition,
+                                                   boolean async) {
         
         boolean needs_profiling = (hstore_conf.site.txn_profiling && ts.profiler != null);
         if (needs_profiling) {
@@ -3174,6 +3384,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                                        ts.getProcedure(),
                                        this.p_estimator,
                                        forceSinglePartition);
+            planner.setCostModel(this.batchCostModel);
             this.batchPlanners.put(batchHashCode, planner);
         }
         assert(planner != null);
@@ -3285,6 +3496,22 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                 ts.profiler.addRemoteQuery(remote_cnt);
             }
             
+            // Remember when we sent out this batch so that we can figure out how long
+            // it took for each PlanFragment's results to come back
+            if (hstore_conf.site.planner_cost_packing) {
+                execState.setBatchDispatchTime(System.nanoTime());
+            }
+            
+            // Send out the first round of WorkFragments and then return right away 
+            // if the txn wants to do something else while it waits for the results
+            if (async) {
+                if (debug.val)
+                    LOG.debug(ts + " - Dispatching distributed queries without waiting for the results");
+                this.startWorkFragments(ts, batchParams, batchSize, execState.tmp_partitionFragments);
+                if (needs_profiling) ts.profiler.startExecJava();
+                return (null);
+            }
+            
             // Block until we get all of our responses.
             results = this.dispatchWorkFragments(ts, batchParams, batchSize,
                                                  execState.tmp_partitionFragments);
@@ -3533,6 +3760,23 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                                              final ParameterSet parameters[],
                                              final int batchSize,
                                              final Collection<WorkFragment.Builder> allFragmentBuilders) {
+        this.startWorkFragments(ts, parameters, batchSize, allFragmentBuilders);
+        return (this.finishWorkFragments(ts));
+    }
+    
+    /**
+     * Dispatch the first round of WorkFragments for a distributed SQLStmt batch 
+     * without waiting for any of the results to come back. The caller must invoke
+     * finishWorkFragments() before the txn can execute another batch.
+     * @param ts
+     * @param parameters
+     * @param batchSize
+     * @param allFragmentBuilders
+     */
+    private void startWorkFragments(final LocalTransaction ts,
+                                    final ParameterSet parameters[],
+                                    final int batchSize,
+                                    final Collection<WorkFragment.Builder> allFragmentBuilders) {
         assert(allFragmentBuilders.isEmpty() == false) :
             "Unexpected empty WorkFragment list for " + ts;
         final boolean needs_profiling = (hstore_conf.site.txn_profiling && ts.profiler != null);
@@ -3585,20 +3829,6 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
             }
         }
 
-        boolean first = true;
-        boolean serializedParams = false;
-        CountDownLatch latch = null;
-        boolean all_local = true;
-        boolean is_localSite;
-        boolean is_localPartition;
-        boolean is_localReadOnly = true;
-        int num_localPartition = 0;
-        int num_localSite = 0;
-        int num_remote = 0;
-        int num_skipped = 0;
-        int total = 0;
-        Collection<WorkFragment.Builder> fragmentBuilders = allFragmentBuilders;
-
         // Make sure our txn is in our DependencyTracker
         if (trace.val)
             LOG.trace(String.format("%s - Added transaction to %s",
@@ -3606,6 +3836,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         this.depTracker.addTransaction(ts);
         
         // Figure out whether the txn will always be read-only at this partition
+        boolean is_localReadOnly = true;
         for (WorkFragment.Builder fragmentBuilder : allFragmentBuilders) {
             if (this.partitionId == fragmentBuilder.getPartitionId() && fragmentBuilder.getReadOnly() == false) {
                 is_localReadOnly = false;
@@ -3614,73 +3845,74 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         } // FOR
         long undoToken = this.calculateNextUndoToken(ts, is_localReadOnly);
         ts.initFirstRound(undoToken, batchSize);
-        // final boolean prefetch = ts.hasPrefetchQueries();
-        final boolean predict_singlePartition = ts.isPredictSinglePartition();
         
         // Attach the ParameterSets to our transaction handle so that anybody on this HStoreSite
         // can access them directly without needing to deserialize them from the WorkFragments
         ts.attachParameterSets(parameters);
         
-        // Now if we have some work sent out to other partitions, we need to wait until they come back
+        // Dispatch the WorkFragments that are not blocked waiting for anything
+        // The rest of them will get dispatched by finishWorkFragments()
+        this.dispatchUnblockedWorkFragments(ts, parameters, allFragmentBuilders, true);
+    }
+    
+    /**
+     * Block the current thread until all of the results for the txn's current
+     * SQLStmt batch have come back. This will dispatch any WorkFragments for the batch
+     * that become unblocked while we wait and invoke utilityWork() in the meantime.
+     * @param ts
+     * @return
+     */
+    public VoltTable[] finishWorkFragments(final LocalTransaction ts) {
+        final boolean needs_profiling = (hstore_conf.site.txn_profiling && ts.profiler != null);
+        final ParameterSet parameters[] = ts.getAttachedParameterSets();
+        CountDownLatch latch = this.depTracker.getDependencyLatch(ts);
+        Collection<WorkFragment.Builder> fragmentBuilders = null;
+        
         // In the first part, we wait until all of our blocked WorkFragments become unblocked
         final BlockingDeque<Collection<WorkFragment.Builder>> queue = this.depTracker.getUnblockedWorkFragmentsQueue(ts);
 
         // Run through this loop if:
         //  (1) We have no pending errors
-        //  (2) This is our first time in the loop (first == true)
-        //  (3) If we know that there are still messages being blocked
-        //  (4) If we know that there are still unblocked messages that we need to process
-        //  (5) The latch for this round is still greater than zero
+        //  (2) If we know that there are still messages being blocked
+        //  (3) If we know that there are still unblocked messages that we need to process
+        //  (4) The latch for this round is still greater than zero
         while (ts.hasPendingError() == false && 
-              (first == true || this.depTracker.stillHasWorkFragments(ts) || (latch != null && latch.getCount() > 0))) {
+              (this.depTracker.stillHasWorkFragments(ts) || latch.getCount() > 0)) {
             if (trace.val)
-                LOG.trace(String.format("%s - %s loop [first=%s, stillHasWorkFragments=%s, latch=%s]",
+                LOG.trace(String.format("%s - %s loop [stillHasWorkFragments=%s, latch=%s]",
                           ts, ClassUtil.getCurrentMethodName(),
-                          first, this.depTracker.stillHasWorkFragments(ts), queue.size(), latch));
+                          this.depTracker.stillHasWorkFragments(ts), queue.size(), latch));
             
-            // If this is the not first time through the loop, then poll the queue
-            // to get our list of fragments
-            if (first == false) {
-                all_local = true;
-                is_localSite = false;
-                is_localPartition = false;
-                num_localPartition = 0;
-                num_localSite = 0;
-                num_remote = 0;
-                num_skipped = 0;
-                total = 0;
-                
-                if (trace.val)
-                    LOG.trace(String.format("%s - Waiting for unblocked tasks on partition %d",
-                              ts, this.partitionId));
-                fragmentBuilders = queue.poll(); // NON-BLOCKING
-                
-                // If we didn't get back a list of fragments here, then we will spin through
-                // and invoke utilityWork() to try to do something useful until what we need shows up
-                if (needs_profiling) ts.profiler.startExecDtxnWork();
-                if (hstore_conf.site.exec_profiling) this.profiler.sp1_time.start();
-                try {
-                    while (fragmentBuilders == null) {
-                        // If there is more work that we could do, then we'll just poll the queue
-                        // without waiting so that we can go back and execute it again if we have
-                        // more time.
-                        if (this.utilityWork()) {
-                            fragmentBuilders = queue.poll();
-                        }
-                        // Otherwise we will wait a little so that we don't spin the CPU
-                        else {
-                            fragmentBuilders = queue.poll(WORK_QUEUE_POLL_TIME, TimeUnit.MILLISECONDS);
-                        }
-                    } // WHILE
-                } catch (InterruptedException ex) {
-                    if (this.hstore_site.isShuttingDown() == false) {
-                        LOG.error(String.format("%s - We were interrupted while waiting for blocked tasks", ts), ex);
+            if (trace.val)
+                LOG.trace(String.format("%s - Waiting for unblocked tasks on partition %d",
+                          ts, this.partitionId));
+            fragmentBuilders = queue.poll(); // NON-BLOCKING
+            
+            // If we didn't get back a list of fragments here, then we will spin through
+            // and invoke utilityWork() to try to do something useful until what we need shows up
+            if (needs_profiling) ts.profiler.startExecDtxnWork();
+            if (hstore_conf.site.exec_profiling) this.profiler.sp1_time.start();
+            try {
+                while (fragmentBuilders == null) {
+                    // If there is more work that we could do, then we'll just poll the queue
+                    // without waiting so that we can go back and execute it again if we have
+                    // more time.
+                    if (this.utilityWork()) {
+                        fragmentBuilders = queue.poll();
                     }
-                    return (null);
-                } finally {
-                    if (needs_profiling) ts.profiler.stopExecDtxnWork();
-                    if (hstore_conf.site.exec_profiling) this.profiler.sp1_time.stopIfStarted();
+                    // Otherwise we will wait a little so that we don't spin the CPU
+                    else {
+                        fragmentBuilders = queue.poll(WORK_QUEUE_POLL_TIME, TimeUnit.MILLISECONDS);
+                    }
+                } // WHILE
+            } catch (InterruptedException ex) {
+                if (this.hstore_site.isShuttingDown() == false) {
+                    LOG.error(String.format("%s - We were interrupted while waiting for blocked tasks", ts), ex);
                 }
+                return (null);
+            } finally {
+                if (needs_profiling) ts.profiler.stopExecDtxnWork();
+                if (hstore_conf.site.exec_profiling) this.profiler.sp1_time.stopIfStarted();
             }
             assert(fragmentBuilders != null);
             
@@ -3695,187 +3927,13 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                               ts, this.partitionId));
                 break;
             }
-
-            this.tmp_localWorkFragmentBuilders.clear();
-            if (predict_singlePartition == false) {
-                this.tmp_remoteFragmentBuilders.clear();
-                this.tmp_localSiteFragmentBuilders.clear();
-            }
-            
-            // -------------------------------
-            // FAST PATH: Assume everything is local
-            // -------------------------------
-            if (predict_singlePartition) {
-                for (WorkFragment.Builder fragmentBuilder : fragmentBuilders) {
-                    if (first == false || this.depTracker.addWorkFragment(ts, fragmentBuilder, parameters)) {
-                        this.tmp_localWorkFragmentBuilders.add(fragmentBuilder);
-                        total++;
-                        num_localPartition++;
-                    }
-                } // FOR
-                
-                // We have to tell the transaction handle to start the round before we send off the
-                // WorkFragments for execution, since they might start executing locally!
-                if (first) {
-                    ts.startRound(this.partitionId);
-                    latch = this.depTracker.getDependencyLatch(ts);
-                }
-                
-                // Execute all of our WorkFragments quickly at our local ExecutionEngine
-                for (WorkFragment.Builder fragmentBuilder : this.tmp_localWorkFragmentBuilders) {
-                    if (debug.val)
-                        LOG.debug(String.format("%s - Got unblocked %s to execute locally",
-                                  ts, fragmentBuilder.getClass().getSimpleName()));
-                    assert(fragmentBuilder.getPartitionId() == this.partitionId) :
-                        String.format("Trying to process %s for %s on partition %d but it should have been " +
-                                      "sent to partition %d [singlePartition=%s]\n%s",
-                                      fragmentBuilder.getClass().getSimpleName(), ts, this.partitionId,
-                                      fragmentBuilder.getPartitionId(), predict_singlePartition, fragmentBuilder);
-                    WorkFragment fragment = fragmentBuilder.build();
-                    this.processWorkFragment(ts, fragment, parameters);
-                } // FOR
-            }
-            // -------------------------------
-            // SLOW PATH: Mixed local and remote messages
-            // -------------------------------
-            else {
-                // Look at each task and figure out whether it needs to be executed at a remote
-                // HStoreSite or whether we can execute it at one of our local PartitionExecutors.
-                for (WorkFragment.Builder fragmentBuilder : fragmentBuilders) {
-                    int partition = fragmentBuilder.getPartitionId();
-                    is_localSite = hstore_site.isLocalPartition(partition);
-                    is_localPartition = (partition == this.partitionId);
-                    all_local = all_local && is_localPartition;
-                    if (first == false || this.depTracker.addWorkFragment(ts, fragmentBuilder, parameters)) {
-                        total++;
-                        
-                        // At this point we know that all the WorkFragment has been registered
-                        // in the LocalTransaction, so then it's safe for us to look to see
-                        // whether we already have a prefetched result that we need
-//                        if (prefetch && is_localPartition == false) {
-//                            boolean skip_queue = true;
-//                            for (int i = 0, cnt = fragmentBuilder.getFragmentIdCount(); i < cnt; i++) {
-//                                int fragId = fragmentBuilder.getFragmentId(i);
-//                                int paramIdx = fragmentBuilder.getParamIndex(i);
-//                                
-//                                VoltTable vt = this.queryCache.getResult(ts.getTransactionId(),
-//                                                                         fragId,
-//                                                                         partition,
-//                                                                         parameters[paramIdx]);
-//                                if (vt != null) {
-//                                    if (trace.val)
-//                                        LOG.trace(String.format("%s - Storing cached result from partition %d for fragment %d",
-//                                                  ts, partition, fragId));
-//                                    this.depTracker.addResult(ts, partition, fragmentBuilder.getOutputDepId(i), vt);
-//                                } else {
-//                                    skip_queue = false;
-//                                }
-//                            } // FOR
-//                            // If we were able to get cached results for all of the fragmentIds in
-//                            // this WorkFragment, then there is no need for us to send the message
-//                            // So we'll just skip queuing it up! How nice!
-//                            if (skip_queue) {
-//                                if (debug.val)
-//                                    LOG.debug(String.format("%s - Using prefetch result for all fragments from partition %d",
-//                                              ts, partition));
-//                                num_skipped++;
-//                                continue;
-//                            }
-//                        }
-                        
-                        // Otherwise add it to our list of WorkFragments that we want
-                        // queue up right now
-                        if (is_localPartition) {
-                            is_localReadOnly = (is_localReadOnly && fragmentBuilder.getReadOnly());
-                            this.tmp_localWorkFragmentBuilders.add(fragmentBuilder);
-                            num_localPartition++;
-                        } else if (is_localSite) {
-                            this.tmp_localSiteFragmentBuilders.add(fragmentBuilder);
-                            num_localSite++;
-                        } else {
-                            this.tmp_remoteFragmentBuilders.add(fragmentBuilder);
-                            num_remote++;
-                        }
-                    }
-                } // FOR
-                assert(total == (num_remote + num_localSite + num_localPartition + num_skipped)) :
-                    String.format("Total:%d / Remote:%d / LocalSite:%d / LocalPartition:%d / Skipped:%d",
-                                  total, num_remote, num_localSite, num_localPartition, num_skipped);
-
-                // We have to tell the txn to start the round before we send off the
-                // WorkFragments for execution, since they might start executing locally!
-                if (first) {
-                    ts.startRound(this.partitionId);
-                    latch = this.depTracker.getDependencyLatch(ts);
-                }
-        
-                // Now request the fragments that aren't local
-                // We want to push these out as soon as possible
-                if (num_remote > 0) {
-                    // We only need to serialize the ParameterSets once
-                    if (serializedParams == false) {
-                        if (needs_profiling) ts.profiler.startSerialization();
-                        tmp_serializedParams.clear();
-                        for (int i = 0; i < parameters.length; i++) {
-                            if (parameters[i] == null) {
-                                tmp_serializedParams.add(ByteString.EMPTY);
-                            } else {
-                                this.fs.clear();
-                                try {
-                                    parameters[i].writeExternal(this.fs);
-                                    ByteString bs = ByteString.copyFrom(this.fs.getBBContainer().b);
-                                    tmp_serializedParams.add(bs);
-                                } catch (Exception ex) {
-                                    String msg = "Failed to serialize ParameterSet " + i + " for " + ts;
-                                    throw new ServerFaultException(msg, ex, ts.getTransactionId());
-                                }
-                            }
-                        } // FOR
-                        if (needs_profiling) ts.profiler.stopSerialization();
-                    }
-                    if (trace.val)
-                        LOG.trace(String.format("%s - Requesting %d WorkFragments to be executed on remote partitions",
-                                  ts, num_remote));
-                    this.requestWork(ts, tmp_remoteFragmentBuilders, tmp_serializedParams);
-                    if (needs_profiling) ts.profiler.markRemoteQuery();
-                }
-                
-                // Then dispatch the task that are needed at the same HStoreSite but 
-                // at a different partition than this one
-                if (num_localSite > 0) {
-                    if (trace.val)
-                        LOG.trace(String.format("%s - Executing %d WorkFragments on local site's partitions",
-                                  ts, num_localSite));
-                    for (WorkFragment.Builder builder : this.tmp_localSiteFragmentBuilders) {
-                        PartitionExecutor other = hstore_site.getPartitionExecutor(builder.getPartitionId());
-                        other.queueWork(ts, builder.build());
-                    } // FOR
-                    if (needs_profiling) ts.profiler.markRemoteQuery();
-                }
-        
-                // Then execute all of the tasks need to access the partitions at this HStoreSite
-                // We'll dispatch the remote-partition-local-site fragments first because they're going
-                // to need to get queued up by at the other PartitionExecutors
-                if (num_localPartition > 0) {
-                    if (trace.val)
-                        LOG.trace(String.format("%s - Executing %d WorkFragments on local partition",
-                                  ts, num_localPartition));
-                    for (WorkFragment.Builder fragmentBuilder : this.tmp_localWorkFragmentBuilders) {
-                        this.processWorkFragment(ts, fragmentBuilder.build(), parameters);
-                    } // FOR
-                }
-            }
-            if (trace.val)
-                LOG.trace(String.format("%s - Dispatched %d WorkFragments " +
-                          "[remoteSite=%d, localSite=%d, localPartition=%d]",
-                          ts, total, num_remote, num_localSite, num_localPartition));
-            first = false;
+            this.dispatchUnblockedWorkFragments(ts, parameters, fragmentBuilders, false);
         } // WHILE
         this.fs.getBBContainer().discard();
         
         if (trace.val)
-            LOG.trace(String.format("%s - BREAK OUT [first=%s, stillHasWorkFragments=%s, latch=%s]",
-                      ts, first, this.depTracker.stillHasWorkFragments(ts), latch));
+            LOG.trace(String.format("%s - BREAK OUT [stillHasWorkFragments=%s, latch=%s]",
+                      ts, this.depTracker.stillHasWorkFragments(ts), latch));
 //        assert(ts.stillHasWorkFragments() == false) :
 //            String.format("Trying to block %s before all of its WorkFragments have been dispatched!\n%s\n%s",
 //                          ts,
@@ -3884,7 +3942,6 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                 
         // Now that we know all of our WorkFragments have been dispatched, we can then
         // wait for all of the results to come back in.
-        if (latch == null) latch = this.depTracker.getDependencyLatch(ts);
         assert(latch != null) :
             String.format("Unexpected null dependency latch for " + ts);
         if (latch.getCount() > 0) {
@@ -3943,6 +4000,10 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
             throw ts.getPendingError();
         }
         
+        if (hstore_conf.site.planner_cost_packing) {
+            this.updateBatchCosts(ts);
+        }
+        
         // IMPORTANT: Don't try to check whether we got back the right number of tables because the batch
         // may have hit an error and we didn't execute all of them.
         VoltTable results[] = null;
@@ -3959,6 +4020,232 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         }
         return (results);
     }
+    
+    /**
+     * Record how long it took for the output of each PlanFragment in the txn's current
+     * SQLStmt batch to come back after the batch was dispatched. The BatchPlanners use
+     * these costs to decide which WorkFragments they can pack together in future batches.
+     * This must be called before the DependencyTracker's round is finished.
+     * @param ts
+     */
+    private void updateBatchCosts(final LocalTransaction ts) {
+        final ExecutionState execState = ts.getExecutionState();
+        final long dispatchTime = execState.getBatchDispatchTime();
+        if (dispatchTime == 0) return;
+        
+        for (WorkFragment.Builder fragmentBuilder : execState.tmp_partitionFragments) {
+            long lastResultTime = 0;
+            for (int i = 0, cnt = fragmentBuilder.getFragmentIdCount(); i < cnt; i++) {
+                long resultTime = this.depTracker.getDependencyResultTime(ts, fragmentBuilder.getOutputDepId(i));
+                // Skip anything that was prefetched before the batch was dispatched
+                if (resultTime <= dispatchTime) continue;
+                this.batchCostModel.addFragmentTime(fragmentBuilder.getFragmentId(i), resultTime - dispatchTime);
+                lastResultTime = Math.max(lastResultTime, resultTime);
+            } // FOR
+            if (lastResultTime > 0 &&
+                    fragmentBuilder.getPartitionId() != this.partitionId &&
+                    fragmentBuilder.getNeedsInput() == false) {
+                this.batchCostModel.addMessageTime(lastResultTime - dispatchTime);
+            }
+        } // FOR
+        execState.setBatchDispatchTime(0);
+    }
+    
+    /**
+     * Send out the given WorkFragments for the txn's current SQLStmt batch to the
+     * partitions that they need to execute on. If this is the first time that we are
+     * invoked for the batch, then the WorkFragments will be registered in the
+     * DependencyTracker and any that are blocked will be held back.
+     * @param ts
+     * @param parameters
+     * @param fragmentBuilders
+     * @param first
+     */
+    private void dispatchUnblockedWorkFragments(final LocalTransaction ts,
+                                                final ParameterSet parameters[],
+                                                final Collection<WorkFragment.Builder> fragmentBuilders,
+                                                final boolean first) {
+        final boolean needs_profiling = (hstore_conf.site.txn_profiling && ts.profiler != null);
+        final boolean predict_singlePartition = ts.isPredictSinglePartition();
+        boolean serializedParams = false;
+        boolean all_local = true;
+        boolean is_localSite;
+        boolean is_localPartition;
+        boolean is_localReadOnly = true;
+        int num_localPartition = 0;
+        int num_localSite = 0;
+        int num_remote = 0;
+        int num_skipped = 0;
+        int total = 0;
+        
+        this.tmp_localWorkFragmentBuilders.clear();
+        if (predict_singlePartition == false) {
+            this.tmp_remoteFragmentBuilders.clear();
+            this.tmp_localSiteFragmentBuilders.clear();
+        }
+        
+        // -------------------------------
+        // FAST PATH: Assume everything is local
+        // -------------------------------
+        if (predict_singlePartition) {
+            for (WorkFragment.Builder fragmentBuilder : fragmentBuilders) {
+                if (first == false || this.depTracker.addWorkFragment(ts, fragmentBuilder, parameters)) {
+                    this.tmp_localWorkFragmentBuilders.add(fragmentBuilder);
+                    total++;
+                    num_localPartition++;
+                }
+            } // FOR
+            
+            // We have to tell the transaction handle to start the round before we send off the
+            // WorkFragments for execution, since they might start executing locally!
+            if (first) ts.startRound(this.partitionId);
+            
+            // Execute all of our WorkFragments quickly at our local ExecutionEngine
+            for (WorkFragment.Builder fragmentBuilder : this.tmp_localWorkFragmentBuilders) {
+                if (debug.val)
+                    LOG.debug(String.format("%s - Got unblocked %s to execute locally",
+                              ts, fragmentBuilder.getClass().getSimpleName()));
+                assert(fragmentBuilder.getPartitionId() == this.partitionId) :
+                    String.format("Trying to process %s for %s on partition %d but it should have been " +
+                                  "sent to partition %d [singlePartition=%s]\n%s",
+                                  fragmentBuilder.getClass().getSimpleName(), ts, this.partitionId,
+                                  fragmentBuilder.getPartitionId(), predict_singlePartition, fragmentBuilder);
+                WorkFragment fragment = fragmentBuilder.build();
+                this.processWorkFragment(ts, fragment, parameters);
+            } // FOR
+        }
+        // -------------------------------
+        // SLOW PATH: Mixed local and remote messages
+        // -------------------------------
+        else {
+            // Look at each task and figure out whether it needs to be executed at a remote
+            // HStoreSite or whether we can execute it at one of our local PartitionExecutors.
+            for (WorkFragment.Builder fragmentBuilder : fragmentBuilders) {
+                int partition = fragmentBuilder.getPartitionId();
+                is_localSite = hstore_site.isLocalPartition(partition);
+                is_localPartition = (partition == this.partitionId);
+                all_local = all_local && is_localPartition;
+                if (first == false || this.depTracker.addWorkFragment(ts, fragmentBuilder, parameters)) {
+                    total++;
+                    
+                    // At this point we know that all the WorkFragment has been registered
+                    // in the LocalTransaction, so then it's safe for us to look to see
+                    // whether we already have a prefetched result that we need
+//                        if (prefetch && is_localPartition == false) {
+//                            boolean skip_queue = true;
+//                            for (int i = 0, cnt = fragmentBuilder.getFragmentIdCount(); i < cnt; i++) {
+//                                int fragId = fragmentBuilder.getFragmentId(i);
+//                                int paramIdx = fragmentBuilder.getParamIndex(i);
+//                                
+//                                VoltTable vt = this.queryCache.getResult(ts.getTransactionId(),
+//                                                                         fragId,
+//                                                                         partition,
+//                                                                         parameters[paramIdx]);
+//                                if (vt != null) {
+//                                    if (trace.val)
+//                                        LOG.trace(String.format("%s - Storing cached result from partition %d for fragment %d",
+//                                                  ts, partition, fragId));
+//                                    this.depTracker.addResult(ts, partition, fragmentBuilder.getOutputDepId(i), vt);
+//                                } else {
+//                                    skip_queue = false;
+//                                }
+//                            } // FOR
+//                            // If we were able to get cached results for all of the fragmentIds in
+//                            // this WorkFragment, then there is no need for us to send the message
+//                            // So we'll just skip queuing it up! How nice!
+//                            if (skip_queue) {
+//                                if (debug.val)
+//                                    LOG.debug(String.format("%s - Using prefetch result for all fragments from partition %d",
+//                                              ts, partition));
+//                                num_skipped++;
+//                                continue;
+//                            }
+//                        }
+                    
+                    // Otherwise add it to our list of WorkFragments that we want
+                    // queue up right now
+                    if (is_localPartition) {
+                        is_localReadOnly = (is_localReadOnly && fragmentBuilder.getReadOnly());
+                        this.tmp_localWorkFragmentBuilders.add(fragmentBuilder);
+                        num_localPartition++;
+                    } else if (is_localSite) {
+                        this.tmp_localSiteFragmentBuilders.add(fragmentBuilder);
+                        num_localSite++;
+                    } else {
+                        this.tmp_remoteFragmentBuilders.add(fragmentBuilder);
+                        num_remote++;
+                    }
+                }
+            } // FOR
+            assert(total == (num_remote + num_localSite + num_localPartition + num_skipped)) :
+                String.format("Total:%d / Remote:%d / LocalSite:%d / LocalPartition:%d / Skipped:%d",
+                              total, num_remote, num_localSite, num_localPartition, num_skipped);
+
+            // We have to tell the txn to start the round before we send off the
+            // WorkFragments for execution, since they might start executing locally!
+            if (first) ts.startRound(this.partitionId);
+    
+            // Now request the fragments that aren't local
+            // We want to push these out as soon as possible
+            if (num_remote > 0) {
+                // We only need to serialize the ParameterSets once
+                if (serializedParams == false) {
+                    if (needs_profiling) ts.profiler.startSerialization();
+                    tmp_serializedParams.clear();
+                    for (int i = 0; i < parameters.length; i++) {
+                        if (parameters[i] == null) {
+                            tmp_serializedParams.add(ByteString.EMPTY);
+                        } else {
+                            this.fs.clear();
+                            try {
+                                parameters[i].writeExternal(this.fs);
+                                ByteString bs = ByteString.copyFrom(this.fs.getBBContainer().b);
+                                tmp_serializedParams.add(bs);
+                            } catch (Exception ex) {
+                                String msg = "Failed to serialize ParameterSet " + i + " for " + ts;
+                                throw new ServerFaultException(msg, ex, ts.getTransactionId());
+                            }
+                        }
+                    } // FOR
+                    if (needs_profiling) ts.profiler.stopSerialization();
+                }
+                if (trace.val)
+                    LOG.trace(String.format("%s - Requesting %d WorkFragments to be executed on remote partitions",
+                              ts, num_remote));
+                this.requestWork(ts, tmp_remoteFragmentBuilders, tmp_serializedParams);
+                if (needs_profiling) ts.profiler.markRemoteQuery();
+            }
+            
+            // Then dispatch the task that are needed at the same HStoreSite but 
+            // at a different partition than this one
+            if (num_localSite > 0) {
+                if (trace.val)
+                    LOG.trace(String.format("%s - Executing %d WorkFragments on local site's partitions",
+                              ts, num_localSite));
+                for (WorkFragment.Builder builder : this.tmp_localSiteFragmentBuilders) {
+                    PartitionExecutor other = hstore_site.getPartitionExecutor(builder.getPartitionId());
+                    other.queueWork(ts, builder.build());
+                } // FOR
+                if (needs_profiling) ts.profiler.markRemoteQuery();
+            }
+    
+            // Then execute all of the tasks need to access the partitions at this HStoreSite
+            // We'll dispatch the remote-partition-local-site fragments first because they're going
+            // to need to get queued up by at the other PartitionExecutors
+            if (num_localPartition > 0) {
+                if (trace.val)
+                    LOG.trace(String.format("%s - Executing %d WorkFragments on local partition",
+                              ts, num_localPartition));
+                for (WorkFragment.Builder fragmentBuilder : this.tmp_localWorkFragmentBuilders) {
+                    this.processWorkFragment(ts, fragmentBuilder.build(), parameters);
+                } // FOR
+            }
+        }
+        if (trace.val)
+            LOG.trace(String.format("%s - Dispatched %d WorkFragments " +
+                      "[remoteSite=%d, localSite=%d, localPartition=%d]",
+                      ts, total, num_remote, num_localSite, num_localPartition));
+    }
 
     // ---------------------------------------------------------------
     // COMMIT + ABORT METHODS
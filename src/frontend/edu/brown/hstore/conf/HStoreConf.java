@@ -165,6 +165,16 @@ public final class HStoreConf {
         )
         public boolean preload;
         
+        @ConfigProperty(
+            description="The number of threads that the HStoreSite will use when it starts up to create " +
+                        "the PartitionExecutors and load the catalog into their execution engines. " +
+                        "If this is less than or equal to zero, then the HStoreSite will use one thread per " +
+                        "available CPU core. Setting this to one will initialize each partition one at a time.",
+            defaultInt=-1,
+            experimental=false
+        )
+        public int startup_threads;
+        
         @ConfigProperty(
             description="Enable profiling for the HStoreSite. " +
                         "This data can be retrieved using the @Statistics sysproc.",
@@ -447,6 +457,34 @@ public final class HStoreConf {
         )
         public boolean exec_prefetch_queries;
         
+        @ConfigProperty(
+            description="If this parameter is enabled, then the DBMS will automatically mark the read-only " +
+                        "queries in distributed procedures as prefetchable if all of their input parameters " +
+                        "can be derived from the procedure's input parameters using the ParameterMappingsSet. " +
+                        "Note that the ${site.exec_prefetch_queries} parameter must also be enabled.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean exec_prefetch_queries_auto;
+        
+        @ConfigProperty(
+            description="The minimum fraction of a query's prefetched results that txns have to actually use. " +
+                        "If a query falls below this threshold after it has been prefetched " +
+                        "${site.exec_prefetch_queries_samples} times, then the DBMS will stop prefetching it.",
+            defaultDouble=0.25,
+            experimental=true
+        )
+        public double exec_prefetch_queries_threshold;
+        
+        @ConfigProperty(
+            description="The number of times that a query must be prefetched before the DBMS checks whether " +
+                        "it falls below ${site.exec_prefetch_queries_threshold}. If this is zero or less, " +
+                        "then the DBMS will never stop prefetching a query.",
+            defaultInt=1000,
+            experimental=true
+        )
+        public int exec_prefetch_queries_samples;
+        
         @ConfigProperty(
             description="If this parameter is enabled, then the DBMS will queue up any single-partitioned " +
             		    "queries for later execution if they are marked as deferrable.",
@@ -455,6 +493,17 @@ public final class HStoreConf {
         )
         public boolean exec_deferrable_queries;
         
+        @ConfigProperty(
+            description="If this parameter is enabled, then the PartitionExecutor will only execute a " +
+                        "read-only query once when a transaction invokes it with the same input parameters " +
+                        "more than once, either in the same batch or in a later batch. The stored results " +
+                        "are discarded as soon as the transaction executes a batch that modifies the database. " +
+                        "The VoltTables returned for a batch of read-only queries are read-only.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean exec_reuse_query_results;
+        
         @ConfigProperty(
             description="How often in milliseconds should the HStoreSite check for periodic work. " +
             		    "This work includes checking for dead network connections and processing any " +
@@ -465,6 +514,26 @@ public final class HStoreConf {
             experimental=false
         )
         public int exec_periodic_interval;
+        
+        @ConfigProperty(
+            description="How a PartitionExecutor waits for new messages when its work queue is empty. " +
+                        "BUSY_SPIN gives the lowest wakeup latency but never gives up the CPU. " +
+                        "SPIN_YIELD and SPIN_PARK first spin on the work queue for ${site.exec_wait_spin_count} " +
+                        "iterations and then either yield the CPU or park the thread until a new " +
+                        "message arrives. BLOCKING waits on the work queue itself.",
+            defaultString="BLOCKING",
+            experimental=true,
+            enumOptions="org.voltdb.types.WaitStrategyType"
+        )
+        public String exec_wait_strategy;
+        
+        @ConfigProperty(
+            description="The number of times that a PartitionExecutor will poll its work queue before it " +
+                        "yields or parks when using the SPIN_YIELD or SPIN_PARK wait strategies.",
+            defaultInt=1000,
+            experimental=true
+        )
+        public int exec_wait_spin_count;
 
         // ----------------------------------------------------------------------------
         // Speculative Execution Options
@@ -932,6 +1001,33 @@ public final class HStoreConf {
             experimental=true
         )
         public boolean markov_mispredict_recompute;
+        
+        @ConfigProperty(
+            description="If this parameter is set to true, then the MarkovEstimators will not update " +
+                        "their MarkovGraphs when a transaction finishes. Instead they will queue the path " +
+                        "that the transaction took to a background thread that applies it to the graph " +
+                        "and periodically recomputes the graph's probabilities.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean markov_updater;
+        
+        @ConfigProperty(
+            description="How often (in milliseconds) the background MarkovGraph updater thread will check " +
+                        "whether it needs to recompute the probabilities of the MarkovGraphs.",
+            defaultInt=1000,
+            experimental=true
+        )
+        public int markov_updater_interval;
+        
+        @ConfigProperty(
+            description="The maximum number of transaction paths that can be waiting for the background " +
+                        "MarkovGraph updater thread. Any paths that are queued after this limit is " +
+                        "reached are dropped.",
+            defaultInt=100000,
+            experimental=true
+        )
+        public int markov_updater_queue_limit;
 
         @ConfigProperty(
             description="", // TODO
@@ -966,6 +1062,16 @@ public final class HStoreConf {
         )
         public boolean markov_fast_path;
         
+        @ConfigProperty(
+            description="If this is set to true, the MarkovEstimator will compile each MarkovGraph into " +
+                        "flat arrays and use those to estimate the path of new transactions instead of " +
+                        "walking the graph itself. A graph is compiled again whenever new vertices or edges " +
+                        "are added to it.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean markov_compiled_paths;
+        
         @ConfigProperty(
             description="This enables the ability for the MarkovEstimator to cache the end points of " +
             		    "path segments in a MarkovGraph so that it can just quickly identify the " +
@@ -1038,6 +1144,17 @@ public final class HStoreConf {
         )
         public boolean planner_caching;
         
+        @ConfigProperty(
+            description="The maximum number of results that the PartitionEstimator will cache for each unique " +
+                        "combination of a Statement's PlanFragments, base partition, and partitioning parameter " +
+                        "values. This allows the BatchPlanner to skip hashing the parameters for queries " +
+                        "that are invoked over and over again with the same hot keys. " +
+                        "Set this to zero to disable the cache.",
+            defaultInt=8192,
+            experimental=false
+        )
+        public int planner_estimation_cache_size;
+        
         @ConfigProperty(
             description="The maximum number of execution rounds allowed per batch.",
             defaultInt=10,
@@ -1052,6 +1169,16 @@ public final class HStoreConf {
         )
         public int planner_max_batch_size;
         
+        @ConfigProperty(
+            description="Allow the BatchPlanner to pack PlanFragments that are waiting on different input " +
+                        "dependencies into the same WorkFragment if those inputs are expected to arrive " +
+                        "within one remote round-trip of each other. The expected arrival times are learned " +
+                        "by each partition from the distributed batches that it has already executed.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean planner_cost_packing;
+        
         @ConfigProperty(
             description="Use globally unique Dependency Ids for each unique SQLStmt batch when generating WorkFragments " +
                         "at run time.",
@@ -1171,6 +1298,18 @@ public final class HStoreConf {
         )
         public boolean status_thread_info;
         
+        @ConfigProperty(
+            description="If this is greater than zero, then each HStoreSite will start an HTTP listener " +
+                        "on this port plus its site id. Requesting /stats from this listener returns " +
+                        "a plain-text dump of all of the HStoreSite's internal statistics (the same data " +
+                        "that is available through @Statistics). These are read directly from the site's " +
+                        "profilers and counters without executing a transaction, so it is safe to poll " +
+                        "this frequently while the system is running.",
+            defaultInt=-1,
+            experimental=true
+        )
+        public int status_http_port;
+        
         // ----------------------------------------------------------------------------
         // OBJECT POOLS
         // ----------------------------------------------------------------------------
@@ -1423,6 +1562,32 @@ public final class HStoreConf {
             experimental=true
         )
         public boolean blocking_loader;
+        
+        @ConfigProperty(
+            description="When this parameter is enabled, the benchmark's loaders will split the tuples for " +
+                        "partitioned tables by partition on the client side and send them directly to each partition " +
+                        "as single-partition @LoadPartitionTable transactions. These tuples are loaded without " +
+                        "undo logging. Replicated tables are still loaded with @LoadMultipartitionTable.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean bulk_loader;
+        
+        @ConfigProperty(
+            description="When ${client.bulk_loader} is enabled, this is the number of tuples that the loader " +
+                        "will buffer for each partition before it sends them to the cluster.",
+            defaultInt=10000,
+            experimental=true
+        )
+        public int bulk_loader_batch_size;
+        
+        @ConfigProperty(
+            description="When ${client.bulk_loader} is enabled, this is the max number of load transactions " +
+                        "that each loader can have waiting for a response before it will block.",
+            defaultInt=32,
+            experimental=true
+        )
+        public int bulk_loader_max_outstanding;
 
         @ConfigProperty(
             description="The scaling factor determines how large to make the target benchmark's data set. " +
@@ -0,0 +1,303 @@
+package edu.brown.hstore.estimators.markov;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+
+import org.apache.log4j.Logger;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.StmtParameter;
+
+import edu.brown.catalog.special.CountedStatement;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.mappings.ParameterMapping;
+import edu.brown.mappings.ParameterMappingsSet;
+import edu.brown.markov.MarkovEdge;
+import edu.brown.markov.MarkovGraph;
+import edu.brown.markov.MarkovVertex;
+import edu.brown.utils.PartitionSet;
+
+/**
+ * A read-only copy of the structure of a MarkovGraph that is laid out in flat arrays
+ * so that the CompiledMarkovPathEstimator does not need to go through JUNG's
+ * hash maps for every step of a path estimate. Each vertex is given a dense id and
+ * its out-edges are stored in CSR form (i.e., the edges for vertex v are
+ * at offsets <code>edgeOffsets[v]</code> to <code>edgeOffsets[v+1]</code>).
+ * We also pre-compute, for each vertex, the unique Statements that a txn
+ * could execute next along with the ParameterMappings that we need to figure out
+ * which partitions they will touch.
+ * <B>NOTE:</B> We keep references to the original MarkovEdges instead of copying
+ * their probabilities because those are updated in place whenever the graph is recomputed.
+ * That means that only structural changes to the graph make this stale.
+ * @author pavlo
+ */
+public class CompiledMarkovGraph {
+    private static final Logger LOG = Logger.getLogger(CompiledMarkovGraph.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    /**
+     * A Statement+StatementIndex pair that a txn could execute next, along with
+     * the ProcParameters that we can use to fill in each of its StmtParameters
+     */
+    protected static class CompiledStatement {
+        final Statement catalog_stmt;
+        final int counter;
+        /**
+         * StmtParameter Offset -> ProcParameter Index for each ParameterMapping.
+         * This is null if there are no ParameterMappings for this Statement.
+         */
+        final int procParams[][];
+        /**
+         * StmtParameter Offset -> ProcParameter Array Index for each ParameterMapping.
+         * The value is -1 if the ProcParameter is not an array.
+         */
+        final int arrayIndexes[][];
+
+        CompiledStatement(CountedStatement cstmt, ParameterMappingsSet allMappings) {
+            this.catalog_stmt = cstmt.statement;
+            this.counter = cstmt.counter;
+
+            Map<StmtParameter, SortedSet<ParameterMapping>> stmtMappings = allMappings.get(this.catalog_stmt, this.counter);
+            if (stmtMappings == null) {
+                if (debug.val) LOG.warn("No parameter mappings for " + this.catalog_stmt);
+                this.procParams = null;
+                this.arrayIndexes = null;
+                return;
+            }
+            StmtParameter stmt_params[] = this.catalog_stmt.getParameters().values();
+            this.procParams = new int[stmt_params.length][];
+            this.arrayIndexes = new int[stmt_params.length][];
+            for (int i = 0; i < stmt_params.length; i++) {
+                SortedSet<ParameterMapping> mappings = stmtMappings.get(stmt_params[i]);
+                int num_mappings = (mappings != null ? mappings.size() : 0);
+                this.procParams[i] = new int[num_mappings];
+                this.arrayIndexes[i] = new int[num_mappings];
+                if (num_mappings == 0) continue;
+                int j = 0;
+                for (ParameterMapping m : mappings) {
+                    this.procParams[i][j] = m.getProcParameter().getIndex();
+                    this.arrayIndexes[i][j] = (m.getProcParameter().getIsarray() ? m.getProcParameterIndex() : -1);
+                    j++;
+                } // FOR
+            } // FOR
+        }
+
+        /**
+         * Map the txn's ProcParameters to this Statement's input parameters.
+         * This follows the same rules as MarkovPathEstimator: we take the first mapping
+         * for each StmtParameter that references a value that the txn actually has.
+         * Returns null if we could not map any of the StmtParameters.
+         * @param args
+         * @return
+         */
+        Object[] mapParameters(Object args[]) {
+            if (this.procParams == null) return (null);
+            Object stmt_args[] = new Object[this.procParams.length];
+            boolean stmt_args_set = false;
+            for (int i = 0; i < stmt_args.length; i++) {
+                int proc_params[] = this.procParams[i];
+                for (int j = 0; j < proc_params.length; j++) {
+                    int array_idx = this.arrayIndexes[i][j];
+                    if (array_idx >= 0) {
+                        Object proc_inner_args[] = (Object[])args[proc_params[j]];
+                        if (proc_inner_args.length <= array_idx) continue;
+                        stmt_args[i] = proc_inner_args[array_idx];
+                    } else {
+                        stmt_args[i] = args[proc_params[j]];
+                    }
+                    stmt_args_set = true;
+                    break;
+                } // FOR (Mapping)
+            } // FOR (StmtParameter)
+            return (stmt_args_set ? stmt_args : null);
+        }
+
+        @Override
+        public String toString() {
+            return (this.catalog_stmt.fullName() + "#" + this.counter);
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+    // DATA MEMBERS
+    // ----------------------------------------------------------------------------
+
+    private final MarkovGraph markov;
+    private final int vertexCount;
+    private final int edgeCount;
+    private final Map<MarkovVertex, Integer> vertexIds;
+
+    // Vertex Id -> Vertex Information
+    final MarkovVertex vertices[];
+    final boolean finished[];
+    final PartitionSet partitions[];
+    final PartitionSet pastPartitions[];
+
+    // Out-edges of each vertex (CSR)
+    final int edgeOffsets[];
+    final int edgeTargets[];
+    final MarkovEdge edges[];
+
+    // Edge offsets of each vertex's edges to COMMIT/ABORT (CSR)
+    final int finishOffsets[];
+    final int finishEdges[];
+
+    // The unique Statements that each vertex could execute next (CSR)
+    // For each of them, we have the edge offsets to the successors for that Statement (CSR)
+    final int nextOffsets[];
+    final CompiledStatement nextStatements[];
+    final int nextEdgeOffsets[];
+    final int nextEdges[];
+
+    // ----------------------------------------------------------------------------
+    // INITIALIZATION
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Compile the given MarkovGraph. This does not lock the graph, so if somebody
+     * modifies it while we are in here then JUNG might throw an exception.
+     * @param markov
+     * @param allMappings
+     */
+    public CompiledMarkovGraph(MarkovGraph markov, ParameterMappingsSet allMappings) {
+        this.markov = markov;
+        this.vertexCount = markov.getVertexCount();
+        this.edgeCount = markov.getEdgeCount();
+
+        List<MarkovVertex> all_vertices = new ArrayList<MarkovVertex>(markov.getVertices());
+        int num_vertices = all_vertices.size();
+        this.vertexIds = new HashMap<MarkovVertex, Integer>(num_vertices * 2);
+        this.vertices = new MarkovVertex[num_vertices];
+        this.finished = new boolean[num_vertices];
+        this.partitions = new PartitionSet[num_vertices];
+        this.pastPartitions = new PartitionSet[num_vertices];
+        for (int id = 0; id < num_vertices; id++) {
+            MarkovVertex v = all_vertices.get(id);
+            this.vertexIds.put(v, id);
+            this.vertices[id] = v;
+            this.finished[id] = (v.isCommitVertex() || v.isAbortVertex());
+            this.partitions[id] = v.getPartitions();
+            this.pastPartitions[id] = v.getPastPartitions();
+        } // FOR
+
+        // Edges
+        List<MarkovEdge> all_edges = new ArrayList<MarkovEdge>();
+        List<Integer> finish_edges = new ArrayList<Integer>();
+        List<CompiledStatement> next_stmts = new ArrayList<CompiledStatement>();
+        List<Integer> next_edges = new ArrayList<Integer>();
+        Map<CountedStatement, CompiledStatement> stmt_cache = new HashMap<CountedStatement, CompiledStatement>();
+        Map<CompiledStatement, List<Integer>> v_stmts = new LinkedHashMap<CompiledStatement, List<Integer>>();
+
+        this.edgeOffsets = new int[num_vertices + 1];
+        this.finishOffsets = new int[num_vertices + 1];
+        this.nextOffsets = new int[num_vertices + 1];
+        List<Integer> next_edge_offsets = new ArrayList<Integer>();
+        for (int id = 0; id < num_vertices; id++) {
+            MarkovVertex v = this.vertices[id];
+            this.edgeOffsets[id] = all_edges.size();
+            this.finishOffsets[id] = finish_edges.size();
+            this.nextOffsets[id] = next_stmts.size();
+
+            Collection<MarkovEdge> out_edges = markov.getOutEdges(v);
+            if (out_edges == null) continue;
+            v_stmts.clear();
+            for (MarkovEdge e : out_edges) {
+                MarkovVertex next = markov.getDest(e);
+                int offset = all_edges.size();
+                all_edges.add(e);
+                if (next.isCommitVertex() || next.isAbortVertex()) {
+                    finish_edges.add(offset);
+                } else {
+                    CountedStatement cstmt = next.getCountedStatement();
+                    CompiledStatement compiled = stmt_cache.get(cstmt);
+                    if (compiled == null) {
+                        compiled = new CompiledStatement(cstmt, allMappings);
+                        stmt_cache.put(cstmt, compiled);
+                    }
+                    List<Integer> offsets = v_stmts.get(compiled);
+                    if (offsets == null) {
+                        offsets = new ArrayList<Integer>();
+                        v_stmts.put(compiled, offsets);
+                    }
+                    offsets.add(offset);
+                }
+            } // FOR
+            for (CompiledStatement compiled : v_stmts.keySet()) {
+                next_stmts.add(compiled);
+                next_edge_offsets.add(next_edges.size());
+                next_edges.addAll(v_stmts.get(compiled));
+            } // FOR
+        } // FOR
+        this.edgeOffsets[num_vertices] = all_edges.size();
+        this.finishOffsets[num_vertices] = finish_edges.size();
+        this.nextOffsets[num_vertices] = next_stmts.size();
+        next_edge_offsets.add(next_edges.size());
+
+        this.edges = all_edges.toArray(new MarkovEdge[all_edges.size()]);
+        this.edgeTargets = new int[this.edges.length];
+        for (int i = 0; i < this.edges.length; i++) {
+            this.edgeTargets[i] = this.vertexIds.get(markov.getDest(this.edges[i]));
+        } // FOR
+        this.finishEdges = toArray(finish_edges);
+        this.nextStatements = next_stmts.toArray(new CompiledStatement[next_stmts.size()]);
+        this.nextEdgeOffsets = toArray(next_edge_offsets);
+        this.nextEdges = toArray(next_edges);
+
+        if (debug.val)
+            LOG.debug(String.format("Compiled %s[#%d] [vertices=%d, edges=%d, statements=%d]",
+                      markov, markov.getGraphId(), num_vertices, this.edges.length, stmt_cache.size()));
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int arr[] = new int[list.size()];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = list.get(i).intValue();
+        } // FOR
+        return (arr);
+    }
+
+    // ----------------------------------------------------------------------------
+    // API METHODS
+    // ----------------------------------------------------------------------------
+
+    public MarkovGraph getMarkovGraph() {
+        return (this.markov);
+    }
+
+    /**
+     * Returns true if vertices or edges have been added to the MarkovGraph
+     * since it was compiled
+     * @return
+     */
+    public boolean isStale() {
+        return (this.vertexCount != this.markov.getVertexCount() ||
+                this.edgeCount != this.markov.getEdgeCount());
+    }
+
+    /**
+     * Returns the compiled id for the given vertex.
+     * Returns -1 if the vertex was not in the MarkovGraph when it was compiled.
+     * @param v
+     * @return
+     */
+    public int getVertexId(MarkovVertex v) {
+        Integer id = this.vertexIds.get(v);
+        return (id != null ? id.intValue() : -1);
+    }
+
+    public int getVertexCount() {
+        return (this.vertices.length);
+    }
+    public int getEdgeCount() {
+        return (this.edges.length);
+    }
+}
@@ -0,0 +1,280 @@
+package edu.brown.hstore.estimators.markov;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.markov.MarkovEdge;
+import edu.brown.markov.MarkovVertex;
+import edu.brown.pools.Poolable;
+import edu.brown.pools.TypedPoolableObjectFactory;
+import edu.brown.utils.PartitionEstimator;
+import edu.brown.utils.PartitionSet;
+
+/**
+ * Path Estimator that walks a CompiledMarkovGraph instead of the MarkovGraph itself.
+ * It makes the same choices at each vertex as MarkovPathEstimator with force traversal
+ * enabled, so it will produce the same MarkovEstimate. The only difference is that
+ * it will never create missing vertices.
+ * @see MarkovPathEstimator
+ * @author pavlo
+ */
+public class CompiledMarkovPathEstimator implements Poolable {
+    private static final Logger LOG = Logger.getLogger(CompiledMarkovPathEstimator.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    /**
+     * Special return values for populateNext()
+     */
+    private static final int NO_CANDIDATES = -1;
+    private static final int HALT = -2;
+
+    /**
+     *
+     * @author pavlo
+     */
+    public static class Factory extends TypedPoolableObjectFactory<CompiledMarkovPathEstimator> {
+        private final PartitionEstimator p_estimator;
+
+        public Factory(PartitionEstimator p_estimator) {
+            super(HStoreConf.singleton().site.pool_profiling);
+            this.p_estimator = p_estimator;
+        }
+        @Override
+        public CompiledMarkovPathEstimator makeObjectImpl() throws Exception {
+            return (new CompiledMarkovPathEstimator(this.p_estimator));
+        }
+    };
+
+    // ----------------------------------------------------------------------------
+    // INVOCATION MEMBERS
+    // ----------------------------------------------------------------------------
+
+    private final PartitionEstimator p_estimator;
+    private CompiledMarkovGraph compiled;
+    private MarkovEstimate estimate;
+    private int base_partition;
+    private Object args[];
+
+    /**
+     * @see MarkovPathEstimator.setForceTraversal()
+     */
+    private boolean force_traversal = false;
+
+    // ----------------------------------------------------------------------------
+    // TEMPORARY TRAVERSAL MEMBERS
+    // ----------------------------------------------------------------------------
+
+    private final PartitionSet stmt_partitions = new PartitionSet();
+    private final PartitionSet past_partitions = new PartitionSet();
+
+    /**
+     * The edge offsets of the candidates at the current vertex,
+     * kept in the same order that MarkovPathEstimator's TreeSet would use
+     */
+    private int candidates[] = new int[8];
+    private int num_candidates = 0;
+
+    /**
+     * Vertex Id -> Whether the vertex is already in the path
+     */
+    private boolean visited[] = new boolean[64];
+    private int path[] = new int[64];
+    private int path_length = 0;
+
+    // ----------------------------------------------------------------------------
+    // CONSTRUCTORS
+    // ----------------------------------------------------------------------------
+
+    public CompiledMarkovPathEstimator(PartitionEstimator p_estimator) {
+        this.p_estimator = p_estimator;
+    }
+
+    public CompiledMarkovPathEstimator init(CompiledMarkovGraph compiled, MarkovEstimate estimate, int base_partition, Object args[]) {
+        this.compiled = compiled;
+        this.estimate = estimate;
+        this.base_partition = base_partition;
+        this.args = args;
+        assert(this.base_partition >= 0);
+
+        int num_vertices = compiled.getVertexCount();
+        if (this.visited.length < num_vertices) {
+            this.visited = new boolean[Math.max(num_vertices, this.visited.length * 2)];
+        }
+        return (this);
+    }
+
+    @Override
+    public boolean isInitialized() {
+        return (this.estimate != null);
+    }
+
+    @Override
+    public void finish() {
+        for (int i = 0; i < this.path_length; i++) {
+            this.visited[this.path[i]] = false;
+        } // FOR
+        this.path_length = 0;
+        this.num_candidates = 0;
+        this.compiled = null;
+        this.estimate = null;
+        this.args = null;
+        this.past_partitions.clear();
+        this.stmt_partitions.clear();
+    }
+
+    public void setForceTraversal(boolean flag) {
+        this.force_traversal = flag;
+    }
+
+    // ----------------------------------------------------------------------------
+    // TRAVERSAL METHODS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Estimate the path of the txn starting at the given vertex.
+     * Returns false if the vertex was not in the MarkovGraph when it was compiled,
+     * in which case the MarkovEstimate is not modified.
+     * @param start
+     * @return
+     */
+    public boolean traverse(MarkovVertex start) {
+        int v = this.compiled.getVertexId(start);
+        if (v < 0) {
+            if (debug.val) LOG.debug(String.format("%s is not in the compiled %s", start, this.compiled.getMarkovGraph()));
+            return (false);
+        }
+
+        while (true) {
+            this.past_partitions.addAll(this.compiled.partitions[v]);
+            int next_edge = this.populateNext(v);
+            if (next_edge == HALT) break;
+
+            this.visit(v);
+            if (this.compiled.finished[v]) {
+                if (trace.val) LOG.trace("Reached " + this.compiled.vertices[v] + ". Stopping...");
+                break;
+            }
+            if (next_edge == NO_CANDIDATES) {
+                if (trace.val) LOG.trace("No matching children found. We have to stop...");
+                break;
+            }
+            int next = this.compiled.edgeTargets[next_edge];
+            if (this.visited[next]) break;
+            v = next;
+        } // WHILE
+        MarkovPathEstimator.populateMarkovEstimate(this.estimate, this.estimate.getVertex());
+        return (true);
+    }
+
+    private void visit(int v) {
+        this.visited[v] = true;
+        if (this.path_length == this.path.length) {
+            this.path = Arrays.copyOf(this.path, this.path.length * 2);
+        }
+        this.path[this.path_length++] = v;
+        this.estimate.path.add(this.compiled.vertices[v]);
+    }
+
+    /**
+     * Figure out the edge that the txn will take out of the given vertex and update
+     * the MarkovEstimate's probabilities for the vertex on the other side.
+     * This is the same logic as MarkovPathEstimator.populate_children()
+     * @param v
+     * @return the offset of the selected edge, NO_CANDIDATES, or HALT
+     */
+    private int populateNext(int v) {
+        final CompiledMarkovGraph c = this.compiled;
+        this.num_candidates = 0;
+        if (trace.val) LOG.trace("Current Vertex: " + c.vertices[v]);
+
+        // COMMIT/ABORT are always candidates
+        for (int i = c.finishOffsets[v], end = c.finishOffsets[v+1]; i < end; i++) {
+            this.addCandidate(c.finishEdges[i]);
+        } // FOR
+
+        // For each of the unique Statements that we could execute next, figure out
+        // which partitions the query will go to and then find the successor with the same partitions
+        for (int i = c.nextOffsets[v], end = c.nextOffsets[v+1]; i < end; i++) {
+            CompiledMarkovGraph.CompiledStatement cstmt = c.nextStatements[i];
+            Object stmt_args[] = cstmt.mapParameters(this.args);
+            if (stmt_args == null) {
+                if (trace.val) LOG.trace("No stmt_args for " + cstmt + ". Skipping...");
+                continue;
+            }
+            this.stmt_partitions.clear();
+            try {
+                this.p_estimator.getAllPartitions(this.stmt_partitions, cstmt.catalog_stmt, stmt_args, this.base_partition);
+            } catch (Exception ex) {
+                String msg = "Failed to calculate partitions for " + cstmt.catalog_stmt + " using parameters " + Arrays.toString(stmt_args);
+                LOG.error(msg, ex);
+                return (HALT);
+            }
+            if (this.stmt_partitions.isEmpty()) continue;
+
+            for (int j = c.nextEdgeOffsets[i], j_end = c.nextEdgeOffsets[i+1]; j < j_end; j++) {
+                int e = c.nextEdges[j];
+                int next = c.edgeTargets[e];
+                if (c.partitions[next].equals(this.stmt_partitions) &&
+                    c.pastPartitions[next].equals(this.past_partitions)) {
+                    this.addCandidate(e);
+                    if (trace.val) LOG.trace("Found candidate edge to " + c.vertices[next] + " [" + c.edges[e] + "]");
+                    break;
+                }
+            } // FOR
+        } // FOR
+
+        // If we don't have any candidate edges and the FORCE TRAVERSAL flag is set,
+        // then we'll just grab all of the edges from our current vertex
+        if (this.num_candidates == 0 && this.force_traversal) {
+            if (trace.val) LOG.trace("No candidate edges were found. Force travesal flag is set to true, so taking all");
+            for (int e = c.edgeOffsets[v], end = c.edgeOffsets[v+1]; e < end; e++) {
+                this.addCandidate(e);
+            } // FOR
+        }
+        if (this.num_candidates == 0) return (NO_CANDIDATES);
+
+        // Our confidence is based on the total sum of the probabilities for all of the
+        // edges that we could have taken in comparison to the one that we did take
+        int next_edge = this.candidates[0];
+        double total_probability = 0.0;
+        for (int i = 0; i < this.num_candidates; i++) {
+            total_probability += c.edges[this.candidates[i]].getProbability();
+        } // FOR
+        this.estimate.confidence *= c.edges[next_edge].getProbability() / total_probability;
+        MarkovPathEstimator.populateProbabilities(this.estimate, c.vertices[c.edgeTargets[next_edge]]);
+        if (debug.val)
+            LOG.debug(String.format("SELECTED: %s [candidates=%d, total=%f, confidence=%f]",
+                      c.vertices[c.edgeTargets[next_edge]], this.num_candidates, total_probability, this.estimate.confidence));
+        return (next_edge);
+    }
+
+    /**
+     * Insert the edge into our sorted list of candidates. Just like a TreeSet,
+     * we will ignore it if MarkovEdge.compareTo() says that it is the same as
+     * one that we already have.
+     * @param e
+     */
+    private void addCandidate(int e) {
+        MarkovEdge edge = this.compiled.edges[e];
+        int pos = 0;
+        for ( ; pos < this.num_candidates; pos++) {
+            int cmp = edge.compareTo(this.compiled.edges[this.candidates[pos]]);
+            if (cmp == 0) return;
+            if (cmp < 0) break;
+        } // FOR
+        if (this.num_candidates == this.candidates.length) {
+            this.candidates = Arrays.copyOf(this.candidates, this.candidates.length * 2);
+        }
+        System.arraycopy(this.candidates, pos, this.candidates, pos + 1, this.num_candidates - pos);
+        this.candidates[pos] = e;
+        this.num_candidates++;
+    }
+}
@@ -65,7 +65,7 @@ public class MarkovEstimator extends TransactionEstimator {
      * to recompute the graph.
      * TODO (pavlo): Saurya says: Should this be in MarkovGraph?
      */
-    private static final double RECOMPUTE_TOLERANCE = (double) 0.5;
+    static final double RECOMPUTE_TOLERANCE = (double) 0.5;
 
     // ----------------------------------------------------------------------------
     // DATA MEMBERS
@@ -78,6 +78,14 @@ public class MarkovEstimator extends TransactionEstimator {
     private final TypedObjectPool<MarkovPathEstimator> pathEstimatorsPool;
     private final TypedObjectPool<MarkovEstimatorState> statesPool;
     
+    /**
+     * If compiled path estimation is enabled, then we will walk flattened copies of
+     * the MarkovGraphs instead of the graphs themselves. These get rebuilt whenever
+     * new vertices or edges are added to the original graph. 
+     */
+    private final TypedObjectPool<CompiledMarkovPathEstimator> compiledEstimatorsPool;
+    private final Map<MarkovGraph, CompiledMarkovGraph> compiled_graphs = new ConcurrentHashMap<MarkovGraph, CompiledMarkovGraph>();
+    
     /**
      * We can maintain a cache of the last successful MarkovPathEstimator per MarkovGraph
      */
@@ -90,6 +98,12 @@ public class MarkovEstimator extends TransactionEstimator {
     
     private transient boolean enable_recomputes = false;
     
+    /**
+     * If this is set, then we will hand off the paths of finished txns to this
+     * background thread instead of updating the MarkovGraphs ourselves
+     */
+    private MarkovModelUpdater updater;
+    
     /**
      * If we're using the TransactionEstimator, then we need to convert all 
      * primitive array ProcParameters into object arrays...
@@ -130,6 +144,15 @@ public class MarkovEstimator extends TransactionEstimator {
         TypedPoolableObjectFactory<MarkovPathEstimator> m_factory = new MarkovPathEstimator.Factory(this.catalogContext, this.p_estimator);
         this.pathEstimatorsPool = new TypedObjectPool<MarkovPathEstimator>(m_factory, hstore_conf.site.pool_pathestimators_idle);
         
+        if (hstore_conf.site.markov_compiled_paths) {
+            if (debug.val)
+                LOG.debug("Creating CompiledMarkovPathEstimator Object Pool");
+            TypedPoolableObjectFactory<CompiledMarkovPathEstimator> c_factory = new CompiledMarkovPathEstimator.Factory(this.p_estimator);
+            this.compiledEstimatorsPool = new TypedObjectPool<CompiledMarkovPathEstimator>(c_factory, hstore_conf.site.pool_pathestimators_idle);
+        } else {
+            this.compiledEstimatorsPool = null;
+        }
+        
         if (debug.val)
             LOG.debug("Creating MarkovEstimatorState Object Pool");
         TypedPoolableObjectFactory<MarkovEstimatorState> s_factory = new MarkovEstimatorState.Factory(this.catalogContext);
@@ -150,6 +173,12 @@ public class MarkovEstimator extends TransactionEstimator {
     public void enableGraphRecomputes() {
        this.enable_recomputes = true;
     }
+    public void setMarkovModelUpdater(MarkovModelUpdater updater) {
+        this.updater = updater;
+    }
+    public MarkovModelUpdater getMarkovModelUpdater() {
+        return (this.updater);
+    }
     public MarkovGraphsContainer getMarkovGraphsContainer() {
         return (this.markovs);
     }
@@ -222,11 +251,14 @@ public class MarkovEstimator extends TransactionEstimator {
         
         // Update EstimatorState.prefetch any time we transition to a MarkovVertex where the
         // underlying Statement catalog object was marked as prefetchable
+        // If the PrefetchQueryPlanner is allowed to figure out what to prefetch on its own, 
+        // then we will include all read-only Statements and let it decide which ones it can use
         // Do we want to put this traversal above?
         if (hstore_conf.site.exec_prefetch_queries) {
             for (MarkovVertex vertex : initialEst.getMarkovPath()) {
                 Statement statement = (Statement) vertex.getCatalogItem();
-                if (statement.getPrefetchable()) {
+                if (statement.getPrefetchable() ||
+                        (hstore_conf.site.exec_prefetch_queries_auto && statement.getReadonly())) {
                     if (debug.val)
                         LOG.debug(String.format("%s - Checking whether we can prefetch %s on partitions %s",
                                  TransactionUtil.formatTxnName(catalog_proc, txn_id),
@@ -359,7 +391,9 @@ public class MarkovEstimator extends TransactionEstimator {
         
         // Once the workload shifts we detect it and trigger this method. Recomputes
         // the graph with the data we collected with the current workload method.
-        if (this.enable_recomputes && markov.shouldRecompute(this.txn_count.get(), RECOMPUTE_TOLERANCE)) {
+        // If we have a MarkovModelUpdater, then it will take care of this for us.
+        if (this.enable_recomputes && this.updater == null &&
+                markov.shouldRecompute(this.txn_count.get(), RECOMPUTE_TOLERANCE)) {
             markov.calculateProbabilities();
         }
         
@@ -420,8 +454,13 @@ public class MarkovEstimator extends TransactionEstimator {
             // Update counters
             // We want to update the counters for the entire path right here so that
             // nobody gets incomplete numbers if they recompute probabilities
-            for (MarkovVertex v : state.actual_path) v.incrementInstanceHits();
-            for (MarkovEdge e : state.actual_path_edges) e.incrementInstanceHits();
+            // If we have a MarkovModelUpdater, then we'll let it do this off to the side
+            if (this.updater != null) {
+                this.updater.queue(markov, state.actual_path, state.actual_path_edges);
+            } else {
+                for (MarkovVertex v : state.actual_path) v.incrementInstanceHits();
+                for (MarkovEdge e : state.actual_path_edges) e.incrementInstanceHits();
+            }
             if (this.enable_recomputes) {
                 this.markovTimes.addInstanceTime(next_v, txn_id, state.getExecutionTimeOffset(end_time));
             }
@@ -534,6 +573,35 @@ public class MarkovEstimator extends TransactionEstimator {
             }
         }
         
+        // Walk the compiled version of the MarkovGraph if we have one
+        if (compute_path && this.compiledEstimatorsPool != null) {
+            CompiledMarkovGraph compiled = this.getCompiledMarkovGraph(markov);
+            if (compiled != null) {
+                if (debug.val)
+                    LOG.debug(String.format("%s - Computing new path in compiled %s[#%d]",
+                              TransactionUtil.formatTxnName(catalog_proc, state.getTransactionId()), markov, markov.getGraphId()));
+                CompiledMarkovPathEstimator compiledEstimator = null;
+                try {
+                    compiledEstimator = this.compiledEstimatorsPool.borrowObject();
+                    compiledEstimator.init(compiled, est, state.getBasePartition(), args);
+                    compiledEstimator.setForceTraversal(true);
+                } catch (Throwable ex) {
+                    String txnName = TransactionUtil.formatTxnName(catalog_proc, state.getTransactionId());
+                    String msg = "Failed to intitialize new CompiledMarkovPathEstimator for " + txnName; 
+                    LOG.error(msg, ex);
+                    throw new RuntimeException(msg, ex);
+                }
+                
+                if (this.profiler != null) timestamp = ProfileMeasurement.getTime();
+                try {
+                    compute_path = (compiledEstimator.traverse(currentVertex) == false);
+                } finally {
+                    if (this.profiler != null) this.profiler.compiledest_time.appendTime(timestamp);
+                    this.compiledEstimatorsPool.returnObject(compiledEstimator);
+                }
+            }
+        }
+        
         // Use the MarkovPathEstimator to estimate a new path for this txn
         if (compute_path) {
             if (debug.val)
@@ -573,6 +641,33 @@ public class MarkovEstimator extends TransactionEstimator {
         }
     }
     
+    /**
+     * Return the CompiledMarkovGraph for the given MarkovGraph. If the graph has
+     * changed since we last compiled it, then we will compile it again.
+     * Returns null if the graph was modified while we were compiling it.
+     * @param markov
+     * @return
+     */
+    protected CompiledMarkovGraph getCompiledMarkovGraph(MarkovGraph markov) {
+        CompiledMarkovGraph compiled = this.compiled_graphs.get(markov);
+        if (compiled == null || compiled.isStale()) {
+            long timestamp = -1l;
+            if (this.profiler != null) timestamp = ProfileMeasurement.getTime();
+            try {
+                compiled = new CompiledMarkovGraph(markov, this.catalogContext.paramMappings);
+            } catch (RuntimeException ex) {
+                if (debug.val)
+                    LOG.debug(String.format("Failed to compile %s[#%d]. Will try again later",
+                              markov, markov.getGraphId()), ex);
+                return (null);
+            } finally {
+                if (this.profiler != null) this.profiler.compile_time.appendTime(timestamp);
+            }
+            this.compiled_graphs.put(markov, compiled);
+        }
+        return (compiled);
+    }
+    
     /**
      * Figure out the next vertex that the txn will transition to for the give Statement catalog object
      * and the partitions that it will touch when it is executed. If no vertex exists, we will create
@@ -759,6 +854,14 @@ public class MarkovEstimator extends TransactionEstimator {
             return (pathEstimatorsPool);
         }
         
+        public TypedObjectPool<CompiledMarkovPathEstimator> getCompiledEstimatorsPool() {
+            return (compiledEstimatorsPool);
+        }
+        
+        public CompiledMarkovGraph getCompiledMarkovGraph(MarkovGraph markov) {
+            return (compiled_graphs.get(markov));
+        }
+        
         public MarkovEstimatorProfiler getProfiler() {
             return (profiler);
         }
@@ -0,0 +1,263 @@
+package edu.brown.hstore.estimators.markov;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import edu.brown.hstore.HStoreConstants;
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.HStoreThreadManager;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.interfaces.Shutdownable;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.markov.MarkovEdge;
+import edu.brown.markov.MarkovGraph;
+import edu.brown.markov.MarkovVertex;
+import edu.brown.utils.ExceptionHandlingRunnable;
+import edu.brown.utils.ThreadUtil;
+
+/**
+ * Background thread that keeps the MarkovGraphs up-to-date while the system is running.
+ * The MarkovEstimators queue the path that each transaction took through its MarkovGraph
+ * when it finishes. This thread folds those paths into the graphs' hit counters and then
+ * periodically recomputes the probabilities for any graph whose workload has shifted.
+ * This is the only thread that updates the counters. The PartitionExecutors only
+ * have to wait on it if they need to add a new vertex or edge to a graph while
+ * that graph's probabilities are being recomputed.
+ * @author pavlo
+ */
+public class MarkovModelUpdater extends ExceptionHandlingRunnable implements Shutdownable {
+    private static final Logger LOG = Logger.getLogger(MarkovModelUpdater.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    private static final int LIMIT_PER_ROUND = 10000;
+
+    /**
+     * The path that a single txn took through a MarkovGraph
+     */
+    protected static class PathRecord {
+        final MarkovGraph markov;
+        final MarkovVertex vertices[];
+        final MarkovEdge edges[];
+
+        PathRecord(MarkovGraph markov, List<MarkovVertex> vertices, List<MarkovEdge> edges) {
+            this.markov = markov;
+            this.vertices = vertices.toArray(new MarkovVertex[vertices.size()]);
+            this.edges = edges.toArray(new MarkovEdge[edges.size()]);
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+    // DATA MEMBERS
+    // ----------------------------------------------------------------------------
+
+    private final HStoreSite hstore_site;
+    private final HStoreConf hstore_conf;
+    private boolean shutdown = false;
+
+    /**
+     * Txn paths waiting to be applied to their MarkovGraphs.
+     * We keep track of the size ourselves because ConcurrentLinkedQueue.size() is O(n)
+     */
+    private final ConcurrentLinkedQueue<PathRecord> queue = new ConcurrentLinkedQueue<PathRecord>();
+    private final AtomicInteger queueSize = new AtomicInteger(0);
+    private final AtomicInteger dropped = new AtomicInteger(0);
+
+    /**
+     * MarkovGraph -> Number of txn paths applied since its last recompute
+     * This is only accessed by the updater thread
+     */
+    private final Map<MarkovGraph, int[]> instanceCounts = new HashMap<MarkovGraph, int[]>();
+
+    /**
+     * MarkovGraphs that we were not able to recompute. We stop trying
+     * so that we don't keep logging the same failure every round.
+     * This is only accessed by the updater thread
+     */
+    private final Set<MarkovGraph> failed = new HashSet<MarkovGraph>();
+
+    private long lastRecompute = 0;
+    private long processed = 0;
+    private int recomputes = 0;
+
+    // ----------------------------------------------------------------------------
+    // INITIALIZATION
+    // ----------------------------------------------------------------------------
+
+    public MarkovModelUpdater(HStoreSite hstore_site) {
+        this(hstore_site, hstore_site.getHStoreConf());
+    }
+
+    protected MarkovModelUpdater(HStoreSite hstore_site, HStoreConf hstore_conf) {
+        this.hstore_site = hstore_site;
+        this.hstore_conf = hstore_conf;
+    }
+
+    // ----------------------------------------------------------------------------
+    // EXECUTOR METHODS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Queue the path of a finished txn so that it is applied to its MarkovGraph.
+     * This never blocks. If the queue is full, then the path is dropped.
+     * @param markov
+     * @param vertices
+     * @param edges
+     * @return true if the path was queued
+     */
+    public boolean queue(MarkovGraph markov, List<MarkovVertex> vertices, List<MarkovEdge> edges) {
+        if (this.queueSize.get() >= hstore_conf.site.markov_updater_queue_limit) {
+            this.dropped.incrementAndGet();
+            return (false);
+        }
+        this.queue.offer(new PathRecord(markov, vertices, edges));
+        this.queueSize.incrementAndGet();
+        return (true);
+    }
+
+    // ----------------------------------------------------------------------------
+    // UPDATER THREAD METHODS
+    // ----------------------------------------------------------------------------
+
+    @Override
+    public void runImpl() {
+        if (this.hstore_site != null) {
+            Thread self = Thread.currentThread();
+            self.setName(HStoreThreadManager.getThreadName(this.hstore_site, HStoreConstants.THREAD_NAME_MARKOVUPDATER));
+            this.hstore_site.getThreadManager().registerProcessingThread();
+        }
+        this.lastRecompute = System.currentTimeMillis();
+        while (this.shutdown == false) {
+            int ctr = this.processQueue();
+            long now = System.currentTimeMillis();
+            if (now - this.lastRecompute >= hstore_conf.site.markov_updater_interval) {
+                this.recompute();
+                this.lastRecompute = now;
+            }
+            if (ctr == 0) ThreadUtil.sleep(10);
+        } // WHILE
+    }
+
+    /**
+     * Apply the queued txn paths to their MarkovGraphs
+     * @return the number of paths that were applied
+     */
+    protected int processQueue() {
+        PathRecord record = null;
+        int ctr = 0;
+        while (ctr < LIMIT_PER_ROUND && (record = this.queue.poll()) != null) {
+            this.queueSize.decrementAndGet();
+            for (MarkovVertex v : record.vertices) {
+                v.incrementInstanceHits();
+            } // FOR
+            for (MarkovEdge e : record.edges) {
+                e.incrementInstanceHits();
+            } // FOR
+
+            int count[] = this.instanceCounts.get(record.markov);
+            if (count == null) {
+                // Graphs that were loaded from a file do not know how many txns
+                // they were built from. Every txn goes through the start vertex.
+                if (record.markov.getTransactionCount() == 0) {
+                    record.markov.setTransactionCount((int)record.markov.getStartVertex().getTotalHits());
+                }
+                count = new int[]{ 0 };
+                this.instanceCounts.put(record.markov, count);
+            }
+            count[0]++;
+            ctr++;
+        } // WHILE
+        this.processed += ctr;
+        if (trace.val && ctr > 0)
+            LOG.trace(String.format("Applied %d txn paths to MarkovGraphs [queueSize=%d]", ctr, this.queueSize.get()));
+        return (ctr);
+    }
+
+    /**
+     * Recompute the probabilities for any MarkovGraph that has drifted too far
+     * from the workload that it was built from
+     * @return the number of MarkovGraphs that were recomputed
+     */
+    protected int recompute() {
+        int ctr = 0;
+        for (Entry<MarkovGraph, int[]> e : this.instanceCounts.entrySet()) {
+            MarkovGraph markov = e.getKey();
+            int count = e.getValue()[0];
+            if (count == 0 || this.failed.contains(markov)) continue;
+            if (markov.shouldRecompute(count, MarkovEstimator.RECOMPUTE_TOLERANCE) == false) continue;
+
+            // The executors cannot add new vertices or edges to the graph while
+            // it is being recomputed, so if this fails then something is wrong
+            // with the graph itself and retrying is not going to fix it.
+            try {
+                markov.calculateProbabilities();
+            } catch (RuntimeException ex) {
+                LOG.warn(String.format("Failed to recompute %s[#%d]. " +
+                         "No longer updating its probabilities",
+                         markov, markov.getGraphId()), ex);
+                this.failed.add(markov);
+                e.getValue()[0] = 0;
+                continue;
+            }
+            markov.setTransactionCount(markov.getTransactionCount() + count);
+            e.getValue()[0] = 0;
+            ctr++;
+            if (debug.val)
+                LOG.debug(String.format("Recomputed probabilities for %s[#%d] after %d txns",
+                          markov, markov.getGraphId(), count));
+        } // FOR
+        this.recomputes += ctr;
+        return (ctr);
+    }
+
+    // ----------------------------------------------------------------------------
+    // SHUTDOWN METHODS
+    // ----------------------------------------------------------------------------
+
+    @Override
+    public boolean isShuttingDown() {
+        return (this.shutdown == true);
+    }
+
+    @Override
+    public void shutdown() {
+        this.shutdown = true;
+    }
+
+    @Override
+    public void prepareShutdown(boolean error) {
+        // Nothing to do...
+    }
+
+    // ----------------------------------------------------------------------------
+    // STATS METHODS
+    // ----------------------------------------------------------------------------
+
+    public int getQueueSize() {
+        return (this.queueSize.get());
+    }
+    public int getDroppedCount() {
+        return (this.dropped.get());
+    }
+    public long getProcessedCount() {
+        return (this.processed);
+    }
+    public int getRecomputeCount() {
+        return (this.recomputes);
+    }
+    public int getFailedCount() {
+        return (this.failed.size());
+    }
+}
@@ -84,7 +84,10 @@ public class TransactionInitHandler extends AbstractTransactionHandler<Transacti
             // what it's actually going to touch
             // The init callback obviously only needs to have the
             // partitions that are local at this site.
-            partitions = new PartitionSet(request.getPartitionsList());
+            // We use the interned PartitionSets whenever possible since
+            // we will never modify the txn's predicted partitions.
+            partitions = PartitionSet.valueOf(request.getPartitionsList(),
+                                              this.hstore_site.getCatalogContext().numberOfPartitions);
 
             // If we don't have a handle, we need to make one so that we can stick in the
             // things that we need to keep track of at this site. At this point we know that we're on
@@ -4,14 +4,18 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 import org.voltdb.CatalogContext;
 import org.voltdb.ParameterSet;
 import org.voltdb.SQLStmt;
 import org.voltdb.VoltProcedure;
+import org.voltdb.catalog.PlanFragment;
 import org.voltdb.catalog.ProcParameter;
 import org.voltdb.catalog.Procedure;
 import org.voltdb.catalog.Statement;
@@ -28,6 +32,7 @@ import edu.brown.hstore.BatchPlanner.BatchPlan;
 import edu.brown.hstore.HStoreThreadManager;
 import edu.brown.hstore.Hstoreservice.TransactionInitRequest;
 import edu.brown.hstore.Hstoreservice.WorkFragment;
+import edu.brown.hstore.conf.HStoreConf;
 import edu.brown.hstore.estimators.markov.MarkovEstimatorState;
 import edu.brown.hstore.txns.DependencyTracker;
 import edu.brown.hstore.txns.LocalTransaction;
@@ -56,6 +61,62 @@ public class PrefetchQueryPlanner {
     private final PartitionEstimator p_estimator;
     private final int[] partitionSiteXref;
     private final CatalogContext catalogContext;
+    private final HStoreConf hstore_conf;
+    
+    /**
+     * How often the prefetched results for a Statement were actually used by the txns
+     */
+    public class PrefetchCounter {
+        private final Statement catalog_stmt;
+        private final AtomicInteger prefetched = new AtomicInteger(0);
+        private final AtomicInteger used = new AtomicInteger(0);
+        private volatile boolean disabled = false;
+        
+        private PrefetchCounter(Statement catalog_stmt) {
+            this.catalog_stmt = catalog_stmt;
+        }
+        public int getPrefetchedCount() {
+            return (this.prefetched.get());
+        }
+        public int getUsedCount() {
+            return (this.used.get());
+        }
+        public boolean isDisabled() {
+            return (this.disabled);
+        }
+        @Override
+        public String toString() {
+            return String.format("%s{prefetched=%d, used=%d, disabled=%s}",
+                                 this.catalog_stmt.fullName(), this.prefetched.get(),
+                                 this.used.get(), this.disabled);
+        }
+    }
+    
+    /**
+     * Statement -> PrefetchCounter
+     * This map is not modified after the constructor is finished.
+     */
+    private final Map<Statement, PrefetchCounter> stmtCounters = new HashMap<Statement, PrefetchCounter>();
+    
+    /**
+     * PlanFragmentId -> PrefetchCounter
+     * This map is not modified after the constructor is finished.
+     */
+    private final Map<Integer, PrefetchCounter> fragmentCounters = new HashMap<Integer, PrefetchCounter>();
+    
+    /**
+     * The Statements that we figured out on our own that we can prefetch.
+     * We keep these here instead of marking them in the catalog because
+     * the catalog is shared by everything else in the HStoreSite.
+     * This set is not modified after the constructor is finished.
+     */
+    private final Set<Statement> autoPrefetchStmts = new HashSet<Statement>();
+    
+    /**
+     * The Procedures that have at least one Statement that we can prefetch
+     * This set is not modified after the constructor is finished.
+     */
+    private final Set<Procedure> prefetchProcs = new HashSet<Procedure>();
     
     // ThreadLocal Stuff
     private final ThreadLocal<Map<Integer, BatchPlanner>> planners = new ThreadLocal<Map<Integer,BatchPlanner>>() {
@@ -77,7 +138,18 @@ public class PrefetchQueryPlanner {
     public PrefetchQueryPlanner(CatalogContext catalogContext, PartitionEstimator p_estimator) {
         this.catalogContext = catalogContext;
         this.p_estimator = p_estimator;
+        this.hstore_conf = HStoreConf.singleton();
 
+        // If we're allowed to, figure out what Statements we can prefetch on our own
+        // without needing somebody to mark them in the catalog
+        if (hstore_conf.site.exec_prefetch_queries_auto) {
+            if (this.catalogContext.paramMappings == null) {
+                LOG.warn("Unable to automatically identify prefetchable queries without a ParameterMappingSet");
+            } else {
+                this.markPrefetchableStatements();
+            }
+        }
+        
         // Initialize a BatchPlanner for each Procedure if it has the
         // prefetch flag set to true. We generate an array of the SQLStmt
         // handles that we will want to prefetch for each Procedure
@@ -85,25 +157,43 @@ public class PrefetchQueryPlanner {
         int stmt_ctr = 0;
         int proc_ctr = 0;
         for (Procedure catalog_proc : this.catalogContext.procedures.values()) {
-            if (catalog_proc.getPrefetchable() == false) continue;
+            boolean has_prefetch = catalog_proc.getPrefetchable();
+            for (Statement catalog_stmt : catalog_proc.getStatements().values()) {
+                if (has_prefetch) break;
+                has_prefetch = this.autoPrefetchStmts.contains(catalog_stmt);
+            } // FOR
+            if (has_prefetch == false) continue;
             
             prefetchStmts.clear();
             for (Statement catalog_stmt : catalog_proc.getStatements().values()) {
-                if (catalog_stmt.getPrefetchable() == false) continue;
+                if (catalog_stmt.getPrefetchable() == false &&
+                    this.autoPrefetchStmts.contains(catalog_stmt) == false) continue;
                 // Make sure that all of this Statement's input parameters
                 // are mapped to one of the Procedure's ProcParameter
                 boolean valid = true;
                 for (StmtParameter catalog_param : catalog_stmt.getParameters().values()) {
-                    if (catalog_param.getProcparameter() == null) {
+                    if (catalog_param.getProcparameter() == null &&
+                        this.hasParameterMapping(catalog_stmt, 0, catalog_param) == false) {
                         LOG.warn(String.format("Unable to mark %s as prefetchable because %s is not " +
                         		 "mapped to a ProcParameter",
                                  catalog_stmt.fullName(), catalog_param.fullName()));
                         valid = false;
                     }
                 } // FOR
-                if (valid) prefetchStmts.add(new SQLStmt(catalog_stmt));
+                if (valid) {
+                    prefetchStmts.add(new SQLStmt(catalog_stmt));
+                    PrefetchCounter counter = new PrefetchCounter(catalog_stmt);
+                    this.stmtCounters.put(catalog_stmt, counter);
+                    for (PlanFragment catalog_frag : catalog_stmt.getFragments().values()) {
+                        this.fragmentCounters.put(catalog_frag.getId(), counter);
+                    } // FOR
+                    for (PlanFragment catalog_frag : catalog_stmt.getMs_fragments().values()) {
+                        this.fragmentCounters.put(catalog_frag.getId(), counter);
+                    } // FOR
+                }
             } // FOR
             if (prefetchStmts.isEmpty() == false) {
+                this.prefetchProcs.add(catalog_proc);
                 stmt_ctr += prefetchStmts.size();
                 proc_ctr++;
             } else {
@@ -122,6 +212,131 @@ public class PrefetchQueryPlanner {
         }
     }
 
+    /**
+     * Mark every read-only Statement in the distributed Procedures as prefetchable
+     * if we can derive all of their input parameters from the Procedure's input parameters.
+     * This does not change the catalog objects.
+     * It is up to the TransactionEstimator to decide whether a txn will actually
+     * execute these Statements on a remote partition.
+     */
+    private void markPrefetchableStatements() {
+        int stmt_ctr = 0;
+        for (Procedure catalog_proc : this.catalogContext.procedures.values()) {
+            if (catalog_proc.getSystemproc() || catalog_proc.getSinglepartition()) continue;
+            
+            for (Statement catalog_stmt : catalog_proc.getStatements().values()) {
+                if (catalog_stmt.getPrefetchable() || catalog_stmt.getReadonly() == false) continue;
+                
+                boolean valid = true;
+                for (StmtParameter catalog_param : catalog_stmt.getParameters().values()) {
+                    if (this.hasParameterMapping(catalog_stmt, 0, catalog_param) == false) {
+                        valid = false;
+                        break;
+                    }
+                } // FOR
+                if (valid) {
+                    if (debug.val)
+                        LOG.debug("Automatically marking " + catalog_stmt.fullName() + " as prefetchable");
+                    this.autoPrefetchStmts.add(catalog_stmt);
+                    stmt_ctr++;
+                }
+            } // FOR (statement)
+        } // FOR (procedure)
+        if (debug.val)
+            LOG.debug(String.format("Automatically marked %d Statements as prefetchable", stmt_ctr));
+    }
+    
+    /**
+     * Returns true if we know how to get the value of the given StmtParameter
+     * from the Procedure's input parameters for the Statement invocation
+     * @param catalog_stmt
+     * @param stmtCounter
+     * @param catalog_param
+     * @return
+     */
+    private boolean hasParameterMapping(Statement catalog_stmt, int stmtCounter, StmtParameter catalog_param) {
+        if (this.catalogContext.paramMappings == null) return (false);
+        Collection<ParameterMapping> pmSets = this.catalogContext.paramMappings.get(catalog_stmt,
+                                                                                    stmtCounter,
+                                                                                    catalog_param);
+        return (pmSets != null && pmSets.isEmpty() == false);
+    }
+    
+    /**
+     * Returns true if we can still prefetch the given Statement invocation
+     * @param counted_stmt
+     * @return
+     */
+    private boolean canPrefetch(CountedStatement counted_stmt) {
+        PrefetchCounter counter = this.stmtCounters.get(counted_stmt.statement);
+        if (counter == null || counter.disabled) return (false);
+        for (StmtParameter catalog_param : counted_stmt.statement.getParameters().values()) {
+            if (this.hasParameterMapping(counted_stmt.statement, counted_stmt.counter, catalog_param) == false) {
+                return (false);
+            }
+        } // FOR
+        return (true);
+    }
+    
+    /**
+     * Update the counters for the Statement that the given prefetched PlanFragment belongs to.
+     * This should be invoked for every prefetched PlanFragment when its txn finishes.
+     * If it turns out that txns are not using enough of the Statement's prefetched results,
+     * then we will stop prefetching it.
+     * @param fragmentId
+     * @param used Whether the txn actually used the prefetched result
+     */
+    public void markPrefetchResult(int fragmentId, boolean used) {
+        PrefetchCounter counter = this.fragmentCounters.get(fragmentId);
+        if (counter == null) return;
+        
+        int prefetched = counter.prefetched.incrementAndGet();
+        if (used) counter.used.incrementAndGet();
+        
+        // A non-positive number of samples means that we never disable anything
+        int samples = hstore_conf.site.exec_prefetch_queries_samples;
+        if (samples <= 0) return;
+        if (counter.disabled == false && (prefetched % samples) == 0) {
+            double ratio = counter.used.get() / (double)prefetched;
+            if (ratio < hstore_conf.site.exec_prefetch_queries_threshold) {
+                LOG.warn(String.format("Disabling prefetching for %s because txns only used %.1f%% " +
+                         "of its %d prefetched results",
+                         counter.catalog_stmt.fullName(), ratio * 100, prefetched));
+                counter.disabled = true;
+            }
+        }
+    }
+    
+    /**
+     * Returns the PrefetchCounter for the given Statement.
+     * Returns null if this planner will never prefetch it.
+     * @param catalog_stmt
+     * @return
+     */
+    public PrefetchCounter getPrefetchCounter(Statement catalog_stmt) {
+        return (this.stmtCounters.get(catalog_stmt));
+    }
+    
+    /**
+     * Returns true if this planner could prefetch queries for the given Procedure,
+     * either because they were marked in the catalog or because we figured it out on our own.
+     * @param catalog_proc
+     * @return
+     */
+    public boolean isPrefetchable(Procedure catalog_proc) {
+        return (this.prefetchProcs.contains(catalog_proc));
+    }
+    
+    /**
+     * Returns true if this planner could prefetch the given Statement,
+     * either because it was marked in the catalog or because we figured it out on our own.
+     * @param catalog_stmt
+     * @return
+     */
+    public boolean isPrefetchable(Statement catalog_stmt) {
+        return (this.stmtCounters.containsKey(catalog_stmt));
+    }
+
     /**
      * Initialize a new cached BatchPlanner that is specific to the prefetch batch. 
      * @param catalog_proc
@@ -163,6 +378,21 @@ public class PrefetchQueryPlanner {
         }
         // Or without queries that can be prefetched.
         List<CountedStatement> prefetchable = ts.getEstimatorState().getPrefetchableStatements(); 
+        
+        // Remove any queries that we are not allowed to prefetch anymore
+        for (int i = 0, cnt = prefetchable.size(); i < cnt; i++) {
+            if (this.canPrefetch(prefetchable.get(i)) == false) {
+                List<CountedStatement> valid = new ArrayList<CountedStatement>();
+                for (CountedStatement counted_stmt : prefetchable) {
+                    if (this.canPrefetch(counted_stmt)) valid.add(counted_stmt);
+                } // FOR
+                if (debug.val)
+                    LOG.debug(String.format("%s - Skipping %d out of %d prefetchable queries",
+                              ts, prefetchable.size() - valid.size(), prefetchable.size()));
+                prefetchable = valid;
+                break;
+            }
+        } // FOR
         if (prefetchable.isEmpty()) {
             if (debug.val)
                 LOG.warn(ts + " - No prefetchable queries were found in the transaction's initial path estimate. " +
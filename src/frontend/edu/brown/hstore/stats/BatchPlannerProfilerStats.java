@@ -66,6 +66,8 @@ public class BatchPlannerProfilerStats extends StatsSource {
         columns.add(new VoltTable.ColumnInfo("NUM_PLANNERS", VoltType.BIGINT));
         columns.add(new VoltTable.ColumnInfo("TRANSACTIONS", VoltType.BIGINT));
         columns.add(new VoltTable.ColumnInfo("CACHED", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("PARTEST_CACHED", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("PARTEST_UNCACHED", VoltType.BIGINT));
         
         BatchPlannerProfiler profiler = new BatchPlannerProfiler();
         for (ProfileMeasurement pm : profiler.getProfileMeasurements()) {
@@ -99,6 +101,8 @@ public class BatchPlannerProfilerStats extends StatsSource {
             
             total.transactions.addAndGet(profiler.transactions.get());
             total.cached.addAndGet(profiler.cached.get());
+            total.partest_cached.addAndGet(profiler.partest_cached.get());
+            total.partest_uncached.addAndGet(profiler.partest_uncached.get());
             
             if (debug.val)
                 LOG.debug(String.format("%s/%s -> Txns:%d Cached:%d",
@@ -114,6 +118,8 @@ public class BatchPlannerProfilerStats extends StatsSource {
         rowValues[offset++] = planners.size();
         rowValues[offset++] = total.transactions.get();
         rowValues[offset++] = total.cached.get();
+        rowValues[offset++] = total.partest_cached.get();
+        rowValues[offset++] = total.partest_uncached.get();
         for (ProfileMeasurement pm : totalPMs) {
             rowValues[offset++] = pm.getTotalThinkTime();
             rowValues[offset++] = pm.getInvocations();
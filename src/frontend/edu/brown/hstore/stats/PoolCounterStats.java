@@ -47,6 +47,8 @@ public class PoolCounterStats extends StatsSource {
         columns.add(new VoltTable.ColumnInfo("CREATED", VoltType.INTEGER));
         columns.add(new VoltTable.ColumnInfo("DESTROYED", VoltType.INTEGER));
         columns.add(new VoltTable.ColumnInfo("PASSIVATED", VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo("BORROWED", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("RETURNED", VoltType.BIGINT));
     }
 
     @Override
@@ -58,6 +60,8 @@ public class PoolCounterStats extends StatsSource {
         int total_created = 0;
         int total_passivated = 0;
         int total_destroyed = 0;
+        long total_borrowed = 0;
+        long total_returned = 0;
         
         if (this.globalPools.containsKey(poolName)) {
             isGlobal = true;
@@ -69,6 +73,8 @@ public class PoolCounterStats extends StatsSource {
             total_created = factory.getCreatedCount();
             total_passivated = factory.getPassivatedCount();
             total_destroyed = factory.getDestroyedCount();
+            total_borrowed = pool.getBorrowedCount();
+            total_returned = pool.getReturnedCount();
         }
         else if (this.partitionPools.containsKey(poolName)) {
             isGlobal = false;
@@ -82,6 +88,8 @@ public class PoolCounterStats extends StatsSource {
                 total_created += factory.getCreatedCount();
                 total_passivated += factory.getPassivatedCount();
                 total_destroyed += factory.getDestroyedCount();
+                total_borrowed += pools[i].getBorrowedCount();
+                total_returned += pools[i].getReturnedCount();
             } // FOR
         }
         else {
@@ -95,6 +103,8 @@ public class PoolCounterStats extends StatsSource {
         rowValues[columnNameToIndex.get("CREATED")] = total_created;
         rowValues[columnNameToIndex.get("DESTROYED")] = total_destroyed;
         rowValues[columnNameToIndex.get("PASSIVATED")] = total_passivated;
+        rowValues[columnNameToIndex.get("BORROWED")] = total_borrowed;
+        rowValues[columnNameToIndex.get("RETURNED")] = total_returned;
         super.updateStatsRow(rowKey, rowValues);
     }
 }
@@ -81,6 +81,9 @@ public class SpecExecProfilerStats extends StatsSource {
         columns.add(new VoltTable.ColumnInfo("SUCCESS_RATE", VoltType.FLOAT));
         columns.add(new VoltTable.ColumnInfo("INTERRUPT_CNT", VoltType.BIGINT));
         columns.add(new VoltTable.ColumnInfo("INTERRUPT_RATE", VoltType.FLOAT));
+        columns.add(new VoltTable.ColumnInfo("PREFETCH_HIT_CNT", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("PREFETCH_WASTED_CNT", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("PREFETCH_HIT_RATE", VoltType.FLOAT));
         columns.add(new VoltTable.ColumnInfo("QUEUE_SIZE_AVG", VoltType.BIGINT));
         columns.add(new VoltTable.ColumnInfo("QUEUE_SIZE_STDEV", VoltType.FLOAT));
         columns.add(new VoltTable.ColumnInfo("COMPARISONS_AVG", VoltType.BIGINT));
@@ -120,6 +123,10 @@ public class SpecExecProfilerStats extends StatsSource {
         rowValues[offset++] = profiler.success / total;
         rowValues[offset++] = profiler.interrupts;
         rowValues[offset++] = profiler.interrupts / total;
+        rowValues[offset++] = profiler.prefetch_hits;
+        rowValues[offset++] = profiler.prefetch_wasted;
+        long prefetch_total = profiler.prefetch_hits + profiler.prefetch_wasted;
+        rowValues[offset++] = (prefetch_total > 0 ? profiler.prefetch_hits / (double)prefetch_total : 0d);
         rowValues[offset++] = MathUtil.weightedMean(profiler.queue_size);
         rowValues[offset++] = HistogramUtil.stdev(profiler.queue_size);
         rowValues[offset++] = MathUtil.weightedMean(profiler.num_comparisons);
@@ -35,13 +35,9 @@ public class TransactionCounterStats extends StatsSource {
         public ProcedureRow(Procedure catalog_proc) {
             for (TransactionCounter tc : TransactionCounter.values()) {
                 if (COUNTER_EXCLUDE.contains(tc)) continue;
-                Long cnt = tc.get(catalog_proc);
-                if (cnt != null) {
-                    this.data.put(tc, cnt);
-                    this.has_values = true;
-                } else {
-                    this.data.put(tc, 0l);
-                }
+                long cnt = tc.get(catalog_proc);
+                this.data.put(tc, cnt);
+                if (cnt != 0) this.has_values = true;
             } // FOR
         }
     }
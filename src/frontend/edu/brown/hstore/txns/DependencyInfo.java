@@ -83,6 +83,12 @@ public class DependencyInfo implements Poolable {
      */
     private boolean prefetch = false;
     
+    /**
+     * The time (ns) that the last result that we were waiting for arrived.
+     * This will be zero if we are still waiting for results. 
+     */
+    private long resultTime = 0;
+    
     // ----------------------------------------------------------------------------
     // INITIALIZATION
     // ----------------------------------------------------------------------------
@@ -124,6 +130,7 @@ public class DependencyInfo implements Poolable {
         this.blockedTasksReleased = false;
         this.internal = false;
         this.prefetch = false;
+        this.resultTime = 0;
         
         this.results.clear();
         this.resultPartitions.clear();
@@ -165,6 +172,13 @@ public class DependencyInfo implements Poolable {
     public int getDependencyId() {
         return (this.dependency_id);
     }
+    /**
+     * Return the time (ns) that all of the results for this DependencyInfo
+     * arrived. Returns zero if we are still waiting for results.
+     */
+    public long getResultTime() {
+        return (this.resultTime);
+    }
     
     protected boolean inSameTxnRound(Long txn_id, int round) {
         return (txn_id.equals(this.txn_id) && this.round == round);
@@ -273,7 +287,11 @@ public class DependencyInfo implements Poolable {
                           this.txn_id, this.debug());
         this.results.add(result);
         this.resultPartitions.add(partition);
-        return (this.expectedPartitions.size() == this.resultPartitions.size()); 
+        if (this.expectedPartitions.size() == this.resultPartitions.size()) {
+            this.resultTime = System.nanoTime();
+            return (true);
+        }
+        return (false);
     }
     
     /**
@@ -25,17 +25,22 @@ import org.voltdb.VoltTableNonBlocking;
 import org.voltdb.catalog.CatalogType;
 import org.voltdb.catalog.PlanFragment;
 import org.voltdb.exceptions.ServerFaultException;
+import org.voltdb.types.SpeculationType;
 import org.voltdb.utils.Pair;
 
 import edu.brown.catalog.CatalogUtil;
 import edu.brown.hstore.HStoreConstants;
+import edu.brown.hstore.HStoreCoordinator;
+import edu.brown.hstore.HStoreSite;
 import edu.brown.hstore.Hstoreservice.WorkFragment;
 import edu.brown.hstore.PartitionExecutor;
 import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.hstore.specexec.PrefetchQueryPlanner;
 import edu.brown.hstore.txns.AbstractTransaction.RoundState;
 import edu.brown.interfaces.DebugContext;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.profilers.SpecExecProfiler;
 import edu.brown.utils.StringUtil;
 
 /**
@@ -260,6 +265,50 @@ public class DependencyTracker {
         if (trace.val && state != null) {
             LOG.trace(String.format("Removed %s from %s", ts, this));
         }
+        if (state != null && state.prefetch_ctr > 0) {
+            this.updatePrefetchCounters(ts, state);
+        }
+    }
+    
+    /**
+     * Figure out which of the txn's prefetched results it actually used and which
+     * ones were a waste. The PrefetchQueryPlanner needs to know about this so that it can
+     * stop prefetching queries whose results are never used.
+     * @param ts
+     * @param state
+     */
+    private void updatePrefetchCounters(LocalTransaction ts, TransactionState state) {
+        PrefetchQueryPlanner prefetchPlanner = null;
+        HStoreSite hstore_site = this.executor.getHStoreSite();
+        HStoreCoordinator hstore_coordinator = (hstore_site != null ? hstore_site.getCoordinator() : null);
+        if (hstore_coordinator != null) {
+            prefetchPlanner = hstore_coordinator.getPrefetchQueryPlanner();
+        }
+        
+        int hits = 0;
+        int wasted = 0;
+        for (Map<Integer, DependencyInfo> stmt_deps : state.prefetch_dependencies.values()) {
+            for (Entry<Integer, DependencyInfo> e : stmt_deps.entrySet()) {
+                // If the DependencyInfo is still in prefetch mode, then the 
+                // txn never asked for the result of the query
+                boolean used = (e.getValue().isPrefetch() == false);
+                if (used) hits++;
+                else wasted++;
+                if (prefetchPlanner != null) prefetchPlanner.markPrefetchResult(e.getKey().intValue(), used);
+            } // FOR
+        } // FOR
+        if (debug.val)
+            LOG.debug(String.format("%s - Used %d out of %d prefetched results",
+                      ts, hits, hits + wasted));
+        
+        if (this.executor.getHStoreConf().site.specexec_profiling) {
+            SpecExecProfiler profiler = this.executor.getDebugContext().getSpecExecScheduler()
+                                                     .getDebugContext().getProfiler(SpeculationType.SP1_LOCAL);
+            if (profiler != null) {
+                profiler.prefetch_hits += hits;
+                profiler.prefetch_wasted += wasted;
+            }
+        }
     }
     
     // ----------------------------------------------------------------------------
@@ -505,11 +554,28 @@ public class DependencyTracker {
             Collection<WorkFragment.Builder> to_unblock = dinfo.getAndReleaseBlockedWorkFragments();
             assert(to_unblock != null);
             assert(to_unblock.isEmpty() == false);
+            
+            // The BatchPlanner may have packed PlanFragments with different input
+            // dependencies into the same WorkFragment. We can't release those until
+            // all of their inputs have arrived. They will get released by
+            // whichever DependencyInfo gets its results last.
+            for (WorkFragment.Builder fragment : to_unblock) {
+                if (this.hasAllInputs(state, fragment) == false) {
+                    Collection<WorkFragment.Builder> ready = new ArrayList<WorkFragment.Builder>();
+                    for (WorkFragment.Builder f : to_unblock) {
+                        if (this.hasAllInputs(state, f)) ready.add(f);
+                    } // FOR
+                    to_unblock = ready;
+                    break;
+                }
+            } // FOR
             if (debug.val)
                 LOG.debug(String.format("%s - Got %d WorkFragments to unblock that were waiting for DependencyId %d",
                            ts, to_unblock.size(), dinfo.getDependencyId()));
-            state.blocked_tasks.removeAll(to_unblock);
-            state.unblocked_tasks.addLast(to_unblock);
+            if (to_unblock.isEmpty() == false) {
+                state.blocked_tasks.removeAll(to_unblock);
+                state.unblocked_tasks.addLast(to_unblock);
+            }
         }
         else if (debug.val) {
             LOG.debug(String.format("%s - No WorkFragments to unblock after storing result for DependencyId %d " +
@@ -539,6 +605,22 @@ public class DependencyTracker {
                                  state.unblocked_tasks.isEmpty() == false);
     }
     
+    /**
+     * Returns true if all of the input dependencies for the given WorkFragment have arrived.
+     * @param state
+     * @param fragment
+     * @return
+     */
+    private boolean hasAllInputs(final TransactionState state, final WorkFragment.Builder fragment) {
+        for (int i = 0, cnt = fragment.getInputDepIdCount(); i < cnt; i++) {
+            int input_dep_id = fragment.getInputDepId(i);
+            if (input_dep_id == HStoreConstants.NULL_DEPENDENCY_ID) continue;
+            DependencyInfo dinfo = state.getDependencyInfo(input_dep_id);
+            if (dinfo != null && dinfo.hasAllResults() == false) return (false);
+        } // FOR
+        return (true);
+    }
+    
     // ----------------------------------------------------------------------------
     // DEPENDENCY TRACKING METHODS
     // ----------------------------------------------------------------------------
@@ -963,6 +1045,20 @@ public class DependencyTracker {
     }
     
     
+    /**
+     * Return the time (ns) that all of the results for the given output dependency
+     * arrived for the txn's current SQLStmt batch. Returns zero if they haven't
+     * all arrived yet.
+     * @param ts
+     * @param dependencyId
+     * @return
+     */
+    public long getDependencyResultTime(LocalTransaction ts, int dependencyId) {
+        final TransactionState state = this.getState(ts);
+        DependencyInfo dinfo = state.getDependencyInfo(dependencyId);
+        return (dinfo != null ? dinfo.getResultTime() : 0);
+    }
+    
     public BlockingDeque<Collection<WorkFragment.Builder>> getUnblockedWorkFragmentsQueue(LocalTransaction ts) {
         final TransactionState state = this.getState(ts);
         return (state.unblocked_tasks);
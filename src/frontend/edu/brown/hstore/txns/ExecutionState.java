@@ -1,6 +1,7 @@
 package edu.brown.hstore.txns;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -13,7 +14,9 @@ import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.log4j.Logger;
+import org.voltdb.ParameterSet;
 import org.voltdb.VoltTable;
+import org.voltdb.catalog.Statement;
 import org.voltdb.utils.Pair;
 
 import edu.brown.hstore.Hstoreservice.WorkFragment;
@@ -48,6 +51,50 @@ public class ExecutionState implements Poolable {
      */
     protected final PartitionExecutor executor;
     
+    // ----------------------------------------------------------------------------
+    // QUERY RESULT REUSE
+    // ----------------------------------------------------------------------------
+    
+    /**
+     * The key for a read-only query that the txn has already executed.
+     * We make a copy of the parameter array because the ParameterSets that
+     * VoltProcedure hands us are reused for the next batch.
+     */
+    private static final class QueryResultKey {
+        private final Statement catalog_stmt;
+        private final Object params[];
+        private final int hashCode;
+        
+        private QueryResultKey(Statement catalog_stmt, ParameterSet params) {
+            this.catalog_stmt = catalog_stmt;
+            this.params = params.toArray().clone();
+            this.hashCode = (catalog_stmt.hashCode() * 31) + Arrays.deepHashCode(this.params);
+        }
+        @Override
+        public int hashCode() {
+            return (this.hashCode);
+        }
+        @Override
+        public boolean equals(Object obj) {
+            if ((obj instanceof QueryResultKey) == false) return (false);
+            QueryResultKey other = (QueryResultKey)obj;
+            return (this.catalog_stmt.equals(other.catalog_stmt) &&
+                    Arrays.deepEquals(this.params, other.params));
+        }
+    } // CLASS
+    
+    /**
+     * The results of the read-only queries that this txn has executed since
+     * the last time that it executed a batch that modified the database.
+     */
+    private final Map<QueryResultKey, VoltTable> queryResults = new HashMap<QueryResultKey, VoltTable>();
+    
+    /**
+     * The time (ns) that the txn's current distributed SQLStmt batch was dispatched.
+     * This is zero if we are not tracking the batch's costs.
+     */
+    private long batchDispatchTime = 0;
+    
     // ----------------------------------------------------------------------------
     // TEMPORARY DATA COLLECTIONS
     // ----------------------------------------------------------------------------
@@ -86,5 +133,53 @@ public class ExecutionState implements Poolable {
     @Override
     public void finish() {
         this.procParameterSets.reset();
+        this.queryResults.clear();
+        this.batchDispatchTime = 0;
+    }
+    
+    public void setBatchDispatchTime(long timestamp) {
+        this.batchDispatchTime = timestamp;
+    }
+    public long getBatchDispatchTime() {
+        return (this.batchDispatchTime);
+    }
+    
+    // ----------------------------------------------------------------------------
+    // QUERY RESULTS
+    // ----------------------------------------------------------------------------
+    
+    /**
+     * Return the result of a previous invocation of the given read-only query
+     * with the same parameters by this txn. Returns null if there is no such result.
+     * The VoltTable is shared, so the caller must copy it before handing it out.
+     * @param catalog_stmt
+     * @param params
+     * @return
+     */
+    public VoltTable getQueryResult(Statement catalog_stmt, ParameterSet params) {
+        if (this.queryResults.isEmpty()) return (null);
+        return (this.queryResults.get(new QueryResultKey(catalog_stmt, params)));
+    }
+    
+    /**
+     * Store the result of a read-only query so that it can be reused if
+     * the txn invokes it again with the same parameters.
+     * @param catalog_stmt
+     * @param params
+     * @param result
+     */
+    public void addQueryResult(Statement catalog_stmt, ParameterSet params, VoltTable result) {
+        assert(catalog_stmt.getReadonly()) : "Trying to cache result for non-read-only " + catalog_stmt.fullName();
+        this.queryResults.put(new QueryResultKey(catalog_stmt, params), result);
+    }
+    
+    /**
+     * Discard all of the stored query results. This must be called
+     * before the txn executes any query that modifies the database.
+     */
+    public void clearQueryResults() {
+        if (debug.val && this.queryResults.isEmpty() == false)
+            LOG.debug(String.format("Clearing %d stored query results", this.queryResults.size()));
+        this.queryResults.clear();
     }
 }
@@ -14,14 +14,16 @@ import java.util.TreeSet;
 import org.voltdb.CatalogContext;
 import org.voltdb.catalog.Procedure;
 
-import edu.brown.statistics.FastIntHistogram;
 import edu.brown.statistics.Histogram;
 import edu.brown.statistics.ObjectHistogram;
+import edu.brown.statistics.StripedCounter;
 import edu.brown.utils.StringUtil;
 
 /**
  * Internal counters for how transactions were executed.
  * These are updated in various parts of the txn's lifetime.
+ * The counters are striped per thread, so they are cheap to update from
+ * the network and execution threads at the same time.
  * TODO: This should be better integrated into the Statistics framework.
  */
 public enum TransactionCounter {
@@ -75,7 +77,15 @@ public enum TransactionCounter {
     SPECULATIVE_SP3_REMOTE,
     ;
     
-    private final FastIntHistogram h = new FastIntHistogram();
+    /**
+     * The counts for all TransactionCounters are kept in a single table where the
+     * rows are the TransactionCounter ordinals and the columns are the Procedure ids.
+     * Every thread updates its own private copy of this table, so incrementing a
+     * counter does not require any synchronization. The copies are only summed
+     * together when somebody asks for the counts (e.g., through @Statistics).
+     */
+    private static final StripedCounter COUNTERS = new StripedCounter(TransactionCounter.values().length);
+    
     private final String name;
     private TransactionCounter() {
         this.name = StringUtil.title(this.name().replace("_", "-"));
@@ -86,42 +96,39 @@ public enum TransactionCounter {
     }
     public Histogram<Procedure> getHistogram(CatalogContext catalogContext) {
         Histogram<Procedure> procHistogram = new ObjectHistogram<Procedure>();
-        for (int procId : this.h.fastValues()) {
+        long counts[] = COUNTERS.getRow(this.ordinal());
+        for (int procId = 0; procId < counts.length; procId++) {
+            if (counts[procId] == 0) continue;
             Procedure catalog_proc = catalogContext.getProcedureById(procId);
-            procHistogram.put(catalog_proc, this.h.get(procId));
-        }
+            procHistogram.put(catalog_proc, counts[procId]);
+        } // FOR
         return (procHistogram);
     }
     public int get() {
-        return ((int)this.h.getSampleCount());
+        return ((int)COUNTERS.getRowTotal(this.ordinal()));
     }
-    public Long get(Procedure catalog_proc) {
-        long val = this.h.get(catalog_proc.getId());
-        return (val < 0 ? null : val);
+    public long get(Procedure catalog_proc) {
+        return (COUNTERS.get(this.ordinal(), catalog_proc.getId()));
     }
-    public int inc(Procedure catalog_proc) {
-        synchronized (catalog_proc) {
-            this.h.put(catalog_proc.getId());
-        } // SYNCH
-        return (this.get());
+    public void inc(Procedure catalog_proc) {
+        COUNTERS.inc(this.ordinal(), catalog_proc.getId());
     }
-    public int dec(Procedure catalog_proc) {
-        synchronized (catalog_proc) {
-            this.h.dec(catalog_proc.getId());
-        } // SYNCH
-        return (this.get());
+    public void dec(Procedure catalog_proc) {
+        COUNTERS.dec(this.ordinal(), catalog_proc.getId());
     }
     public void clear() {
-        this.h.clear();
+        COUNTERS.clear(this.ordinal());
     }
     public static Collection<Procedure> getAllProcedures(CatalogContext catalogContext) {
         Set<Procedure> ret = new TreeSet<Procedure>();
         for (TransactionCounter tc : TransactionCounter.values()) {
-            for (int procId : tc.h.fastValues()) {
+            long counts[] = COUNTERS.getRow(tc.ordinal());
+            for (int procId = 0; procId < counts.length; procId++) {
+                if (counts[procId] == 0) continue;
                 Procedure catalog_proc = catalogContext.getProcedureById(procId);
-                ret.add(catalog_proc);
+                if (catalog_proc != null) ret.add(catalog_proc);
             } // FOR
-        } // fOR
+        } // FOR
         return (ret);
     }
     public Double ratio() {
@@ -182,10 +189,8 @@ public enum TransactionCounter {
         return TransactionCounter.name_lookup.get(name.toLowerCase());
     }
     public static void resetAll(CatalogContext catalogContext) {
-        for (TransactionCounter tc : EnumSet.allOf(TransactionCounter.class)) {
-            tc.clear();
-            tc.h.ensureSize(catalogContext.procedures.size());
-        } // FOR
+        COUNTERS.ensureSize(catalogContext.procedures.size() + 1);
+        COUNTERS.clear();
     }
     public static String debug() {
         Map<String, Integer> m = new LinkedHashMap<String, Integer>();
@@ -0,0 +1,172 @@
+package edu.brown.hstore.util;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.voltdb.types.WaitStrategyType;
+
+/**
+ * Determines how a single consumer thread waits for new elements to show up
+ * in a BlockingQueue that is filled by other threads. The consumer calls
+ * {@link #poll(BlockingQueue, long, TimeUnit)} and every producer must call
+ * {@link #signal()} after it adds something to the queue.
+ * <B>Note:</B> Only one thread is allowed to poll a WaitStrategy.
+ * @author pavlo
+ * @param <E>
+ */
+public abstract class WaitStrategy<E> {
+
+    private final WaitStrategyType type;
+
+    protected WaitStrategy(WaitStrategyType type) {
+        this.type = type;
+    }
+
+    public WaitStrategyType getType() {
+        return (this.type);
+    }
+
+    /**
+     * Retrieve the next element from the queue. This may wait up to the
+     * given timeout for a new element to be added. Returns null if there
+     * was nothing in the queue.
+     * @param queue
+     * @param timeout
+     * @param unit
+     * @return
+     * @throws InterruptedException
+     */
+    public abstract E poll(BlockingQueue<E> queue, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Notify the consumer thread that a new element was added to its queue.
+     * This is cheap enough to call after every insertion.
+     */
+    public void signal() {
+        // Nothing to do by default
+    }
+
+    @Override
+    public String toString() {
+        return (this.type.name());
+    }
+
+    // ----------------------------------------------------------------------------
+    // IMPLEMENTATIONS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Never wait. The caller is expected to just call us again in its loop.
+     */
+    private static class BusySpinStrategy<E> extends WaitStrategy<E> {
+        private BusySpinStrategy() {
+            super(WaitStrategyType.BUSY_SPIN);
+        }
+        @Override
+        public E poll(BlockingQueue<E> queue, long timeout, TimeUnit unit) {
+            return (queue.poll());
+        }
+    }
+
+    /**
+     * Spin on the queue and then yield the CPU if nothing shows up.
+     */
+    private static class SpinYieldStrategy<E> extends WaitStrategy<E> {
+        private final int spinCount;
+
+        private SpinYieldStrategy(int spinCount) {
+            super(WaitStrategyType.SPIN_YIELD);
+            this.spinCount = spinCount;
+        }
+        @Override
+        public E poll(BlockingQueue<E> queue, long timeout, TimeUnit unit) {
+            E e = null;
+            for (int i = 0; i < this.spinCount; i++) {
+                if ((e = queue.poll()) != null) return (e);
+            } // FOR
+            Thread.yield();
+            return (queue.poll());
+        }
+    }
+
+    /**
+     * Spin on the queue and then park the consumer thread if nothing shows up.
+     * Producers only pay for LockSupport.unpark() when the consumer is actually
+     * parked. The consumer publishes its parked flag before it checks the queue
+     * one last time, so a producer either sees the flag or the consumer sees
+     * the producer's new element.
+     */
+    private static class SpinParkStrategy<E> extends WaitStrategy<E> {
+        private final int spinCount;
+        private volatile Thread consumer = null;
+        private volatile boolean parked = false;
+
+        private SpinParkStrategy(int spinCount) {
+            super(WaitStrategyType.SPIN_PARK);
+            this.spinCount = spinCount;
+        }
+        @Override
+        public E poll(BlockingQueue<E> queue, long timeout, TimeUnit unit) throws InterruptedException {
+            E e = null;
+            for (int i = 0; i < this.spinCount; i++) {
+                if ((e = queue.poll()) != null) return (e);
+            } // FOR
+
+            if (this.consumer == null) this.consumer = Thread.currentThread();
+            assert(this.consumer == Thread.currentThread()) :
+                "Multiple threads are polling the same " + this.getClass().getSimpleName();
+            this.parked = true;
+            try {
+                if ((e = queue.poll()) != null) return (e);
+                LockSupport.parkNanos(this, unit.toNanos(timeout));
+            } finally {
+                this.parked = false;
+            }
+            if (Thread.interrupted()) throw new InterruptedException();
+            return (queue.poll());
+        }
+        @Override
+        public void signal() {
+            if (this.parked) LockSupport.unpark(this.consumer);
+        }
+    }
+
+    /**
+     * Block on the queue itself. The queue takes care of waking us up.
+     */
+    private static class BlockingStrategy<E> extends WaitStrategy<E> {
+        private BlockingStrategy() {
+            super(WaitStrategyType.BLOCKING);
+        }
+        @Override
+        public E poll(BlockingQueue<E> queue, long timeout, TimeUnit unit) throws InterruptedException {
+            return (queue.poll(timeout, unit));
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+    // FACTORY
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Create a new WaitStrategy
+     * @param type
+     * @param spinCount The number of times to poll the queue before yielding/parking
+     * @return
+     */
+    public static <E> WaitStrategy<E> create(WaitStrategyType type, int spinCount) {
+        switch (type) {
+            case BUSY_SPIN:
+                return new BusySpinStrategy<E>();
+            case SPIN_YIELD:
+                return new SpinYieldStrategy<E>(spinCount);
+            case SPIN_PARK:
+                return new SpinParkStrategy<E>(spinCount);
+            case BLOCKING:
+                return new BlockingStrategy<E>();
+            default:
+                throw new IllegalArgumentException("Unexpected WaitStrategyType '" + type + "'");
+        } // SWITCH
+    }
+}
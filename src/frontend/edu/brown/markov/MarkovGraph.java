@@ -1,6 +1,9 @@
 package edu.brown.markov;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -41,6 +44,8 @@ import edu.brown.utils.PartitionSet;
 import edu.brown.utils.ProjectType;
 import edu.brown.workload.QueryTrace;
 import edu.brown.workload.TransactionTrace;
+import edu.uci.ics.jung.graph.util.EdgeType;
+import edu.uci.ics.jung.graph.util.Pair;
 
 /**
  * Markov Model Graph
@@ -201,7 +206,7 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
      * @param source the source vertex
      * @param dest the destination vertex
      */
-    public MarkovEdge addToEdge(MarkovVertex source, MarkovVertex dest) {
+    public synchronized MarkovEdge addToEdge(MarkovVertex source, MarkovVertex dest) {
         assert(source != null);
         assert(dest != null);
         MarkovEdge e = this.findEdge(source, dest);
@@ -214,10 +219,13 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
     }
     
     /**
-     * 
+     * All structural changes to the graph lock the graph so that they
+     * cannot happen while calculateProbabilities() is walking it.
+     * Callers that hold a lock on one of the graph's vertices are allowed to
+     * call this, so nothing that holds the graph's lock may wait on a vertex.
      */
     @Override
-    public boolean addVertex(MarkovVertex v) {
+    public synchronized boolean addVertex(MarkovVertex v) {
         boolean ret = super.addVertex(v);
         if (ret) {
             if (v.isQueryVertex()) {
@@ -329,11 +337,18 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
         return null;
     }
     
+    @Override
+    public synchronized boolean addEdge(MarkovEdge edge, Pair<? extends MarkovVertex> endpoints, EdgeType edgeType) {
+        return (super.addEdge(edge, endpoints, edgeType));
+    }
+    
     @Override
     public Collection<MarkovVertex> getSuccessors(MarkovVertex vertex) {
         Collection<MarkovVertex> successors = this.cache_getSuccessors.get(vertex);
         if (successors == null) {
-            synchronized (vertex) {
+            // This is called by calculateProbabilities(), so we have to use
+            // the graph's lock here and not the vertex's
+            synchronized (this) {
                 // getSuccessors() can return null, but ConcurrentHashMap
                 // doesn't allow null values.
                 successors = super.getSuccessors(vertex);
@@ -359,15 +374,13 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
 
     /**
      * Calculate the probabilities for this graph.
-     * First we will reset all of the existing probabilities and then apply the instancehits to 
-     * the totalhits for each graph element
+     * First we will apply the instancehits to the totalhits for each graph element
+     * and then compute the new probabilities. The vertex probability tables are
+     * replaced all at once, so this is safe to call while other threads are
+     * using this graph to make estimates. New vertices and edges cannot be
+     * added to the graph until this is finished.
      */
-    public void calculateProbabilities() {
-        // Reset all probabilities
-        for (MarkovVertex v : this.getVertices()) {
-            v.resetAllProbabilities();
-        } // FOR
-        
+    public synchronized void calculateProbabilities() {
         for (MarkovVertex v : this.getVertices()) {
             v.applyInstanceHitsToTotalHits();
         }
@@ -677,6 +690,157 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
         GraphUtil.serialize(this, ignore, null, stringer);
     }
     
+    /**
+     * Write this graph out in the binary format used by BinaryMarkovWriter.
+     * Like toJSON(), we skip any query vertices that have never been hit.
+     * Query vertices refer to their Statement through a small dictionary at
+     * the front of the graph and edges refer to their vertices by position.
+     * @param out
+     * @throws IOException
+     */
+    public void writeBinary(DataOutput out) throws IOException {
+        List<MarkovVertex> vertices = new ArrayList<MarkovVertex>();
+        Map<MarkovVertex, Integer> vertex_offsets = new HashMap<MarkovVertex, Integer>();
+        List<Statement> stmts = new ArrayList<Statement>();
+        Map<Statement, Integer> stmt_offsets = new HashMap<Statement, Integer>();
+        for (MarkovVertex v : this.getVertices()) {
+            if (v.isQueryVertex()) {
+                if (v.instancehits == 0 && v.totalhits == 0) continue;
+                Statement catalog_stmt = v.getCatalogItem();
+                if (stmt_offsets.containsKey(catalog_stmt) == false) {
+                    stmt_offsets.put(catalog_stmt, stmts.size());
+                    stmts.add(catalog_stmt);
+                }
+            }
+            vertex_offsets.put(v, vertices.size());
+            vertices.add(v);
+        } // FOR
+        
+        out.writeInt(this.getGraphId());
+        out.writeInt(stmts.size());
+        for (Statement catalog_stmt : stmts) {
+            out.writeUTF(catalog_stmt.getName());
+        } // FOR
+        
+        // Vertices
+        out.writeInt(vertices.size());
+        for (MarkovVertex v : vertices) {
+            out.writeByte(v.type.ordinal());
+            if (v.isQueryVertex()) {
+                out.writeInt(stmt_offsets.get(v.getCatalogItem()));
+            }
+            out.writeInt(v.counter);
+            out.writeInt(v.totalhits);
+            out.writeInt(v.instancehits);
+            out.writeLong(v.execution_time);
+            writeBinaryPartitions(out, v.partitions);
+            writeBinaryPartitions(out, v.past_partitions);
+            out.writeByte(v.probabilities.length);
+            for (float probs[] : v.probabilities) {
+                out.writeInt(probs.length);
+                for (float prob : probs) {
+                    out.writeFloat(prob);
+                } // FOR
+            } // FOR
+        } // FOR
+        
+        // Edges
+        List<MarkovEdge> edges = new ArrayList<MarkovEdge>();
+        for (MarkovEdge e : this.getEdges()) {
+            if (vertex_offsets.containsKey(this.getSource(e)) && vertex_offsets.containsKey(this.getDest(e))) {
+                edges.add(e);
+            }
+        } // FOR
+        out.writeInt(edges.size());
+        for (MarkovEdge e : edges) {
+            out.writeInt(vertex_offsets.get(this.getSource(e)));
+            out.writeInt(vertex_offsets.get(this.getDest(e)));
+            out.writeInt(e.totalhits);
+            out.writeFloat(e.probability);
+        } // FOR
+    }
+    
+    /**
+     * Populate this empty graph from the binary format written by writeBinary()
+     * @param in
+     * @throws IOException
+     */
+    public void readBinary(DataInput in) throws IOException {
+        assert(this.getVertexCount() == 0) : "Trying to load binary data into non-empty " + this;
+        Database catalog_db = this.getDatabase();
+        this.setGraphId(in.readInt());
+        
+        Statement stmts[] = new Statement[in.readInt()];
+        for (int i = 0; i < stmts.length; i++) {
+            String stmt_name = in.readUTF();
+            stmts[i] = this.catalog_proc.getStatements().getIgnoreCase(stmt_name);
+            if (stmts[i] == null) {
+                throw new IOException(String.format("Unknown Statement '%s' in %s MarkovGraph",
+                                                    stmt_name, this.catalog_proc.getName()));
+            }
+        } // FOR
+        
+        // Vertices
+        MarkovVertex.Type types[] = MarkovVertex.Type.values();
+        MarkovVertex vertices[] = new MarkovVertex[in.readInt()];
+        for (int i = 0; i < vertices.length; i++) {
+            MarkovVertex.Type type = types[in.readByte()];
+            Statement catalog_stmt = null;
+            if (type == MarkovVertex.Type.QUERY) {
+                catalog_stmt = stmts[in.readInt()];
+            } else {
+                catalog_stmt = MarkovUtil.getSpecialStatement(catalog_db, type);
+            }
+            int counter = in.readInt();
+            int totalhits = in.readInt();
+            int instancehits = in.readInt();
+            long execution_time = in.readLong();
+            PartitionSet partitions = readBinaryPartitions(in);
+            PartitionSet past_partitions = readBinaryPartitions(in);
+            
+            MarkovVertex v = new MarkovVertex(catalog_stmt, type, counter, partitions, past_partitions);
+            v.totalhits = totalhits;
+            v.instancehits = instancehits;
+            v.execution_time = execution_time;
+            int num_probs = in.readByte();
+            assert(num_probs == v.probabilities.length) :
+                String.format("Expected %d probabilities but got %d", v.probabilities.length, num_probs);
+            for (int p = 0; p < num_probs; p++) {
+                float probs[] = new float[in.readInt()];
+                for (int j = 0; j < probs.length; j++) {
+                    probs[j] = in.readFloat();
+                } // FOR
+                v.probabilities[p] = probs;
+            } // FOR
+            this.addVertex(v);
+            vertices[i] = v;
+        } // FOR
+        
+        // Edges
+        int num_edges = in.readInt();
+        for (int i = 0; i < num_edges; i++) {
+            MarkovVertex v0 = vertices[in.readInt()];
+            MarkovVertex v1 = vertices[in.readInt()];
+            MarkovEdge e = new MarkovEdge(this, in.readInt(), in.readFloat());
+            this.addEdge(e, v0, v1);
+        } // FOR
+    }
+    
+    private static void writeBinaryPartitions(DataOutput out, PartitionSet partitions) throws IOException {
+        out.writeShort(partitions.size());
+        for (int partition : partitions.values()) {
+            out.writeShort(partition);
+        } // FOR
+    }
+    
+    private static PartitionSet readBinaryPartitions(DataInput in) throws IOException {
+        PartitionSet partitions = new PartitionSet();
+        for (int i = 0, cnt = in.readShort(); i < cnt; i++) {
+            partitions.add((int)in.readShort());
+        } // FOR
+        return (partitions);
+    }
+    
     // ----------------------------------------------------------------------------
     // YE OLDE MAIN METHOD
     // ----------------------------------------------------------------------------
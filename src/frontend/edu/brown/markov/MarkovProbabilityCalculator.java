@@ -1,7 +1,9 @@
 package edu.brown.markov;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
@@ -28,6 +30,12 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
     }
     
     private final Set<MarkovEdge> visited_edges = new HashSet<MarkovEdge>();
+    
+    /**
+     * Vertex -> Copy of that vertex that we are computing the new probabilities in
+     * This is only used when we are recomputing the probabilities for the entire graph
+     */
+    private final Map<MarkovVertex, MarkovVertex> staged = new HashMap<MarkovVertex, MarkovVertex>();
     private final PartitionSet all_partitions;
     private MarkovEstimate markov_est;
     
@@ -42,20 +50,49 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
         this.getChildren(markov.getCommitVertex()).addAfter(markov.getAbortVertex());
     }
     
+    /**
+     * Recompute the probabilities for all of the vertices in the graph.
+     * The new probabilities are computed in copies of the vertices and then
+     * swapped in at the end, so threads that are using the graph at the
+     * same time never see a partially computed table.
+     */
     public void calculate() {
+        this.staged.clear();
         this.calculate(null);
+        for (MarkovVertex v : this.getGraph().getVertices()) {
+            v.probabilities = this.getStaged(v).probabilities;
+        } // FOR
+        this.staged.clear();
     }
-        
+    
     public void calculate(MarkovEstimate est) {
         this.markov_est = est;
         this.traverse(((MarkovGraph)this.getGraph()).getCommitVertex());
     }
     
+    /**
+     * Return the vertex that holds the probabilities for the given vertex.
+     * If we are recomputing the entire graph, this will be the vertex's copy
+     * with the new table. Vertices that we never reach get an empty table.
+     * @param v
+     * @return
+     */
+    private MarkovVertex getStaged(MarkovVertex v) {
+        if (this.markov_est != null) return (v);
+        MarkovVertex copy = this.staged.get(v);
+        if (copy == null) {
+            copy = new MarkovVertex((Statement)v.getCatalogItem(), v.getType(), v.getQueryCounter(),
+                                    v.getPartitions(), v.getPastPartitions());
+            this.staged.put(v, copy);
+        }
+        return (copy);
+    }
+    
     @Override
     protected void callback(MarkovVertex element) {
         MarkovGraph markov = (MarkovGraph)this.getGraph();
         // HACK
-        DynamicTransactionEstimate est = (this.markov_est != null ? this.markov_est : element);
+        DynamicTransactionEstimate est = (this.markov_est != null ? this.markov_est : this.getStaged(element));
         
         if (trace.val) LOG.trace("BEFORE: " + element + " => " + est.getSinglePartitionProbability());
 //            if (element.isSingleSitedProbablitySet() == false) element.setSingleSitedProbability(0.0);
@@ -103,6 +140,7 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
                 if (visited_edges.contains(e)) continue;
                 MarkovVertex successor = markov.getDest(e);
                 assert(successor != null);
+                successor = this.getStaged(successor);
                 assert(successor.isSinglePartitionProbabilitySet()) : "Setting " + element + " BEFORE " + successor;
 
                 // Single-Partition Probability
@@ -178,6 +216,7 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
     public void finish() {
         super.finish();
         this.visited_edges.clear();
+        this.staged.clear();
         this.markov_est = null;
     }
     
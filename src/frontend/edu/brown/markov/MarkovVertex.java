@@ -150,8 +150,11 @@ public class MarkovVertex extends AbstractVertex implements MarkovHitTrackable,
 
     /**
      * Mapping from Probability type to another map from partition id
+     * When the MarkovGraph recomputes its probabilities, it builds a new table
+     * off to the side and then swaps it in here. Readers will always see
+     * either the entire old table or the entire new table.
      */
-    public float probabilities[][];
+    public volatile float probabilities[][];
     
     // ----------------------------------------------------------------------------
     // TRANSIENT DATA MEMBERS
@@ -0,0 +1,56 @@
+package edu.brown.markov.containers;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Binary file format for a collection of MarkovGraphsContainers.
+ * <PRE>
+ * HEADER:  [MAGIC:int][VERSION:int]
+ * GRAPHS:  [compressed MarkovGraph bytes]*
+ * INDEX:   [#containers:int] ([containerId:int][className:UTF])*
+ *          [#graphs:int] ([containerId:int][id:int][procName:UTF][offset:long][length:int])*
+ * TRAILER: [indexOffset:long][MAGIC:int]
+ * </PRE>
+ * Each graph is written with MarkovGraph.writeBinary() and then compressed on its
+ * own. The index at the end of the file lets a reader seek straight to the graph
+ * for a particular (id, procedure) pair, so nothing has to be deserialized
+ * until somebody actually asks for it.
+ * @see BinaryMarkovWriter
+ * @see BinaryMarkovReader
+ * @author pavlo
+ */
+public abstract class BinaryMarkovFormat {
+
+    public static final int MAGIC = 0x4D4B4731; // "MKG1"
+    public static final int VERSION = 1;
+
+    /** The size of the trailer at the end of the file */
+    public static final int TRAILER_SIZE = 8 + 4;
+
+    /**
+     * Returns true if the given file starts with our magic number
+     * @param path
+     * @return
+     */
+    public static boolean isBinaryMarkovFile(File path) {
+        if (path.isFile() == false || path.length() < 8 + TRAILER_SIZE) return (false);
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(path));
+            return (in.readInt() == MAGIC);
+        } catch (IOException ex) {
+            return (false);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    // IGNORE
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package edu.brown.markov.containers;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.utils.CompressionService;
+
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.markov.MarkovGraph;
+import edu.brown.utils.ClassUtil;
+
+/**
+ * Random-access reader for the binary MarkovGraphsContainer format.
+ * Only the index is read when the file is opened. The MarkovGraphs themselves
+ * are read from disk one at a time when they are requested. This is safe
+ * to share between multiple threads.
+ * @see BinaryMarkovFormat
+ * @author pavlo
+ */
+public class BinaryMarkovReader implements Closeable {
+    private static final Logger LOG = Logger.getLogger(BinaryMarkovReader.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    private static class IndexEntry {
+        final long offset;
+        final int length;
+
+        IndexEntry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final File path;
+    private final Database catalog_db;
+    private final RandomAccessFile file;
+
+    /** ContainerId -> MarkovGraphsContainer class name */
+    private final Map<Integer, String> containerClasses = new TreeMap<Integer, String>();
+    /** ContainerId -> Id -> Procedure -> IndexEntry */
+    private final Map<Integer, Map<Integer, Map<Procedure, IndexEntry>>> index = new HashMap<Integer, Map<Integer, Map<Procedure, IndexEntry>>>();
+
+    private int graphCount = 0;
+    private int skipCount = 0;
+
+    public BinaryMarkovReader(Database catalog_db, File path) throws IOException {
+        this.path = path;
+        this.catalog_db = catalog_db;
+        this.file = new RandomAccessFile(path, "r");
+        try {
+            this.readIndex();
+        } catch (IOException ex) {
+            this.file.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Read in the index from the end of the file and map the procedure names
+     * that it uses to the Procedures in our catalog
+     */
+    private void readIndex() throws IOException {
+        if (this.file.readInt() != BinaryMarkovFormat.MAGIC) {
+            throw new IOException("'" + this.path + "' is not a binary MarkovGraphsContainer file");
+        }
+        int version = this.file.readInt();
+        if (version != BinaryMarkovFormat.VERSION) {
+            throw new IOException(String.format("Unsupported binary MarkovGraphsContainer version %d in '%s'",
+                                                version, this.path));
+        }
+        long length = this.file.length();
+        this.file.seek(length - BinaryMarkovFormat.TRAILER_SIZE);
+        long index_offset = this.file.readLong();
+        if (this.file.readInt() != BinaryMarkovFormat.MAGIC) {
+            throw new IOException("Binary MarkovGraphsContainer file '" + this.path + "' was not closed properly");
+        }
+
+        byte bytes[] = new byte[(int)(length - BinaryMarkovFormat.TRAILER_SIZE - index_offset)];
+        this.file.seek(index_offset);
+        this.file.readFully(bytes);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        for (int i = 0, cnt = in.readInt(); i < cnt; i++) {
+            int container_id = in.readInt();
+            this.containerClasses.put(container_id, in.readUTF());
+            this.index.put(container_id, new TreeMap<Integer, Map<Procedure, IndexEntry>>());
+        } // FOR
+        for (int i = 0, cnt = in.readInt(); i < cnt; i++) {
+            int container_id = in.readInt();
+            int id = in.readInt();
+            String proc_name = in.readUTF();
+            IndexEntry entry = new IndexEntry(in.readLong(), in.readInt());
+
+            Procedure catalog_proc = this.catalog_db.getProcedures().getIgnoreCase(proc_name);
+            if (catalog_proc == null) {
+                if (debug.val) LOG.debug(String.format("Unknown Procedure '%s' in '%s'", proc_name, this.path));
+                this.skipCount++;
+                continue;
+            }
+            Map<Integer, Map<Procedure, IndexEntry>> ids = this.index.get(container_id);
+            assert(ids != null) : "Unexpected container id #" + container_id;
+            Map<Procedure, IndexEntry> procs = ids.get(id);
+            if (procs == null) {
+                procs = new HashMap<Procedure, IndexEntry>();
+                ids.put(id, procs);
+            }
+            procs.put(catalog_proc, entry);
+            this.graphCount++;
+        } // FOR
+        if (debug.val)
+            LOG.debug(String.format("Read index for %d MarkovGraphs in %d containers from '%s'",
+                      this.graphCount, this.containerClasses.size(), this.path));
+    }
+
+    // ----------------------------------------------------------------------------
+    // INDEX METHODS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Returns the ids of the MarkovGraphsContainers stored in this file
+     */
+    public Set<Integer> getContainerIds() {
+        return (Collections.unmodifiableSet(this.containerClasses.keySet()));
+    }
+
+    /**
+     * Returns the ids of the graphs stored for the given container
+     * @param container_id
+     * @return
+     */
+    public Set<Integer> getIds(int container_id) {
+        Map<Integer, Map<Procedure, IndexEntry>> ids = this.index.get(container_id);
+        if (ids == null) return (Collections.<Integer>emptySet());
+        return (Collections.unmodifiableSet(ids.keySet()));
+    }
+
+    /**
+     * Returns the Procedures that have a graph stored for the given container and id
+     * @param container_id
+     * @param id
+     * @return
+     */
+    public Set<Procedure> getProcedures(int container_id, int id) {
+        Map<Integer, Map<Procedure, IndexEntry>> ids = this.index.get(container_id);
+        Map<Procedure, IndexEntry> procs = (ids != null ? ids.get(id) : null);
+        if (procs == null) return (Collections.<Procedure>emptySet());
+        return (Collections.unmodifiableSet(procs.keySet()));
+    }
+
+    private IndexEntry getEntry(int container_id, int id, Procedure catalog_proc) {
+        Map<Integer, Map<Procedure, IndexEntry>> ids = this.index.get(container_id);
+        Map<Procedure, IndexEntry> procs = (ids != null ? ids.get(id) : null);
+        return (procs != null ? procs.get(catalog_proc) : null);
+    }
+
+    /**
+     * Returns true if this file has a MarkovGraph for the given container/id/procedure
+     * @param container_id
+     * @param id
+     * @param catalog_proc
+     * @return
+     */
+    public boolean contains(int container_id, int id, Procedure catalog_proc) {
+        return (this.getEntry(container_id, id, catalog_proc) != null);
+    }
+
+    // ----------------------------------------------------------------------------
+    // LOADING METHODS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Read in the MarkovGraph for the given container/id/procedure from disk.
+     * Returns null if the file does not have a graph for it.
+     * @param container_id
+     * @param id
+     * @param catalog_proc
+     * @return
+     * @throws IOException
+     */
+    public MarkovGraph readGraph(int container_id, int id, Procedure catalog_proc) throws IOException {
+        IndexEntry entry = this.getEntry(container_id, id, catalog_proc);
+        if (entry == null) return (null);
+
+        byte compressed[] = new byte[entry.length];
+        synchronized (this.file) {
+            this.file.seek(entry.offset);
+            this.file.readFully(compressed);
+        } // SYNCH
+        byte raw[] = CompressionService.decompressBytes(compressed);
+
+        MarkovGraph markov = new MarkovGraph(catalog_proc);
+        markov.readBinary(new DataInputStream(new ByteArrayInputStream(raw)));
+        markov.buildCache();
+        if (trace.val)
+            LOG.trace(String.format("Read %s MarkovGraph for id #%d [container=%d, vertices=%d, edges=%d]",
+                      catalog_proc.getName(), id, container_id, markov.getVertexCount(), markov.getEdgeCount()));
+        return (markov);
+    }
+
+    /**
+     * Create the MarkovGraphsContainer for the given container id. If lazy is true,
+     * then the container will read in each of its graphs from this file the
+     * first time that it is requested. Otherwise all of the graphs are read in now.
+     * @param container_id
+     * @param procedures The procedures that we want to load. Null means all procedures.
+     * @param lazy
+     * @return
+     * @throws IOException
+     */
+    public MarkovGraphsContainer createContainer(int container_id, Collection<Procedure> procedures, boolean lazy) throws IOException {
+        String className = this.containerClasses.get(container_id);
+        if (className == null) {
+            throw new IllegalArgumentException("No MarkovGraphsContainer for id #" + container_id + " in '" + this.path + "'");
+        }
+        MarkovGraphsContainer markovs = ClassUtil.newInstance(className, new Object[]{ procedures },
+                                                                         new Class<?>[]{ Collection.class });
+        assert(markovs != null);
+        markovs.setSource(this, container_id);
+        if (lazy == false) markovs.loadAll();
+        return (markovs);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.file.close();
+    }
+
+    /**
+     * Returns the number of MarkovGraphs in the index
+     */
+    public int getGraphCount() {
+        return (this.graphCount);
+    }
+    /**
+     * Returns the number of MarkovGraphs that we skipped because they
+     * do not match our catalog
+     */
+    public int getSkippedCount() {
+        return (this.skipCount);
+    }
+}
@@ -0,0 +1,147 @@
+package edu.brown.markov.containers;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.utils.CompressionService;
+
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.markov.MarkovGraph;
+
+/**
+ * Writes MarkovGraphsContainers out in the binary format. Each MarkovGraph is
+ * compressed and written out as soon as it is added, so only the index has to
+ * stay in memory. You must call {@link #close()} or the file will be unreadable.
+ * @see BinaryMarkovFormat
+ * @author pavlo
+ */
+public class BinaryMarkovWriter {
+    private static final Logger LOG = Logger.getLogger(BinaryMarkovWriter.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    private static class IndexEntry {
+        final int container_id;
+        final int id;
+        final String proc_name;
+        final long offset;
+        final int length;
+
+        IndexEntry(int container_id, int id, String proc_name, long offset, int length) {
+            this.container_id = container_id;
+            this.id = id;
+            this.proc_name = proc_name;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final File path;
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(65536);
+
+    /** ContainerId -> MarkovGraphsContainer class name */
+    private final Map<Integer, String> containerClasses = new TreeMap<Integer, String>();
+    private final List<IndexEntry> index = new ArrayList<IndexEntry>();
+
+    private long offset = 0;
+    private long rawBytes = 0;
+    private boolean closed = false;
+
+    public BinaryMarkovWriter(File path) throws IOException {
+        this.path = path;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 65536));
+        this.out.writeInt(BinaryMarkovFormat.MAGIC);
+        this.out.writeInt(BinaryMarkovFormat.VERSION);
+        this.offset = 8;
+    }
+
+    /**
+     * Add all of the MarkovGraphs in the given container to the output
+     * @param container_id
+     * @param markovs
+     * @throws IOException
+     */
+    public void write(int container_id, MarkovGraphsContainer markovs) throws IOException {
+        assert(this.closed == false);
+        if (this.containerClasses.containsKey(container_id)) {
+            throw new IllegalArgumentException("Duplicate MarkovGraphsContainer for id #" + container_id);
+        }
+        this.containerClasses.put(container_id, markovs.getClass().getCanonicalName());
+        for (Entry<Integer, Map<Procedure, MarkovGraph>> e : markovs.entrySet()) {
+            for (MarkovGraph markov : e.getValue().values()) {
+                this.write(container_id, e.getKey(), markov);
+            } // FOR
+        } // FOR
+    }
+
+    private void write(int container_id, int id, MarkovGraph markov) throws IOException {
+        this.buffer.reset();
+        DataOutputStream raw = new DataOutputStream(this.buffer);
+        markov.writeBinary(raw);
+        raw.flush();
+        byte compressed[] = CompressionService.compressBytes(this.buffer.toByteArray());
+
+        this.out.write(compressed);
+        this.index.add(new IndexEntry(container_id, id, markov.getProcedure().getName(), this.offset, compressed.length));
+        if (trace.val)
+            LOG.trace(String.format("Wrote %s MarkovGraph for id #%d [container=%d, raw=%d, compressed=%d]",
+                      markov.getProcedure().getName(), id, container_id, this.buffer.size(), compressed.length));
+        this.offset += compressed.length;
+        this.rawBytes += this.buffer.size();
+    }
+
+    /**
+     * Write out the index and close the underlying stream
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        if (this.closed) return;
+        long index_offset = this.offset;
+        this.out.writeInt(this.containerClasses.size());
+        for (Entry<Integer, String> e : this.containerClasses.entrySet()) {
+            this.out.writeInt(e.getKey());
+            this.out.writeUTF(e.getValue());
+        } // FOR
+        this.out.writeInt(this.index.size());
+        for (IndexEntry entry : this.index) {
+            this.out.writeInt(entry.container_id);
+            this.out.writeInt(entry.id);
+            this.out.writeUTF(entry.proc_name);
+            this.out.writeLong(entry.offset);
+            this.out.writeInt(entry.length);
+        } // FOR
+        this.out.writeLong(index_offset);
+        this.out.writeInt(BinaryMarkovFormat.MAGIC);
+        this.out.close();
+        this.closed = true;
+        if (debug.val)
+            LOG.debug(String.format("Wrote %d MarkovGraphs in %d containers to '%s' [raw=%d, compressed=%d]",
+                      this.index.size(), this.containerClasses.size(), this.path, this.rawBytes, index_offset - 8));
+    }
+
+    public int getGraphCount() {
+        return (this.index.size());
+    }
+    public long getRawBytes() {
+        return (this.rawBytes);
+    }
+    public long getCompressedBytes() {
+        return (this.offset - 8);
+    }
+}
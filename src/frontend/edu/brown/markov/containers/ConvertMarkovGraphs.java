@@ -0,0 +1,127 @@
+package edu.brown.markov.containers;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+import org.json.JSONStringer;
+import org.voltdb.catalog.Database;
+
+import edu.brown.utils.ArgumentsParser;
+import edu.brown.utils.CollectionUtil;
+import edu.brown.utils.FileUtil;
+
+/**
+ * Convert a JSON MarkovGraphsContainer file into the binary format, or
+ * a binary file back into JSON. Only one MarkovGraphsContainer is held
+ * in memory at a time.
+ * @see BinaryMarkovFormat
+ * @author pavlo
+ */
+public class ConvertMarkovGraphs {
+    private static final Logger LOG = Logger.getLogger(ConvertMarkovGraphs.class);
+
+    /**
+     * Convert a JSON MarkovGraphsContainer file into the binary format
+     * @param catalog_db
+     * @param input
+     * @param output
+     * @return the number of MarkovGraphs that were written out
+     * @throws Exception
+     */
+    public static int toBinary(Database catalog_db, File input, File output) throws Exception {
+        BufferedReader in = FileUtil.getReader(input);
+        BinaryMarkovWriter writer = new BinaryMarkovWriter(output);
+        int line_ctr = 0;
+        try {
+            while (in.ready()) {
+                String line = in.readLine().trim();
+                // The first line is the index of partitions to line numbers
+                // We don't need it because each line has its partition id
+                if (line_ctr++ == 0 || line.isEmpty()) continue;
+
+                JSONObject json_object = new JSONObject(line);
+                for (String key : CollectionUtil.iterable(json_object.keys())) {
+                    Integer partition = Integer.valueOf(key);
+                    MarkovGraphsContainer markovs = MarkovGraphContainersUtil.createMarkovGraphsContainer(json_object.getJSONObject(key), null, catalog_db);
+                    writer.write(partition, markovs);
+                    LOG.info(String.format("Converted %d MarkovGraphs for partition %d from '%s'",
+                                           markovs.totalSize(), partition, input.getName()));
+                } // FOR
+            } // WHILE
+        } finally {
+            in.close();
+            writer.close();
+        }
+        LOG.info(String.format("Wrote %d MarkovGraphs to '%s' [raw=%d bytes, compressed=%d bytes]",
+                               writer.getGraphCount(), output,
+                               writer.getRawBytes(), writer.getCompressedBytes()));
+        return (writer.getGraphCount());
+    }
+
+    /**
+     * Convert a binary MarkovGraphsContainer file into JSON
+     * @param catalog_db
+     * @param input
+     * @param output
+     * @return the number of MarkovGraphs that were written out
+     * @throws Exception
+     */
+    public static int toJSON(Database catalog_db, File input, File output) throws Exception {
+        BinaryMarkovReader reader = new BinaryMarkovReader(catalog_db, input);
+        OutputStream out = new FileOutputStream(output);
+        int graphs_ctr = 0;
+        try {
+            // Same index that MarkovGraphContainersUtil.save() writes out
+            Set<Integer> partitions = reader.getContainerIds();
+            JSONStringer stringer = (JSONStringer)(new JSONStringer().object());
+            int offset = 1;
+            for (Integer partition : partitions) {
+                stringer.key(Integer.toString(partition)).value(offset++);
+            } // FOR
+            out.write((stringer.endObject().toString() + "\n").getBytes());
+
+            for (Integer partition : partitions) {
+                MarkovGraphsContainer markovs = reader.createContainer(partition, null, false);
+                graphs_ctr += markovs.totalSize();
+
+                stringer = (JSONStringer)new JSONStringer().object();
+                stringer.key(partition.toString()).object();
+                markovs.toJSON(stringer);
+                stringer.endObject().endObject();
+                out.write((stringer.toString() + "\n").getBytes());
+            } // FOR
+        } finally {
+            reader.close();
+            out.close();
+        }
+        if (reader.getSkippedCount() > 0) {
+            LOG.warn(String.format("Skipped %d MarkovGraphs in '%s' that do not match the catalog",
+                                   reader.getSkippedCount(), input));
+        }
+        LOG.info(String.format("Wrote %d MarkovGraphs to '%s'", graphs_ctr, output));
+        return (graphs_ctr);
+    }
+
+    public static void main(String[] vargs) throws Exception {
+        ArgumentsParser args = ArgumentsParser.load(vargs);
+        args.require(ArgumentsParser.PARAM_CATALOG, ArgumentsParser.PARAM_MARKOV_OUTPUT);
+        assert(args.getOptParamCount() > 0) : "Missing input MarkovGraphsContainer file";
+
+        File input = new File(args.getOptParam(0));
+        File output = new File(args.getParam(ArgumentsParser.PARAM_MARKOV_OUTPUT));
+        if (output.getParent() != null) FileUtil.makeDirIfNotExists(output.getParent());
+
+        if (BinaryMarkovFormat.isBinaryMarkovFile(input)) {
+            LOG.info(String.format("Converting binary MarkovGraphs '%s' to JSON '%s'", input, output));
+            toJSON(args.catalog_db, input, output);
+        } else {
+            LOG.info(String.format("Converting JSON MarkovGraphs '%s' to binary '%s'", input, output));
+            toBinary(args.catalog_db, input, output);
+        }
+    }
+}
@@ -361,6 +361,33 @@ public abstract class MarkovGraphContainersUtil {
         LOG.info(String.format("Wrote out %d graphs in %s to '%s'", graphs_ctr, className, output_path));
     }
     
+    /**
+     * For the given MarkovGraphContainers, serialize them out to a file in the
+     * binary format. These files can be loaded lazily.
+     * @param markovs
+     * @param output_path
+     * @see BinaryMarkovFormat
+     */
+    public static void saveBinary(Map<Integer, ? extends MarkovGraphsContainer> markovs, String output_path) {
+        final String className = CollectionUtil.first(markovs.values()).getClass().getSimpleName();
+        BinaryMarkovWriter writer = null;
+        try {
+            writer = new BinaryMarkovWriter(new File(output_path));
+            for (Integer partition : new TreeSet<Integer>(markovs.keySet())) {
+                MarkovGraphsContainer markov = markovs.get(partition);
+                assert(markov != null) : "Null MarkovGraphsContainer for partition #" + partition;
+                writer.write(partition, markov);
+            } // FOR
+            writer.close();
+        } catch (Exception ex) {
+            LOG.error("Failed to serialize the " + className + " file '" + output_path + "'", ex);
+            throw new RuntimeException(ex);
+        }
+        LOG.info(String.format("Wrote out %d graphs in %s to '%s' [raw=%d bytes, compressed=%d bytes]",
+                               writer.getGraphCount(), className, output_path,
+                               writer.getRawBytes(), writer.getCompressedBytes()));
+    }
+    
     // ----------------------------------------------------------------------------
     // LOAD METHODS
     // ----------------------------------------------------------------------------
@@ -386,6 +413,9 @@ public abstract class MarkovGraphContainersUtil {
      * @throws Exception
      */
     public static Map<Integer, MarkovGraphsContainer> load(final Database catalog_db, final File file, Collection<Procedure> procedures, Collection<Integer> ids) throws Exception {
+        if (BinaryMarkovFormat.isBinaryMarkovFile(file)) {
+            return (MarkovGraphContainersUtil.loadBinary(catalog_db, file, procedures, ids));
+        }
         final Map<Integer, MarkovGraphsContainer> ret = new HashMap<Integer, MarkovGraphsContainer>();
         LOG.info(String.format("Loading in MarkovGraphContainers from '%s' [procedures=%s, ids=%s]",
                                file.getName(), (procedures == null ? "*ALL*" : CatalogUtil.debug(procedures)), (ids == null ? "*ALL*" : ids)));
@@ -442,6 +472,35 @@ public abstract class MarkovGraphContainersUtil {
         return (ret);
     }
 
+    /**
+     * Load the MarkovGraphsContainers from a binary file. Only the file's index is
+     * read in here. Each MarkovGraph is read in the first time that it is requested
+     * from its MarkovGraphsContainer.
+     * @param catalog_db
+     * @param file
+     * @param procedures
+     * @param ids
+     * @return
+     * @throws IOException
+     */
+    public static Map<Integer, MarkovGraphsContainer> loadBinary(final Database catalog_db, final File file, Collection<Procedure> procedures, Collection<Integer> ids) throws IOException {
+        final Map<Integer, MarkovGraphsContainer> ret = new HashMap<Integer, MarkovGraphsContainer>();
+        BinaryMarkovReader reader = new BinaryMarkovReader(catalog_db, file);
+        for (Integer partition : reader.getContainerIds()) {
+            // Same rules as the JSON files for which containers we want
+            if (partition.equals(MarkovUtil.GLOBAL_MARKOV_CONTAINER_ID) || ids == null || ids.contains(partition)) {
+                MarkovGraphsContainer markovs = reader.createContainer(partition, procedures, true);
+                if (debug.val) LOG.debug(String.format("Storing lazy %s for partition %d", markovs.getClass().getSimpleName(), partition));
+                ret.put(partition, markovs);
+            }
+        } // FOR
+        // The containers hold on to the reader until all of their graphs are loaded
+        if (ret.isEmpty()) reader.close();
+        LOG.info(String.format("Indexed %d MarkovGraphs in %d MarkovGraphsContainers from '%s'",
+                               reader.getGraphCount(), ret.size(), file.getName()));
+        return (ret);
+    }
+
     // ----------------------------------------------------------------------------
     // UTILITY METHODS
     // ----------------------------------------------------------------------------
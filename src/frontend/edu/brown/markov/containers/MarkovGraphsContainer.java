@@ -71,6 +71,14 @@ public class MarkovGraphsContainer implements JSONSerializable {
      */
     private final Set<Procedure> load_procedures;
     
+    /**
+     * If this container came from a binary file, then this is where we will read
+     * each MarkovGraph from the first time that somebody asks for it.
+     * This is set to null once everything has been read in.
+     */
+    private volatile BinaryMarkovReader source = null;
+    private int source_id;
+    
     // -----------------------------------------------------------------
     // Constructors
     // -----------------------------------------------------------------
@@ -97,6 +105,7 @@ public class MarkovGraphsContainer implements JSONSerializable {
     // -----------------------------------------------------------------
     
     public MarkovGraph getFromGraphId(int id) {
+        this.loadAll();
         for (MarkovGraph m : this.getAll()) {
             if (m.getGraphId() == id) return (m);
         } // FOR
@@ -113,17 +122,88 @@ public class MarkovGraphsContainer implements JSONSerializable {
         return (false);
     }
 
+    // -----------------------------------------------------------------
+    // LAZY LOADING
+    // -----------------------------------------------------------------
+    
+    /**
+     * Read in this container's MarkovGraphs from the given binary file on demand
+     * @param source
+     * @param source_id The id of this container in the file
+     */
+    protected void setSource(BinaryMarkovReader source, int source_id) {
+        this.source = source;
+        this.source_id = source_id;
+    }
+    
+    /**
+     * Returns true if there are still MarkovGraphs that have not been read
+     * in from this container's binary file
+     */
+    public boolean isLazy() {
+        return (this.source != null);
+    }
+    
+    /**
+     * Read in the MarkovGraph for the given id+catalog_proc from our binary file.
+     * Returns null if the file does not have one.
+     */
+    private MarkovGraph loadGraph(BinaryMarkovReader source, Integer id, Procedure catalog_proc) {
+        if (this.load_procedures != null && this.load_procedures.contains(catalog_proc) == false) {
+            return (null);
+        }
+        if (source.contains(this.source_id, id, catalog_proc) == false) {
+            return (null);
+        }
+        synchronized (this) {
+            Map<Procedure, MarkovGraph> inner = this.markovs.get(id);
+            MarkovGraph markov = (inner != null ? inner.get(catalog_proc) : null);
+            if (markov == null) {
+                try {
+                    markov = source.readGraph(this.source_id, id, catalog_proc);
+                } catch (IOException ex) {
+                    throw new RuntimeException("Failed to load MarkovGraph " + id + " for " + catalog_proc.getName(), ex);
+                }
+                if (debug.val) LOG.debug(String.format("Loaded %s MarkovGraph for id %d", catalog_proc.getName(), id));
+                this.put(id, markov);
+            }
+            return (markov);
+        } // SYNCH
+    }
+    
+    /**
+     * Make sure that all of the MarkovGraphs for this container have been read
+     * in from its binary file. This is a no-op if the container was not
+     * created from a binary file.
+     */
+    public void loadAll() {
+        BinaryMarkovReader source = this.source;
+        if (source == null) return;
+        for (Integer id : source.getIds(this.source_id)) {
+            for (Procedure catalog_proc : source.getProcedures(this.source_id, id)) {
+                this.loadGraph(source, id, catalog_proc);
+            } // FOR
+        } // FOR
+        this.source = null;
+    }
+    
     // -----------------------------------------------------------------
     // PSEUDO-MAP METHODS
     // -----------------------------------------------------------------
     
     public void clear() {
+        this.source = null;
         this.markovs.clear();
     }
     
     public MarkovGraph get(Integer id, Procedure catalog_proc) {
         Map<Procedure, MarkovGraph> inner = this.markovs.get(id);
-        return (inner != null ? inner.get(catalog_proc) : null);
+        MarkovGraph markov = (inner != null ? inner.get(catalog_proc) : null);
+        if (markov == null) {
+            BinaryMarkovReader source = this.source;
+            if (source != null) markov = this.loadGraph(source, id, catalog_proc);
+        }
+        return (markov);
     }
     
     /**
@@ -200,6 +280,7 @@ public class MarkovGraphsContainer implements JSONSerializable {
      * Invoke MarkovGraph.calculateProbabilities() for all of the graphs stored within this container 
      */
     public void calculateProbabilities() {
+        this.loadAll();
         for (Map<Procedure, MarkovGraph> inner : this.markovs.values()) {
             for (Entry<Procedure, MarkovGraph> e : inner.entrySet()) {
                 MarkovGraph m = e.getValue();
@@ -221,10 +302,12 @@ public class MarkovGraphsContainer implements JSONSerializable {
     }
     
     protected Map<Procedure, MarkovGraph> getAll(Integer id) {
+        this.loadAll();
         return (this.markovs.get(id));
     }
     
     public Map<Integer, MarkovGraph> getAll(Procedure catalog_proc) {
+        this.loadAll();
         Map<Integer, MarkovGraph> ret = new HashMap<Integer, MarkovGraph>();
         for (Integer id : this.markovs.keySet()) {
             MarkovGraph m = this.markovs.get(id).get(catalog_proc);
@@ -238,6 +321,7 @@ public class MarkovGraphsContainer implements JSONSerializable {
      * @return
      */
     public Set<MarkovGraph> getAll() {
+        this.loadAll();
         Set<MarkovGraph> ret = new HashSet<MarkovGraph>();
         for (Integer id : this.markovs.keySet()) {
             Map<Procedure, MarkovGraph> m = this.markovs.get(id);
@@ -247,22 +331,27 @@ public class MarkovGraphsContainer implements JSONSerializable {
     }
     
     public void copy(MarkovGraphsContainer other) {
+        other.loadAll();
         this.markovs.putAll(other.markovs);
     }
     
     public Set<Integer> keySet() {
+        this.loadAll();
         return this.markovs.keySet();
     }
     
     public Set<Entry<Integer, Map<Procedure, MarkovGraph>>> entrySet() {
+        this.loadAll();
         return this.markovs.entrySet();
     }
     
     public int size() {
+        this.loadAll();
         return (this.markovs.size());
     }
     
     public int totalSize() {
+        this.loadAll();
         int total = 0;
         for (Integer id : this.markovs.keySet()) {
             Map<Procedure, MarkovGraph> m = this.markovs.get(id);
@@ -274,6 +363,7 @@ public class MarkovGraphsContainer implements JSONSerializable {
     @Override
     @SuppressWarnings("unchecked")
     public String toString() {
+        this.loadAll();
         int num_ids = this.markovs.size();
         Map<String, Object> maps[] = (Map<String, Object>[])new Map<?, ?>[num_ids+1];
         int i = 0;
@@ -319,6 +409,8 @@ public class MarkovGraphsContainer implements JSONSerializable {
 
     @Override
     public void toJSON(JSONStringer stringer) throws JSONException {
+        this.loadAll();
+        
         // CLASSNAME
         stringer.key(Members.CLASSNAME.name()).value(this.getClass().getCanonicalName());
         
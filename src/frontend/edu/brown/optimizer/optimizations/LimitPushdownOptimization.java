@@ -70,6 +70,19 @@ public class LimitPushdownOptimization extends AbstractOptimization {
         }
         assert (limit_node != null);
 
+        // The partitions need to send back enough tuples for the coordinator
+        // to skip the offset, so they can't skip it themselves
+        if (limit_node.getOffset() > 0 || limit_node.getOffsetParameterIndex() != -1) {
+            if (limit_node.getLimit() < 0 || limit_node.getLimitParameterIndex() != -1 ||
+                limit_node.getOffsetParameterIndex() != -1) {
+                if (debug.val)
+                    LOG.debug("SKIP - Unable to compute the LIMIT to push down with this OFFSET");
+                return (Pair.of(false, root));
+            }
+            limit_node.setLimit(limit_node.getLimit() + limit_node.getOffset());
+            limit_node.setOffset(0);
+        }
+
         if (debug.val) {
             LOG.debug("LIMIT:    " + PlanNodeUtil.debug(limit_node));
             LOG.debug("ORDER BY: " + PlanNodeUtil.debug(orderby_node));
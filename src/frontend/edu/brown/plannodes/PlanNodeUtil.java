@@ -37,6 +37,7 @@ import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.InsertPlanNode;
 import org.voltdb.plannodes.LimitPlanNode;
 import org.voltdb.plannodes.MaterializePlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.NestLoopIndexPlanNode;
 import org.voltdb.plannodes.NestLoopPlanNode;
 import org.voltdb.plannodes.OrderByPlanNode;
@@ -249,6 +250,14 @@ public abstract class PlanNodeUtil {
                 } // FOR
                 break;
             }
+            case HASHJOIN: {
+                HashJoinPlanNode cast_node = (HashJoinPlanNode) node;
+                if (cast_node.getPredicate() != null)
+                    exps.add(cast_node.getPredicate());
+                exps.addAll(cast_node.getOuterKeyExpressions());
+                exps.addAll(cast_node.getInnerKeyExpressions());
+                break;
+            }
             // ---------------------------------------------------
             // PROJECTION
             // ---------------------------------------------------
@@ -328,7 +337,8 @@ public abstract class PlanNodeUtil {
                     }
                     // JOINS
                     case NESTLOOP:
-                    case NESTLOOPINDEX: {
+                    case NESTLOOPINDEX:
+                    case HASHJOIN: {
                         AbstractJoinPlanNode cast_node = (AbstractJoinPlanNode) node;
                         exps.add(cast_node.getPredicate());
                         break;
@@ -764,6 +774,18 @@ public abstract class PlanNodeUtil {
         } else if (node instanceof NestLoopPlanNode) {
             // Nothing
 
+            // HashJoinPlanNode
+        } else if (node instanceof HashJoinPlanNode) {
+            HashJoinPlanNode cast_node = (HashJoinPlanNode) node;
+            sb.append(inner_spacer).append("OuterKeyExpressions:\n");
+            for (AbstractExpression exp : cast_node.getOuterKeyExpressions()) {
+                sb.append(ExpressionUtil.debug(exp, line_spacer));
+            } // FOR
+            sb.append(inner_spacer).append("InnerKeyExpressions:\n");
+            for (AbstractExpression exp : cast_node.getInnerKeyExpressions()) {
+                sb.append(ExpressionUtil.debug(exp, line_spacer));
+            } // FOR
+
         } else if (node instanceof OrderByPlanNode) {
             OrderByPlanNode cast_node = (OrderByPlanNode) node;
             sb.append(inner_spacer).append(PlanNodeUtil.debugOutputColumns("SortColumns", cast_node.getSortColumnGuids(), line_spacer));
@@ -1,9 +1,11 @@
 package edu.brown.pools;
 
+import java.lang.ref.WeakReference;
+import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.commons.pool.BaseObjectPool;
 import org.apache.commons.pool.PoolUtils;
@@ -14,7 +16,29 @@ import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 
 /**
- * Based on org.apache.commons.pool.impl.StackObjectPool
+ * Concurrent object pool based on per-thread magazine caches backed by
+ * a shared lock-free depot (Bonwick & Adams, "Magazines and Vmem").
+ * <P>
+ * Each thread that touches the pool gets its own pair of fixed-size magazines.
+ * Borrowing and returning objects only touches the calling thread's magazines
+ * and therefore does not need any synchronization. When a thread runs out of
+ * objects (or has too many of them), it exchanges a whole magazine with the depot.
+ * This makes the common H-Store pattern where one thread borrows an object
+ * (e.g., the network thread) and another thread returns it (e.g., the PartitionExecutor)
+ * cost one CAS per magazine instead of one per object. Once the pool is warmed up,
+ * borrowing and returning do not allocate any new memory.
+ * <P>
+ * The borrow/return counters are kept per thread and are only aggregated when
+ * somebody asks for them, so the values returned by {@link #getNumActive()},
+ * {@link #getNumIdle()}, {@link #getBorrowedCount()} and {@link #getReturnedCount()}
+ * are only approximations while other threads are using the pool.
+ * <P>
+ * The pool keeps a list of every thread's cache so that it can aggregate these counters.
+ * The caches only hold a weak reference to their thread. Whenever a new thread 
+ * starts using the pool, we remove the caches of any threads that have died,
+ * hand their idle objects back to the depot, and fold their counters into the pool's totals.
+ * The list is therefore bounded by the number of live threads that use the pool
+ * plus the ones that died since the last time a new thread showed up.
  * @author pavlo
  * @param <T>
  */
@@ -37,36 +61,169 @@ public class FastObjectPool<T> extends BaseObjectPool {
      * cause the pool to be pre-populated.)
      */
     private static final int DEFAULT_INIT_SLEEPING_CAPACITY = 4;
-    
-    /** 
-     * My pool.
+
+    /**
+     * The max number of objects that a single magazine can hold.
+     */
+    private static final int DEFAULT_MAGAZINE_SIZE = 16;
+
+    // ----------------------------------------------------------------------------
+    // INTERNAL DATA STRUCTURES
+    // ----------------------------------------------------------------------------
+
+    /**
+     * A fixed-size stack of idle objects.
+     * A magazine is only ever modified by the thread that currently owns it.
+     */
+    private static final class Magazine {
+        private final Object rounds[];
+        private int size = 0;
+
+        private Magazine(int capacity) {
+            this.rounds = new Object[capacity];
+        }
+        private boolean isFull() {
+            return (this.size == this.rounds.length);
+        }
+        private void push(Object obj) {
+            int idx = this.size;
+            this.rounds[idx] = obj;
+            this.size = idx + 1;
+        }
+        private Object pop() {
+            int idx = this.size - 1;
+            Object obj = this.rounds[idx];
+            this.rounds[idx] = null;
+            this.size = idx;
+            return (obj);
+        }
+    }
+
+    /**
+     * Bounded lock-free set of magazines that are shared between all threads.
+     * Each slot is either empty or holds exactly one magazine, so we never
+     * reuse a linked node and do not have to worry about the ABA problem.
      */
-    private Queue<T> pool = null;
+    private static final class Depot {
+        private final AtomicReferenceArray<Magazine> slots;
 
-    /** 
+        private Depot(int capacity) {
+            this.slots = new AtomicReferenceArray<Magazine>(capacity);
+        }
+        private boolean offer(Magazine m) {
+            for (int i = 0, cnt = this.slots.length(); i < cnt; i++) {
+                if (this.slots.get(i) == null && this.slots.compareAndSet(i, null, m)) {
+                    return (true);
+                }
+            } // FOR
+            return (false);
+        }
+        private Magazine poll() {
+            Magazine m = null;
+            for (int i = 0, cnt = this.slots.length(); i < cnt; i++) {
+                m = this.slots.get(i);
+                if (m != null && this.slots.compareAndSet(i, m, null)) {
+                    return (m);
+                }
+            } // FOR
+            return (null);
+        }
+        private int getNumIdle() {
+            int total = 0;
+            Magazine m = null;
+            for (int i = 0, cnt = this.slots.length(); i < cnt; i++) {
+                m = this.slots.get(i);
+                if (m != null) total += m.size;
+            } // FOR
+            return (total);
+        }
+    }
+
+    /**
+     * Per-thread state. The counters are only written by the owning thread.
+     */
+    private static final class ThreadCache {
+        private final WeakReference<Thread> owner;
+        private Magazine loaded;
+        private Magazine previous;
+        private long borrowed = 0;
+        private long returned = 0;
+        private long invalidated = 0;
+
+        private ThreadCache(int magazineSize) {
+            this.owner = new WeakReference<Thread>(Thread.currentThread());
+            this.loaded = new Magazine(magazineSize);
+            this.previous = new Magazine(magazineSize);
+        }
+        private boolean isDead() {
+            Thread t = this.owner.get();
+            return (t == null || t.isAlive() == false);
+        }
+        private void swap() {
+            Magazine temp = this.loaded;
+            this.loaded = this.previous;
+            this.previous = temp;
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+    // POOL STATE
+    // ----------------------------------------------------------------------------
+
+    /**
      * My {@link PoolableObjectFactory}.
      */
     private PoolableObjectFactory factory = null;
-    
-    /** 
-     * The cap on the number of "sleeping" instances in the pool. 
+
+    /**
+     * The cap on the number of "sleeping" instances in the pool.
+     * This is only enforced on the shared depot. Each thread can
+     * additionally hold up to two magazines worth of idle objects.
+     */
+    private final int maxSleeping;
+
+    /**
+     * The number of objects per magazine.
+     */
+    private final int magazineSize;
+
+    /**
+     * Full magazines that are waiting to be picked up by a borrowing thread.
+     */
+    private final Depot fullMagazines;
+
+    /**
+     * Empty magazines that can be reused by a returning thread.
      */
-    private int maxSleeping = DEFAULT_MAX_SLEEPING;
-    
+    private final Depot emptyMagazines;
+
     /**
-     * Number of objects borrowed but not yet returned to the pool.
+     * The ThreadCaches for the threads that are using this pool.
+     * This is only used to aggregate the counters and to clean up after dead threads.
      */
-    private final AtomicInteger numActive = new AtomicInteger(0);
-    
+    private final List<ThreadCache> caches = new CopyOnWriteArrayList<ThreadCache>();
+
     /**
-     * Number of objects sitting in the pool
+     * The counters of the ThreadCaches that we removed because their threads died
      */
-    private final AtomicInteger numInactive = new AtomicInteger(0);
-    
+    private final AtomicLong retiredBorrowed = new AtomicLong(0);
+    private final AtomicLong retiredReturned = new AtomicLong(0);
+    private final AtomicLong retiredInvalidated = new AtomicLong(0);
+
+    private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+            pruneDeadCaches();
+            ThreadCache cache = new ThreadCache(magazineSize);
+            caches.add(cache);
+            return (cache);
+        }
+    };
+
     // ----------------------------------------------------------------------------
     // CONSTRUCTORS
     // ----------------------------------------------------------------------------
-    
+
     public FastObjectPool(PoolableObjectFactory factory) {
         this(factory, DEFAULT_MAX_SLEEPING, DEFAULT_INIT_SLEEPING_CAPACITY);
     }
@@ -75,18 +232,104 @@ public class FastObjectPool<T> extends BaseObjectPool {
         this(factory, idle, DEFAULT_INIT_SLEEPING_CAPACITY);
     }
 
+    /**
+     * @param factory
+     * @param maxIdle The max number of idle objects to keep in the shared depot
+     * @param initIdleCapacity Ignored. The pool's containers are allocated lazily.
+     */
     public FastObjectPool(PoolableObjectFactory factory, int maxIdle, int initIdleCapacity) {
         this.factory = factory;
-        maxSleeping = (maxIdle < 0 ? DEFAULT_MAX_SLEEPING : maxIdle);
-        pool = new ConcurrentLinkedQueue<T>();
+        this.maxSleeping = (maxIdle < 0 ? DEFAULT_MAX_SLEEPING : maxIdle);
+        this.magazineSize = Math.max(1, Math.min(DEFAULT_MAGAZINE_SIZE, this.maxSleeping));
+        int numMagazines = Math.max(1, (this.maxSleeping + this.magazineSize - 1) / this.magazineSize);
+        this.fullMagazines = new Depot(numMagazines);
+        this.emptyMagazines = new Depot(numMagazines);
+    }
+
+    /**
+     * Remove the ThreadCaches of any threads that have died. Their idle objects
+     * are handed back to the depot (or dropped if it is full) and their counters
+     * are added to the pool's totals.
+     */
+    private void pruneDeadCaches() {
+        for (ThreadCache cache : this.caches) {
+            // Only one thread gets to remove each dead cache
+            if (cache.isDead() == false || this.caches.remove(cache) == false) continue;
+            
+            if (cache.loaded.size > 0) this.fullMagazines.offer(cache.loaded);
+            if (cache.previous.size > 0) this.fullMagazines.offer(cache.previous);
+            this.retiredBorrowed.addAndGet(cache.borrowed);
+            this.retiredReturned.addAndGet(cache.returned);
+            this.retiredInvalidated.addAndGet(cache.invalidated);
+            if (debug.val)
+                LOG.debug("Removed the cache of a dead thread from " + this.getClass().getSimpleName());
+        } // FOR
+    }
+
+    // ----------------------------------------------------------------------------
+    // BORROW / RETURN
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Grab an idle object from the given ThreadCache.
+     * Returns null if there are no idle objects in the cache or the depot
+     * @param cache
+     * @return
+     */
+    private Object poll(ThreadCache cache) {
+        if (cache.loaded.size > 0) {
+            return (cache.loaded.pop());
+        }
+        if (cache.previous.size > 0) {
+            cache.swap();
+            return (cache.loaded.pop());
+        }
+        // Both of our magazines are empty, so try to get a full one from the depot
+        // and hand one of our empty ones back
+        Magazine m = this.fullMagazines.poll();
+        if (m == null) return (null);
+        this.emptyMagazines.offer(cache.previous);
+        cache.previous = cache.loaded;
+        cache.loaded = m;
+        return (cache.loaded.pop());
     }
-    
+
+    /**
+     * Put an idle object into the given ThreadCache.
+     * Returns false if there is no room left in the cache or the depot
+     * @param cache
+     * @param obj
+     * @return
+     */
+    private boolean offer(ThreadCache cache, Object obj) {
+        if (cache.loaded.isFull() == false) {
+            cache.loaded.push(obj);
+            return (true);
+        }
+        if (cache.previous.size == 0) {
+            cache.swap();
+            cache.loaded.push(obj);
+            return (true);
+        }
+        // Both of our magazines are full, so try to hand one of them
+        // to the depot and replace it with an empty one
+        if (this.fullMagazines.offer(cache.previous) == false) {
+            return (false);
+        }
+        cache.previous = cache.loaded;
+        Magazine m = this.emptyMagazines.poll();
+        cache.loaded = (m != null ? m : new Magazine(this.magazineSize));
+        cache.loaded.push(obj);
+        return (true);
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public T borrowObject() throws Exception {
         assertOpen();
+        ThreadCache cache = this.threadCache.get();
         boolean newlyCreated = false;
-        T obj = this.pool.poll();
+        T obj = (T)this.poll(cache);
         if (obj == null) {
             if (null == this.factory) {
                 throw new NoSuchElementException();
@@ -98,9 +341,6 @@ public class FastObjectPool<T> extends BaseObjectPool {
                 newlyCreated = true;
             }
         }
-        else {
-            this.numInactive.decrementAndGet();
-        }
         assert(obj != null);
         try {
             this.factory.activateObject(obj);
@@ -122,64 +362,57 @@ public class FastObjectPool<T> extends BaseObjectPool {
                     "Could not create a validated object, cause: " +
                     ex.getMessage());
             }
+            // The idle object was no good, so try again
+            return (this.borrowObject());
         }
-        this.numActive.incrementAndGet();
-        
+        cache.borrowed++;
+
         if (debug.val)
             LOG.debug(String.format("Retrieved %s from ObjectPool [hashCode=%d]",
                       obj.getClass().getSimpleName(), obj.hashCode()));
-            
+
         return obj;
     }
-    
+
     @Override
     public void returnObject(Object obj) throws Exception {
-        @SuppressWarnings("unchecked")
-        T t = (T)obj;
-        
         if (isClosed() || this.factory == null) return;
+        ThreadCache cache = this.threadCache.get();
         boolean success = true;
-        
         try {
             this.factory.passivateObject(obj);
         } catch(Exception e) {
             success = false;
         }
 
-        boolean shouldDestroy = !success;
-        this.numActive.decrementAndGet();
-        int poolSize = this.numInactive.incrementAndGet();
         if (success) {
-            Object toBeDestroyed = null;
-            if (poolSize >= maxSleeping) {
-                shouldDestroy = true;
-                toBeDestroyed = this.pool.poll(); // remove the stalest object
-            }
             if (debug.val)
                 LOG.debug(String.format("Returning %s back to ObjectPool [hashCode=%d]",
-                          t.getClass().getSimpleName(), t.hashCode()));
-            this.pool.offer(t);
-            // swap returned obj with the stalest one so it can be destroyed
-            if (toBeDestroyed != null) obj = toBeDestroyed; 
+                          obj.getClass().getSimpleName(), obj.hashCode()));
+            success = this.offer(cache, obj);
         }
-
-        if (shouldDestroy) { // by constructor, shouldDestroy is false when _factory is null
+        if (success == false) {
             try {
                 this.factory.destroyObject(obj);
             } catch(Exception e) {
                 // ignored
             }
         }
+        cache.returned++;
     }
-    
+
     @Override
     public void invalidateObject(Object obj) throws Exception {
-        this.numActive.decrementAndGet();
+        this.threadCache.get().invalidated++;
         if (null != factory) {
             this.factory.destroyObject(obj);
         }
     }
 
+    // ----------------------------------------------------------------------------
+    // COUNTERS
+    // ----------------------------------------------------------------------------
+
     /**
      * Return the number of instances
      * currently idle in this pool.
@@ -187,7 +420,11 @@ public class FastObjectPool<T> extends BaseObjectPool {
      * @return the number of instances currently idle in this pool
      */
     public int getNumIdle() {
-        return this.numInactive.get();
+        int total = this.fullMagazines.getNumIdle();
+        for (ThreadCache cache : this.caches) {
+            total += cache.loaded.size + cache.previous.size;
+        } // FOR
+        return (total);
     }
 
     /**
@@ -196,30 +433,71 @@ public class FastObjectPool<T> extends BaseObjectPool {
      * @return the number of instances currently borrowed from this pool
      */
     public int getNumActive() {
-        return this.numActive.get();
+        long total = this.retiredBorrowed.get() - this.retiredReturned.get() - this.retiredInvalidated.get();
+        for (ThreadCache cache : this.caches) {
+            total += cache.borrowed - cache.returned - cache.invalidated;
+        } // FOR
+        return ((int)Math.max(0, total));
+    }
+
+    /**
+     * Return the total number of times that an object was borrowed from this pool.
+     */
+    public long getBorrowedCount() {
+        long total = this.retiredBorrowed.get();
+        for (ThreadCache cache : this.caches) {
+            total += cache.borrowed;
+        } // FOR
+        return (total);
+    }
+
+    /**
+     * Return the total number of times that an object was returned to this pool.
+     */
+    public long getReturnedCount() {
+        long total = this.retiredReturned.get();
+        for (ThreadCache cache : this.caches) {
+            total += cache.returned;
+        } // FOR
+        return (total);
     }
 
     /**
-     * Clears any objects sitting idle in the pool. Silently swallows any
-     * exceptions thrown by {@link PoolableObjectFactory#destroyObject(Object)}.
+     * Clears any objects sitting idle in the shared depot and in the calling
+     * thread's cache. Objects cached by other threads are left alone.
+     * Silently swallows any exceptions thrown by
+     * {@link PoolableObjectFactory#destroyObject(Object)}.
      */
     public void clear() {
         if (null != factory) {
-            T t = null;
-            while ((t = this.pool.poll()) != null) {
+            ThreadCache cache = this.threadCache.get();
+            Magazine m = null;
+            while (true) {
+                while (cache.loaded.size > 0) {
+                    try {
+                        this.factory.destroyObject(cache.loaded.pop());
+                    } catch(Exception e) {
+                        // ignore error, keep destroying the rest
+                    }
+                } // WHILE
+                if ((m = this.fullMagazines.poll()) == null) break;
+                this.emptyMagazines.offer(cache.loaded);
+                cache.loaded = m;
+            } // WHILE
+            cache.swap();
+            while (cache.loaded.size > 0) {
                 try {
-                    this.factory.destroyObject(t);
+                    this.factory.destroyObject(cache.loaded.pop());
                 } catch(Exception e) {
                     // ignore error, keep destroying the rest
                 }
             } // WHILE
-            this.numInactive.lazySet(0);
         }
     }
-    
+
     /**
      * Returns the {@link PoolableObjectFactory} used by this pool to create and manage object instances.
-     * 
+     *
      * @return the factory
      * @since 1.5.5
      */
@@ -6,6 +6,8 @@ public class BatchPlannerProfiler extends AbstractProfiler {
 
     public final AtomicInteger transactions = new AtomicInteger(0);
     public final AtomicInteger cached = new AtomicInteger(0);
+    public final AtomicInteger partest_cached = new AtomicInteger(0);
+    public final AtomicInteger partest_uncached = new AtomicInteger(0);
     
     public final ProfileMeasurement plan_time = new ProfileMeasurement("BUILD_PLAN");
     public final ProfileMeasurement partest_time = new ProfileMeasurement("PARTITION_EST");
@@ -17,5 +19,7 @@ public class BatchPlannerProfiler extends AbstractProfiler {
         super.reset();
         this.transactions.set(0);
         this.cached.set(0);
+        this.partest_cached.set(0);
+        this.partest_uncached.set(0);
     }
 }
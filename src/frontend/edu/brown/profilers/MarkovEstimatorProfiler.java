@@ -10,5 +10,7 @@ public class MarkovEstimatorProfiler extends AbstractProfiler {
     public final ProfileMeasurement fullest_time = new ConcurrentProfileMeasurement("FULL_ESTIMATE");
     public final ProfileMeasurement fastest_time = new ConcurrentProfileMeasurement("FAST_ESTIMATE");
     public final ProfileMeasurement cachedest_time = new ConcurrentProfileMeasurement("CACHED_ESTIMATE");
+    public final ProfileMeasurement compiledest_time = new ConcurrentProfileMeasurement("COMPILED_ESTIMATE");
+    public final ProfileMeasurement compile_time = new ConcurrentProfileMeasurement("COMPILE_GRAPH");
     
 }
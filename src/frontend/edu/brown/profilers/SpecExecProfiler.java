@@ -41,11 +41,26 @@ public class SpecExecProfiler extends AbstractProfiler {
      */
     public int interrupts = 0;
     
+    /**
+     * The number of prefetched query results that were used by distributed
+     * txns instead of waiting for a remote partition to execute the query.
+     * This is only updated for the SP1_LOCAL profiler.
+     */
+    public int prefetch_hits = 0;
+    
+    /**
+     * The number of prefetched query results that the distributed txns never used.
+     * This is only updated for the SP1_LOCAL profiler.
+     */
+    public int prefetch_wasted = 0;
+    
     @Override
     public void reset() {
         super.reset();
         this.success = 0;
         this.interrupts = 0;
+        this.prefetch_hits = 0;
+        this.prefetch_wasted = 0;
         this.num_comparisons.clear();
         this.num_executed.clear();
         this.queue_size.clear();
@@ -0,0 +1,59 @@
+package edu.brown.profilers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * How long each phase of starting up an HStoreSite takes
+ * @author pavlo
+ */
+public class StartupProfiler extends AbstractProfiler {
+
+    /**
+     * Preloading the CatalogUtil, PlanNodeUtil, and PartitionEstimator caches
+     */
+    public final ProfileMeasurement preload = new ConcurrentProfileMeasurement("PRELOAD");
+
+    /**
+     * Loading the MarkovGraphsContainers and ParameterMappingsSet from disk
+     */
+    public final ProfileMeasurement load_models = new ConcurrentProfileMeasurement("LOAD_MODELS");
+
+    /**
+     * Creating the TransactionEstimators for the local partitions
+     */
+    public final ProfileMeasurement estimators = new ConcurrentProfileMeasurement("ESTIMATORS");
+
+    /**
+     * Creating the PartitionExecutors (and loading the catalog into their EEs)
+     */
+    public final ProfileMeasurement executors = new ConcurrentProfileMeasurement("EXECUTORS");
+
+    /**
+     * The time that the PartitionExecutors spent loading the catalog into their EEs,
+     * summed over all of them. The EE's JSON parser is not thread-safe, so only one
+     * EE in the process can load its catalog at a time. If this is close to EXECUTORS
+     * times the number of startup threads, then the executors spent most of their time
+     * waiting for each other and site.startup_threads is not helping.
+     */
+    public final ProfileMeasurement load_catalog = new ConcurrentProfileMeasurement("LOAD_CATALOG");
+
+    /**
+     * Starting up all of the HStoreSite's threads in HStoreSite.init()
+     */
+    public final ProfileMeasurement start_threads = new ConcurrentProfileMeasurement("START_THREADS");
+
+    /**
+     * The entire time from when the HStoreSite was created until it is ready
+     */
+    public final ProfileMeasurement total = new ConcurrentProfileMeasurement("TOTAL");
+
+    @Override
+    public Map<String, Object> debugMap() {
+        Map<String, Object> m = new LinkedHashMap<String, Object>();
+        for (ProfileMeasurement pm : this.getProfileMeasurements()) {
+            m.put(pm.getName(), String.format("%.1f ms", pm.getTotalThinkTimeMS()));
+        } // FOR
+        return (m);
+    }
+}
@@ -0,0 +1,213 @@
+package edu.brown.statistics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A two-dimensional table of counters that can be updated from many threads
+ * without any synchronization. Each thread gets its own stripe of primitive
+ * counters that only it writes to. The stripes are only summed together
+ * when somebody reads a counter, so updates are cheap but reads are not.
+ * <P>
+ * Rows are meant to be indexed by an enum's ordinal and the columns by some small
+ * dense id (e.g., a Procedure's id). The number of columns automatically grows as
+ * needed. Values read while other threads are updating the table are approximate.
+ * @author pavlo
+ */
+public class StripedCounter {
+
+    private static final int GROW_INCREMENT = 10;
+
+    /**
+     * Per-thread counters. The array is laid out column-by-column
+     * so that adding new columns only extends it.
+     * Only the owning thread is allowed to update or replace it.
+     */
+    private static final class Stripe {
+        private volatile AtomicLongArray values;
+
+        private Stripe(int size) {
+            this.values = new AtomicLongArray(size);
+        }
+    }
+
+    private final int num_rows;
+    private volatile int num_cols;
+
+    /**
+     * All of the stripes for the threads that have ever touched this counter.
+     * Stripes are never removed, so that counts from dead threads are kept.
+     */
+    private final List<Stripe> stripes = new CopyOnWriteArrayList<Stripe>();
+
+    private final ThreadLocal<Stripe> stripe = new ThreadLocal<Stripe>() {
+        @Override
+        protected Stripe initialValue() {
+            Stripe s = new Stripe(num_rows * num_cols);
+            stripes.add(s);
+            return (s);
+        }
+    };
+
+    /**
+     * The values of the counters the last time that they were cleared.
+     * We can't reset another thread's stripe without racing with it, so instead
+     * we remember what the totals were and subtract them when reading.
+     */
+    private volatile long baseline[];
+
+    // ----------------------------------------------------------------------------
+    // INITIALIZATION
+    // ----------------------------------------------------------------------------
+
+    public StripedCounter(int num_rows) {
+        this(num_rows, GROW_INCREMENT);
+    }
+
+    public StripedCounter(int num_rows, int num_cols) {
+        this.num_rows = num_rows;
+        this.num_cols = Math.max(1, num_cols);
+        this.baseline = new long[this.num_rows * this.num_cols];
+    }
+
+    public int getRowCount() {
+        return (this.num_rows);
+    }
+
+    public int getColumnCount() {
+        return (this.num_cols);
+    }
+
+    /**
+     * Make sure that there is space for at least the given number of columns
+     * @param num_cols
+     */
+    public synchronized void ensureSize(int num_cols) {
+        if (num_cols > this.num_cols) {
+            long new_baseline[] = new long[this.num_rows * num_cols];
+            System.arraycopy(this.baseline, 0, new_baseline, 0, this.baseline.length);
+            this.baseline = new_baseline;
+            this.num_cols = num_cols;
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+    // UPDATE METHODS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Add delta to the counter at the given row and column
+     * @param row
+     * @param col
+     * @param delta
+     */
+    public void add(int row, int col, long delta) {
+        assert(row >= 0 && row < this.num_rows) : "Invalid row " + row;
+        assert(col >= 0) : "Invalid column " + col;
+        Stripe s = this.stripe.get();
+        AtomicLongArray values = s.values;
+        int idx = (col * this.num_rows) + row;
+        if (idx >= values.length()) {
+            this.ensureSize(col + GROW_INCREMENT);
+            values = this.grow(s, this.num_rows * this.num_cols);
+        }
+        // Only this thread writes to this stripe, so we don't need a CAS here
+        values.lazySet(idx, values.get(idx) + delta);
+    }
+
+    public void inc(int row, int col) {
+        this.add(row, col, 1);
+    }
+
+    public void dec(int row, int col) {
+        this.add(row, col, -1);
+    }
+
+    private AtomicLongArray grow(Stripe s, int size) {
+        AtomicLongArray orig = s.values;
+        AtomicLongArray values = new AtomicLongArray(size);
+        for (int i = 0, cnt = orig.length(); i < cnt; i++) {
+            values.set(i, orig.get(i));
+        } // FOR
+        s.values = values;
+        return (values);
+    }
+
+    /**
+     * Reset all of the counters in the given row back to zero
+     * @param row
+     */
+    public synchronized void clear(int row) {
+        long new_baseline[] = this.baseline.clone();
+        for (int col = 0; col < this.num_cols; col++) {
+            int idx = (col * this.num_rows) + row;
+            new_baseline[idx] = this.sum(idx);
+        } // FOR
+        this.baseline = new_baseline;
+    }
+
+    /**
+     * Reset all of the counters back to zero
+     */
+    public synchronized void clear() {
+        long new_baseline[] = new long[this.num_rows * this.num_cols];
+        for (int idx = 0; idx < new_baseline.length; idx++) {
+            new_baseline[idx] = this.sum(idx);
+        } // FOR
+        this.baseline = new_baseline;
+    }
+
+    // ----------------------------------------------------------------------------
+    // READ METHODS
+    // ----------------------------------------------------------------------------
+
+    private long sum(int idx) {
+        long total = 0;
+        AtomicLongArray values = null;
+        for (Stripe s : this.stripes) {
+            values = s.values;
+            if (idx < values.length()) total += values.get(idx);
+        } // FOR
+        return (total);
+    }
+
+    /**
+     * Return the current value of the counter at the given row and column
+     * @param row
+     * @param col
+     * @return
+     */
+    public long get(int row, int col) {
+        int idx = (col * this.num_rows) + row;
+        long base[] = this.baseline;
+        return (this.sum(idx) - (idx < base.length ? base[idx] : 0));
+    }
+
+    /**
+     * Return the sum of all of the counters in the given row
+     * @param row
+     * @return
+     */
+    public long getRowTotal(int row) {
+        long total = 0;
+        for (int col = 0, cnt = this.num_cols; col < cnt; col++) {
+            total += this.get(row, col);
+        } // FOR
+        return (total);
+    }
+
+    /**
+     * Return the current values of all the counters in the given row,
+     * indexed by column.
+     * @param row
+     * @return
+     */
+    public long[] getRow(int row) {
+        long ret[] = new long[this.num_cols];
+        for (int col = 0; col < ret.length; col++) {
+            ret[col] = this.get(row, col);
+        } // FOR
+        return (ret);
+    }
+}
@@ -38,6 +38,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.commons.collections15.map.ListOrderedMap;
 import org.apache.commons.pool.BasePoolableObjectFactory;
@@ -124,6 +126,22 @@ public class PartitionEstimator {
      */
     private final Map<String, Set<CacheEntry>> table_cache_xref = new HashMap<String, Set<CacheEntry>>();
 
+    /**
+     * Statement -> [Single-Partition StmtParameter Offsets, Multi-Partition StmtParameter Offsets]
+     * These are the parameters whose values determine what partitions the Statement's
+     * PlanFragments will touch. We use them to build the keys for the estimation cache.
+     */
+    private final Map<Statement, int[][]> cache_estimationParameters = new ConcurrentHashMap<Statement, int[][]>();
+
+    /**
+     * Bounded cache of previously computed fragment partitions.
+     * This is a direct-mapped table where a new entry just replaces whatever
+     * was in its slot, so neither readers nor writers ever have to block.
+     * If this is null, then the estimation cache is disabled.
+     */
+    private AtomicReferenceArray<EstimationCacheEntry> estimation_cache;
+    private int estimation_cache_mask;
+
     /**
      * CacheEntry ColumnKey -> StmtParameter Offset Array
      */
@@ -291,6 +309,45 @@ public class PartitionEstimator {
         };
     }, 1000);
 
+    /**
+     * The memoized output of getAllFragmentPartitions() for a particular
+     * (PlanFragments, base partition, parameter values) combination.
+     * These are never modified once they are put in the estimation cache.
+     */
+    private static final class EstimationCacheEntry {
+        private final PlanFragment fragments[];
+        private final int base_partition;
+        private final Object values[];
+        private final int hash;
+        /**
+         * The partitions for each PlanFragment before we add in the base partition
+         */
+        private final PartitionSet partitions[];
+
+        private EstimationCacheEntry(PlanFragment fragments[], int base_partition, Object values[], int hash, PartitionSet partitions[]) {
+            this.fragments = fragments;
+            this.base_partition = base_partition;
+            this.values = values;
+            this.hash = hash;
+            this.partitions = partitions;
+        }
+
+        private boolean matches(PlanFragment fragments[], int base_partition, Object params[], int param_idxs[], int hash) {
+            if (this.hash != hash || this.fragments != fragments || this.base_partition != base_partition) {
+                return (false);
+            }
+            for (int i = 0; i < param_idxs.length; i++) {
+                Object value = params[param_idxs[i]];
+                if (value == null) {
+                    if (this.values[i] != null) return (false);
+                } else if (value.equals(this.values[i]) == false) {
+                    return (false);
+                }
+            } // FOR
+            return (true);
+        }
+    } // END CLASS
+
     // ----------------------------------------------------------------------------
     // CONSTRUCTORS
     // ----------------------------------------------------------------------------
@@ -336,6 +393,28 @@ public class PartitionEstimator {
         return (this.hasher);
     }
 
+    /**
+     * Enable the estimation cache for getAllFragmentPartitions(). The cache
+     * will hold at most the given number of results (rounded up to the next
+     * power of two). If the size is zero, then the cache is disabled.
+     * <B>NOTE:</B> You should only enable this if nobody is going to modify the
+     * catalog without calling initCatalog()
+     * @param size
+     */
+    public void setEstimationCacheSize(int size) {
+        if (size <= 0) {
+            this.estimation_cache = null;
+            this.estimation_cache_mask = 0;
+        } else {
+            int capacity = Integer.highestOneBit(size);
+            if (capacity < size) capacity <<= 1;
+            this.estimation_cache_mask = capacity - 1;
+            this.estimation_cache = new AtomicReferenceArray<EstimationCacheEntry>(capacity);
+        }
+        if (debug.val)
+            LOG.debug(String.format("Set estimation cache size to %d", size));
+    }
+
     /**
      * Initialize a new catalog for this PartitionEstimator
      * @param new_catalog_db
@@ -413,6 +492,12 @@ public class PartitionEstimator {
         this.cache_fragmentEntries.clear();
         this.cache_statementEntries.clear();
         this.cache_stmtPartitionParameters.clear();
+        this.cache_estimationParameters.clear();
+        if (this.estimation_cache != null) {
+            for (int i = 0, cnt = this.estimation_cache.length(); i < cnt; i++) {
+                this.estimation_cache.set(i, null);
+            } // FOR
+        }
     }
     
     // ----------------------------------------------------------------------------
@@ -1111,22 +1196,58 @@ public class PartitionEstimator {
      * Populate a mapping from PlanFragments to PartitionSets.
      * <B>NOTE:</B> This is the one to use at runtime in the BatchPlanner because it doesn't
      * allocate any new Collections!
+     * If the estimation cache is enabled, then we will first check whether we have already
+     * computed the partitions for these PlanFragments with the same parameter values.
      * 
      * @param frag_partitions
      * @param frag_all_partitions
      * @param fragments
      * @param params
      * @param base_partition
-     * @return
+     * @return true if the partitions were retrieved from the estimation cache
      * @throws Exception
      */
-    public void getAllFragmentPartitions(final Map<PlanFragment, PartitionSet> frag_partitions,
-                                         final PartitionSet frag_all_partitions,
-                                         final PlanFragment fragments[],
-                                         final Object params[],
-                                         final int base_partition) throws Exception {
+    public boolean getAllFragmentPartitions(final Map<PlanFragment, PartitionSet> frag_partitions,
+                                            final PartitionSet frag_all_partitions,
+                                            final PlanFragment fragments[],
+                                            final Object params[],
+                                            final int base_partition) throws Exception {
+        // OPTIMIZATION: Check whether we have already seen these parameter values
+        EstimationCacheEntry cache_entry = null;
+        boolean cached = false;
+        if (this.estimation_cache != null && fragments.length > 0) {
+            int param_idxs[] = this.getEstimationParameters(fragments);
+            if (param_idxs != null) {
+                int hash = 31 * fragments[0].getId() + base_partition;
+                for (int idx : param_idxs) {
+                    Object value = params[idx];
+                    // We can't cache array parameters
+                    if (ClassUtil.isArray(value)) {
+                        param_idxs = null;
+                        break;
+                    }
+                    hash = 31 * hash + (value != null ? value.hashCode() : 0);
+                } // FOR
+                if (param_idxs != null) {
+                    hash ^= (hash >>> 16);
+                    int slot = hash & this.estimation_cache_mask;
+                    cache_entry = this.estimation_cache.get(slot);
+                    if (cache_entry != null && cache_entry.matches(fragments, base_partition, params, param_idxs, hash)) {
+                        cached = true;
+                    } else {
+                        cache_entry = this.createEstimationCacheEntry(fragments, params, base_partition, param_idxs, hash);
+                        this.estimation_cache.set(slot, cache_entry);
+                    }
+                    if (trace.val)
+                        LOG.trace(String.format("Estimation cache %s for %s with base partition %d",
+                                  (cached ? "hit" : "miss"), fragments[0].fullName(), base_partition));
+                }
+            }
+        }
+        
         // Loop through this Statement's plan fragments and get the partitions
-        for (PlanFragment catalog_frag : fragments) {
+        for (int i = 0; i < fragments.length; i++) {
+            PlanFragment catalog_frag = fragments[i];
             PartitionSet partitions = null;
 
             // If we have a FragPartion map, then use an entry from that
@@ -1144,11 +1265,15 @@ public class PartitionEstimator {
             }
             assert(partitions != null);
 
-            this.calculatePartitionsForFragment(null,
-                                                partitions,
-                                                catalog_frag,
-                                                params,
-                                                base_partition);
+            if (cache_entry != null) {
+                partitions.addAll(cache_entry.partitions[i]);
+            } else {
+                this.calculatePartitionsForFragment(null,
+                                                    partitions,
+                                                    catalog_frag,
+                                                    params,
+                                                    base_partition);
+            }
 
             // If there were no partitions, then the PlanFragment needs to be
             // execute on the base partition
@@ -1161,6 +1286,7 @@ public class PartitionEstimator {
             if (frag_partitions != null && frag_all_partitions != null)
                 frag_all_partitions.addAll(partitions);
         } // FOR
+        return (cached);
     }
 
     /**
@@ -1214,6 +1340,77 @@ public class PartitionEstimator {
         return;
     }
 
+    /**
+     * Return the StmtParameter offsets whose values determine what partitions the
+     * given PlanFragments will touch. Returns null if the array is not one of the
+     * Statement's catalog fragment arrays, which means that it cannot be cached.
+     * @param fragments
+     * @return
+     * @throws Exception
+     */
+    private int[] getEstimationParameters(final PlanFragment fragments[]) throws Exception {
+        Statement catalog_stmt = (Statement)fragments[0].getParent();
+        int offset;
+        if (fragments == catalog_stmt.getFragments().values()) {
+            offset = 0;
+        } else if (fragments == catalog_stmt.getMs_fragments().values()) {
+            offset = 1;
+        } else {
+            return (null);
+        }
+        
+        int stmt_param_idxs[][] = this.cache_estimationParameters.get(catalog_stmt);
+        if (stmt_param_idxs == null) {
+            stmt_param_idxs = new int[2][];
+            PlanFragment stmt_fragments[][] = { catalog_stmt.getFragments().values(),
+                                                catalog_stmt.getMs_fragments().values() };
+            for (int i = 0; i < stmt_fragments.length; i++) {
+                Set<Integer> idxs = new TreeSet<Integer>();
+                for (PlanFragment catalog_frag : stmt_fragments[i]) {
+                    for (int param_idxs[] : this.getFragmentCacheEntry(catalog_frag).values()) {
+                        for (int idx : param_idxs) idxs.add(idx);
+                    } // FOR
+                } // FOR
+                stmt_param_idxs[i] = CollectionUtil.toIntArray(idxs);
+            } // FOR
+            this.cache_estimationParameters.put(catalog_stmt, stmt_param_idxs);
+            if (debug.val)
+                LOG.debug(String.format("%s Estimation Cache Parameters: SP%s / MP%s", catalog_stmt.fullName(),
+                          Arrays.toString(stmt_param_idxs[0]), Arrays.toString(stmt_param_idxs[1])));
+        }
+        return (stmt_param_idxs[offset]);
+    }
+    
+    /**
+     * Compute the partitions for each of the given PlanFragments and package them
+     * up in a new EstimationCacheEntry. Note that we don't add in the base partition
+     * for PlanFragments without any partitions here, since that depends on what the
+     * caller is populating.
+     * @param fragments
+     * @param params
+     * @param base_partition
+     * @param param_idxs
+     * @param hash
+     * @return
+     * @throws Exception
+     */
+    private EstimationCacheEntry createEstimationCacheEntry(final PlanFragment fragments[],
+                                                            final Object params[],
+                                                            final int base_partition,
+                                                            final int param_idxs[],
+                                                            final int hash) throws Exception {
+        PartitionSet partitions[] = new PartitionSet[fragments.length];
+        for (int i = 0; i < fragments.length; i++) {
+            partitions[i] = new PartitionSet();
+            this.calculatePartitionsForFragment(null, partitions[i], fragments[i], params, base_partition);
+        } // FOR
+        Object values[] = new Object[param_idxs.length];
+        for (int i = 0; i < param_idxs.length; i++) {
+            values[i] = params[param_idxs[i]];
+        } // FOR
+        return (new EstimationCacheEntry(fragments, base_partition, values, hash, partitions));
+    }
+
     private PartitionEstimator.CacheEntry getFragmentCacheEntry(PlanFragment catalog_frag) throws Exception {
         String frag_key = CatalogKey.createKey(catalog_frag);
         // Check whether we have generate the cache entries for this Statement
@@ -27,9 +27,12 @@ package edu.brown.utils;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.BitSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -46,12 +49,38 @@ import edu.brown.hstore.HStoreConstants;
 /**
  * Container class that represents a list of partitionIds
  * This is the fastest way to represent a list of partitions in the system.
+ * The partition ids are stored in a bitmap of longs, so you should use 
+ * values() or forEachPartition() if you want to iterate over them without boxing.
+ * <B>NOTE:</B> The sets returned by singleton() and all() are interned and
+ * immutable. Any attempt to modify them will throw an UnsupportedOperationException.
  * @author pavlo
  */
 public class PartitionSet implements Collection<Integer>, JSONSerializable, FastSerializable {
     
-    private final BitSet inner = new BitSet();
+    /**
+     * Callback interface for iterating over the partition ids in a PartitionSet
+     * without having to allocate an Iterator or box the values.
+     */
+    public interface PartitionConsumer {
+        public void accept(int partition);
+    }
+    
+    private static final int WORD_BITS = 6;
+    private static final long[] EMPTY_WORDS = new long[0];
+    
+    /**
+     * Interned singleton PartitionSets (PartitionId -> PartitionSet)
+     */
+    private static volatile AtomicReferenceArray<PartitionSet> INTERN_SINGLETONS = new AtomicReferenceArray<PartitionSet>(0);
+    
+    /**
+     * Interned PartitionSets for all of the partitions in a cluster (NumPartitions -> PartitionSet)
+     */
+    private static volatile AtomicReferenceArray<PartitionSet> INTERN_ALL = new AtomicReferenceArray<PartitionSet>(0);
+    
+    private long words[] = EMPTY_WORDS;
     private boolean contains_null = false;
+    private boolean immutable = false;
     private int[] values = null;
 
     // ----------------------------------------------------------------------------
@@ -76,17 +105,60 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
      */
     public PartitionSet(Integer...partitions) {
         for (Integer partition : partitions)
-            this.add(partition);
+            this.add(partition.intValue());
     }
     
     /**
      * Copy constructor
+     * The new PartitionSet is always mutable
      * @param partitions
      */
     public PartitionSet(PartitionSet partitions) {
         this.addAll(partitions);
     }
     
+    // ----------------------------------------------------------------------------
+    // INTERNAL METHODS
+    // ----------------------------------------------------------------------------
+
+    private void checkMutable() {
+        if (this.immutable) {
+            throw new UnsupportedOperationException("Trying to modify immutable PartitionSet " + this);
+        }
+    }
+    
+    private void ensureCapacity(int num_words) {
+        if (this.words.length < num_words) {
+            this.words = Arrays.copyOf(this.words, Math.max(num_words, this.words.length * 2));
+        }
+    }
+    
+    /**
+     * Return the next partition id in the bitmap that is greater than or
+     * equal to the given partition id. Returns -1 if there are no more.
+     * Note that this never returns the NULL partition id.
+     * @param from
+     * @return
+     */
+    private int nextPartition(int from) {
+        int idx = from >>> WORD_BITS;
+        if (idx >= this.words.length) return (-1);
+        long word = this.words[idx] & (-1L << from);
+        while (true) {
+            if (word != 0) return ((idx << WORD_BITS) + Long.numberOfTrailingZeros(word));
+            if (++idx == this.words.length) return (-1);
+            word = this.words[idx];
+        } // WHILE
+    }
+    
+    private int cardinality() {
+        int cnt = 0;
+        for (int i = 0; i < this.words.length; i++) {
+            cnt += Long.bitCount(this.words[i]);
+        } // FOR
+        return (cnt);
+    }
+    
     // ----------------------------------------------------------------------------
     // API METHODS
     // ----------------------------------------------------------------------------
@@ -98,20 +170,41 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
      * @return
      */
     public final int[] values() {
-        if (this.values == null) {
-            int remaining = this.inner.cardinality();
-            int size = remaining + (this.contains_null ? 1 : 0);
-            this.values = new int[size];
+        int ret[] = this.values;
+        if (ret == null) {
+            int size = this.size();
+            ret = new int[size];
             int idx = 0;
             if (this.contains_null) {
-                this.values[idx++] = HStoreConstants.NULL_PARTITION_ID;
+                ret[idx++] = HStoreConstants.NULL_PARTITION_ID;
             }
-            for (int i = 0; idx < size; i++) {
-                if (this.inner.get(i)) this.values[idx++] = i;
+            for (int p = this.nextPartition(0); p >= 0; p = this.nextPartition(p+1)) {
+                ret[idx++] = p;
             } // FOR
+            this.values = ret;
+        }
+        return (ret);
+    }
+    
+    /**
+     * Invoke the given PartitionConsumer for each partition id in this set.
+     * This does not allocate any objects.
+     * @param consumer
+     */
+    public final void forEachPartition(PartitionConsumer consumer) {
+        if (this.contains_null) {
+            consumer.accept(HStoreConstants.NULL_PARTITION_ID);
         }
-        return (this.values);
+        for (int idx = 0; idx < this.words.length; idx++) {
+            long word = this.words[idx];
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                consumer.accept((idx << WORD_BITS) + bit);
+                word &= (word - 1);
+            } // WHILE
+        } // FOR
     }
+    
     /**
      * Return first partition found in this PartitionSet. This is primarily
      * useful for single-partition txns when you just want the only partition in
@@ -120,54 +213,98 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
      * @throws IndexOutOfBoundsException
      */
     public int get() throws IndexOutOfBoundsException {
-        for (int partition = 0, cnt = this.inner.size(); partition < cnt; partition++) {
-            if (this.inner.get(partition)) return (partition);
-        } // FOR
+        int partition = this.nextPartition(0);
+        if (partition >= 0) return (partition);
         if (this.contains_null) return HStoreConstants.NULL_PARTITION_ID;
         throw new IndexOutOfBoundsException();
     }
     
+    /**
+     * Returns true if this PartitionSet cannot be modified
+     * @return
+     */
+    public boolean isImmutable() {
+        return (this.immutable);
+    }
+    
+    /**
+     * Mark this PartitionSet as immutable. Any further attempts to modify
+     * it will throw an UnsupportedOperationException.
+     * @return this PartitionSet
+     */
+    public PartitionSet makeImmutable() {
+        this.values();
+        this.immutable = true;
+        return (this);
+    }
+    
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof PartitionSet) {
-            return this.inner.equals(((PartitionSet)obj).inner);
+            PartitionSet other = (PartitionSet)obj;
+            if (this.contains_null != other.contains_null) return (false);
+            int common = Math.min(this.words.length, other.words.length);
+            for (int i = 0; i < common; i++) {
+                if (this.words[i] != other.words[i]) return (false);
+            } // FOR
+            for (int i = common; i < this.words.length; i++) {
+                if (this.words[i] != 0) return (false);
+            } // FOR
+            for (int i = common; i < other.words.length; i++) {
+                if (other.words[i] != 0) return (false);
+            } // FOR
+            return (true);
         }
         else if (obj instanceof Collection<?>) {
             Collection<?> other = (Collection<?>)obj;
-            if (this.inner.size() != other.size()) return (false);
+            if (this.size() != other.size()) return (false);
             return (this.containsAll(other));
         }
         return (false);
     }
     @Override
     public int hashCode() {
-        return this.inner.hashCode();
+        // Same as java.util.BitSet so that trailing empty words don't matter
+        long h = 1234;
+        for (int i = this.words.length; --i >= 0; ) {
+            h ^= this.words[i] * (i + 1);
+        } // FOR
+        return (int)((h >> 32) ^ h);
     }
     @Override
     public String toString() {
-        String s = this.inner.toString(); 
-        // HACK
+        StringBuilder sb = new StringBuilder("{");
+        String add = "";
         if (this.contains_null) {
-            s = s.substring(0, 1) +
-                HStoreConstants.NULL_PARTITION_ID + ", " +
-                s.substring(1);
+            sb.append(HStoreConstants.NULL_PARTITION_ID);
+            add = ", ";
         }
-        return (s);
+        for (int p = this.nextPartition(0); p >= 0; p = this.nextPartition(p+1)) {
+            sb.append(add).append(p);
+            add = ", ";
+        } // FOR
+        return (sb.append("}").toString());
     }
     @Override
     public int size() {
-        return (this.contains_null ? 1 : 0) + this.inner.cardinality();
-        // return (this.values().length);
+        int values[] = this.values;
+        if (values != null) return (values.length);
+        return (this.contains_null ? 1 : 0) + this.cardinality();
     }
     @Override
     public void clear() {
+        this.checkMutable();
         this.contains_null = false;
-        this.inner.clear();
+        Arrays.fill(this.words, 0l);
         this.values = null;
     }
     @Override
     public boolean isEmpty() {
-        return (this.contains_null == false && this.inner.isEmpty());
+        if (this.contains_null) return (false);
+        for (int i = 0; i < this.words.length; i++) {
+            if (this.words[i] != 0) return (false);
+        } // FOR
+        return (true);
     }
     @Override
     public boolean contains(Object o) {
@@ -183,29 +320,29 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
         if (partition == HStoreConstants.NULL_PARTITION_ID) {
             return (this.contains_null);
         }
-        return (this.inner.get(partition));
+        int idx = partition >>> WORD_BITS;
+        return (idx < this.words.length && (this.words[idx] & (1L << partition)) != 0);
     }
     @Override
     public Object[] toArray() {
-        int length = this.inner.cardinality();
-        Object arr[] = new Object[length];
-        int idx = 0;
-        for (Integer partition : this) {
-            arr[idx++] = partition;
-        }
+        int values[] = this.values();
+        Object arr[] = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            arr[i] = Integer.valueOf(values[i]);
+        } // FOR
         return (arr);
     }
     @SuppressWarnings("unchecked")
     @Override
     public <T> T[] toArray(T[] a) {
-        int length = this.inner.cardinality();
-        if (a.length != length) {
-            a = (T[])new Object[length];
+        int values[] = this.values();
+        if (a.length < values.length) {
+            a = (T[])java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), values.length);
         }
-        int idx = 0;
-        for (Integer partition : this) {
-            a[idx++] = (T)partition;
+        for (int i = 0; i < values.length; i++) {
+            a[i] = (T)Integer.valueOf(values[i]);
         } // FOR
+        if (a.length > values.length) a[values.length] = null;
         return (a);
     }
     @Override
@@ -213,10 +350,14 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
         return (this.add(e.intValue()));
     }
     public boolean add(int partition) {
+        this.checkMutable();
         if (partition == HStoreConstants.NULL_PARTITION_ID) {
             this.contains_null = true;
         } else {
-            this.inner.set(partition);
+            if (partition < 0) throw new IndexOutOfBoundsException("Invalid partition id " + partition);
+            int idx = partition >>> WORD_BITS;
+            this.ensureCapacity(idx + 1);
+            this.words[idx] |= (1L << partition);
         }
         this.values = null;
         return (true);
@@ -230,19 +371,23 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
         return (false);
     }
     public boolean remove(int partition) {
+        this.checkMutable();
         boolean ret = false;
         if (partition == HStoreConstants.NULL_PARTITION_ID) {
             ret = this.contains_null;
             this.contains_null = false;
-        } else if (this.inner.get(partition)) {
+        } else if (this.contains(partition)) {
             ret = true;
-            this.inner.set(partition, false);            
+            this.words[partition >>> WORD_BITS] &= ~(1L << partition);
         }
         this.values = null;
         return (ret);
     }
     @Override
     public boolean containsAll(Collection<?> c) {
+        if (c instanceof PartitionSet) {
+            return (this.containsAll((PartitionSet)c));
+        }
         for (Object o : c) {
             if (this.contains(o) == false) {
                 return (false);
@@ -251,14 +396,12 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
         return (true);
     }
     public boolean containsAll(PartitionSet partitions) {
-        if (this.contains_null != partitions.contains_null) return (false);
-        if (this.inner.intersects(partitions.inner)) {
-            for (int partition = 0, cnt = partitions.inner.size(); partition < cnt; partition++) {
-                if (partitions.inner.get(partition) && this.inner.get(partition) == false) return (false);
-            } // FOR
-            return (true);
-        }
-        return (false);
+        if (partitions.contains_null && this.contains_null == false) return (false);
+        for (int i = 0; i < partitions.words.length; i++) {
+            long mine = (i < this.words.length ? this.words[i] : 0);
+            if ((partitions.words[i] & ~mine) != 0) return (false);
+        } // FOR
+        return (true);
     }
     public boolean addAll(int partitions[]) {
         boolean ret = true;
@@ -269,6 +412,9 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
     }
     @Override
     public boolean addAll(Collection<? extends Integer> partitions) {
+        if (partitions instanceof PartitionSet) {
+            return (this.addAll((PartitionSet)partitions));
+        }
         boolean ret = true;
         for (Integer partition : partitions) {
             ret = this.add(partition.intValue()) && ret;
@@ -276,12 +422,23 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
         return (ret);
     }
     public boolean addAll(PartitionSet partitions) {
+        this.checkMutable();
         if (partitions.contains_null) this.contains_null = true;
-        this.inner.or(partitions.inner);
+        long other[] = partitions.words;
+        int length = other.length;
+        while (length > 0 && other[length-1] == 0) length--;
+        this.ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            this.words[i] |= other[i];
+        } // FOR
+        this.values = null;
         return (true);
     }
     @Override
     public boolean removeAll(Collection<?> c) {
+        if (c instanceof PartitionSet) {
+            return (this.removeAll((PartitionSet)c));
+        }
         boolean ret = false;
         for (Object o : c) {
             if (o instanceof Number) {
@@ -291,20 +448,27 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
         return (ret);
     }
     public boolean removeAll(PartitionSet partitions) {
+        this.checkMutable();
         boolean ret = false;
         if (partitions.contains_null) {
             ret = this.contains_null;
             this.contains_null = false;
         }
-        if (this.inner.intersects(partitions.inner)) {
-            this.inner.andNot(partitions.inner);
-            ret = true;
-        }
+        for (int i = 0, cnt = Math.min(this.words.length, partitions.words.length); i < cnt; i++) {
+            if ((this.words[i] & partitions.words[i]) != 0) {
+                this.words[i] &= ~partitions.words[i];
+                ret = true;
+            }
+        } // FOR
+        this.values = null;
         return (ret);
     }
     @Override
     public boolean retainAll(Collection<?> c) {
-        for (Integer partition : this) {
+        if (c instanceof PartitionSet) {
+            return (this.retainAll((PartitionSet)c));
+        }
+        for (int partition : this.values()) {
             if (c.contains(partition) == false) {
                 this.remove(partition);
             }
@@ -312,8 +476,12 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
         return (true);
     }
     public boolean retainAll(PartitionSet partitions) {
-        if (this.contains_null != partitions.contains_null) this.contains_null = false;
-        this.inner.and(partitions.inner);
+        this.checkMutable();
+        if (partitions.contains_null == false) this.contains_null = false;
+        for (int i = 0; i < this.words.length; i++) {
+            this.words[i] &= (i < partitions.words.length ? partitions.words[i] : 0);
+        } // FOR
+        this.values = null;
         return (true);
     }
     @Override
@@ -325,10 +493,123 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
     // STATIC METHODS
     // ----------------------------------------------------------------------------
     
+    /**
+     * Return the interned immutable PartitionSet that only contains the given partition id.
+     * @param partition
+     * @return
+     */
     public static PartitionSet singleton(int partition) {
-        PartitionSet ret = new PartitionSet();
-        ret.add(partition);
-        return (ret);
+        if (partition == HStoreConstants.NULL_PARTITION_ID) {
+            return (new PartitionSet(partition).makeImmutable());
+        }
+        AtomicReferenceArray<PartitionSet> cache = INTERN_SINGLETONS;
+        PartitionSet ps = (partition < cache.length() ? cache.get(partition) : null);
+        if (ps == null) {
+            ps = new PartitionSet();
+            ps.add(partition);
+            ps = internInstall(ps.makeImmutable(), partition, true);
+        }
+        return (ps);
+    }
+    
+    /**
+     * Return the interned immutable PartitionSet that contains all of the partition
+     * ids from zero up to (but not including) the given number of partitions.
+     * @param num_partitions
+     * @return
+     */
+    public static PartitionSet all(int num_partitions) {
+        AtomicReferenceArray<PartitionSet> cache = INTERN_ALL;
+        PartitionSet ps = (num_partitions < cache.length() ? cache.get(num_partitions) : null);
+        if (ps == null) {
+            ps = new PartitionSet();
+            for (int p = 0; p < num_partitions; p++) {
+                ps.add(p);
+            } // FOR
+            ps = internInstall(ps.makeImmutable(), num_partitions, false);
+        }
+        return (ps);
+    }
+    
+    /**
+     * Publish a fully built immutable PartitionSet into one of the intern caches.
+     * If another thread already installed a set for this slot, then that one is
+     * returned instead so that everybody always shares the same object.
+     * @param ps
+     * @param idx
+     * @param singleton
+     * @return
+     */
+    private static PartitionSet internInstall(PartitionSet ps, int idx, boolean singleton) {
+        AtomicReferenceArray<PartitionSet> cache = (singleton ? INTERN_SINGLETONS : INTERN_ALL);
+        if (idx >= cache.length()) {
+            synchronized (PartitionSet.class) {
+                cache = (singleton ? INTERN_SINGLETONS : INTERN_ALL);
+                if (idx >= cache.length()) {
+                    AtomicReferenceArray<PartitionSet> grown = new AtomicReferenceArray<PartitionSet>(idx + 1);
+                    for (int i = 0; i < cache.length(); i++) {
+                        grown.set(i, cache.get(i));
+                    } // FOR
+                    cache = grown;
+                    if (singleton) INTERN_SINGLETONS = cache;
+                    else INTERN_ALL = cache;
+                }
+            } // SYNCH
+        }
+        if (cache.compareAndSet(idx, null, ps) == false) {
+            ps = cache.get(idx);
+        }
+        return (ps);
+    }
+    
+    /**
+     * If the given PartitionSet has the same contents as one of the interned
+     * PartitionSets (i.e., it is a singleton or it contains all of the partitions),
+     * then return the interned object. Otherwise return the original object.
+     * @param partitions
+     * @param num_partitions
+     * @return
+     */
+    public static PartitionSet intern(PartitionSet partitions, int num_partitions) {
+        if (partitions.isImmutable() || partitions.contains_null) {
+            return (partitions);
+        }
+        int size = partitions.size();
+        if (size == 1) {
+            return (singleton(partitions.get()));
+        } else if (size == num_partitions && partitions.nextPartition(num_partitions) == -1) {
+            return (all(num_partitions));
+        }
+        return (partitions);
+    }
+    
+    /**
+     * Return a PartitionSet for the given list of partition ids (e.g., from a 
+     * protobuf message). If the list is a singleton or is the sorted list of all
+     * of the partitions, then we return the interned PartitionSet without allocating
+     * a new object. This means that the caller must not modify the returned set.
+     * @param partitions
+     * @param num_partitions
+     * @return
+     */
+    public static PartitionSet valueOf(List<Integer> partitions, int num_partitions) {
+        int size = partitions.size();
+        if (size == 1) {
+            int partition = partitions.get(0).intValue();
+            if (partition != HStoreConstants.NULL_PARTITION_ID) {
+                return (singleton(partition));
+            }
+        } else if (size == num_partitions && size > 0) {
+            boolean all = true;
+            for (int i = 0; i < size; i++) {
+                if (partitions.get(i).intValue() != i) {
+                    all = false;
+                    break;
+                }
+            } // FOR
+            if (all) return (all(num_partitions));
+        }
+        return (new PartitionSet(partitions));
     }
     
     public static String toString(boolean bitmap[]) {
@@ -344,32 +625,19 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
     // ----------------------------------------------------------------------------
     
     private class Itr implements Iterator<Integer> {
-        int idx = 0;
-        boolean shown_null = false;
-        boolean need_seek = true;
+        int next = (contains_null ? HStoreConstants.NULL_PARTITION_ID : nextPartition(0));
+        boolean has_next = (contains_null || next >= 0);
         @Override
         public boolean hasNext() {
-            this.need_seek = false;
-            if (contains_null && this.shown_null == false) {
-                return (true);
-            }
-            for (int cnt = inner.size(); this.idx < cnt; this.idx++) {
-                if (inner.get(this.idx)) {
-                    return (true);
-                }
-            } // FOR
-            return (false);
+            return (this.has_next);
         }
         @Override
         public Integer next() {
-            if (this.need_seek) {
-                if (this.hasNext() == false) return (null);
-            }
-            if (contains_null && this.shown_null == false) {
-                this.shown_null = true;
-                return (HStoreConstants.NULL_PARTITION_ID);
-            }
-            return Integer.valueOf(this.idx++);
+            if (this.has_next == false) throw new NoSuchElementException();
+            int ret = this.next;
+            this.next = nextPartition(ret + 1);
+            this.has_next = (this.next >= 0);
+            return Integer.valueOf(ret);
         }
         @Override
         public void remove() {
@@ -381,24 +649,29 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
     // SERIALIZATION METHODS
     // ----------------------------------------------------------------------------
 
-
+    /**
+     * The serialized form is the null partition flag followed by the
+     * non-empty prefix of the bitmap words
+     */
     @Override
     public void readExternal(FastDeserializer in) throws IOException {
         this.clear();
         this.contains_null = in.readBoolean();
-        int cnt = in.readShort();
-        for (int i = 0; i < cnt; i++) {
-            int partition = in.readInt();
-            this.add(partition);
+        int num_words = in.readShort();
+        this.ensureCapacity(num_words);
+        for (int i = 0; i < num_words; i++) {
+            this.words[i] = in.readLong();
         } // FOR
     }
 
     @Override
     public void writeExternal(FastSerializer out) throws IOException {
+        int num_words = this.words.length;
+        while (num_words > 0 && this.words[num_words-1] == 0) num_words--;
         out.writeBoolean(this.contains_null);
-        out.writeShort(this.inner.cardinality());
-        for (Integer partition : this) {
-            out.writeInt(partition.intValue());
+        out.writeShort(num_words);
+        for (int i = 0; i < num_words; i++) {
+            out.writeLong(this.words[i]);
         } // FOR
     }
     
@@ -421,7 +694,7 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
     @Override
     public void toJSON(JSONStringer stringer) throws JSONException {
         stringer.key("P").array();
-        for (Integer partition : this) {
+        for (int partition : this.values()) {
             stringer.value(partition);
         } // FOR
         stringer.endArray();
@@ -431,7 +704,7 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
     public void fromJSON(JSONObject json_object, Database catalog_db) throws JSONException {
         JSONArray json_arr = json_object.getJSONArray("P");
         for (int i = 0, cnt = json_arr.length(); i < cnt; i++) {
-            this.inner.set(json_arr.getInt(i));
+            this.add(json_arr.getInt(i));
         }
     }
 }
@@ -0,0 +1,451 @@
+package edu.brown.workload;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.voltdb.VoltType;
+import org.voltdb.types.TimestampType;
+
+/**
+ * Compact binary encoding for workload traces. This is meant to replace the
+ * line-by-line JSON format for large traces, since most of the time spent loading
+ * those is in parsing JSON and converting catalog names back into objects.
+ * <P>
+ * File layout:
+ * <PRE>
+ * MAGIC (int) | VERSION (int) | DICTIONARY LENGTH (int) | DICTIONARY
+ * [ NUM TXNS (int) | RAW LENGTH (int) | COMPRESSED LENGTH (int) | SNAPPY BYTES ]*
+ * 0 (int)
+ * </PRE>
+ * The dictionary maps the Procedure ids and Statement ids that are stored in
+ * the records back to their names. That way we can still read a trace against a
+ * catalog whose ids have shifted. Each block is compressed separately and can be
+ * decoded without looking at any other block. All of the numbers inside of a block are
+ * variable-length integers, and timestamps and txn ids are stored as deltas.
+ * @author pavlo
+ */
+public abstract class BinaryTraceFormat {
+
+    public static final int MAGIC = 0x48535452; // "HSTR"
+    public static final int VERSION = 1;
+
+    /** How many uncompressed bytes we will buffer before writing out a block */
+    public static final int DEFAULT_BLOCK_SIZE = 1048576; // 1MB
+
+    // ----------------------------------------------------------------------------
+    // ELEMENT FLAGS
+    // ----------------------------------------------------------------------------
+
+    static final int FLAG_ABORTED    = 0x01;
+    static final int FLAG_HAS_STOP   = 0x02;
+    static final int FLAG_HAS_OUTPUT = 0x04;
+
+    // ----------------------------------------------------------------------------
+    // VALUE TAGS
+    // ----------------------------------------------------------------------------
+
+    static final int TAG_NULL       = 0;
+    static final int TAG_LONG       = 1;
+    static final int TAG_INTEGER    = 2;
+    static final int TAG_SHORT      = 3;
+    static final int TAG_BYTE       = 4;
+    static final int TAG_DOUBLE     = 5;
+    static final int TAG_FLOAT      = 6;
+    static final int TAG_STRING     = 7;
+    static final int TAG_BOOLEAN    = 8;
+    static final int TAG_TIMESTAMP  = 9;
+    static final int TAG_DECIMAL    = 10;
+    static final int TAG_DATE       = 11;
+    /** Unknown component type for an Object[] */
+    static final int TAG_OBJECT     = 12;
+
+    /** Primitive array. The lower bits are the element's tag. The elements are not tagged. */
+    static final int TAG_PRIMITIVE_ARRAY = 0x40;
+    /** Object array. The lower bits are the component's tag. Every element is tagged. */
+    static final int TAG_OBJECT_ARRAY    = 0x80;
+    static final int TAG_MASK            = 0x3F;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Class<?> TAG_CLASSES[] = {
+        null,                   // TAG_NULL
+        Long.class,             // TAG_LONG
+        Integer.class,          // TAG_INTEGER
+        Short.class,            // TAG_SHORT
+        Byte.class,             // TAG_BYTE
+        Double.class,           // TAG_DOUBLE
+        Float.class,            // TAG_FLOAT
+        String.class,           // TAG_STRING
+        Boolean.class,          // TAG_BOOLEAN
+        TimestampType.class,    // TAG_TIMESTAMP
+        BigDecimal.class,       // TAG_DECIMAL
+        Date.class,             // TAG_DATE
+        Object.class,           // TAG_OBJECT
+    };
+    private static final Class<?> TAG_PRIMITIVES[] = {
+        null,
+        long.class,
+        int.class,
+        short.class,
+        byte.class,
+        double.class,
+        float.class,
+        null,
+        boolean.class,
+    };
+
+    /**
+     * Returns true if the given file starts with our magic number.
+     * This does not check whether the rest of the file is valid.
+     * @param path
+     * @return
+     */
+    public static boolean isBinaryTrace(File path) {
+        if (path.isFile() == false || path.length() < 4) return (false);
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(path));
+            return (in.readInt() == MAGIC);
+        } catch (IOException ex) {
+            return (false);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    private static int getTag(Class<?> cls) {
+        if (cls == Long.class || cls == long.class) return (TAG_LONG);
+        if (cls == Integer.class || cls == int.class) return (TAG_INTEGER);
+        if (cls == Short.class || cls == short.class) return (TAG_SHORT);
+        if (cls == Byte.class || cls == byte.class) return (TAG_BYTE);
+        if (cls == Double.class || cls == double.class) return (TAG_DOUBLE);
+        if (cls == Float.class || cls == float.class) return (TAG_FLOAT);
+        if (cls == String.class) return (TAG_STRING);
+        if (cls == Boolean.class || cls == boolean.class) return (TAG_BOOLEAN);
+        if (cls == TimestampType.class) return (TAG_TIMESTAMP);
+        if (cls == BigDecimal.class) return (TAG_DECIMAL);
+        if (cls == Date.class) return (TAG_DATE);
+        return (-1);
+    }
+
+    // ----------------------------------------------------------------------------
+    // ENCODER
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Growable byte buffer that we encode the records of a block into
+     */
+    static final class Encoder {
+        private byte buffer[];
+        private int position = 0;
+
+        Encoder(int initialSize) {
+            this.buffer = new byte[Math.max(16, initialSize)];
+        }
+
+        int size() {
+            return (this.position);
+        }
+        byte[] getBuffer() {
+            return (this.buffer);
+        }
+        void clear() {
+            this.position = 0;
+        }
+        private void ensure(int needed) {
+            if (this.position + needed > this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.position + needed));
+            }
+        }
+
+        void writeByte(int value) {
+            this.ensure(1);
+            this.buffer[this.position++] = (byte)value;
+        }
+        /** Unsigned variable-length integer (7 bits per byte) */
+        void writeVarLong(long value) {
+            this.ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                this.buffer[this.position++] = (byte)((value & 0x7F) | 0x80);
+                value >>>= 7;
+            } // WHILE
+            this.buffer[this.position++] = (byte)value;
+        }
+        /** Signed variable-length integer using zig-zag encoding */
+        void writeSignedVarLong(long value) {
+            this.writeVarLong((value << 1) ^ (value >> 63));
+        }
+        void writeString(String value) {
+            byte bytes[] = value.getBytes(UTF8);
+            this.writeVarLong(bytes.length);
+            this.ensure(bytes.length);
+            System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+            this.position += bytes.length;
+        }
+        void writeDouble(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            this.ensure(8);
+            for (int i = 56; i >= 0; i -= 8) {
+                this.buffer[this.position++] = (byte)(bits >>> i);
+            } // FOR
+        }
+
+        /**
+         * Write an arbitrary parameter value along with its tag
+         * @param value
+         */
+        void writeValue(Object value) {
+            if (value == null) {
+                this.writeByte(TAG_NULL);
+                return;
+            }
+            Class<?> cls = value.getClass();
+            if (cls.isArray()) {
+                Class<?> component = cls.getComponentType();
+                int tag = getTag(component);
+                int length = Array.getLength(value);
+                if (component.isPrimitive()) {
+                    assert(tag != -1) : "Unexpected array type " + cls;
+                    this.writeByte(TAG_PRIMITIVE_ARRAY | tag);
+                    this.writeVarLong(length);
+                    for (int i = 0; i < length; i++) {
+                        this.writeUntagged(tag, Array.get(value, i));
+                    } // FOR
+                } else {
+                    this.writeByte(TAG_OBJECT_ARRAY | (tag == -1 ? TAG_OBJECT : tag));
+                    this.writeVarLong(length);
+                    for (Object inner : (Object[])value) {
+                        this.writeValue(inner);
+                    } // FOR
+                }
+                return;
+            }
+            int tag = getTag(cls);
+            if (tag == -1) {
+                throw new IllegalArgumentException("Unsupported trace parameter type " + cls.getName());
+            }
+            this.writeByte(tag);
+            this.writeUntagged(tag, value);
+        }
+
+        private void writeUntagged(int tag, Object value) {
+            switch (tag) {
+                case TAG_LONG:
+                case TAG_INTEGER:
+                case TAG_SHORT:
+                case TAG_BYTE:
+                    this.writeSignedVarLong(((Number)value).longValue());
+                    break;
+                case TAG_DOUBLE:
+                case TAG_FLOAT:
+                    this.writeDouble(((Number)value).doubleValue());
+                    break;
+                case TAG_STRING:
+                    this.writeString((String)value);
+                    break;
+                case TAG_BOOLEAN:
+                    this.writeByte(((Boolean)value) ? 1 : 0);
+                    break;
+                case TAG_TIMESTAMP:
+                    this.writeSignedVarLong(((TimestampType)value).getTime());
+                    break;
+                case TAG_DECIMAL:
+                    this.writeString(((BigDecimal)value).toString());
+                    break;
+                case TAG_DATE:
+                    this.writeSignedVarLong(((Date)value).getTime());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unexpected tag " + tag);
+            } // SWITCH
+        }
+
+        /**
+         * Write out an element's output tables. We store the length plus one
+         * so that null entries can be told apart from empty ones.
+         * @param output
+         * @param output_types
+         */
+        void writeOutput(Object output[][][], VoltType output_types[][]) {
+            this.writeVarLong(output.length);
+            for (int i = 0; i < output.length; i++) {
+                VoltType types[] = (output_types != null ? output_types[i] : null);
+                this.writeVarLong(types == null ? 0 : types.length + 1);
+                if (types != null) {
+                    for (VoltType type : types) {
+                        this.writeByte(type == null ? VoltType.NULL.getValue() : type.getValue());
+                    } // FOR
+                }
+                Object data[][] = output[i];
+                this.writeVarLong(data == null ? 0 : data.length + 1);
+                if (data == null) continue;
+                for (Object row[] : data) {
+                    this.writeVarLong(row == null ? 0 : row.length + 1);
+                    if (row == null) continue;
+                    for (Object value : row) {
+                        this.writeValue(value);
+                    } // FOR
+                } // FOR
+            } // FOR
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+    // DECODER
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Reads values back out of a decompressed block
+     */
+    static final class Decoder {
+        private byte buffer[];
+        private int position;
+        private int limit;
+
+        void reset(byte buffer[], int length) {
+            this.buffer = buffer;
+            this.position = 0;
+            this.limit = length;
+        }
+        boolean hasRemaining() {
+            return (this.position < this.limit);
+        }
+
+        int readByte() {
+            if (this.position >= this.limit) throw new IllegalStateException("Unexpected end of trace block");
+            return (this.buffer[this.position++] & 0xFF);
+        }
+        long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = this.readByte();
+                value |= (long)(b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (value);
+        }
+        int readVarInt() {
+            return ((int)this.readVarLong());
+        }
+        long readSignedVarLong() {
+            long value = this.readVarLong();
+            return ((value >>> 1) ^ -(value & 1));
+        }
+        String readString() {
+            int length = this.readVarInt();
+            if (this.position + length > this.limit) throw new IllegalStateException("Unexpected end of trace block");
+            String value = new String(this.buffer, this.position, length, UTF8);
+            this.position += length;
+            return (value);
+        }
+        double readDouble() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | this.readByte();
+            } // FOR
+            return (Double.longBitsToDouble(bits));
+        }
+
+        Object readValue() {
+            int tag = this.readByte();
+            if (tag == TAG_NULL) return (null);
+
+            if ((tag & TAG_PRIMITIVE_ARRAY) != 0) {
+                int inner = tag & TAG_MASK;
+                int length = this.readVarInt();
+                Object array = Array.newInstance(TAG_PRIMITIVES[inner], length);
+                for (int i = 0; i < length; i++) {
+                    Array.set(array, i, this.readUntagged(inner));
+                } // FOR
+                return (array);
+            }
+            else if ((tag & TAG_OBJECT_ARRAY) != 0) {
+                int inner = tag & TAG_MASK;
+                int length = this.readVarInt();
+                Object array[] = (Object[])Array.newInstance(TAG_CLASSES[inner], length);
+                for (int i = 0; i < length; i++) {
+                    array[i] = this.readValue();
+                } // FOR
+                return (array);
+            }
+            return (this.readUntagged(tag));
+        }
+
+        private Object readUntagged(int tag) {
+            switch (tag) {
+                case TAG_LONG:
+                    return (Long.valueOf(this.readSignedVarLong()));
+                case TAG_INTEGER:
+                    return (Integer.valueOf((int)this.readSignedVarLong()));
+                case TAG_SHORT:
+                    return (Short.valueOf((short)this.readSignedVarLong()));
+                case TAG_BYTE:
+                    return (Byte.valueOf((byte)this.readSignedVarLong()));
+                case TAG_DOUBLE:
+                    return (Double.valueOf(this.readDouble()));
+                case TAG_FLOAT:
+                    return (Float.valueOf((float)this.readDouble()));
+                case TAG_STRING:
+                    return (this.readString());
+                case TAG_BOOLEAN:
+                    return (Boolean.valueOf(this.readByte() != 0));
+                case TAG_TIMESTAMP:
+                    return (new TimestampType(this.readSignedVarLong()));
+                case TAG_DECIMAL:
+                    return (new BigDecimal(this.readString()));
+                case TAG_DATE:
+                    return (new Date(this.readSignedVarLong()));
+                default:
+                    throw new IllegalStateException("Unexpected tag " + tag);
+            } // SWITCH
+        }
+
+        /**
+         * Read the output tables written by {@link Encoder#writeOutput(Object[][][], VoltType[][])}
+         * @param element
+         */
+        void readOutput(AbstractTraceElement<?> element) {
+            int num_tables = this.readVarInt();
+            element.output = new Object[num_tables][][];
+            element.output_types = new VoltType[num_tables][];
+            for (int i = 0; i < num_tables; i++) {
+                int num_types = this.readVarInt();
+                if (num_types > 0) {
+                    VoltType types[] = new VoltType[num_types - 1];
+                    for (int j = 0; j < types.length; j++) {
+                        VoltType type = VoltType.get((byte)this.readByte());
+                        types[j] = (type == VoltType.NULL ? null : type);
+                    } // FOR
+                    element.output_types[i] = types;
+                }
+                int num_rows = this.readVarInt();
+                if (num_rows == 0) continue;
+                Object data[][] = new Object[num_rows - 1][];
+                for (int j = 0; j < data.length; j++) {
+                    int num_cols = this.readVarInt();
+                    if (num_cols == 0) continue;
+                    data[j] = new Object[num_cols - 1];
+                    for (int k = 0; k < data[j].length; k++) {
+                        data[j][k] = this.readValue();
+                    } // FOR
+                } // FOR
+                element.output[i] = data;
+            } // FOR
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package edu.brown.workload;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.log4j.Logger;
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.utils.CompressionService;
+
+import edu.brown.catalog.CatalogKey;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.workload.BinaryTraceFormat.Decoder;
+import edu.brown.workload.filters.Filter;
+import edu.brown.workload.filters.Filter.FilterResult;
+
+/**
+ * Streaming reader for the binary trace format. Only one block of the trace is
+ * held in memory at a time, so this can walk through a trace that is much larger
+ * than the heap. Each TransactionTrace that is returned by the iterator is a new
+ * object that the caller is free to keep.
+ * <B>Note:</B> The iterator can only be used once and is not thread-safe.
+ * @see BinaryTraceFormat
+ * @author pavlo
+ */
+public class BinaryTraceReader implements Iterable<TransactionTrace>, Closeable {
+    private static final Logger LOG = Logger.getLogger(BinaryTraceReader.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    private final File path;
+    private final Filter filter;
+    private final DataInputStream in;
+
+    /** File Procedure Id -> Procedure */
+    private Procedure procedures[];
+    /** File Procedure Id -> File Statement Id -> Statement */
+    private Statement statements[][];
+    /** File Procedure Id -> File Statement Id -> Statement CatalogKey */
+    private String statementKeys[][];
+
+    private final Decoder block = new Decoder();
+    private byte compressed[] = new byte[0];
+    private int blockTxnsRemaining = 0;
+    private long lastTxnId;
+    private long lastStartTimestamp;
+    private boolean finished = false;
+    private boolean iterated = false;
+
+    private long txnCount = 0;
+    private long skipCount = 0;
+    private long blockCount = 0;
+
+    public BinaryTraceReader(Database catalog_db, File path) throws IOException {
+        this(catalog_db, path, null);
+    }
+
+    public BinaryTraceReader(Database catalog_db, File path, Filter filter) throws IOException {
+        this.path = path;
+        this.filter = filter;
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 65536));
+        try {
+            this.readHeader(catalog_db);
+        } catch (IOException ex) {
+            this.in.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Read the dictionary from the file and map the ids that it uses
+     * to the objects in the given catalog
+     */
+    private void readHeader(Database catalog_db) throws IOException {
+        int magic = this.in.readInt();
+        if (magic != BinaryTraceFormat.MAGIC) {
+            throw new IOException("'" + this.path + "' is not a binary workload trace file");
+        }
+        int version = this.in.readInt();
+        if (version != BinaryTraceFormat.VERSION) {
+            throw new IOException(String.format("Unsupported binary workload trace version %d in '%s'",
+                                                version, this.path));
+        }
+        byte dict[] = new byte[this.in.readInt()];
+        this.in.readFully(dict);
+        Decoder dec = new Decoder();
+        dec.reset(dict, dict.length);
+
+        int num_procs = dec.readVarInt();
+        int proc_ids[] = new int[num_procs];
+        String proc_names[] = new String[num_procs];
+        int stmt_ids[][] = new int[num_procs][];
+        String stmt_names[][] = new String[num_procs][];
+        int max_proc_id = 0;
+        for (int i = 0; i < num_procs; i++) {
+            proc_ids[i] = dec.readVarInt();
+            proc_names[i] = dec.readString();
+            max_proc_id = Math.max(max_proc_id, proc_ids[i]);
+            int num_stmts = dec.readVarInt();
+            stmt_ids[i] = new int[num_stmts];
+            stmt_names[i] = new String[num_stmts];
+            for (int j = 0; j < num_stmts; j++) {
+                stmt_ids[i][j] = dec.readVarInt();
+                stmt_names[i][j] = dec.readString();
+            } // FOR
+        } // FOR
+
+        this.procedures = new Procedure[max_proc_id + 1];
+        this.statements = new Statement[max_proc_id + 1][];
+        this.statementKeys = new String[max_proc_id + 1][];
+        for (int i = 0; i < num_procs; i++) {
+            Procedure catalog_proc = catalog_db.getProcedures().getIgnoreCase(proc_names[i]);
+            if (catalog_proc == null) {
+                if (debug.val) LOG.debug(String.format("Unknown Procedure '%s' in '%s'", proc_names[i], this.path));
+                continue;
+            }
+            this.procedures[proc_ids[i]] = catalog_proc;
+
+            int max_stmt_id = 0;
+            for (int stmt_id : stmt_ids[i]) {
+                max_stmt_id = Math.max(max_stmt_id, stmt_id);
+            } // FOR
+            Statement stmts[] = new Statement[max_stmt_id + 1];
+            String keys[] = new String[max_stmt_id + 1];
+            for (int j = 0; j < stmt_ids[i].length; j++) {
+                Statement catalog_stmt = catalog_proc.getStatements().getIgnoreCase(stmt_names[i][j]);
+                if (catalog_stmt == null) continue;
+                stmts[stmt_ids[i][j]] = catalog_stmt;
+                keys[stmt_ids[i][j]] = CatalogKey.createKey(catalog_stmt);
+            } // FOR
+            this.statements[proc_ids[i]] = stmts;
+            this.statementKeys[proc_ids[i]] = keys;
+        } // FOR
+    }
+
+    /**
+     * Read the next block from the file. Returns false if there
+     * are no more blocks.
+     */
+    private boolean readBlock() throws IOException {
+        int num_txns;
+        try {
+            num_txns = this.in.readInt();
+        } catch (EOFException ex) {
+            // The writer never got a chance to write out the end marker
+            LOG.warn(String.format("Binary workload trace '%s' was not closed properly", this.path));
+            return (false);
+        }
+        if (num_txns == 0) return (false);
+
+        int raw_length = this.in.readInt();
+        int compressed_length = this.in.readInt();
+        if (this.compressed.length != compressed_length) {
+            this.compressed = new byte[compressed_length];
+        }
+        this.in.readFully(this.compressed);
+        byte raw[] = CompressionService.decompressBytes(this.compressed);
+        assert(raw.length == raw_length) :
+            String.format("Expected %d bytes in block #%d but got %d", raw_length, this.blockCount, raw.length);
+
+        this.block.reset(raw, raw.length);
+        this.blockTxnsRemaining = num_txns;
+        this.lastTxnId = 0;
+        this.lastStartTimestamp = 0;
+        this.blockCount++;
+        if (trace.val)
+            LOG.trace(String.format("Read block #%d from '%s' [txns=%d, raw=%d, compressed=%d]",
+                      this.blockCount, this.path.getName(), num_txns, raw_length, compressed_length));
+        return (true);
+    }
+
+    /**
+     * Decode the next TransactionTrace in the current block. Returns null if the
+     * txn's Procedure or one of its Statements does not exist in our catalog.
+     */
+    private TransactionTrace readTransaction() {
+        Decoder dec = this.block;
+        int proc_id = dec.readVarInt();
+        long txn_id = this.lastTxnId + dec.readSignedVarLong();
+        long start = this.lastStartTimestamp + dec.readSignedVarLong();
+        this.lastTxnId = txn_id;
+        this.lastStartTimestamp = start;
+
+        Procedure catalog_proc = (proc_id < this.procedures.length ? this.procedures[proc_id] : null);
+        Statement stmts[] = (catalog_proc != null ? this.statements[proc_id] : null);
+        String keys[] = (catalog_proc != null ? this.statementKeys[proc_id] : null);
+        boolean valid = (catalog_proc != null);
+
+        TransactionTrace txn_trace = new TransactionTrace();
+        txn_trace.setTransactionId(txn_id);
+        this.readElement(txn_trace, start);
+        if (catalog_proc != null) txn_trace.catalog_item_name = catalog_proc.getName();
+
+        int num_queries = dec.readVarInt();
+        for (int i = 0; i < num_queries; i++) {
+            int stmt_id = dec.readVarInt();
+            int batch_id = dec.readVarInt();
+            long query_start = start + dec.readSignedVarLong();
+            Statement catalog_stmt = (stmts != null && stmt_id < stmts.length ? stmts[stmt_id] : null);
+
+            QueryTrace query = (catalog_stmt != null ? new QueryTrace(keys[stmt_id], null, batch_id) : new QueryTrace());
+            this.readElement(query, query_start);
+            if (catalog_stmt == null) {
+                valid = false;
+            } else if (valid) {
+                txn_trace.addQuery(query);
+            }
+        } // FOR
+        return (valid ? txn_trace : null);
+    }
+
+    private void readElement(AbstractTraceElement<?> element, long start) {
+        Decoder dec = this.block;
+        int flags = dec.readByte();
+        element.start_timestamp = start;
+        element.stop_timestamp = null;
+        if ((flags & BinaryTraceFormat.FLAG_HAS_STOP) != 0) {
+            element.stop_timestamp = start + dec.readSignedVarLong();
+        }
+        element.aborted = ((flags & BinaryTraceFormat.FLAG_ABORTED) != 0);
+        element.weight = (short)dec.readVarInt();
+
+        Object params[] = new Object[dec.readVarInt()];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = dec.readValue();
+        } // FOR
+        element.params = params;
+        if ((flags & BinaryTraceFormat.FLAG_HAS_OUTPUT) != 0) {
+            dec.readOutput(element);
+        }
+    }
+
+    /**
+     * Returns the next TransactionTrace that passes our filter or
+     * null if we've reached the end of the file.
+     * @return
+     * @throws IOException
+     */
+    public TransactionTrace readNext() throws IOException {
+        while (this.finished == false) {
+            if (this.blockTxnsRemaining == 0) {
+                if (this.readBlock() == false) {
+                    this.finished = true;
+                    break;
+                }
+            }
+            TransactionTrace txn_trace = this.readTransaction();
+            this.blockTxnsRemaining--;
+            if (txn_trace == null) {
+                this.skipCount++;
+                continue;
+            }
+            if (this.filter != null) {
+                FilterResult result = this.filter.apply(txn_trace);
+                if (result == FilterResult.HALT) {
+                    if (debug.val) LOG.debug("Got HALT response from filter. Stopping...");
+                    this.finished = true;
+                    break;
+                }
+                else if (result == FilterResult.SKIP) continue;
+            }
+            this.txnCount++;
+            return (txn_trace);
+        } // WHILE
+        return (null);
+    }
+
+    @Override
+    public Iterator<TransactionTrace> iterator() {
+        if (this.iterated) {
+            throw new IllegalStateException("BinaryTraceReader for '" + this.path + "' can only be iterated once");
+        }
+        this.iterated = true;
+        return new Iterator<TransactionTrace>() {
+            private TransactionTrace next = null;
+
+            @Override
+            public boolean hasNext() {
+                if (this.next == null) {
+                    try {
+                        this.next = BinaryTraceReader.this.readNext();
+                    } catch (IOException ex) {
+                        throw new RuntimeException("Failed to read from '" + BinaryTraceReader.this.path + "'", ex);
+                    }
+                }
+                return (this.next != null);
+            }
+            @Override
+            public TransactionTrace next() {
+                if (this.hasNext() == false) throw new NoSuchElementException();
+                TransactionTrace ret = this.next;
+                this.next = null;
+                return (ret);
+            }
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.finished = true;
+        this.in.close();
+    }
+
+    /**
+     * Returns the number of txns that we have returned so far
+     */
+    public long getTransactionCount() {
+        return (this.txnCount);
+    }
+    /**
+     * Returns the number of txns that we skipped because they did
+     * not match our catalog
+     */
+    public long getSkippedCount() {
+        return (this.skipCount);
+    }
+}
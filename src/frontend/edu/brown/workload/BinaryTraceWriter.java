@@ -0,0 +1,224 @@
+package edu.brown.workload;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.utils.CompressionService;
+
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.workload.BinaryTraceFormat.Encoder;
+
+/**
+ * Writes TransactionTraces out in the binary trace format.
+ * Records are buffered in memory until there is a full block, and then the
+ * block is compressed and written out. You must call {@link #close()} or
+ * the last block will be lost.
+ * @see BinaryTraceFormat
+ * @author pavlo
+ */
+public class BinaryTraceWriter {
+    private static final Logger LOG = Logger.getLogger(BinaryTraceWriter.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    private final Database catalog_db;
+    private final DataOutputStream out;
+    private final int blockSize;
+    private final Encoder block;
+
+    /** QueryTrace catalog key -> Statement */
+    private final Map<String, Statement> stmtCache = new HashMap<String, Statement>();
+
+    private int blockTxnCount = 0;
+    private long lastTxnId = 0;
+    private long lastStartTimestamp = 0;
+
+    private long txnCount = 0;
+    private long blockCount = 0;
+    private long rawBytes = 0;
+    private long compressedBytes = 0;
+    private boolean closed = false;
+
+    public BinaryTraceWriter(Database catalog_db, File path) throws IOException {
+        this(catalog_db, new FileOutputStream(path), BinaryTraceFormat.DEFAULT_BLOCK_SIZE);
+    }
+
+    public BinaryTraceWriter(Database catalog_db, OutputStream output, int blockSize) throws IOException {
+        this.catalog_db = catalog_db;
+        this.out = new DataOutputStream(new BufferedOutputStream(output));
+        this.blockSize = blockSize;
+        this.block = new Encoder(blockSize + (blockSize / 4));
+        this.writeHeader();
+    }
+
+    /**
+     * Write out the magic number, version, and the catalog dictionary
+     * for all of the Procedures and Statements in the database
+     */
+    private void writeHeader() throws IOException {
+        Encoder dict = new Encoder(4096);
+        dict.writeVarLong(this.catalog_db.getProcedures().size());
+        for (Procedure catalog_proc : this.catalog_db.getProcedures()) {
+            dict.writeVarLong(catalog_proc.getId());
+            dict.writeString(catalog_proc.getName());
+            dict.writeVarLong(catalog_proc.getStatements().size());
+            for (Statement catalog_stmt : catalog_proc.getStatements()) {
+                dict.writeVarLong(catalog_stmt.getId());
+                dict.writeString(catalog_stmt.getName());
+            } // FOR
+        } // FOR
+        this.out.writeInt(BinaryTraceFormat.MAGIC);
+        this.out.writeInt(BinaryTraceFormat.VERSION);
+        this.out.writeInt(dict.size());
+        this.out.write(dict.getBuffer(), 0, dict.size());
+    }
+
+    private Statement getStatement(QueryTrace query) {
+        Statement catalog_stmt = this.stmtCache.get(query.catalog_item_name);
+        if (catalog_stmt == null) {
+            catalog_stmt = query.getCatalogItem(this.catalog_db);
+            if (catalog_stmt == null) {
+                throw new IllegalArgumentException("Invalid Statement for " + query);
+            }
+            this.stmtCache.put(query.catalog_item_name, catalog_stmt);
+        }
+        return (catalog_stmt);
+    }
+
+    /**
+     * Add the given TransactionTrace to the output
+     * @param txn_trace
+     * @throws IOException
+     */
+    public void write(TransactionTrace txn_trace) throws IOException {
+        assert(this.closed == false);
+        Procedure catalog_proc = txn_trace.getCatalogItem(this.catalog_db);
+        if (catalog_proc == null) {
+            throw new IllegalArgumentException("Invalid Procedure for " + txn_trace);
+        }
+        Encoder enc = this.block;
+        long start = (txn_trace.start_timestamp != null ? txn_trace.start_timestamp : 0);
+
+        enc.writeVarLong(catalog_proc.getId());
+        enc.writeSignedVarLong(txn_trace.getTransactionId() - this.lastTxnId);
+        enc.writeSignedVarLong(start - this.lastStartTimestamp);
+        this.writeElement(txn_trace, start);
+        this.lastTxnId = txn_trace.getTransactionId();
+        this.lastStartTimestamp = start;
+
+        enc.writeVarLong(txn_trace.getQueryCount());
+        for (QueryTrace query : txn_trace.getQueries()) {
+            enc.writeVarLong(this.getStatement(query).getId());
+            enc.writeVarLong(query.getBatchId());
+            long query_start = (query.start_timestamp != null ? query.start_timestamp : start);
+            enc.writeSignedVarLong(query_start - start);
+            this.writeElement(query, query_start);
+        } // FOR
+
+        this.txnCount++;
+        this.blockTxnCount++;
+        if (enc.size() >= this.blockSize) {
+            this.flushBlock();
+        }
+    }
+
+    /**
+     * Write the fields that are common to transactions and queries
+     */
+    private void writeElement(AbstractTraceElement<?> element, long start) {
+        Encoder enc = this.block;
+        int flags = 0;
+        if (element.aborted) flags |= BinaryTraceFormat.FLAG_ABORTED;
+        if (element.stop_timestamp != null) flags |= BinaryTraceFormat.FLAG_HAS_STOP;
+        if (element.output != null) flags |= BinaryTraceFormat.FLAG_HAS_OUTPUT;
+        enc.writeByte(flags);
+        if (element.stop_timestamp != null) {
+            enc.writeSignedVarLong(element.stop_timestamp - start);
+        }
+        enc.writeVarLong(element.weight);
+
+        Object params[] = element.params;
+        enc.writeVarLong(params == null ? 0 : params.length);
+        if (params != null) {
+            for (Object param : params) {
+                enc.writeValue(param);
+            } // FOR
+        }
+        if (element.output != null) {
+            enc.writeOutput(element.output, element.output_types);
+        }
+    }
+
+    /**
+     * Compress the current block and write it out
+     * @throws IOException
+     */
+    private void flushBlock() throws IOException {
+        if (this.blockTxnCount == 0) return;
+
+        byte compressed[] = CompressionService.compressBytes(this.block.getBuffer(), 0, this.block.size());
+        this.out.writeInt(this.blockTxnCount);
+        this.out.writeInt(this.block.size());
+        this.out.writeInt(compressed.length);
+        this.out.write(compressed);
+        if (debug.val)
+            LOG.debug(String.format("Wrote block #%d [txns=%d, raw=%d, compressed=%d]",
+                      this.blockCount, this.blockTxnCount, this.block.size(), compressed.length));
+
+        this.blockCount++;
+        this.rawBytes += this.block.size();
+        this.compressedBytes += compressed.length;
+        this.block.clear();
+        this.blockTxnCount = 0;
+        this.lastTxnId = 0;
+        this.lastStartTimestamp = 0;
+    }
+
+    /**
+     * Write out any buffered transactions
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        this.flushBlock();
+        this.out.flush();
+    }
+
+    /**
+     * Write out the last block and close the underlying stream
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        if (this.closed) return;
+        this.flushBlock();
+        this.out.writeInt(0);
+        this.out.close();
+        this.closed = true;
+        if (debug.val)
+            LOG.debug(String.format("Wrote %d txns in %d blocks [raw=%d, compressed=%d]",
+                      this.txnCount, this.blockCount, this.rawBytes, this.compressedBytes));
+    }
+
+    public long getTransactionCount() {
+        return (this.txnCount);
+    }
+    public long getRawBytes() {
+        return (this.rawBytes);
+    }
+    public long getCompressedBytes() {
+        return (this.compressedBytes);
+    }
+}
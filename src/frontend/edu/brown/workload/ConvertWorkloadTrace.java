@@ -0,0 +1,109 @@
+package edu.brown.workload;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+import org.voltdb.catalog.Database;
+
+import edu.brown.utils.ArgumentsParser;
+import edu.brown.utils.FileUtil;
+
+/**
+ * Convert a JSON workload trace into the binary trace format, or
+ * a binary trace back into JSON. Neither direction loads the whole
+ * trace into memory.
+ * @see BinaryTraceFormat
+ * @author pavlo
+ */
+public class ConvertWorkloadTrace {
+    private static final Logger LOG = Logger.getLogger(ConvertWorkloadTrace.class);
+
+    /**
+     * Convert a JSON workload trace into a binary trace
+     * @param catalog_db
+     * @param input
+     * @param output
+     * @return the number of txns that were written out
+     * @throws Exception
+     */
+    public static long toBinary(Database catalog_db, File input, File output) throws Exception {
+        BufferedReader in = FileUtil.getReader(input);
+        BinaryTraceWriter writer = new BinaryTraceWriter(catalog_db, output);
+        int line_ctr = 0;
+        try {
+            while (in.ready()) {
+                String line = in.readLine().trim();
+                line_ctr++;
+                if (line.isEmpty()) continue;
+
+                TransactionTrace txn_trace = null;
+                try {
+                    txn_trace = TransactionTrace.loadFromJSONObject(new JSONObject(line), catalog_db);
+                } catch (Throwable ex) {
+                    LOG.warn(String.format("Ignoring invalid TransactionTrace on line %d of '%s': %s",
+                                           line_ctr, input, ex.getMessage()));
+                    continue;
+                }
+                writer.write(txn_trace);
+                if (line_ctr % 100000 == 0)
+                    LOG.info(String.format("Converted %d txns from '%s'", writer.getTransactionCount(), input.getName()));
+            } // WHILE
+        } finally {
+            in.close();
+            writer.close();
+        }
+        LOG.info(String.format("Wrote %d txns to '%s' [raw=%d bytes, compressed=%d bytes]",
+                               writer.getTransactionCount(), output,
+                               writer.getRawBytes(), writer.getCompressedBytes()));
+        return (writer.getTransactionCount());
+    }
+
+    /**
+     * Convert a binary trace into a JSON workload trace
+     * @param catalog_db
+     * @param input
+     * @param output
+     * @return the number of txns that were written out
+     * @throws Exception
+     */
+    public static long toJSON(Database catalog_db, File input, File output) throws Exception {
+        BinaryTraceReader reader = new BinaryTraceReader(catalog_db, input);
+        OutputStream out = new FileOutputStream(output);
+        try {
+            for (TransactionTrace txn_trace : reader) {
+                WorkloadUtil.WriteThread.write(catalog_db, txn_trace, out);
+            } // FOR
+        } finally {
+            reader.close();
+            out.close();
+        }
+        if (reader.getSkippedCount() > 0) {
+            LOG.warn(String.format("Skipped %d txns in '%s' that do not match the catalog",
+                                   reader.getSkippedCount(), input));
+        }
+        LOG.info(String.format("Wrote %d txns to '%s'", reader.getTransactionCount(), output));
+        return (reader.getTransactionCount());
+    }
+
+    public static void main(String[] vargs) throws Exception {
+        ArgumentsParser args = ArgumentsParser.load(vargs);
+        args.require(ArgumentsParser.PARAM_CATALOG, ArgumentsParser.PARAM_WORKLOAD_OUTPUT);
+        assert(args.getOptParamCount() > 0) : "Missing input workload trace";
+
+        File input = new File(args.getOptParam(0));
+        File output = new File(args.getParam(ArgumentsParser.PARAM_WORKLOAD_OUTPUT));
+        if (output.getParent() != null) FileUtil.makeDirIfNotExists(output.getParent());
+
+        if (BinaryTraceFormat.isBinaryTrace(input)) {
+            LOG.info(String.format("Converting binary trace '%s' to JSON '%s'", input, output));
+            toJSON(args.catalog_db, input, output);
+        } else {
+            LOG.info(String.format("Converting JSON trace '%s' to binary '%s'", input, output));
+            toBinary(args.catalog_db, input, output);
+        }
+    }
+}
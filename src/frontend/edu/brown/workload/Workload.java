@@ -352,7 +352,14 @@ public class Workload implements WorkloadTrace, Iterable<TransactionTrace> {
         if (debug.val) LOG.debug("Reading workload trace from file '" + input_path + "'");
         this.input_path = input_path;
         long start = System.currentTimeMillis();
-        
+
+        // Binary traces are cheap enough to decode that we don't
+        // need all of the processing threads
+        if (BinaryTraceFormat.isBinaryTrace(input_path)) {
+            this.loadBinary(input_path, catalog_db, filter, start);
+            return;
+        }
+
         // HACK: Throw out traces unless they have the procedures that we're looking for
         Pattern temp_pattern = null;
         if (filter != null) {
@@ -409,9 +416,38 @@ public class Workload implements WorkloadTrace, Iterable<TransactionTrace> {
         }
         return;
     }
-    
 
-    
+    /**
+     * Load a trace that was written in the binary trace format
+     * @param input_path
+     * @param catalog_db
+     * @param filter
+     * @param start
+     * @throws Exception
+     * @see BinaryTraceFormat
+     */
+    private void loadBinary(File input_path, Database catalog_db, Filter filter, long start) throws Exception {
+        int query_ctr = 0;
+        BinaryTraceReader reader = new BinaryTraceReader(catalog_db, input_path, filter);
+        try {
+            for (TransactionTrace xact : reader) {
+                query_ctr += xact.getQueryCount();
+                this.addTransaction(xact.getCatalogItem(catalog_db), xact, true);
+            } // FOR
+        } finally {
+            reader.close();
+        }
+        if (reader.getSkippedCount() > 0) {
+            LOG.warn(String.format("Ignored %d txns from '%s' that do not match the catalog",
+                                   reader.getSkippedCount(), input_path.getName()));
+        }
+        VerifyWorkload.verify(catalog_db, this);
+
+        long stop = System.currentTimeMillis();
+        LOG.info(String.format("Loaded %d txns / %d queries from binary trace '%s' in %.1f seconds",
+                               this.xact_trace.size(), query_ctr, input_path.getName(), (stop - start) / 1000d));
+    }
+
     // ----------------------------------------------------------
     // ITERATORS METHODS
     // ----------------------------------------------------------
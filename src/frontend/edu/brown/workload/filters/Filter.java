@@ -93,6 +93,26 @@ public abstract class Filter {
         return (result);
     }
     
+    /**
+     * Returns true if every Filter in this chain always gives the same result for
+     * the same element, regardless of what other elements were applied before it.
+     * Cost models use this to decide whether it is safe to only re-examine part
+     * of a workload instead of walking through the whole thing.
+     * @return
+     */
+    public final boolean isStateless() {
+        return (this.isStatelessImpl() && (this.next == null || this.next.isStateless()));
+    }
+    
+    /**
+     * Filters that do not keep any state between calls to apply() should
+     * override this and return true
+     * @return
+     */
+    protected boolean isStatelessImpl() {
+        return (false);
+    }
+    
     public void reset() {
         this.resetImpl();
         if (this.next != null) this.next.reset();
@@ -18,6 +18,11 @@ public class NoAbortFilter extends Filter {
         return (element.isAborted() ? FilterResult.SKIP : FilterResult.ALLOW);
     }
     
+    @Override
+    protected boolean isStatelessImpl() {
+        return (true);
+    }
+    
     @Override
     protected void resetImpl() {
         // Nothing...
@@ -75,10 +75,11 @@ public class CatalogContext {
     // ------------------------------------------------------------
     
     private final Partition partitions[];
-    private final PartitionSet partitionIdCollection = new PartitionSet();
+    /** All of the partition ids in the cluster (immutable) */
+    private final PartitionSet partitionIdCollection;
     private final Integer partitionIdArray[];
     
-    /** PartitionId -> Singleton set of that PartitionId */
+    /** PartitionId -> Interned singleton set of that PartitionId */
     private final PartitionSet partitionSingletons[];
     
     /** PartitionId -> SiteId */
@@ -122,6 +123,12 @@ public class CatalogContext {
     private final Map<Long, int[]> fragmentReadTables = new HashMap<Long, int[]>(); 
     private final Map<Long, int[]> fragmentWriteTables = new HashMap<Long, int[]>();
     
+    /**
+     * The serialized commands for the catalog. Every PartitionExecutor
+     * at a site needs to give this to its EE, so we only want to build it once.
+     */
+    private volatile String serializedCatalog;
+    
     public CatalogContext(Catalog catalog) {
         this(catalog, (File)null);
     }
@@ -184,14 +191,16 @@ public class CatalogContext {
         this.partitionIdArray = new Integer[this.numberOfPartitions];
         this.partitionSingletons = new PartitionSet[this.numberOfPartitions];
         this.partitionSiteXref = new int[this.numberOfPartitions];
+        PartitionSet allPartitions = new PartitionSet();
         for (Partition part : CatalogUtil.getAllPartitions(catalog)) {
             int p = part.getId();
             this.partitions[p] = part;
             this.partitionIdArray[p] = Integer.valueOf(p);
-            this.partitionSingletons[p] = new PartitionSet(p);
-            this.partitionIdCollection.add(this.partitionIdArray[p]);
+            this.partitionSingletons[p] = PartitionSet.singleton(p);
+            allPartitions.add(p);
             this.partitionSiteXref[part.getId()] = ((Site)part.getParent()).getId();
         } // FOR
+        this.partitionIdCollection = PartitionSet.intern(allPartitions, this.numberOfPartitions).makeImmutable();
         
         // ------------------------------------------------------------
         // TABLES
@@ -249,6 +258,22 @@ public class CatalogContext {
     }
     
 
+    /**
+     * Return the serialized version of the catalog. This is computed the first time
+     * that it is requested and then reused for all subsequent calls.
+     * @return
+     */
+    public String getSerializedCatalog() {
+        if (this.serializedCatalog == null) {
+            synchronized (this) {
+                if (this.serializedCatalog == null) {
+                    this.serializedCatalog = this.catalog.serialize();
+                }
+            } // SYNCH
+        }
+        return (this.serializedCatalog);
+    }
+
     public CatalogContext deepCopy() {
         return new CatalogContext(catalog.deepCopy(), jarPath);
     }
@@ -19,6 +19,7 @@ package org.voltdb;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 
 /**
  * Agent responsible for collecting stats on this host.
@@ -52,6 +53,25 @@ public class StatsAgent {
         statsSources.add(source);
     }
 
+    /**
+     * Return all of the StatsSources that were registered for the given selector.
+     * This does not go through the @Statistics sysproc, so callers can poll the
+     * sources directly without having to execute a transaction.
+     * @param selector
+     * @return
+     */
+    public synchronized List<StatsSource> getStatsSources(final SysProcSelector selector) {
+        assert selector != null;
+        final List<StatsSource> ret = new ArrayList<StatsSource>();
+        final HashMap<Integer, ArrayList<StatsSource>> catalogIdToStatsSources = registeredStatsSources.get(selector);
+        if (catalogIdToStatsSources != null) {
+            for (ArrayList<StatsSource> statsSources : catalogIdToStatsSources.values()) {
+                ret.addAll(statsSources);
+            }
+        }
+        return ret;
+    }
+
     public synchronized VoltTable getStats(
             final SysProcSelector selector,
             final ArrayList<Integer> catalogIds,
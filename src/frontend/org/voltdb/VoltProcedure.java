@@ -117,6 +117,14 @@ public abstract class VoltProcedure implements Poolable {
     private boolean paramTypeIsArray[];
     private Class<?> paramTypeComponentType[];
     private int paramTypesLength;
+    
+    /**
+     * For each parameter, the classes that can be passed to the run() method
+     * as-is without going through tryToMakeCompatible(). These are figured out
+     * once in init() so that we only have to do a couple of reference
+     * comparisons per parameter for each txn.
+     */
+    private Class<?> paramAcceptedTypes[][];
     private boolean isNative = true;
     protected Object procParams[];
     protected final Map<String, SQLStmt> stmts = new HashMap<String, SQLStmt>();
@@ -171,6 +179,8 @@ public abstract class VoltProcedure implements Poolable {
     private int batchQueryStmtIndex = 0;
     private int last_batchQueryStmtIndex = 0;
     private Object[] batchQueryArgs[];
+    /** The last batch from voltExecuteSQLAsync() that we have not gotten the results for yet */
+    private AsyncBatch pendingBatch = null;
     private VoltTable[] results = HStoreConstants.EMPTY_RESULT;
     private Status status = Status.OK;
     private SerializableException error = null;
@@ -412,6 +422,21 @@ public abstract class VoltProcedure implements Poolable {
                 paramTypeComponentType[param.getIndex()] = null;
             }
         }
+        
+        this.paramAcceptedTypes = new Class<?>[this.paramTypesLength][];
+        for (int i = 0; i < this.paramTypesLength; i++) {
+            this.paramAcceptedTypes[i] = getAcceptedParameterTypes(this.paramTypes[i]);
+        } // FOR
+        
+        // Skip the access checks in Method.invoke() for every txn. After enough
+        // invocations the JVM will replace the reflective call with a generated accessor
+        if (this.procMethod != null) {
+            try {
+                this.procMethod.setAccessible(true);
+            } catch (SecurityException ex) {
+                if (debug.val) LOG.warn("Unable to disable access checks for " + this.procMethod, ex);
+            }
+        }
         if (trace.val) LOG.trace(String.format("Initialized VoltProcedure for %s [partition=%d]", this.procedure_name, this.partitionId));
     }
     
@@ -527,6 +552,7 @@ public abstract class VoltProcedure implements Poolable {
         this.batchId = 0;
         this.batchQueryStmtIndex = 0;
         this.last_batchQueryStmtIndex = -1;
+        this.pendingBatch = null;
         
         if (debug.val) LOG.debug("Starting execution of " + this.m_currentTxnState);
         if (this.procParams.length != this.paramTypesLength) {
@@ -546,8 +572,22 @@ public abstract class VoltProcedure implements Poolable {
         }
 
         for (int i = 0; i < this.paramTypesLength; i++) {
+            // Fast path: the parameter can be passed along as-is
+            Object param = this.procParams[i];
+            if (param != null) {
+                Class<?> pclass = param.getClass();
+                Class<?> accepted[] = this.paramAcceptedTypes[i];
+                boolean match = false;
+                for (int ii = 0; ii < accepted.length; ii++) {
+                    if (accepted[ii] == pclass) {
+                        match = true;
+                        break;
+                    }
+                } // FOR
+                if (match) continue;
+            }
             try {
-                this.procParams[i] = this.tryToMakeCompatible(i, this.procParams[i]);
+                this.procParams[i] = this.tryToMakeCompatible(i, param);
             } catch (Exception e) {
                 String msg = "PROCEDURE " + procedure_name + " TYPE ERROR FOR PARAMETER " + i +
                              ": " + e.getMessage();
@@ -614,6 +654,9 @@ public abstract class VoltProcedure implements Poolable {
                 }
                 
                 Object rawResult = this.procMethod.invoke(this, this.procParams);
+                
+                // Make sure that we have the results for any batch that the txn never waited for
+                if (this.pendingBatch != null) this.pendingBatch.get();
                 this.results = this.getResultsFromRawResults(rawResult);
                 if (this.results == null) results = HStoreConstants.EMPTY_RESULT;
             } catch (IllegalAccessException e) {
@@ -621,6 +664,10 @@ public abstract class VoltProcedure implements Poolable {
                 throw new InvocationTargetException(e);
             } catch (RuntimeException e) {
                 throw new InvocationTargetException(e);
+            } finally {
+                // If the txn threw before it waited for its last batch, then we still have to 
+                // get the results back so that the batch's round is finished before we abort
+                if (this.pendingBatch != null) this.drainPendingBatch();
             }
             if (debug.val)
                 LOG.debug(this.m_currentTxnState + " is finished on partition " + this.partitionId);
@@ -794,6 +841,31 @@ public abstract class VoltProcedure implements Poolable {
         throw new RuntimeException("Procedure didn't return acceptable type.");
     }
 
+    /**
+     * Returns the classes of the parameter values that tryToMakeCompatible() would
+     * pass along unchanged for the given run() method parameter type.
+     * Anything else (nulls, conversions, errors) still has to go through tryToMakeCompatible()
+     * @param slot
+     * @return
+     */
+    protected static Class<?>[] getAcceptedParameterTypes(Class<?> slot) {
+        if (slot == null) return (new Class<?>[0]);
+        // The component types must match exactly, so only the same array class is accepted
+        if (slot.isArray()) return (new Class<?>[]{ slot });
+        
+        if (slot == long.class) return (new Class<?>[]{ Long.class, Integer.class, Short.class, Byte.class });
+        if (slot == int.class) return (new Class<?>[]{ Integer.class, Short.class, Byte.class });
+        if (slot == short.class) return (new Class<?>[]{ Short.class, Byte.class });
+        if (slot == byte.class) return (new Class<?>[]{ Byte.class });
+        if (slot == double.class) return (new Class<?>[]{ Double.class });
+        if (slot == boolean.class) return (new Class<?>[]{ Boolean.class });
+        if (slot == String.class || slot == TimestampType.class ||
+            slot == BigDecimal.class || slot == VoltTable.class) {
+            return (new Class<?>[]{ slot });
+        }
+        return (new Class<?>[0]);
+    }
+
     /** @throws Exception with a message describing why the types are incompatible. */
     final private Object tryToMakeCompatible(int paramTypeIndex, Object param) throws Exception {
         if (param == null || param == VoltType.NULL_STRING ||
@@ -875,6 +947,69 @@ public abstract class VoltProcedure implements Poolable {
                 + slot.getName() + " to provided " + pclass.getName());
     }
 
+    /**
+     * Wait for the results of the pending batch after the txn's control code
+     * threw an exception. Any error from the batch itself is dropped because 
+     * the txn is already going to abort with the original exception.
+     */
+    private void drainPendingBatch() {
+        try {
+            this.pendingBatch.get();
+        } catch (Throwable ex) {
+            if (debug.val)
+                LOG.debug(String.format("%s - Ignoring error from pending batch while aborting",
+                          this.m_currentTxnState), ex);
+        } finally {
+            this.pendingBatch = null;
+        }
+    }
+    
+    /**
+     * Handle for the results of a batch that was executed with {@link VoltProcedure#voltExecuteSQLAsync()}
+     */
+    public final class AsyncBatch {
+        private VoltTable results[];
+        
+        private AsyncBatch(VoltTable results[]) {
+            this.results = results;
+        }
+        
+        /**
+         * Returns true if the results for this batch are already available
+         */
+        public boolean isDone() {
+            return (this.results != null);
+        }
+        
+        /**
+         * Block until the results for this batch have come back from all of 
+         * the partitions and then return them.
+         * @return Result {@link org.voltdb.VoltTable tables} generated by executing the batch
+         */
+        public VoltTable[] get() {
+            if (this.results == null) {
+                assert(pendingBatch == this) :
+                    "Trying to wait for a batch that is not pending for " + m_localTxnState;
+                pendingBatch = null;
+                try {
+                    this.results = executor.finishSQLStmtBatch(m_localTxnState);
+                } catch (ServerFaultException ex) {
+                    throw ex;
+                } catch (SerializableException ex) {
+                    throw ex;
+                } catch (Throwable ex) {
+                    String message = "Unexpected error while waiting for queries";
+                    throw new ServerFaultException(message, ex, m_localTxnState.getTransactionId());
+                } finally {
+                    if (m_localTxnState.hasPendingError()) {
+                        throw m_localTxnState.getPendingError();
+                    }
+                }
+            }
+            return (this.results);
+        }
+    }
+    
     /**
      * Thrown from a stored procedure to indicate to VoltDB
      * that the procedure should be aborted and rolled back.
@@ -995,7 +1130,7 @@ public abstract class VoltProcedure implements Poolable {
      * query {@link org.voltdb.SQLStmt statements}
      */
     public VoltTable[] voltExecuteSQL() {
-        return voltExecuteSQL(false, false);
+        return voltExecuteSQL(false, false, false);
     }
 
     /**
@@ -1003,7 +1138,28 @@ public abstract class VoltProcedure implements Poolable {
      * @return
      */
     protected VoltTable[] voltExecuteSQLForceSinglePartition() {
-        return voltExecuteSQL(false, true);
+        return voltExecuteSQL(false, true, false);
+    }
+    
+    /**
+     * Execute the currently queued SQL {@link org.voltdb.SQLStmt statements} without
+     * waiting for the results of the queries that need to access remote partitions.
+     * The procedure can keep doing work in Java and then call {@link AsyncBatch#get()}
+     * when it needs the result tables. Only one batch can be outstanding at a time, so any
+     * call to voltExecuteSQL() or voltExecuteSQLAsync() will first wait for the previous batch.
+     *
+     * @return Handle for the result {@link org.voltdb.VoltTable tables} generated by 
+     * executing the queued query {@link org.voltdb.SQLStmt statements}
+     */
+    public AsyncBatch voltExecuteSQLAsync() {
+        // We can't get the output for the workload trace until we have the results
+        boolean async = (this.workloadTraceEnable == false || this.workloadTxnHandle == null);
+        VoltTable retval[] = voltExecuteSQL(false, false, async);
+        AsyncBatch batch = new AsyncBatch(retval);
+        if (retval == null && this.isNative) {
+            this.pendingBatch = batch;
+        }
+        return (batch);
     }
     
     /**
@@ -1016,10 +1172,13 @@ public abstract class VoltProcedure implements Poolable {
      * query {@link org.voltdb.SQLStmt statements}
      */
     public VoltTable[] voltExecuteSQL(boolean isFinalSQL) {
-        return voltExecuteSQL(isFinalSQL, false);
+        return voltExecuteSQL(isFinalSQL, false, false);
     }
     
-    private VoltTable[] voltExecuteSQL(boolean isFinalSQL, boolean forceSinglePartition) {
+    private VoltTable[] voltExecuteSQL(boolean isFinalSQL, boolean forceSinglePartition, boolean async) {
+        // We can't start a new batch until we get back the results from the last one
+        if (this.pendingBatch != null) this.pendingBatch.get();
+        
         if (this.isNative == false) {
             VoltTable[] batch_results = this.queryResults.toArray(new VoltTable[queryResults.size()]);
             this.queryResults.clear();
@@ -1049,7 +1208,8 @@ public abstract class VoltProcedure implements Poolable {
                                                  this.batchQueryStmts,
                                                  this.batchQueryArgs,
                                                  isFinalSQL,
-                                                 forceSinglePartition);
+                                                 forceSinglePartition,
+                                                 async);
         // This should just be forwarded along
         } catch (SerializableException ex) {
             throw ex;
@@ -1098,13 +1258,16 @@ public abstract class VoltProcedure implements Poolable {
      * @param batchStmts
      * @param batchArgs
      * @param finalTask
+     * @param forceSinglePartition
+     * @param async
      * @return
      */
     private VoltTable[] executeQueriesInABatch(final int batchSize,
                                                final SQLStmt[] batchStmts,
                                                final Object[][] batchArgs,
                                                final boolean finalTask,
-                                               final boolean forceSinglePartition) {
+                                               final boolean forceSinglePartition,
+                                               final boolean async) {
         assert(batchStmts != null);
         assert(batchArgs != null);
         assert(batchStmts.length > 0);
@@ -1126,7 +1289,8 @@ public abstract class VoltProcedure implements Poolable {
                                                         batchStmts,
                                                         params,
                                                         finalTask,
-                                                        forceSinglePartition);
+                                                        forceSinglePartition,
+                                                        async);
         } catch (ServerFaultException ex) {
             throw ex;
         } catch (SerializableException ex) {
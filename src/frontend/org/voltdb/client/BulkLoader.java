@@ -0,0 +1,374 @@
+package org.voltdb.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.voltdb.CatalogContext;
+import org.voltdb.StoredProcedureInvocationHints;
+import org.voltdb.VoltSystemProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.catalog.Table;
+import org.voltdb.sysprocs.LoadMultipartitionTable;
+import org.voltdb.sysprocs.LoadPartitionTable;
+
+import edu.brown.hashing.AbstractHasher;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.utils.ClassUtil;
+import edu.brown.utils.PartitionEstimator;
+
+/**
+ * Client-side bulk loader for partitioned tables.
+ * Instead of sending each VoltTable to @LoadMultipartitionTable as a distributed txn,
+ * we split the tuples up by partition using the same hasher as the cluster and then
+ * send them directly to their partitions as single-partition @LoadPartitionTable txns.
+ * Tuples for each partition are buffered until we have a full batch. We limit the
+ * number of batches that can be outstanding at the same time so that we don't
+ * swamp the cluster.
+ * <B>NOTE:</B> Loading is asynchronous, so you must call drain() to wait for all of
+ * the tuples to be loaded and to find out whether there were any errors.
+ * @see LoadPartitionTable
+ * @author pavlo
+ */
+public class BulkLoader {
+    private static final Logger LOG = Logger.getLogger(BulkLoader.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    private static final String PROC_NAME = VoltSystemProcedure.procCallName(LoadPartitionTable.class);
+
+    /**
+     * The number of times that we will resend a batch that was rejected by the cluster
+     */
+    private static final int MAX_TRIES = 10;
+
+    /**
+     * A batch of tuples for a single partition
+     */
+    private class LoadRequest implements ProcedureCallback {
+        private final Table catalog_tbl;
+        private final int partition;
+        private final VoltTable vt;
+        private int tries = 0;
+
+        private LoadRequest(Table catalog_tbl, int partition, VoltTable vt) {
+            this.catalog_tbl = catalog_tbl;
+            this.partition = partition;
+            this.vt = vt;
+        }
+
+        @Override
+        public void clientCallback(ClientResponse cresponse) {
+            Status status = cresponse.getStatus();
+            if (status == Status.OK) {
+                loadedTuples.addAndGet(this.vt.getRowCount());
+                if (trace.val)
+                    LOG.trace(String.format("Loaded %d tuples for %s at partition %d",
+                              this.vt.getRowCount(), this.catalog_tbl.getName(), this.partition));
+            }
+            else if (status == Status.ABORT_REJECT && this.tries < MAX_TRIES) {
+                if (debug.val)
+                    LOG.debug(String.format("Batch for %s at partition %d was rejected. Going to try again",
+                              this.catalog_tbl.getName(), this.partition));
+                retries.incrementAndGet();
+                rejected.add(this);
+            }
+            else {
+                LOG.warn(String.format("Failed to load %d tuples for %s at partition %d: %s",
+                         this.vt.getRowCount(), this.catalog_tbl.getName(), this.partition,
+                         cresponse.getStatusString()));
+                error = cresponse;
+            }
+            outstanding.release();
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+    // DATA MEMBERS
+    // ----------------------------------------------------------------------------
+
+    private final Client client;
+    private final CatalogContext catalogContext;
+    private final PartitionEstimator p_estimator;
+    private final int batchSize;
+    private final int maxOutstanding;
+
+    /**
+     * Flow control for the number of batches that are waiting for a response
+     */
+    private final Semaphore outstanding;
+
+    /**
+     * Table -> PartitionId -> Tuples that have not been sent yet
+     */
+    private final Map<Table, VoltTable[]> buffers = new HashMap<Table, VoltTable[]>();
+
+    /**
+     * Batches that were rejected by the cluster and need to be sent again
+     */
+    private final Queue<LoadRequest> rejected = new ConcurrentLinkedQueue<LoadRequest>();
+
+    private final AtomicLong loadedTuples = new AtomicLong(0);
+    private final AtomicInteger sentBatches = new AtomicInteger(0);
+    private final AtomicInteger retries = new AtomicInteger(0);
+
+    /**
+     * The first ClientResponse for a batch that we failed to load
+     */
+    private volatile ClientResponse error = null;
+
+    // ----------------------------------------------------------------------------
+    // INITIALIZATION
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Constructor
+     * This will use the hasher defined in ${global.hasher_class} to figure out
+     * where each tuple should go.
+     * @param client
+     * @param catalogContext
+     * @param batchSize The number of tuples to send to a partition in each txn
+     * @param maxOutstanding The max number of txns that can be waiting for a response
+     */
+    public BulkLoader(Client client, CatalogContext catalogContext, int batchSize, int maxOutstanding) {
+        this(client, catalogContext, new PartitionEstimator(catalogContext, makeHasher(catalogContext)),
+             batchSize, maxOutstanding);
+    }
+
+    public BulkLoader(Client client, CatalogContext catalogContext, PartitionEstimator p_estimator, int batchSize, int maxOutstanding) {
+        assert(batchSize > 0);
+        assert(maxOutstanding > 0);
+        this.client = client;
+        this.catalogContext = catalogContext;
+        this.p_estimator = p_estimator;
+        this.batchSize = batchSize;
+        this.maxOutstanding = maxOutstanding;
+        this.outstanding = new Semaphore(maxOutstanding);
+    }
+
+    private static AbstractHasher makeHasher(CatalogContext catalogContext) {
+        HStoreConf hstore_conf = HStoreConf.singleton(true);
+        return (AbstractHasher)ClassUtil.newInstance(hstore_conf.global.hasher_class,
+                                                     new Object[]{ catalogContext, catalogContext.numberOfPartitions },
+                                                     new Class<?>[]{ CatalogContext.class, int.class });
+    }
+
+    // ----------------------------------------------------------------------------
+    // LOADING METHODS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Returns true if the given table can be loaded using the BulkLoader.
+     * Replicated tables have to be sent to every partition, so they should
+     * still be loaded using LoadMultipartitionTable.
+     * @param tableName
+     * @return
+     */
+    public boolean canLoad(String tableName) {
+        Table catalog_tbl = this.catalogContext.getTableByName(tableName);
+        return (catalog_tbl != null && catalog_tbl.getIsreplicated() == false);
+    }
+
+    /**
+     * Split the tuples in the given VoltTable by partition and queue them
+     * to be loaded. Any batches that become full will be sent to the cluster
+     * before this method returns. This will block if there are too many batches
+     * that are waiting for a response. The VoltTable can be reused once this returns.
+     * @param tableName
+     * @param vt
+     * @throws IOException
+     * @throws ProcCallException If a previous batch failed to load
+     */
+    public void load(String tableName, VoltTable vt) throws IOException, ProcCallException {
+        Table catalog_tbl = this.catalogContext.getTableByName(tableName);
+        if (catalog_tbl == null) {
+            throw new IllegalArgumentException("Invalid table '" + tableName + "'");
+        }
+        else if (catalog_tbl.getIsreplicated()) {
+            throw new IllegalArgumentException(String.format("Table '%s' is replicated and must be loaded with %s",
+                                               tableName, VoltSystemProcedure.procCallName(LoadMultipartitionTable.class)));
+        }
+        this.checkError();
+        this.sendRejected();
+
+        List<LoadRequest> ready = null;
+        VoltTable partitionBuffers[] = this.getBuffers(catalog_tbl);
+        synchronized (partitionBuffers) {
+            vt.resetRowPosition();
+            while (vt.advanceRow()) {
+                int p = -1;
+                try {
+                    p = this.p_estimator.getTableRowPartition(catalog_tbl, vt);
+                } catch (Exception ex) {
+                    throw new RuntimeException("Failed to calculate partition for " + catalog_tbl.getName() + " tuple", ex);
+                }
+                assert(p >= 0);
+                if (partitionBuffers[p] == null) {
+                    partitionBuffers[p] = vt.clone(1024 * 1024);
+                }
+                partitionBuffers[p].add(vt);
+                if (partitionBuffers[p].getRowCount() >= this.batchSize) {
+                    if (ready == null) ready = new ArrayList<LoadRequest>();
+                    ready.add(new LoadRequest(catalog_tbl, p, partitionBuffers[p]));
+                    partitionBuffers[p] = null;
+                }
+            } // WHILE
+        } // SYNCH
+
+        // Send out any batches that are full. We do this outside of
+        // the lock so that other threads can keep splitting tuples
+        if (ready != null) {
+            for (LoadRequest request : ready) {
+                this.send(request);
+            } // FOR
+        }
+    }
+
+    /**
+     * Send all of the partially filled batches to the cluster
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        Map<Table, VoltTable[]> copy = null;
+        synchronized (this.buffers) {
+            copy = new HashMap<Table, VoltTable[]>(this.buffers);
+        } // SYNCH
+        for (Table catalog_tbl : copy.keySet()) {
+            VoltTable partitionBuffers[] = copy.get(catalog_tbl);
+            VoltTable ready[] = new VoltTable[partitionBuffers.length];
+            synchronized (partitionBuffers) {
+                for (int p = 0; p < partitionBuffers.length; p++) {
+                    ready[p] = partitionBuffers[p];
+                    partitionBuffers[p] = null;
+                } // FOR
+            } // SYNCH
+            for (int p = 0; p < ready.length; p++) {
+                if (ready[p] != null && ready[p].getRowCount() > 0) {
+                    this.send(new LoadRequest(catalog_tbl, p, ready[p]));
+                }
+            } // FOR
+        } // FOR
+    }
+
+    /**
+     * Send any remaining tuples and then block until all of the outstanding
+     * batches have been loaded.
+     * @throws IOException
+     * @throws ProcCallException If any of the batches failed to load
+     */
+    public void drain() throws IOException, ProcCallException {
+        this.flush();
+        while (true) {
+            this.sendRejected();
+            try {
+                this.outstanding.acquire(this.maxOutstanding);
+            } catch (InterruptedException ex) {
+                throw new InterruptedIOException("Interrupted while waiting for bulk load to finish");
+            }
+            this.outstanding.release(this.maxOutstanding);
+            if (this.rejected.isEmpty()) break;
+        } // WHILE
+        this.checkError();
+        if (debug.val)
+            LOG.debug(String.format("Finished bulk loading %d tuples in %d txns [retries=%d]",
+                      this.loadedTuples.get(), this.sentBatches.get(), this.retries.get()));
+    }
+
+    // ----------------------------------------------------------------------------
+    // INTERNAL METHODS
+    // ----------------------------------------------------------------------------
+
+    private VoltTable[] getBuffers(Table catalog_tbl) {
+        synchronized (this.buffers) {
+            VoltTable partitionBuffers[] = this.buffers.get(catalog_tbl);
+            if (partitionBuffers == null) {
+                partitionBuffers = new VoltTable[this.catalogContext.numberOfPartitions];
+                this.buffers.put(catalog_tbl, partitionBuffers);
+            }
+            return (partitionBuffers);
+        } // SYNCH
+    }
+
+    private void sendRejected() throws IOException {
+        LoadRequest request = null;
+        while ((request = this.rejected.poll()) != null) {
+            this.send(request);
+        } // WHILE
+    }
+
+    private void send(LoadRequest request) throws IOException {
+        try {
+            this.outstanding.acquire();
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException("Interrupted while waiting to send bulk load request");
+        }
+        request.tries++;
+        StoredProcedureInvocationHints hints = new StoredProcedureInvocationHints();
+        hints.basePartition = request.partition;
+        boolean queued = false;
+        try {
+            while ((queued = this.client.callProcedure(request, PROC_NAME, hints,
+                                                       request.partition,
+                                                       request.catalog_tbl.getName(),
+                                                       request.vt)) == false) {
+                this.client.backpressureBarrier();
+            } // WHILE
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException("Interrupted while waiting for backpressure to clear");
+        } finally {
+            if (queued == false) this.outstanding.release();
+        }
+        this.sentBatches.incrementAndGet();
+    }
+
+    private void checkError() throws ProcCallException {
+        ClientResponse cr = this.error;
+        if (cr != null) {
+            throw new ProcCallException(cr, cr.getStatusString(), cr.getException());
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+    // STATISTICS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * The number of tuples that the cluster has acknowledged
+     */
+    public long getLoadedTupleCount() {
+        return (this.loadedTuples.get());
+    }
+    /**
+     * The number of @LoadPartitionTable txns that we have sent (including retries)
+     */
+    public int getSentBatchCount() {
+        return (this.sentBatches.get());
+    }
+    /**
+     * The number of batches that were rejected and had to be sent again
+     */
+    public int getRetryCount() {
+        return (this.retries.get());
+    }
+    /**
+     * The number of batches that are waiting for a response
+     */
+    public int getOutstandingCount() {
+        return (this.maxOutstanding - this.outstanding.availablePermits());
+    }
+}
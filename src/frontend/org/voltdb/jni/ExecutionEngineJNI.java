@@ -191,6 +191,9 @@ public class ExecutionEngineJNI extends ExecutionEngine {
     @Override
     public void loadCatalog(final String serializedCatalog) throws EEException {
         //C++ JSON deserializer is not thread safe, must synchronize
+        //The plan fragments are parsed with json_spirit, which is built without
+        //BOOST_SPIRIT_THREADSAFE. This means that only one EE in the process can
+        //load its catalog at a time, even when HStore starts up its sites in parallel.
         LOG.trace("Loading Application Catalog...");
         int errorCode = 0;
         synchronized (ExecutionEngineJNI.class) {
@@ -23,15 +23,19 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
+import org.voltdb.VoltType;
 import org.voltdb.catalog.Database;
 import org.voltdb.catalog.Table;
 import org.voltdb.expressions.AbstractExpression;
 import org.voltdb.expressions.ExpressionUtil;
+import org.voltdb.expressions.TupleValueExpression;
 import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.NestLoopIndexPlanNode;
 import org.voltdb.plannodes.NestLoopPlanNode;
 import org.voltdb.plannodes.ReceivePlanNode;
+import org.voltdb.types.ExpressionType;
 import org.voltdb.types.JoinType;
 
 /**
@@ -51,6 +55,12 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
     /** The list of all possible join orders, assembled by queueAllJoinOrders */
     ArrayDeque<Table[]> m_joinOrders = new ArrayDeque<Table[]>();
 
+    /** Whether joins without a usable index should be HashJoins instead of NestLoops */
+    private boolean m_useHashJoins = false;
+
+    /** Set when a join in the last generated plan could have been a HashJoin */
+    private boolean m_hashJoinPossible = false;
+
     /**
      *
      * @param db The catalog's Database object.
@@ -174,8 +184,18 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
         // for each access path
         for (AccessPath[] accessPath : listOfAccessPathCombos) {
             // get a plan
+            m_useHashJoins = false;
+            m_hashJoinPossible = false;
             AbstractPlanNode scanPlan = getSelectSubPlanForAccessPath(joinOrder, accessPath);
             m_plans.add(scanPlan);
+
+            // If any of the NestLoops could have been a HashJoin, then we'll make a
+            // second plan that uses them and let the cost model pick the cheaper one
+            if (m_hashJoinPossible) {
+                m_useHashJoins = true;
+                scanPlan = getSelectSubPlanForAccessPath(joinOrder, accessPath);
+                m_plans.add(scanPlan);
+            }
         }
     }
 
@@ -290,7 +310,13 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
 
             retval = nlijNode;
         }
+        else if (m_useHashJoins && isHashJoinPossible(joinOrder[0], joinClauses)) {
+            retval = getHashJoinPlan(joinOrder[0], nljAccessPlan, subPlan, joinClauses);
+        }
         else {
+            if (isHashJoinPossible(joinOrder[0], joinClauses)) {
+                m_hashJoinPossible = true;
+            }
             NestLoopPlanNode nljNode = new NestLoopPlanNode(m_context, PlanAssembler.getNextPlanNodeId());
             if ((joinClauses != null) && (joinClauses.size() > 0))
                 nljNode.setPredicate(ExpressionUtil.combine(joinClauses));
@@ -316,6 +342,95 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
         return retval;
     }
 
+    /**
+     * Returns true if the given join clause is an equality between a column from the
+     * outer table and a column of the same type from one of the tables below it.
+     * These are the only clauses that we can use as HashJoin keys.
+     *
+     * @param outerTable The table being joined to the rest of the join order.
+     * @param expr A join clause between the outer table and the rest of the join order.
+     */
+    private boolean isHashJoinKey(Table outerTable, AbstractExpression expr) {
+        if (expr.getExpressionType() != ExpressionType.COMPARE_EQUAL ||
+            (expr.getLeft() instanceof TupleValueExpression) == false ||
+            (expr.getRight() instanceof TupleValueExpression) == false) {
+            return (false);
+        }
+        TupleValueExpression left = (TupleValueExpression)expr.getLeft();
+        TupleValueExpression right = (TupleValueExpression)expr.getRight();
+        boolean leftOuter = left.getTableName().equals(outerTable.getTypeName());
+        boolean rightOuter = right.getTableName().equals(outerTable.getTypeName());
+        if (leftOuter == rightOuter) {
+            return (false);
+        }
+        VoltType type = left.getValueType();
+        return (type != null && type != VoltType.INVALID && type == right.getValueType());
+    }
+
+    /**
+     * Returns true if at least one of the join clauses can be used as a HashJoin key.
+     */
+    private boolean isHashJoinPossible(Table outerTable, List<AbstractExpression> joinClauses) {
+        if (joinClauses == null) return (false);
+        for (AbstractExpression expr : joinClauses) {
+            if (isHashJoinKey(outerTable, expr)) return (true);
+        } // FOR
+        return (false);
+    }
+
+    /**
+     * Construct a HashJoinPlanNode that joins the access plan for the outer table with
+     * the plan for the rest of the join order. The equality clauses become the keys and
+     * everything else gets checked as the join predicate. The key expressions are
+     * evaluated against the output of a single child, so their column indexes are
+     * relative to that child's output columns.
+     *
+     * @param outerTable The table being joined to the rest of the join order.
+     * @param outerPlan The access plan for the outer table. This will be the probe side.
+     * @param innerPlan The plan for the rest of the join order. This will be the build side.
+     * @param joinClauses All of the clauses that join the outer table to the rest of the join order.
+     */
+    private HashJoinPlanNode getHashJoinPlan(Table outerTable, AbstractPlanNode outerPlan, AbstractPlanNode innerPlan,
+                                             List<AbstractExpression> joinClauses) {
+        HashJoinPlanNode hjNode = new HashJoinPlanNode(m_context, PlanAssembler.getNextPlanNodeId());
+        hjNode.setJoinType(JoinType.INNER);
+
+        outerPlan.updateOutputColumns(m_db);
+        innerPlan.updateOutputColumns(m_db);
+
+        List<AbstractExpression> otherClauses = new ArrayList<AbstractExpression>();
+        for (AbstractExpression expr : joinClauses) {
+            if (isHashJoinKey(outerTable, expr) == false) {
+                otherClauses.add(expr);
+                continue;
+            }
+            AbstractExpression outerKey = expr.getLeft();
+            AbstractExpression innerKey = expr.getRight();
+            if (((TupleValueExpression)outerKey).getTableName().equals(outerTable.getTypeName()) == false) {
+                outerKey = expr.getRight();
+                innerKey = expr.getLeft();
+            }
+            try {
+                outerKey = ExpressionUtil.clone(outerKey);
+                innerKey = ExpressionUtil.clone(innerKey);
+            } catch (Exception e) {
+                throw new PlanningErrorException(e.getMessage());
+            }
+            ExpressionUtil.setColumnIndexes(m_context, outerKey, outerPlan.getOutputColumnGUIDs());
+            ExpressionUtil.setColumnIndexes(m_context, innerKey, innerPlan.getOutputColumnGUIDs());
+            hjNode.addKeyExpressions(outerKey, innerKey);
+        } // FOR
+        assert(hjNode.getOuterKeyExpressions().isEmpty() == false);
+        if (otherClauses.isEmpty() == false) {
+            hjNode.setPredicate(ExpressionUtil.combine(otherClauses));
+        }
+
+        // The outer table goes first so that we get the same output columns as a NestLoop
+        hjNode.addAndLinkChild(outerPlan);
+        hjNode.addAndLinkChild(innerPlan);
+        return (hjNode);
+    }
+
     /**
      * For each table in the list, compute the set of all valid access paths that will get
      * tuples that match the right predicate (assuming there is a predicate).
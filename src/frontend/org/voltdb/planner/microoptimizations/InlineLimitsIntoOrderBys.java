@@ -0,0 +1,93 @@
+package org.voltdb.planner.microoptimizations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.voltdb.planner.CompiledPlan;
+import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.LimitPlanNode;
+import org.voltdb.plannodes.OrderByPlanNode;
+import org.voltdb.plannodes.ProjectionPlanNode;
+import org.voltdb.types.PlanNodeType;
+
+/**
+ * Turn an ORDER BY that is followed by a LIMIT into a single Top-N operation.
+ * The LimitPlanNode is removed from the tree and inlined into the OrderByPlanNode
+ * so that the EE only has to keep the best offset+limit tuples instead of sorting
+ * its entire input. A ProjectionPlanNode between the two is allowed because it does
+ * not change the number or order of the tuples.
+ * This has to run after the PlanOptimizer has pushed copies of the ORDER BY and LIMIT
+ * down into the distributed part of the plan so that both copies get combined.
+ * @author pavlo
+ */
+public class InlineLimitsIntoOrderBys implements MicroOptimization {
+
+    @Override
+    public List<CompiledPlan> apply(CompiledPlan plan) {
+        ArrayList<CompiledPlan> retval = new ArrayList<CompiledPlan>();
+
+        AbstractPlanNode planGraph = plan.fragments.get(0).planGraph;
+        planGraph = recursivelyApply(planGraph);
+        plan.fragments.get(0).planGraph = planGraph;
+
+        retval.add(plan);
+        return retval;
+    }
+
+    AbstractPlanNode recursivelyApply(AbstractPlanNode plan) {
+        assert(plan != null);
+
+        // depth first:
+        //     find LimitPlanNodes with exactly one child
+        //     where that child is an OrderByPlanNode (or a ProjectionPlanNode on top of one)
+        //     disconnect the LimitPlanNode
+        //     and inline the LimitPlanNode in to the OrderByPlanNode
+        // We only relink the children that actually changed so that a child
+        // that feeds multiple parents keeps its links to the other ones
+
+        List<AbstractPlanNode> children = new ArrayList<AbstractPlanNode>(plan.getChildren());
+        List<AbstractPlanNode> newChildren = new ArrayList<AbstractPlanNode>();
+        boolean changed = false;
+        for (AbstractPlanNode child : children) {
+            AbstractPlanNode newChild = recursivelyApply(child);
+            changed = changed || (newChild != child);
+            newChildren.add(newChild);
+        }
+        if (changed) {
+            for (AbstractPlanNode child : children)
+                plan.unlinkChild(child);
+            plan.clearChildren();
+            for (AbstractPlanNode child : newChildren)
+                plan.addAndLinkChild(child);
+        }
+
+        if ((plan instanceof LimitPlanNode) == false)
+            return plan;
+
+        // Every parent of the LIMIT would have to be moved over to the ORDER BY,
+        // and every other parent of the ORDER BY expects all of its tuples
+        if (plan.getChildPlanNodeCount() != 1 || plan.getParentPlanNodeCount() > 1)
+            return plan;
+
+        AbstractPlanNode child = plan.getChild(0);
+        AbstractPlanNode orderby = child;
+        if (orderby instanceof ProjectionPlanNode && orderby.getChildPlanNodeCount() == 1) {
+            if (orderby.getParentPlanNodeCount() != 1)
+                return plan;
+            orderby = orderby.getChild(0);
+        }
+        if ((orderby instanceof OrderByPlanNode) == false)
+            return plan;
+        if (orderby.getParentPlanNodeCount() != 1)
+            return plan;
+        if (orderby.getInlinePlanNode(PlanNodeType.LIMIT) != null)
+            return plan;
+
+        plan.unlinkChild(child);
+        plan.clearChildren();
+        orderby.addInlinePlanNode(plan);
+
+        return child;
+    }
+
+}
@@ -28,6 +28,7 @@ public class MicroOptimizationRunner {
     static ArrayList<MicroOptimization> optimizations = new ArrayList<MicroOptimization>();
     static {
         optimizations.add(new PushdownLimitsIntoScans());
+        optimizations.add(new InlineLimitsIntoOrderBys());
         // optimizations.add(new PushdownReceiveDominators());
     }
 
@@ -0,0 +1,173 @@
+package org.voltdb.plannodes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONString;
+import org.json.JSONStringer;
+import org.voltdb.catalog.Cluster;
+import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.ScalarValueHints;
+import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.planner.PlanStatistics;
+import org.voltdb.planner.PlannerContext;
+import org.voltdb.planner.StatsField;
+import org.voltdb.types.PlanNodeType;
+
+/**
+ * Equi-join between two child nodes. The EE builds a hash table on the inner
+ * child (the second child) using the inner key expressions and then probes it
+ * with every tuple from the outer child (the first child) using the outer key expressions.
+ * Each key expression is evaluated against a single tuple from its own child, so
+ * the column indexes in the keys are relative to that child's output columns.
+ * The predicate from AbstractJoinPlanNode only holds the join clauses that could
+ * not be turned into keys and is checked against every matching pair.
+ * The output is the same as NestLoopPlanNode (outer columns followed by inner columns)
+ * @author pavlo
+ */
+public class HashJoinPlanNode extends AbstractJoinPlanNode {
+
+    public enum Members {
+        OUTER_KEY_EXPRESSIONS,
+        INNER_KEY_EXPRESSIONS;
+    }
+
+    private List<AbstractExpression> m_outerKeyExpressions = new ArrayList<AbstractExpression>();
+    private List<AbstractExpression> m_innerKeyExpressions = new ArrayList<AbstractExpression>();
+
+    /**
+     * @param id
+     */
+    public HashJoinPlanNode(PlannerContext context, Integer id) {
+        super(context, id);
+    }
+
+    @Override
+    public PlanNodeType getPlanNodeType() {
+        return PlanNodeType.HASHJOIN;
+    }
+
+    @Override
+    public Object clone(boolean clone_children, boolean clone_inline) throws CloneNotSupportedException {
+        HashJoinPlanNode clone = (HashJoinPlanNode)super.clone(clone_children, clone_inline);
+        clone.m_outerKeyExpressions = new ArrayList<AbstractExpression>();
+        for (AbstractExpression exp : this.m_outerKeyExpressions) {
+            clone.m_outerKeyExpressions.add((AbstractExpression)exp.clone());
+        }
+        clone.m_innerKeyExpressions = new ArrayList<AbstractExpression>();
+        for (AbstractExpression exp : this.m_innerKeyExpressions) {
+            clone.m_innerKeyExpressions.add((AbstractExpression)exp.clone());
+        }
+        return (clone);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if ((obj instanceof HashJoinPlanNode) == false) {
+            return (false);
+        }
+        HashJoinPlanNode other = (HashJoinPlanNode)obj;
+        if (this.m_outerKeyExpressions.equals(other.m_outerKeyExpressions) == false) return (false);
+        if (this.m_innerKeyExpressions.equals(other.m_innerKeyExpressions) == false) return (false);
+        return super.equals(obj);
+    }
+
+    /**
+     * Only uses the fields that every equal HashJoinPlanNode must have in
+     * common. The key expressions do not define their own hashCode().
+     */
+    @Override
+    public int hashCode() {
+        return (31 * this.getPlanNodeId().intValue() + PlanNodeType.HASHJOIN.getValue());
+    }
+
+    @Override
+    public void validate() throws Exception {
+        super.validate();
+
+        if (m_outerKeyExpressions.isEmpty()) {
+            throw new Exception("ERROR: There were no key expressions defined for " + this);
+        }
+        if (m_outerKeyExpressions.size() != m_innerKeyExpressions.size()) {
+            throw new Exception(String.format("ERROR: Mismatched number of outer/inner key expressions for %s [%d != %d]",
+                                              this, m_outerKeyExpressions.size(), m_innerKeyExpressions.size()));
+        }
+        for (AbstractExpression exp : m_outerKeyExpressions) {
+            exp.validate();
+        }
+        for (AbstractExpression exp : m_innerKeyExpressions) {
+            exp.validate();
+        }
+    }
+
+    /**
+     * Add a pair of key expressions that must be equal for an outer
+     * tuple to join with an inner tuple
+     * @param outer
+     * @param inner
+     */
+    public void addKeyExpressions(AbstractExpression outer, AbstractExpression inner) {
+        m_outerKeyExpressions.add(outer);
+        m_innerKeyExpressions.add(inner);
+    }
+
+    /**
+     * @return the key expressions evaluated against the outer (probe) child
+     */
+    public List<AbstractExpression> getOuterKeyExpressions() {
+        return m_outerKeyExpressions;
+    }
+
+    /**
+     * @return the key expressions evaluated against the inner (build) child
+     */
+    public List<AbstractExpression> getInnerKeyExpressions() {
+        return m_innerKeyExpressions;
+    }
+
+    /**
+     * Both children are only read once. Building the hash table costs one
+     * hash computation per inner tuple and probing it costs one per outer tuple.
+     */
+    @Override
+    public boolean computeEstimatesRecursively(PlanStatistics stats, Cluster cluster, Database db, DatabaseEstimates estimates, ScalarValueHints[] paramHints) {
+        boolean result = super.computeEstimatesRecursively(stats, cluster, db, estimates, paramHints);
+        stats.incrementStatistic(0, StatsField.HASH_VALUES_COMPUTED, m_estimatedOutputTupleCount);
+        return (result);
+    }
+
+    @Override
+    public void toJSONString(JSONStringer stringer) throws JSONException {
+        super.toJSONString(stringer);
+        stringer.key(Members.OUTER_KEY_EXPRESSIONS.name()).array();
+        for (AbstractExpression ae : m_outerKeyExpressions) {
+            assert (ae instanceof JSONString);
+            stringer.value(ae);
+        }
+        stringer.endArray();
+
+        stringer.key(Members.INNER_KEY_EXPRESSIONS.name()).array();
+        for (AbstractExpression ae : m_innerKeyExpressions) {
+            assert (ae instanceof JSONString);
+            stringer.value(ae);
+        }
+        stringer.endArray();
+    }
+
+    @Override
+    protected void loadFromJSONObject(JSONObject obj, Database db) throws JSONException {
+        super.loadFromJSONObject(obj, db);
+        JSONArray outerKeys = obj.getJSONArray(Members.OUTER_KEY_EXPRESSIONS.name());
+        for (int ii = 0; ii < outerKeys.length(); ii++) {
+            m_outerKeyExpressions.add(AbstractExpression.fromJSONObject(outerKeys.getJSONObject(ii), db));
+        }
+        JSONArray innerKeys = obj.getJSONArray(Members.INNER_KEY_EXPRESSIONS.name());
+        for (int ii = 0; ii < innerKeys.length(); ii++) {
+            m_innerKeyExpressions.add(AbstractExpression.fromJSONObject(innerKeys.getJSONObject(ii), db));
+        }
+    }
+}
@@ -17,7 +17,13 @@
 
 package org.voltdb.plannodes;
 
+import org.voltdb.catalog.Cluster;
+import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.ScalarValueHints;
+import org.voltdb.planner.PlanStatistics;
 import org.voltdb.planner.PlannerContext;
+import org.voltdb.planner.StatsField;
 import org.voltdb.types.PlanNodeType;
 
 /**
@@ -36,4 +42,19 @@ public class NestLoopPlanNode extends AbstractJoinPlanNode {
         return PlanNodeType.NESTLOOP;
     }
 
+    /**
+     * The inner child is scanned again for every tuple in the outer child,
+     * so the number of tuples read is the product of the two children
+     */
+    @Override
+    public boolean computeEstimatesRecursively(PlanStatistics stats, Cluster cluster, Database db, DatabaseEstimates estimates, ScalarValueHints[] paramHints) {
+        boolean result = super.computeEstimatesRecursively(stats, cluster, db, estimates, paramHints);
+        if (m_children.size() == 2) {
+            long outer = m_children.get(0).m_estimatedOutputTupleCount;
+            long inner = m_children.get(1).m_estimatedOutputTupleCount;
+            stats.incrementStatistic(0, StatsField.TUPLES_READ, outer * inner);
+        }
+        return (result);
+    }
+
 }
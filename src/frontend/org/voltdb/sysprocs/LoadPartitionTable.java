@@ -0,0 +1,88 @@
+package org.voltdb.sysprocs;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.voltdb.DependencySet;
+import org.voltdb.ParameterSet;
+import org.voltdb.ProcInfo;
+import org.voltdb.VoltSystemProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Table;
+import org.voltdb.exceptions.EEException;
+
+import edu.brown.hstore.PartitionExecutor.SystemProcedureExecutionContext;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * Load a VoltTable whose rows all belong to a single partition directly into
+ * that partition's EE as a single-partition txn. This is the server-side half of the
+ * bulk loading pipeline: the client splits its data up by partition and then
+ * invokes this sysproc for each partition at the same time.
+ * Unlike LoadMultipartitionTable, the tuples are loaded without undo logging, so
+ * if the EE fails in the middle of loading a table then whatever tuples that were inserted
+ * before the error will not be removed.
+ * @see org.voltdb.client.BulkLoader
+ * @author pavlo
+ */
+@ProcInfo(
+    partitionParam = 0,
+    singlePartition = true
+)
+public class LoadPartitionTable extends VoltSystemProcedure {
+    private static final Logger LOG = Logger.getLogger(LoadPartitionTable.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug);
+    }
+
+    @Override
+    public void initImpl() {
+        executor.registerPlanFragment(SysProcFragmentId.PF_loadPartition, this);
+    }
+
+    @Override
+    public DependencySet executePlanFragment(Long txn_id,
+                                             Map<Integer, List<VoltTable>> dependencies,
+                                             int fragmentId,
+                                             ParameterSet params,
+                                             SystemProcedureExecutionContext context) {
+        assert(fragmentId == SysProcFragmentId.PF_loadPartition);
+        throw new IllegalAccessError("Invalid invocation of " + this.getClass() + ".executePlanFragment()");
+    }
+
+    public VoltTable[] run(int partition, String tableName, VoltTable table) throws VoltAbortException {
+        assert(table != null) : "VoltTable to be loaded into " + tableName + " is null in txn #" + this.getTransactionId();
+        if (partition != this.partitionId) {
+            String msg = String.format("Trying to load %s tuples for partition %d at partition %d",
+                                       tableName, partition, this.partitionId);
+            throw new VoltAbortException(msg);
+        }
+        Table catalog_tbl = catalogContext.database.getTables().getIgnoreCase(tableName);
+        if (catalog_tbl == null) {
+            throw new VoltAbortException("Table '" + tableName + "' does not exist");
+        }
+        else if (catalog_tbl.getIsreplicated()) {
+            throw new VoltAbortException("Table '" + tableName + "' is replicated and must be loaded with " +
+                                         VoltSystemProcedure.procCallName(LoadMultipartitionTable.class));
+        }
+
+        if (debug.val) LOG.debug(String.format("Loading %d tuples for %s at partition %d in txn #%d [bytes=%d]",
+                                 table.getRowCount(), catalog_tbl.getName(), this.partitionId,
+                                 this.getTransactionId(), table.getUnderlyingBufferSize()));
+        if (table.getRowCount() > 0) {
+            try {
+                executor.loadTableWithoutUndo(this.m_localTxnState, catalog_tbl, table, false);
+            } catch (EEException ex) {
+                throw new VoltAbortException("Failed to load table: " + tableName);
+            }
+        }
+
+        VoltTable vt = new VoltTable(new VoltTable.ColumnInfo("TxnId", VoltType.BIGINT));
+        vt.addRow(this.getTransactionId());
+        return (new VoltTable[]{ vt });
+    }
+}
@@ -33,8 +33,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.log4j.Logger;
+import org.voltdb.CatalogContext;
 import org.voltdb.DependencySet;
 import org.voltdb.ParameterSet;
 import org.voltdb.PrivateVoltTableFactory;
@@ -54,12 +56,15 @@ import org.voltdb.dtxn.DtxnConstants;
 import org.voltdb.sysprocs.saverestore.ClusterSaveFileState;
 import org.voltdb.sysprocs.saverestore.SavedTableConverter;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil;
+import org.voltdb.sysprocs.saverestore.TableRestoreStream;
 import org.voltdb.sysprocs.saverestore.TableSaveFile;
 import org.voltdb.sysprocs.saverestore.TableSaveFileState;
 import org.voltdb.utils.DBBPool.BBContainer;
 
 import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.HStoreSite;
 import edu.brown.hstore.PartitionExecutor.SystemProcedureExecutionContext;
+import edu.brown.utils.PartitionSet;
 
 @ProcInfo (
     singlePartition = false
@@ -96,6 +101,96 @@ public class SnapshotRestore extends VoltSystemProcedure
         }
     }
 
+    /**
+     * TxnId + TableName -> The stream shared by all of the local partitions
+     */
+    private static final Map<String, TableRestoreStream> m_restoreStreams = new HashMap<String, TableRestoreStream>();
+
+    /**
+     * Get the TableRestoreStream for the given table in this txn. The first local
+     * partition to get here will open up all of the save files that this host can see.
+     */
+    private static synchronized TableRestoreStream getRestoreStream(
+            Long txn_id,
+            String tableName,
+            int currentHostIds[],
+            int originalHostIds[],
+            int savedPartitions,
+            SystemProcedureExecutionContext context) throws IOException {
+        String key = txn_id + "-" + tableName;
+        TableRestoreStream stream = m_restoreStreams.get(key);
+        if (stream != null) {
+            return stream;
+        }
+
+        HStoreSite hstore_site = context.getHStoreSite();
+        CatalogContext catalogContext = hstore_site.getCatalogContext();
+        boolean rehash = (savedPartitions != catalogContext.numberOfPartitions);
+
+        // If we have to rehash, then every host needs to see every save file,
+        // since any of them may contain tuples for our partitions
+        Set<Integer> allOriginalHosts = new HashSet<Integer>();
+        Set<Integer> localOriginalHosts = new TreeSet<Integer>();
+        for (int i = 0; i < originalHostIds.length; i++) {
+            allOriginalHosts.add(originalHostIds[i]);
+            if (currentHostIds[i] == hstore_site.getHostId()) {
+                localOriginalHosts.add(originalHostIds[i]);
+            }
+        }
+        if (rehash && localOriginalHosts.size() != allOriginalHosts.size()) {
+            throw new IOException(String.format(
+                    "Restoring %s from %d partitions into %d partitions requires every host to see " +
+                    "the save files from all %d original hosts", tableName, savedPartitions,
+                    catalogContext.numberOfPartitions, allOriginalHosts.size()));
+        }
+
+        PartitionSet partitions = hstore_site.getLocalPartitionIds();
+        int relevantPartitionIds[] = (rehash ? null : partitions.values());
+        List<TableSaveFile> saveFiles = new ArrayList<TableSaveFile>();
+        try {
+            for (int originalHostId : localOriginalHosts) {
+                File f = getSaveFileForPartitionedTable(m_filePath, m_fileNonce, tableName, originalHostId);
+                FileInputStream savefile_input = new FileInputStream(f);
+                TableSaveFile savefile = new TableSaveFile(savefile_input.getChannel(), 1,
+                                                           relevantPartitionIds, false, true);
+                saveFiles.add(savefile);
+                if (!savefile.getCompleted()) {
+                    throw new IOException("Save file " + f + " is not complete");
+                }
+            }
+        } catch (IOException e) {
+            for (TableSaveFile savefile : saveFiles) {
+                savefile.close();
+            }
+            throw e;
+        }
+
+        Table catalog_tbl = catalogContext.getTableByName(tableName);
+        stream = new TableRestoreStream(catalog_tbl, saveFiles, partitions,
+                                        hstore_site.getPartitionEstimator(), rehash);
+        m_restoreStreams.put(key, stream);
+        LOG.info(String.format("Streaming %s from %d save files into %d local partitions [rehash=%s]",
+                 tableName, saveFiles.size(), partitions.size(), rehash));
+        return stream;
+    }
+
+    /**
+     * Tell the TableRestoreStream that this partition is done. The last
+     * partition to finish will close the stream.
+     */
+    private static void releaseRestoreStream(Long txn_id,
+                                             String tableName,
+                                             TableRestoreStream stream,
+                                             int partition) {
+        if (stream.finish(partition)) {
+            synchronized (SnapshotRestore.class) {
+                m_restoreStreams.remove(txn_id + "-" + tableName);
+            }
+            stream.close();
+            LOG.info("Finished " + stream.getProgress());
+        }
+    }
+
     private static synchronized boolean hasMoreChunks() {
         boolean hasMoreChunks = false;
         while (!hasMoreChunks && m_saveFiles.peek() != null) {
@@ -157,6 +252,12 @@ public class SnapshotRestore extends VoltSystemProcedure
         executor.registerPlanFragment(SysProcFragmentId.
                                   PF_restoreSendPartitionedTableResults,
                                   this);
+        executor.registerPlanFragment(SysProcFragmentId.
+                                  PF_restoreStreamPartitionedTable,
+                                  this);
+        executor.registerPlanFragment(SysProcFragmentId.
+                                  PF_restoreStreamPartitionedTableResults,
+                                  this);
         m_siteId = executor.getSiteId();
         m_hostId = ((Site)executor.getPartition().getParent()).getHost().getId();
     }
@@ -175,13 +276,10 @@ public class SnapshotRestore extends VoltSystemProcedure
             assert(params.toArray()[0] != null);
             assert(params.toArray()[1] != null);
             VoltTable result = ClusterSaveFileState.constructEmptySaveFileStateVoltTable();
-            // Choose the lowest site ID on this host to do the file scan
-            // All other sites should just return empty results tables.
-            int host_id = context.getHStoreSite().getHostId();
-            Integer lowest_site_id = null; // FIXME
-//                VoltDB.instance().getCatalogContext().siteTracker.
-//                getLowestLiveExecSiteIdForHost(host_id);
-            if (context.getPartitionExecutor().getSiteId() == lowest_site_id)
+            // Choose the lowest partition on this host to do the file scan
+            // All other partitions should just return empty results tables.
+            int lowest_partition_id = context.getHStoreSite().getLocalPartitionIds().values()[0];
+            if (context.getPartitionExecutor().getPartitionId() == lowest_partition_id)
             {
                 m_initializedTableSaveFiles.clear();
                 m_filePath = (String) params.toArray()[0];
@@ -515,6 +613,47 @@ public class SnapshotRestore extends VoltSystemProcedure
                           result_str, error_msg);
             return new DependencySet(dependency_id, result);
         }
+        else if (fragmentId ==
+            SysProcFragmentId.PF_restoreStreamPartitionedTable)
+        {
+            Object paramsA[] = params.toArray();
+            assert(paramsA[0] != null);
+            assert(paramsA[1] != null);
+            assert(paramsA[2] != null);
+            assert(paramsA[3] != null);
+            assert(paramsA[4] != null);
+            assert(paramsA[5] != null);
+            String table_name = (String) paramsA[0];
+            int currentHostIds[] = (int[]) paramsA[1];
+            int originalHostIds[] = (int[]) paramsA[2];
+            int savedPartitions = (Integer) paramsA[3];
+            int dependency_id = (Integer) paramsA[4];
+            int allowExport = (Integer) paramsA[5];
+            VoltTable result = performStreamPartitionedTable(txn_id, table_name,
+                                                             currentHostIds, originalHostIds,
+                                                             savedPartitions, allowExport, context);
+            return new DependencySet(dependency_id, result);
+        }
+        else if (fragmentId ==
+            SysProcFragmentId.PF_restoreStreamPartitionedTableResults)
+        {
+            LOG.trace("Aggregating streamed partitioned table restore results");
+            assert(params.toArray()[0] != null);
+            int dependency_id = (Integer) params.toArray()[0];
+            VoltTable result = constructResultsTable();
+            for (int dep_id : dependencies.keySet())
+            {
+                for (VoltTable t : dependencies.get(dep_id))
+                {
+                    while (t.advanceRow())
+                    {
+                        // this will actually add the active row of t
+                        result.add(t);
+                    }
+                }
+            }
+            return new DependencySet(dependency_id, result);
+        }
         else if (fragmentId ==
             SysProcFragmentId.PF_restoreSendPartitionedTableResults)
         {
@@ -1040,6 +1179,63 @@ public class SnapshotRestore extends VoltSystemProcedure
         return results[0];
    }
 
+    /**
+     * Load all of the tuples for this partition out of the TableRestoreStream
+     * that is shared by all of the local partitions.
+     */
+    private VoltTable performStreamPartitionedTable(Long txn_id,
+                                                    String tableName,
+                                                    int currentHostIds[],
+                                                    int originalHostIds[],
+                                                    int savedPartitions,
+                                                    int allowExport,
+                                                    SystemProcedureExecutionContext context)
+    {
+        String hostname = ConnectionUtil.getHostnameOrAddress();
+        int partition_id = context.getPartitionExecutor().getPartitionId();
+        String result_str = "SUCCESS";
+        String error_msg = "";
+        TableRestoreStream stream = null;
+        try
+        {
+            stream = getRestoreStream(txn_id, tableName, currentHostIds, originalHostIds,
+                                      savedPartitions, context);
+            VoltTable table = null;
+            while ((table = stream.next(partition_id)) != null)
+            {
+                super.voltLoadTable(context.getCluster().getTypeName(),
+                                    context.getDatabase().getTypeName(),
+                                    tableName, table, allowExport);
+                stream.markLoaded(partition_id, table.getRowCount());
+            }
+        }
+        catch (IOException e)
+        {
+            result_str = "FAILURE";
+            error_msg = "Unable to load table: " + tableName + " error: " + e.getMessage();
+        }
+        catch (VoltTypeException e)
+        {
+            result_str = "FAILURE";
+            error_msg = "Unable to load table: " + tableName + " error: " + e.getMessage();
+        }
+        catch (VoltAbortException e)
+        {
+            result_str = "FAILURE";
+            error_msg = e.getMessage();
+        }
+        finally
+        {
+            if (stream != null) {
+                releaseRestoreStream(txn_id, tableName, stream, partition_id);
+            }
+        }
+        VoltTable result = constructResultsTable();
+        result.addRow(m_hostId, hostname, m_siteId, tableName, partition_id,
+                      result_str, error_msg);
+        return result;
+    }
+
     private VoltTable[] createPartitionedTables(String tableName,
                                                 VoltTable loadedTable)
     {
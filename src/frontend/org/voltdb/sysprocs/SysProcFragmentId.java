@@ -99,6 +99,9 @@ public class SysProcFragmentId {
     public static final int PF_loadDistribute = 70;
     public static final int PF_loadAggregate = 71;
     
+    // @LoadPartitionTable
+    public static final int PF_loadPartition = 72;
+    
     // @SnapshotRestore
     public static final int PF_restoreScan = 80;
     public static final int PF_restoreScanResults = 81;
@@ -111,6 +114,8 @@ public class SysProcFragmentId {
     public static final int PF_restoreSendReplicatedTableResults = 88;
     public static final int PF_restoreSendPartitionedTable = 89;
     public static final int PF_restoreSendPartitionedTableResults = 90;
+    public static final int PF_restoreStreamPartitionedTable = 91;
+    public static final int PF_restoreStreamPartitionedTableResults = 92;
 
     // @StartSampler
     public static final int PF_startSampler = 100;
@@ -19,9 +19,9 @@ package org.voltdb.sysprocs.saverestore;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,13 +29,18 @@ import java.util.TreeSet;
 
 import org.apache.log4j.Logger;
 import org.voltdb.ParameterSet;
-import org.voltdb.VoltDB;
+import org.voltdb.VoltProcedure.VoltAbortException;
 import org.voltdb.VoltSystemProcedure.SynthesizedPlanFragment;
 import org.voltdb.VoltTableRow;
+import org.voltdb.catalog.Partition;
+import org.voltdb.catalog.Site;
 import org.voltdb.catalog.Table;
+import org.voltdb.dtxn.DtxnConstants;
 import org.voltdb.sysprocs.SysProcFragmentId;
 import org.voltdb.utils.Pair;
 
+import edu.brown.catalog.CatalogUtil;
+
 
 public class PartitionedTableSaveFileState extends TableSaveFileState
 {
@@ -96,7 +101,7 @@ public class PartitionedTableSaveFileState extends TableSaveFileState
                  getTotalPartitions());
         if (!catalogTable.getIsreplicated())
         {
-            restore_plan = generatePartitionedToPartitionedPlan();
+            restore_plan = generatePartitionedToPartitionedPlan(catalogTable);
         }
         else
         {
@@ -126,88 +131,84 @@ public class PartitionedTableSaveFileState extends TableSaveFileState
         }
     }
 
-    private SynthesizedPlanFragment[] generatePartitionedToPartitionedPlan()
+    /**
+     * Every partition in the cluster pulls its tuples out of a TableRestoreStream
+     * that is shared by all of the partitions at its host. The stream rehashes
+     * the tuples if the number of partitions has changed since the snapshot.
+     * If the number of partitions is the same, then each host only reads the save
+     * files that it can see, so every partition's saved data must be visible at 
+     * the host where that partition is now. We do not ship tuples between hosts.
+     */
+    private SynthesizedPlanFragment[] generatePartitionedToPartitionedPlan(Table catalogTable)
     {
         LOG.info("Partition set: " + m_partitionsSeen);
-        ArrayList<SynthesizedPlanFragment> restorePlan =
-            new ArrayList<SynthesizedPlanFragment>();
-        HashSet<Integer> coveredPartitions = new HashSet<Integer>();
-        Iterator<Integer> hosts = m_partitionsAtHost.keySet().iterator();
-        while (!coveredPartitions.containsAll(m_partitionsSeen)) {
-            if (!hosts.hasNext()) {
-                LOG.error("Ran out of hosts before covering all partitions with distributors");
-                return null;
+        Collection<Partition> partitions = CatalogUtil.getAllPartitions(catalogTable);
+        if (partitions.size() == m_totalPartitions) {
+            for (Partition catalog_part : partitions) {
+                int currentHostId = ((Site)catalog_part.getParent()).getHost().getId();
+                boolean found = false;
+                Set<Pair<Integer, Integer>> partitions_at_host = m_partitionsAtHost.get(currentHostId);
+                if (partitions_at_host != null) {
+                    for (Pair<Integer, Integer> p : partitions_at_host) {
+                        if (p.getFirst() == catalog_part.getId()) {
+                            found = true;
+                            break;
+                        }
+                    }
+                }
+                if (!found) {
+                    String error = "Unable to restore table: " + getTableName() +
+                        " because the save file with the data for partition " + catalog_part.getId() +
+                        " is not visible at its current host " + currentHostId +
+                        ". Restoring without changing the number of partitions requires" +
+                        " each host to see the save files for all of its partitions";
+                    LOG.error(error);
+                    throw new VoltAbortException(error);
+                }
             }
-
-            /**
-             * Get the list of partitions on this host and remove all that were covered
-             */
-            Integer nextHost = hosts.next();
-            Set<Pair<Integer, Integer>> partitionsAndOrigHosts =
-                new HashSet<Pair<Integer, Integer>>(m_partitionsAtHost.get(nextHost));
-            Iterator<Pair<Integer, Integer>> removeCoveredIterator = partitionsAndOrigHosts.iterator();
-
-            List<Integer> uncoveredPartitionsAtHostList = new ArrayList<Integer>();
-            HashSet<Integer> originalHosts = new HashSet<Integer>();
-            while (removeCoveredIterator.hasNext()) {
-                Pair<Integer, Integer> p = removeCoveredIterator.next();
-                if (coveredPartitions.contains(p.getFirst())) {
-                    removeCoveredIterator.remove();
-                } else {
-                    coveredPartitions.add(p.getFirst());
-                    uncoveredPartitionsAtHostList.add(p.getFirst());
+        }
+        List<Integer> currentHosts = new ArrayList<Integer>();
+        List<Integer> originalHosts = new ArrayList<Integer>();
+        for (Integer currentHostId : m_partitionsAtHost.keySet()) {
+            Set<Integer> seen = new HashSet<Integer>();
+            for (Pair<Integer, Integer> p : m_partitionsAtHost.get(currentHostId)) {
+                if (seen.add(p.getSecond())) {
+                    currentHosts.add(currentHostId);
                     originalHosts.add(p.getSecond());
                 }
             }
-
-            List<Integer> sitesAtHost = null; // FIXME
-//                VoltDB.instance().getCatalogContext().siteTracker.
-//                getLiveExecutionSitesForHost(nextHost);
-
-            int originalHostsArray[] = new int[originalHosts.size()];
-            int qq = 0;
-            for (int originalHostId : originalHosts) originalHostsArray[qq++] = originalHostId;
-            int uncoveredPartitionsAtHost[] = new int[uncoveredPartitionsAtHostList.size()];
-            for (int ii = 0; ii < uncoveredPartitionsAtHostList.size(); ii++) {
-                uncoveredPartitionsAtHost[ii] = uncoveredPartitionsAtHostList.get(ii);
-            }
-
-            /*
-             * Assigning the FULL
-             * workload to each site. At the actual host
-             * static synchronization in the procedure will ensure the work is
-             * distributed across every ES in a meaningful way.
-             */
-            for (Integer site : sitesAtHost) {
-                restorePlan.add(constructDistributePartitionedTableFragment(
-                        site,
-                        uncoveredPartitionsAtHost,
-                        originalHostsArray));
-            }
         }
-        restorePlan.add(constructDistributePartitionedTableAggregatorFragment());
-        return restorePlan.toArray(new SynthesizedPlanFragment[0]);
+        int currentHostsArray[] = new int[currentHosts.size()];
+        int originalHostsArray[] = new int[originalHosts.size()];
+        for (int ii = 0; ii < currentHostsArray.length; ii++) {
+            currentHostsArray[ii] = currentHosts.get(ii);
+            originalHostsArray[ii] = originalHosts.get(ii);
+        }
+
+        SynthesizedPlanFragment[] restorePlan = new SynthesizedPlanFragment[2];
+        restorePlan[0] = constructStreamPartitionedTableFragment(currentHostsArray, originalHostsArray);
+        restorePlan[1] = constructStreamPartitionedTableAggregatorFragment();
+        return restorePlan;
     }
 
     private SynthesizedPlanFragment
-    constructDistributePartitionedTableFragment(
-            int distributorSiteId,
-            int uncoveredPartitionsAtHost[],
+    constructStreamPartitionedTableFragment(
+            int currentHostsArray[],
             int originalHostsArray[])
     {
-        int result_dependency_id = getNextDependencyId();
+        int result_dependency_id = getNextDependencyId() | DtxnConstants.MULTIPARTITION_DEPENDENCY;
         SynthesizedPlanFragment plan_fragment = new SynthesizedPlanFragment();
         plan_fragment.fragmentId =
-            SysProcFragmentId.PF_restoreDistributePartitionedTable;
-        plan_fragment.multipartition = false;
-        // plan_fragment.siteId = distributorSiteId;
+            SysProcFragmentId.PF_restoreStreamPartitionedTable;
+        plan_fragment.multipartition = true;
         plan_fragment.outputDependencyIds = new int[]{ result_dependency_id };
         plan_fragment.inputDependencyIds = new int[] {};
         addPlanDependencyId(result_dependency_id);
         ParameterSet params = new ParameterSet();
         params.setParameters(getTableName(),
+                             currentHostsArray,
                              originalHostsArray,
-                             uncoveredPartitionsAtHost,
+                             m_totalPartitions,
                              result_dependency_id,
                              m_allowExport);
         plan_fragment.parameters = params;
@@ -215,12 +216,12 @@ public class PartitionedTableSaveFileState extends TableSaveFileState
     }
 
     private SynthesizedPlanFragment
-    constructDistributePartitionedTableAggregatorFragment()
+    constructStreamPartitionedTableAggregatorFragment()
     {
         int result_dependency_id = getNextDependencyId();
         SynthesizedPlanFragment plan_fragment = new SynthesizedPlanFragment();
         plan_fragment.fragmentId =
-            SysProcFragmentId.PF_restoreDistributePartitionedTableResults;
+            SysProcFragmentId.PF_restoreStreamPartitionedTableResults;
         plan_fragment.multipartition = false;
         plan_fragment.outputDependencyIds = new int[]{ result_dependency_id };
         plan_fragment.inputDependencyIds = getPlanDependencyIds();
@@ -0,0 +1,418 @@
+package org.voltdb.sysprocs.saverestore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+
+import org.apache.log4j.Logger;
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.VoltTable;
+import org.voltdb.catalog.Table;
+
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.utils.PartitionEstimator;
+import edu.brown.utils.PartitionSet;
+
+/**
+ * Streams the chunks of a partitioned table's save files into all of the local
+ * partitions at the same time. There is one of these per table per host.
+ * Every local partition's thread pulls from the same stream: when a partition has
+ * nothing left in its own queue, it reads the next chunk from the save files,
+ * splits the tuples up by their current partition, and hands them off to the
+ * other partitions' queues. This means that the reading, rehashing, and loading
+ * of the tuples are all done in parallel without any extra threads.
+ * <B>NOTE:</B> If the number of partitions has not changed since the snapshot was
+ * taken, then we trust the partition id stored with each chunk and skip rehashing.
+ * @author pavlo
+ */
+public class TableRestoreStream {
+    private static final Logger LOG = Logger.getLogger(TableRestoreStream.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug);
+    }
+
+    /**
+     * A partition will not read a new chunk while another partition
+     * has at least this many tables waiting to be loaded.
+     */
+    private static final int MAX_PENDING_TABLES = 8;
+
+    /**
+     * How often to log our progress (ms)
+     */
+    private static final long PROGRESS_INTERVAL = 5000;
+
+    // ----------------------------------------------------------------------------
+    // DATA MEMBERS
+    // ----------------------------------------------------------------------------
+
+    private final Table catalog_tbl;
+    private final Queue<TableSaveFile> saveFiles;
+    private final PartitionEstimator p_estimator;
+    private final boolean rehash;
+
+    /**
+     * The local partitions and their offsets into our arrays
+     */
+    private final int partitions[];
+    private final int partitionOffsets[];
+
+    /**
+     * Tables that are ready to be loaded at each local partition
+     */
+    private final List<Queue<VoltTable>> pending;
+
+    /**
+     * Partitions that have stopped loading
+     */
+    private final boolean finished[];
+
+    /**
+     * Whether SavedTableConverter needs to convert the chunks to the current schema
+     */
+    private Boolean needsConversion = null;
+
+    /**
+     * The number of chunks that are being split up right now
+     */
+    private int inFlight = 0;
+    private boolean exhausted = false;
+    private IOException error = null;
+
+    // Progress
+    private final long startTime;
+    private long lastProgress;
+    private long chunksRead = 0;
+    private long bytesRead = 0;
+    private final long loadedTuples[];
+
+    // ----------------------------------------------------------------------------
+    // INITIALIZATION
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Constructor
+     * @param catalog_tbl The table to restore
+     * @param saveFiles The save files for this table that are visible at this host
+     * @param partitions The local partitions that will be loading tuples
+     * @param p_estimator Used to rehash the tuples to their new partitions
+     * @param rehash If false, then the tuples will be loaded into the partition that they were saved from
+     */
+    public TableRestoreStream(Table catalog_tbl,
+                              Collection<TableSaveFile> saveFiles,
+                              PartitionSet partitions,
+                              PartitionEstimator p_estimator,
+                              boolean rehash) {
+        assert(catalog_tbl.getIsreplicated() == false) :
+            "Trying to stream replicated table " + catalog_tbl.getName();
+        this.catalog_tbl = catalog_tbl;
+        this.saveFiles = new ArrayDeque<TableSaveFile>(saveFiles);
+        this.p_estimator = p_estimator;
+        this.rehash = rehash;
+
+        this.partitions = partitions.values();
+        int max = -1;
+        for (int p : this.partitions) max = Math.max(max, p);
+        this.partitionOffsets = new int[max + 1];
+        for (int i = 0; i < this.partitionOffsets.length; i++) {
+            this.partitionOffsets[i] = -1;
+        } // FOR
+        for (int i = 0; i < this.partitions.length; i++) {
+            this.partitionOffsets[this.partitions[i]] = i;
+        } // FOR
+
+        this.pending = new ArrayList<Queue<VoltTable>>(this.partitions.length);
+        for (int i = 0; i < this.partitions.length; i++) {
+            this.pending.add(new ArrayDeque<VoltTable>());
+        } // FOR
+        this.finished = new boolean[this.partitions.length];
+        this.loadedTuples = new long[this.partitions.length];
+        this.startTime = System.currentTimeMillis();
+        this.lastProgress = this.startTime;
+    }
+
+    // ----------------------------------------------------------------------------
+    // STREAMING
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Returns the next VoltTable that should be loaded at the given partition.
+     * The caller's thread may end up reading and splitting chunks on behalf of the
+     * other partitions while it waits for its own tuples.
+     * Returns null once there is nothing left to load at this partition.
+     * @param partition
+     * @return
+     * @throws IOException If the save files could not be read by any partition
+     */
+    public VoltTable next(int partition) throws IOException {
+        final int offset = this.getOffset(partition);
+        while (true) {
+            synchronized (this) {
+                while (true) {
+                    if (this.error != null) {
+                        throw this.error;
+                    }
+                    VoltTable vt = this.pending.get(offset).poll();
+                    if (vt != null) {
+                        this.notifyAll();
+                        return (vt);
+                    }
+                    if (this.exhausted && this.inFlight == 0) {
+                        return (null);
+                    }
+                    if (this.exhausted == false && this.isBacklogged() == false) {
+                        this.inFlight++;
+                        break;
+                    }
+                    try {
+                        this.wait();
+                    } catch (InterruptedException ex) {
+                        throw new IOException("Interrupted while waiting for " + catalog_tbl.getName() + " tuples", ex);
+                    }
+                } // WHILE
+            } // SYNCH
+
+            // Read and split the next chunk outside of the lock so that
+            // the other partitions can do the same thing at the same time
+            VoltTable split[] = null;
+            boolean success = false;
+            try {
+                split = this.readNextChunk();
+                success = true;
+            } catch (IOException ex) {
+                synchronized (this) {
+                    if (this.error == null) this.error = ex;
+                } // SYNCH
+                throw ex;
+            } catch (RuntimeException ex) {
+                synchronized (this) {
+                    if (this.error == null) this.error = new IOException(ex);
+                } // SYNCH
+                throw ex;
+            } finally {
+                synchronized (this) {
+                    this.inFlight--;
+                    if (success == false || split == null) {
+                        this.exhausted = true;
+                    }
+                    else {
+                        for (int i = 0; i < split.length; i++) {
+                            if (split[i] != null && this.finished[i] == false) {
+                                this.pending.get(i).offer(split[i]);
+                            }
+                        } // FOR
+                    }
+                    this.notifyAll();
+                } // SYNCH
+            }
+        } // WHILE
+    }
+
+    /**
+     * Record that the given number of tuples were loaded at the partition
+     * @param partition
+     * @param tupleCount
+     */
+    public void markLoaded(int partition, int tupleCount) {
+        final int offset = this.getOffset(partition);
+        boolean report = false;
+        synchronized (this) {
+            this.loadedTuples[offset] += tupleCount;
+            long now = System.currentTimeMillis();
+            if (now - this.lastProgress >= PROGRESS_INTERVAL) {
+                this.lastProgress = now;
+                report = true;
+            }
+        } // SYNCH
+        if (report) LOG.info(this.getProgress());
+    }
+
+    /**
+     * The given partition will not load any more tuples. This must be
+     * called by every partition when it is done (or if it failed).
+     * Returns true if this was the last partition to finish
+     * @param partition
+     * @return
+     */
+    public synchronized boolean finish(int partition) {
+        final int offset = this.getOffset(partition);
+        this.finished[offset] = true;
+        this.pending.get(offset).clear();
+        this.notifyAll();
+        for (boolean b : this.finished) {
+            if (b == false) return (false);
+        } // FOR
+        return (true);
+    }
+
+    /**
+     * Close all of the save files
+     */
+    public synchronized void close() {
+        TableSaveFile f = null;
+        while ((f = this.saveFiles.poll()) != null) {
+            try {
+                f.close();
+            } catch (IOException ex) {
+                LOG.warn("Failed to close save file for " + this.catalog_tbl.getName(), ex);
+            }
+        } // WHILE
+        this.exhausted = true;
+        this.notifyAll();
+    }
+
+    // ----------------------------------------------------------------------------
+    // INTERNAL METHODS
+    // ----------------------------------------------------------------------------
+
+    private int getOffset(int partition) {
+        int offset = (partition < this.partitionOffsets.length ? this.partitionOffsets[partition] : -1);
+        if (offset == -1) {
+            throw new IllegalArgumentException("Partition " + partition + " is not local to this stream");
+        }
+        return (offset);
+    }
+
+    /**
+     * Returns true if some partition that is still loading has too many
+     * tables waiting for it. Must be called while holding the lock.
+     */
+    private boolean isBacklogged() {
+        for (int i = 0; i < this.pending.size(); i++) {
+            if (this.finished[i] == false && this.pending.get(i).size() >= MAX_PENDING_TABLES) {
+                return (true);
+            }
+        } // FOR
+        return (false);
+    }
+
+    /**
+     * Get the next chunk out of the save files. Returns null once
+     * they have all been read.
+     */
+    protected TableSaveFile.Container nextChunk() throws IOException {
+        synchronized (this.saveFiles) {
+            TableSaveFile.Container c = null;
+            while (c == null && this.saveFiles.isEmpty() == false) {
+                TableSaveFile f = this.saveFiles.peek();
+                c = f.getNextChunk();
+                if (c == null) {
+                    f.close();
+                    this.saveFiles.poll();
+                }
+            } // WHILE
+            return (c);
+        } // SYNCH
+    }
+
+    /**
+     * Read the next chunk and split its tuples up by the local partition offset
+     * that they should be loaded at. Returns null if there are no more chunks.
+     */
+    private VoltTable[] readNextChunk() throws IOException {
+        TableSaveFile.Container c = this.nextChunk();
+        if (c == null) return (null);
+
+        VoltTable split[] = new VoltTable[this.partitions.length];
+        try {
+            int chunkBytes = c.b.remaining();
+            VoltTable vt = null;
+            if (c.b.isDirect()) {
+                // Pooled buffers get recycled as soon as we discard them
+                ByteBuffer copy = ByteBuffer.allocate(chunkBytes);
+                copy.put(c.b);
+                copy.flip();
+                vt = PrivateVoltTableFactory.createVoltTableFromBuffer(copy, true);
+            } else {
+                vt = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b, true);
+            }
+
+            Boolean convert = null;
+            synchronized (this) {
+                if (this.needsConversion == null) {
+                    this.needsConversion = SavedTableConverter.needsConversion(vt, this.catalog_tbl);
+                }
+                convert = this.needsConversion;
+                this.chunksRead++;
+                this.bytesRead += chunkBytes;
+            } // SYNCH
+            if (convert.booleanValue()) {
+                vt = SavedTableConverter.convertTable(vt, this.catalog_tbl);
+            }
+
+            // Fast path: the entire chunk goes to the partition that it came from
+            if (this.rehash == false) {
+                int partition = c.getPartitionId();
+                if (partition >= 0 && partition < this.partitionOffsets.length &&
+                        this.partitionOffsets[partition] != -1) {
+                    split[this.partitionOffsets[partition]] = vt;
+                }
+                return (split);
+            }
+
+            int initialSize = Math.max(1024, chunkBytes / this.partitions.length);
+            vt.resetRowPosition();
+            while (vt.advanceRow()) {
+                int partition = -1;
+                try {
+                    partition = this.p_estimator.getTableRowPartition(this.catalog_tbl, vt);
+                } catch (Exception ex) {
+                    throw new IOException("Failed to calculate partition for " + this.catalog_tbl.getName() + " tuple", ex);
+                }
+                if (partition >= this.partitionOffsets.length) continue;
+                int offset = this.partitionOffsets[partition];
+                if (offset == -1) continue;
+                if (split[offset] == null) {
+                    split[offset] = vt.clone(initialSize);
+                }
+                split[offset].add(vt);
+            } // WHILE
+        } finally {
+            c.discard();
+        }
+        return (split);
+    }
+
+    // ----------------------------------------------------------------------------
+    // PROGRESS
+    // ----------------------------------------------------------------------------
+
+    public boolean isRehashing() {
+        return (this.rehash);
+    }
+    public synchronized long getChunksRead() {
+        return (this.chunksRead);
+    }
+    public synchronized long getBytesRead() {
+        return (this.bytesRead);
+    }
+    public synchronized long getLoadedTupleCount(int partition) {
+        return (this.loadedTuples[this.getOffset(partition)]);
+    }
+    public synchronized long getLoadedTupleCount() {
+        long total = 0;
+        for (long cnt : this.loadedTuples) total += cnt;
+        return (total);
+    }
+
+    /**
+     * Returns a one-line summary of how much we have restored so far
+     * and how fast we are doing it
+     */
+    public String getProgress() {
+        long tuples = this.getLoadedTupleCount();
+        long bytes = this.getBytesRead();
+        double seconds = Math.max(1, System.currentTimeMillis() - this.startTime) / 1000d;
+        double mb = bytes / 1048576d;
+        return String.format("Restoring %s: %d chunks / %.1f MB read, %d tuples loaded " +
+                             "at %d partitions [%.1f MB/sec, %.0f tuples/sec, rehash=%s]",
+                             this.catalog_tbl.getName(), this.getChunksRead(), mb, tuples,
+                             this.partitions.length, mb / seconds, tuples / seconds, this.rehash);
+    }
+}
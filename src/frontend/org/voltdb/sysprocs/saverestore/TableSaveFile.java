@@ -22,7 +22,9 @@ import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayDeque;
 import java.util.HashSet;
 import java.util.Set;
@@ -51,21 +53,40 @@ import org.voltdb.EELibraryLoader;
  *   The following fields are conditional on isReplicated == false
  * Partition Ids - Array of 4 octet integer ids for partitions in this file
  * Total Hosts - The number of hosts for this table when it was saved
+ *
+ * The chunks can either be read ahead by a separate thread into pooled direct
+ * buffers, or the file can be memory-mapped so that each chunk is copied straight
+ * out of the page cache by whatever thread asks for it.
  */
 public class TableSaveFile
 {
 
-    private static class Container extends BBContainer {
-        @SuppressWarnings("unused")
+    /**
+     * A chunk of tuples from the save file along with the partition that they came from.
+     * Chunks that were read out of a memory-mapped file are backed by heap
+     * buffers and are not returned to the pool when they are discarded.
+     */
+    public static class Container extends BBContainer {
         private final BBContainer m_origin;
+        private int m_partitionId = -1;
+
         Container(ByteBuffer b, long pointer, BBContainer origin) {
             super(b, pointer);
             m_origin = origin;
         }
 
+        /**
+         * The original partition id that this chunk was saved from
+         */
+        public int getPartitionId() {
+            return m_partitionId;
+        }
+
         @Override
         public void discard() {
-            m_buffers.add(this);
+            if (m_origin != null) {
+                m_buffers.add(this);
+            }
         }
     }
 
@@ -88,10 +109,32 @@ public class TableSaveFile
             FileChannel dataIn,
             int readAheadChunks,
             int relevantPartitionIds[],
-            boolean continueOnCorruptedChunk) throws IOException
+            boolean continueOnCorruptedChunk) throws IOException {
+        this(dataIn, readAheadChunks, relevantPartitionIds, continueOnCorruptedChunk, false);
+    }
+
+    /**
+     * @param dataIn
+     * @param readAheadChunks
+     * @param relevantPartitionIds
+     * @param continueOnCorruptedChunk
+     * @param memoryMap If true, the chunks will be read out of a memory-mapped
+     *                  copy of the file instead of with a read-ahead thread.
+     * @throws IOException
+     */
+    public TableSaveFile(
+            FileChannel dataIn,
+            int readAheadChunks,
+            int relevantPartitionIds[],
+            boolean continueOnCorruptedChunk,
+            boolean memoryMap) throws IOException
     {
         try {
-            EELibraryLoader.loadExecutionEngineLibrary(true);
+            // The read-ahead thread needs the native library to allocate
+            // direct buffers and to compute the chunk CRCs
+            if (memoryMap == false) {
+                EELibraryLoader.loadExecutionEngineLibrary(true);
+            }
             if (relevantPartitionIds == null) {
                 m_relevantPartitionIds = null;
             } else {
@@ -233,6 +276,21 @@ public class TableSaveFile
                     m_corruptedPartitions.add(0);
                 }
             }
+
+            /*
+             * We can only map 2GB at a time, so for anything bigger than that
+             * we will fall back to using the read-ahead thread
+             */
+            if (memoryMap) {
+                final long position = m_saveFile.position();
+                final long remaining = m_saveFile.size() - position;
+                if (remaining <= Integer.MAX_VALUE) {
+                    m_mappedChunks = m_saveFile.map(MapMode.READ_ONLY, position, remaining);
+                    m_saveFile.close();
+                } else {
+                    EELibraryLoader.loadExecutionEngineLibrary(true);
+                }
+            }
             /*
              * Several runtime exceptions can be thrown in valid failure cases where
              * a corrupt save file is being detected.
@@ -310,6 +368,7 @@ public class TableSaveFile
             while (!m_availableChunks.isEmpty()) {
                 m_availableChunks.poll().discard();
             }
+            m_mappedChunks = null;
             notifyAll();
         }
     }
@@ -323,8 +382,11 @@ public class TableSaveFile
     }
 
     // Will get the next chunk of the table that is just over the chunk size
-    public synchronized BBContainer getNextChunk() throws IOException
+    public synchronized Container getNextChunk() throws IOException
     {
+        if (m_mappedChunks != null) {
+            return getNextMappedChunk();
+        }
         if (!m_hasMoreChunks) {
             return m_availableChunks.poll();
         }
@@ -359,6 +421,101 @@ public class TableSaveFile
     {
         return m_hasMoreChunks || !m_availableChunks.isEmpty();
     }
+
+    public boolean isMemoryMapped() {
+        return m_mappedChunks != null;
+    }
+
+    /**
+     * Get the next relevant chunk out of the memory-mapped file. This follows
+     * the same steps as the ChunkReader, except that the tuple data is copied
+     * directly into a heap buffer and irrelevant chunks are skipped without
+     * being copied at all. If the length of a skipped chunk was corrupted, then
+     * the partition id CRC of the chunk after it will not match.
+     * Must be called while holding the lock on this TableSaveFile.
+     */
+    private Container getNextMappedChunk() throws IOException {
+        final MappedByteBuffer m = m_mappedChunks;
+        while (m_hasMoreChunks) {
+            if (m.remaining() < 16) {
+                m_hasMoreChunks = false;
+                break;
+            }
+            final int nextChunkLength = m.getInt();
+            final int nextChunkPartitionId = m.getInt();
+            final int nextChunkPartitionIdCRC = m.getInt();
+            final int nextChunkCRC = m.getInt();
+
+            final CRC32 partitionIdCRC = new CRC32();
+            partitionIdCRC.update(ByteBuffer.allocate(4).putInt(nextChunkPartitionId).array());
+            if ((int)partitionIdCRC.getValue() != nextChunkPartitionIdCRC) {
+                for (int partitionId : m_partitionIds) {
+                    m_corruptedPartitions.add(partitionId);
+                }
+                m_hasMoreChunks = false;
+                throw new IOException("Chunk partition ID CRC check failed. " +
+                        "This corrupts all partitions in this file");
+            }
+            if (nextChunkLength < 0) {
+                m_hasMoreChunks = false;
+                throw new IOException("Corrupted TableSaveFile chunk has negative chunk length");
+            }
+            if (nextChunkLength > DEFAULT_CHUNKSIZE) {
+                m_hasMoreChunks = false;
+                throw new IOException("Corrupted TableSaveFile chunk has unreasonable length " +
+                        "> DEFAULT_CHUNKSIZE bytes");
+            }
+
+            /*
+             * The tuple data is followed by the row count. If the file
+             * was truncated then all of the partitions are corrupted
+             */
+            final int dataLength = nextChunkLength - 12;
+            if (dataLength < 4 || dataLength > m.remaining()) {
+                for (int partitionId : m_partitionIds) {
+                    m_corruptedPartitions.add(partitionId);
+                }
+                m_hasMoreChunks = false;
+                break;
+            }
+            if (m_relevantPartitionIds != null &&
+                    !m_relevantPartitionIds.contains(nextChunkPartitionId)) {
+                m.position(m.position() + dataLength);
+                continue;
+            }
+
+            /*
+             * Same layout as what the ChunkReader produces: the cached table
+             * header, then the row count, and then the tuple data.
+             */
+            final int headerLength = m_tableHeader.capacity();
+            final ByteBuffer b = ByteBuffer.allocate(headerLength + 4 + dataLength);
+            m_tableHeader.position(0);
+            b.put(m_tableHeader);
+            m.get(b.array(), headerLength + 4, dataLength);
+
+            final CRC32 crc = new CRC32();
+            crc.update(b.array(), headerLength + 4, dataLength);
+            if ((int)crc.getValue() != nextChunkCRC) {
+                m_corruptedPartitions.add(nextChunkPartitionId);
+                if (m_continueOnCorruptedChunk) {
+                    continue;
+                }
+                m_hasMoreChunks = false;
+                throw new IOException("CRC mismatch in saved table chunk");
+            }
+
+            final int rowCount = b.getInt(headerLength + dataLength);
+            b.putInt(headerLength, rowCount);
+            b.limit(headerLength + dataLength);
+            b.position(0);
+
+            final Container c = new Container(b, 0, null);
+            c.m_partitionId = nextChunkPartitionId;
+            return c;
+        } // WHILE
+        return null;
+    }
 //
 //    /**
 //     * A wrapper for the in memory storage for a table chunk
@@ -431,6 +588,11 @@ public class TableSaveFile
     private Thread m_chunkReaderThread = null;
     private IOException m_chunkReaderException = null;
 
+    /**
+     * The chunks portion of the file if it was memory-mapped
+     */
+    private MappedByteBuffer m_mappedChunks = null;
+
     /**
      * Thread to read chunks from the disk
      */
@@ -612,6 +774,7 @@ public class TableSaveFile
                             }
                         }
                     }
+                    c.m_partitionId = nextChunkPartitionId;
                     ++chunksRead;
                     synchronized (TableSaveFile.this) {
                         m_availableChunks.offer(c);
@@ -0,0 +1,44 @@
+package org.voltdb.types;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This defines how a PartitionExecutor will wait for new messages
+ * to arrive in its work queue when it does not have anything to do.
+ * @see edu.brown.hstore.util.WaitStrategy
+ */
+public enum WaitStrategyType {
+    /**
+     * Never give up the CPU. Lowest wakeup latency but burns
+     * a full core for every idle partition.
+     */
+    BUSY_SPIN,
+    /**
+     * Spin for a bit and then yield the CPU to other threads
+     * before checking the queue again.
+     */
+    SPIN_YIELD,
+    /**
+     * Spin for a bit and then park the thread. Producers will only
+     * unpark the thread if it is actually parked.
+     */
+    SPIN_PARK,
+    /**
+     * Block on the work queue with a timeout.
+     * This is the default configuration.
+     */
+    BLOCKING;
+      
+    private static final Map<String, WaitStrategyType> name_lookup = new HashMap<String, WaitStrategyType>();
+    static {
+        for (WaitStrategyType e : EnumSet.allOf(WaitStrategyType.class)) {
+            WaitStrategyType.name_lookup.put(e.name().toLowerCase(), e);
+        } // FOR
+    } // STATIC
+      
+    public static WaitStrategyType get(String name) {
+        return WaitStrategyType.name_lookup.get(name.toLowerCase());
+    }
+} // ENUM
@@ -18,19 +18,61 @@
 package org.voltdb.utils;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Properties;
 
 import org.voltdb.CatalogContext;
+import org.voltdb.StatsAgent;
+import org.voltdb.StatsSource;
+import org.voltdb.SysProcSelector;
 import org.voltdb.VoltDB;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
 
 public class HTTPAdminListener extends NanoHTTPD {
 
+    /**
+     * The URI prefix for the out-of-band statistics. You can get the stats for
+     * a single selector with "/stats/<selector>" (e.g., "/stats/pool").
+     */
+    public static final String STATS_URI = "/stats";
+
+    /**
+     * The mime type of the plain-text exposition format that most
+     * monitoring scrapers understand.
+     */
+    public static final String MIME_STATS = "text/plain; version=0.0.4";
+
+    /**
+     * The prefix of every metric name that we write out.
+     */
+    public static final String METRIC_PREFIX = "hstore_";
+
+    private final StatsAgent statsAgent;
+
     public HTTPAdminListener(int port) throws IOException {
+        this(port, null);
+    }
+
+    /**
+     * @param port
+     * @param statsAgent If not null, then the StatsSources registered with this
+     * agent will be exposed at {@link #STATS_URI}
+     * @throws IOException
+     */
+    public HTTPAdminListener(int port, StatsAgent statsAgent) throws IOException {
         super(port);
+        this.statsAgent = statsAgent;
     }
 
     @Override
     public Response serve(String uri, String method, Properties header, Properties parms) {
+        if (this.statsAgent != null && uri.startsWith(STATS_URI)) {
+            return this.serveStats(uri.substring(STATS_URI.length()));
+        }
         // code for debugging
         //System.out.println( method + " '" + uri + "' " );
 
@@ -59,4 +101,100 @@ public class HTTPAdminListener extends NanoHTTPD {
 
         return new NanoHTTPD.Response(HTTP_OK, MIME_HTML, msg);
     }
+
+    // ----------------------------------------------------------------------------
+    // OUT-OF-BAND STATISTICS
+    // ----------------------------------------------------------------------------
+
+    private Response serveStats(String path) {
+        Collection<SysProcSelector> selectors = EnumSet.allOf(SysProcSelector.class);
+        String name = path.replace("/", "");
+        if (name.isEmpty() == false) {
+            SysProcSelector selector = null;
+            try {
+                selector = SysProcSelector.valueOf(name.toUpperCase());
+            } catch (IllegalArgumentException ex) {
+                return new NanoHTTPD.Response(HTTP_NOTFOUND, MIME_PLAINTEXT,
+                                              "Invalid statistics selector '" + name + "'\n");
+            }
+            selectors = EnumSet.of(selector);
+        }
+        String msg = formatStats(this.statsAgent, selectors, System.currentTimeMillis());
+        return new NanoHTTPD.Response(HTTP_OK, MIME_STATS, msg);
+    }
+
+    /**
+     * Generate a text dump of the current values of all of the StatsSources registered in
+     * the given StatsAgent for the given selectors. This reads from the StatsSources directly
+     * instead of invoking @Statistics, so it does not need to execute a transaction and does
+     * not have to wait in (or block) any of the partitions' lock queues.
+     * <P>
+     * Each numeric column of a StatsSource becomes its own metric named
+     * "hstore_&lt;selector&gt;_&lt;column&gt;". The string and boolean columns of each row become
+     * labels on that row's samples. The output is grouped by metric so that it can be scraped
+     * as the plain-text exposition format used by most monitoring systems.
+     * @param statsAgent
+     * @param selectors
+     * @param now
+     * @return
+     */
+    public static String formatStats(StatsAgent statsAgent, Collection<SysProcSelector> selectors, long now) {
+        StringBuilder sb = new StringBuilder();
+        for (SysProcSelector selector : selectors) {
+            for (StatsSource ss : statsAgent.getStatsSources(selector)) {
+                // EE stats are stored in VoltTables that are only updated by the EE
+                if (ss.isEEStats()) continue;
+
+                List<ColumnInfo> columns = ss.getColumnSchema();
+                Object rows[][] = ss.getStatsRows(false, now);
+                if (rows.length == 0) continue;
+
+                // Figure out which columns are labels and which are values
+                List<Integer> labelCols = new ArrayList<Integer>();
+                List<Integer> valueCols = new ArrayList<Integer>();
+                for (int i = 0, cnt = columns.size(); i < cnt; i++) {
+                    ColumnInfo col = columns.get(i);
+                    if (col.getName().equals("TIMESTAMP")) continue;
+                    // The host id is an integer but it makes more sense as a label
+                    if (col.getType() == VoltType.STRING || col.getType() == VoltType.BOOLEAN ||
+                        col.getName().equals("HOST_ID")) {
+                        labelCols.add(i);
+                    } else if (col.getType().isExactNumeric() || col.getType() == VoltType.FLOAT) {
+                        valueCols.add(i);
+                    }
+                } // FOR
+
+                // Precompute the labels for each row
+                String labels[] = new String[rows.length];
+                for (int r = 0; r < rows.length; r++) {
+                    StringBuilder inner = new StringBuilder();
+                    for (int i : labelCols) {
+                        if (rows[r][i] == null) continue;
+                        if (inner.length() > 0) inner.append(",");
+                        inner.append(columns.get(i).getName().toLowerCase().replaceAll("[^a-z0-9_]", "_"))
+                             .append("=\"")
+                             .append(escapeLabel(rows[r][i].toString()))
+                             .append("\"");
+                    } // FOR
+                    labels[r] = (inner.length() > 0 ? "{" + inner + "}" : "");
+                } // FOR
+
+                for (int i : valueCols) {
+                    String metric = METRIC_PREFIX + selector.name().toLowerCase() + "_" +
+                                    columns.get(i).getName().toLowerCase().replaceAll("[^a-z0-9_]", "_");
+                    sb.append("# TYPE ").append(metric).append(" gauge\n");
+                    for (int r = 0; r < rows.length; r++) {
+                        Object val = rows[r][i];
+                        if (val == null) continue;
+                        sb.append(metric).append(labels[r]).append(" ").append(val).append("\n");
+                    } // FOR
+                } // FOR
+            } // FOR
+        } // FOR
+        return (sb.toString());
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
 }
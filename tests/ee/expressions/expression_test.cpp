@@ -58,8 +58,12 @@
 
 #include "expressions/abstractexpression.h"
 #include "expressions/expressions.h"
+#include "expressions/expressionutil.h"
 #include "common/types.h"
 #include "common/ValuePeeker.hpp"
+#include "common/ValueFactory.hpp"
+#include "common/TupleSchema.h"
+#include "common/tabletuple.h"
 
 using namespace std;
 using namespace voltdb;
@@ -315,6 +319,99 @@ TEST_F(ExpressionTest, SimpleMultiplication) {
     ASSERT_EQ(ValuePeeker::peekAsBigInt(r2), 13LL);
 }
 
+/* what a comparison should return given the result of NValue::compare() */
+bool expectedComparison(ExpressionType type, int cmp) {
+    switch (type) {
+        case EXPRESSION_TYPE_COMPARE_EQUAL: return (cmp == 0);
+        case EXPRESSION_TYPE_COMPARE_NOTEQUAL: return (cmp != 0);
+        case EXPRESSION_TYPE_COMPARE_LESSTHAN: return (cmp < 0);
+        case EXPRESSION_TYPE_COMPARE_GREATERTHAN: return (cmp > 0);
+        case EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO: return (cmp <= 0);
+        case EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO: return (cmp >= 0);
+        default: return false;
+    }
+}
+
+/*
+ * Comparisons between a column and a constant or parameter should give
+ * the same answer as the general NValue comparison for every column type
+ */
+TEST_F(ExpressionTest, TupleValueComparison) {
+    vector<ValueType> columnTypes;
+    columnTypes.push_back(VALUE_TYPE_TINYINT);
+    columnTypes.push_back(VALUE_TYPE_INTEGER);
+    columnTypes.push_back(VALUE_TYPE_BIGINT);
+    columnTypes.push_back(VALUE_TYPE_DOUBLE);
+    vector<int32_t> columnLengths;
+    for (int i = 0; i < (int)columnTypes.size(); i++) {
+        columnLengths.push_back(NValue::getTupleStorageSize(columnTypes[i]));
+    }
+    vector<bool> columnAllowNull(columnTypes.size(), true);
+    TupleSchema *schema = TupleSchema::createTupleSchema(columnTypes, columnLengths, columnAllowNull, true);
+    TableTuple tuple(schema);
+    char *storage = new char[tuple.tupleLength()];
+    memset(storage, 0, tuple.tupleLength());
+    tuple.move(storage);
+
+    ExpressionType cmpTypes[] = { EXPRESSION_TYPE_COMPARE_EQUAL,
+                                  EXPRESSION_TYPE_COMPARE_NOTEQUAL,
+                                  EXPRESSION_TYPE_COMPARE_LESSTHAN,
+                                  EXPRESSION_TYPE_COMPARE_GREATERTHAN,
+                                  EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO,
+                                  EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO };
+    int64_t columnValues[] = { -5, 0, 7, 100 };
+    NValueArray params(1);
+
+    for (int v = 0; v < 4; v++) {
+        tuple.setNValue(0, ValueFactory::getTinyIntValue(static_cast<int8_t>(columnValues[v])));
+        tuple.setNValue(1, ValueFactory::getIntegerValue(static_cast<int32_t>(columnValues[v])));
+        tuple.setNValue(2, ValueFactory::getBigIntValue(columnValues[v]));
+        tuple.setNValue(3, ValueFactory::getDoubleValue(static_cast<double>(columnValues[v])));
+
+        for (int col = 0; col < (int)columnTypes.size(); col++) {
+            for (int c = 0; c < 6; c++) {
+                NValue constant = ValueFactory::getBigIntValue(7);
+                params[0] = constant;
+                // COLUMN op CONSTANT
+                auto_ptr<AbstractExpression> e1(comparisonFactory(cmpTypes[c],
+                                                new TupleValueExpression(col, "T", "C"),
+                                                constantValueFactory(constant)));
+                // CONSTANT op COLUMN
+                auto_ptr<AbstractExpression> e2(comparisonFactory(cmpTypes[c],
+                                                constantValueFactory(constant),
+                                                new TupleValueExpression(col, "T", "C")));
+                // COLUMN op PARAMETER
+                auto_ptr<AbstractExpression> e3(comparisonFactory(cmpTypes[c],
+                                                new TupleValueExpression(col, "T", "C"),
+                                                parameterValueFactory(0)));
+                e3->substitute(params);
+
+                NValue columnValue = tuple.getNValue(col);
+                NValue r1 = e1->eval(&tuple, NULL);
+                NValue r2 = e2->eval(&tuple, NULL);
+                NValue r3 = e3->eval(&tuple, NULL);
+                bool expected = expectedComparison(cmpTypes[c], columnValue.compare(constant));
+                EXPECT_EQ(expected, r1.isTrue());
+                EXPECT_EQ(expected, r3.isTrue());
+                // The constant is on the left side here
+                expected = expectedComparison(cmpTypes[c], constant.compare(columnValue));
+                EXPECT_EQ(expected, r2.isTrue());
+            }
+        }
+    }
+
+    // NULL integers compare the same way as NValue does
+    tuple.setNValue(1, NValue::getNullValue(VALUE_TYPE_INTEGER));
+    NValue constant = ValueFactory::getBigIntValue(7);
+    auto_ptr<AbstractExpression> lt(comparisonFactory(EXPRESSION_TYPE_COMPARE_LESSTHAN,
+                                    new TupleValueExpression(1, "T", "C"),
+                                    constantValueFactory(constant)));
+    EXPECT_EQ(tuple.getNValue(1).op_lessThan(constant).isTrue(), lt->eval(&tuple, NULL).isTrue());
+
+    delete[] storage;
+    TupleSchema::freeTupleSchema(schema);
+}
+
 int main() {
      return TestSuite::globalInstance()->runAll();
 }
@@ -903,6 +903,147 @@ TEST_F(IndexTest, TupleKeyUnique) {
 }
 
 
+TEST_F(IndexTest, BPlusTreeUnique) {
+    vector<int> bu_column_indices;
+    vector<ValueType> bu_column_types;
+    bu_column_indices.push_back(3);
+    bu_column_types.push_back(VALUE_TYPE_BIGINT);
+    init(TableIndexScheme("bu",
+                          BPLUS_TREE_INDEX,
+                          bu_column_indices,
+                          bu_column_types,
+                          true, true, NULL));
+    TableIndex* index = table->index("bu");
+    EXPECT_EQ(true, index != NULL);
+    EXPECT_EQ(NUM_OF_TUPLES, (int)index->getSize());
+    EXPECT_TRUE(index->getMemoryEstimate() > 0);
+
+    vector<ValueType> keyColumnTypes(1, VALUE_TYPE_BIGINT);
+    vector<int32_t>
+        keyColumnLengths(1, NValue::getTupleStorageSize(VALUE_TYPE_BIGINT));
+    vector<bool> keyColumnAllowNull(1, true);
+    TupleSchema* keySchema =
+        TupleSchema::createTupleSchema(keyColumnTypes,
+                                       keyColumnLengths,
+                                       keyColumnAllowNull,
+                                       true);
+    TableTuple searchkey(keySchema);
+    searchkey.move(new char[searchkey.tupleLength()]);
+
+    // moveToKey + nextValueAtKey
+    searchkey.
+        setNValue(0, ValueFactory::getBigIntValue(static_cast<int64_t>(50 + 20)));
+    EXPECT_TRUE(index->moveToKey(&searchkey));
+    TableTuple tuple = index->nextValueAtKey();
+    EXPECT_TRUE(ValueFactory::getBigIntValue(50).
+                op_equals(tuple.getNValue(0)).isTrue());
+    EXPECT_TRUE(index->nextValueAtKey().isNullTuple());
+
+    // A second entry with the same key is rejected
+    EXPECT_FALSE(index->addEntry(&tuple));
+    EXPECT_EQ(NUM_OF_TUPLES, (int)index->getSize());
+
+    // moveToGreaterThanKey + nextValue
+    index->moveToGreaterThanKey(&searchkey);
+    for (int64_t i = 51; i <= 60; i++) {
+        tuple = index->nextValue();
+        EXPECT_TRUE(ValueFactory::getBigIntValue(i).
+                    op_equals(tuple.getNValue(0)).isTrue());
+    }
+
+    // moveToEnd in reverse
+    index->moveToEnd(false);
+    tuple = index->nextValue();
+    EXPECT_TRUE(ValueFactory::getBigIntValue(NUM_OF_TUPLES).
+                op_equals(tuple.getNValue(0)).isTrue());
+
+    // remove the tuple and it should be gone from the index
+    searchkey.
+        setNValue(0, ValueFactory::getBigIntValue(static_cast<int64_t>(50 + 20)));
+    index->moveToKey(&searchkey);
+    tuple = index->nextValueAtKey();
+    EXPECT_TRUE(table->deleteTuple(tuple, true));
+    EXPECT_FALSE(index->moveToKey(&searchkey));
+    EXPECT_EQ(NUM_OF_TUPLES - 1, (int)index->getSize());
+
+    TupleSchema::freeTupleSchema(keySchema);
+    delete[] searchkey.address();
+}
+
+TEST_F(IndexTest, BPlusTreeMulti) {
+    vector<int> bm_column_indices;
+    vector<ValueType> bm_column_types;
+    bm_column_indices.push_back(1);
+    bm_column_types.push_back(VALUE_TYPE_BIGINT);
+    init(TableIndexScheme("bm",
+                          BPLUS_TREE_INDEX,
+                          bm_column_indices,
+                          bm_column_types,
+                          false, true, NULL));
+    TableIndex* index = table->index("bm");
+    EXPECT_EQ(true, index != NULL);
+    EXPECT_EQ(NUM_OF_TUPLES, (int)index->getSize());
+
+    vector<ValueType> keyColumnTypes(1, VALUE_TYPE_BIGINT);
+    vector<int32_t>
+        keyColumnLengths(1, NValue::getTupleStorageSize(VALUE_TYPE_BIGINT));
+    vector<bool> keyColumnAllowNull(1, true);
+    TupleSchema* keySchema =
+        TupleSchema::createTupleSchema(keyColumnTypes,
+                                       keyColumnLengths,
+                                       keyColumnAllowNull,
+                                       true);
+    TableTuple searchkey(keySchema);
+    searchkey.move(new char[searchkey.tupleLength()]);
+    TableTuple tuple(table->schema());
+
+    // Every even row has the same key
+    searchkey.
+        setNValue(0, ValueFactory::getBigIntValue(static_cast<int64_t>(0)));
+    EXPECT_TRUE(index->moveToKey(&searchkey));
+    int count = 0;
+    while (!(tuple = index->nextValueAtKey()).isNullTuple())
+    {
+        ++count;
+        EXPECT_TRUE(ValueFactory::getBigIntValue(0).
+                    op_equals(tuple.getNValue(1)).isTrue());
+    }
+    EXPECT_EQ(NUM_OF_TUPLES / 2, count);
+
+    // And we can jump from there to the odd rows
+    EXPECT_TRUE(index->moveToKey(&searchkey));
+    EXPECT_TRUE(index->advanceToNextKey());
+    count = 0;
+    while (!(tuple = index->nextValueAtKey()).isNullTuple())
+    {
+        ++count;
+        EXPECT_TRUE(ValueFactory::getBigIntValue(1).
+                    op_equals(tuple.getNValue(1)).isTrue());
+    }
+    EXPECT_EQ(NUM_OF_TUPLES / 2, count);
+    EXPECT_FALSE(index->advanceToNextKey());
+
+    // Removing one of the duplicates only removes that tuple
+    index->moveToKey(&searchkey);
+    TableTuple removed = index->nextValueAtKey();
+    EXPECT_TRUE(index->deleteEntry(&removed));
+    EXPECT_FALSE(index->deleteEntry(&removed));
+    EXPECT_EQ(NUM_OF_TUPLES - 1, (int)index->getSize());
+    index->moveToKeyOrGreater(&searchkey);
+    count = 0;
+    while (!(tuple = index->nextValue()).isNullTuple())
+    {
+        ++count;
+    }
+    EXPECT_EQ(NUM_OF_TUPLES - 1, count);
+    EXPECT_TRUE(index->addEntry(&removed));
+    EXPECT_EQ(NUM_OF_TUPLES, (int)index->getSize());
+
+    TupleSchema::freeTupleSchema(keySchema);
+    delete[] searchkey.address();
+}
+
+
 int main()
 {
     return TestSuite::globalInstance()->runAll();
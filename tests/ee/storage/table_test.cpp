@@ -59,6 +59,10 @@
 #include "common/debuglog.h"
 #include "common/TupleSchema.h"
 #include "common/tabletuple.h"
+#include "common/SQLException.h"
+#include "executors/tuplebatch.h"
+#include "expressions/abstractexpression.h"
+#include "expressions/constantvalueexpression.h"
 #include "storage/table.h"
 #include "storage/temptable.h"
 #include "storage/persistenttable.h"
@@ -86,6 +90,32 @@ int32_t COLUMN_SIZES[NUM_OF_COLUMNS]                = {
                            NValue::getTupleStorageSize(voltdb::VALUE_TYPE_BIGINT) };
 bool COLUMN_ALLOW_NULLS[NUM_OF_COLUMNS]         = { true, true, true, true, true };
 
+/**
+ * Returns the first column of the tuple until it has been evaluated limit
+ * times. After that, every call throws a SQLException.
+ */
+class ThrowingExpression : public voltdb::AbstractExpression {
+    public:
+        ThrowingExpression(int limit) :
+            voltdb::AbstractExpression(voltdb::EXPRESSION_TYPE_VALUE_TUPLE), m_limit(limit), m_count(0) {}
+
+        voltdb::NValue eval(const voltdb::TableTuple *tuple1, const voltdb::TableTuple *tuple2) const {
+            if (m_count++ >= m_limit) {
+                throw voltdb::SQLException(voltdb::SQLException::data_exception_numeric_value_out_of_range,
+                                           "ThrowingExpression");
+            }
+            return (tuple1->getNValue(0));
+        }
+
+        std::string debugInfo(const std::string &spacer) const {
+            return (spacer + "ThrowingExpression\n");
+        }
+
+    private:
+        int m_limit;
+        mutable int m_count;
+};
+
 class TableTest : public Test {
     public:
         TableTest() : table(NULL), temp_table(NULL), persistent_table(NULL) {
@@ -183,6 +213,119 @@ TEST_F(TableTest, TupleInsert) {
     }
 }
 
+TEST_F(TableTest, TupleBatch) {
+    //
+    // Push the whole table through a TupleBatch and make sure that both
+    // the bulk copy and the column-at-a-time projection produce the same
+    // tuples in the same order as the original table
+    //
+    voltdb::TempTable *copy_table = voltdb::TableFactory::getCopiedTempTable(1000, "copy_table", this->table, NULL);
+    voltdb::TempTable *project_table = voltdb::TableFactory::getCopiedTempTable(1000, "project_table", this->table, NULL);
+    int all_tuple_array[NUM_OF_COLUMNS];
+    for (int col_ctr = 0; col_ctr < NUM_OF_COLUMNS; col_ctr++) {
+        all_tuple_array[col_ctr] = col_ctr;
+    }
+
+    voltdb::TupleBatch batch;
+    voltdb::TableTuple tuple(table->schema());
+    voltdb::TableIterator iterator = this->table->tableIterator();
+    int num_batches = 0;
+    while (batch.fill(iterator, tuple) > 0) {
+        batch.insertInto(copy_table, this->table->schema());
+        batch.projectInto(project_table, tuple, NULL, all_tuple_array, NUM_OF_COLUMNS);
+        num_batches++;
+    }
+    EXPECT_EQ((NUM_OF_TUPLES + voltdb::TupleBatch::MAX_BATCH_SIZE - 1) / voltdb::TupleBatch::MAX_BATCH_SIZE, num_batches);
+    ASSERT_EQ(NUM_OF_TUPLES, copy_table->activeTupleCount());
+    ASSERT_EQ(NUM_OF_TUPLES, project_table->activeTupleCount());
+
+    voltdb::TableTuple copy_tuple(copy_table->schema());
+    voltdb::TableTuple project_tuple(project_table->schema());
+    voltdb::TableIterator copy_iterator = copy_table->tableIterator();
+    voltdb::TableIterator project_iterator = project_table->tableIterator();
+    iterator = this->table->tableIterator();
+    while (iterator.next(tuple)) {
+        ASSERT_EQ(true, copy_iterator.next(copy_tuple));
+        ASSERT_EQ(true, project_iterator.next(project_tuple));
+        EXPECT_EQ(true, project_tuple.isActive());
+        for (int col_ctr = 0; col_ctr < NUM_OF_COLUMNS; col_ctr++) {
+            EXPECT_TRUE(tuple.getNValue(col_ctr).op_equals(copy_tuple.getNValue(col_ctr)).isTrue());
+            EXPECT_TRUE(tuple.getNValue(col_ctr).op_equals(project_tuple.getNValue(col_ctr)).isTrue());
+        }
+    }
+
+    //
+    // A predicate that is never true should empty out the batch, while
+    // truncating should never grow it
+    //
+    voltdb::ConstantValueExpression false_predicate(voltdb::NValue::getFalse());
+    iterator = this->table->tableIterator();
+    ASSERT_EQ(voltdb::TupleBatch::MAX_BATCH_SIZE, batch.fill(iterator, tuple));
+    batch.truncate(10);
+    EXPECT_EQ(10, batch.size());
+    batch.truncate(20);
+    EXPECT_EQ(10, batch.size());
+    EXPECT_EQ(0, batch.filter(&false_predicate, tuple));
+
+    delete copy_table;
+    delete project_table;
+}
+
+TEST_F(TableTest, TupleBatchProjectException) {
+    //
+    // If an expression throws halfway through a batch, then the output table
+    // must not keep any of the batch's half-filled tuples
+    //
+    voltdb::TempTable *project_table = voltdb::TableFactory::getCopiedTempTable(1000, "project_table", this->table, NULL);
+    int all_tuple_array[NUM_OF_COLUMNS];
+    for (int col_ctr = 0; col_ctr < NUM_OF_COLUMNS; col_ctr++) {
+        all_tuple_array[col_ctr] = col_ctr;
+    }
+
+    voltdb::TupleBatch batch;
+    voltdb::TableTuple tuple(table->schema());
+    voltdb::TableIterator iterator = this->table->tableIterator();
+    ASSERT_EQ(voltdb::TupleBatch::MAX_BATCH_SIZE, batch.fill(iterator, tuple));
+    batch.projectInto(project_table, tuple, NULL, all_tuple_array, NUM_OF_COLUMNS);
+    ASSERT_EQ(voltdb::TupleBatch::MAX_BATCH_SIZE, project_table->activeTupleCount());
+
+    // The first column is fine, but the second one fails partway through
+    ThrowingExpression ok_expression(voltdb::TupleBatch::MAX_BATCH_SIZE);
+    ThrowingExpression bad_expression(voltdb::TupleBatch::MAX_BATCH_SIZE / 2);
+    voltdb::AbstractExpression* expressions[NUM_OF_COLUMNS];
+    expressions[0] = &ok_expression;
+    for (int col_ctr = 1; col_ctr < NUM_OF_COLUMNS; col_ctr++) {
+        expressions[col_ctr] = &bad_expression;
+    }
+    ASSERT_EQ(voltdb::TupleBatch::MAX_BATCH_SIZE, batch.fill(iterator, tuple));
+    bool thrown = false;
+    try {
+        batch.projectInto(project_table, tuple, expressions, NULL, NUM_OF_COLUMNS);
+    } catch (voltdb::SQLException &e) {
+        thrown = true;
+    }
+    ASSERT_TRUE(thrown);
+    EXPECT_EQ(voltdb::TupleBatch::MAX_BATCH_SIZE, project_table->activeTupleCount());
+    EXPECT_EQ(voltdb::TupleBatch::MAX_BATCH_SIZE, project_table->usedTupleCount());
+
+    // The table should still be usable afterwards
+    ASSERT_EQ(voltdb::TupleBatch::MAX_BATCH_SIZE, batch.fill(iterator, tuple));
+    batch.projectInto(project_table, tuple, NULL, all_tuple_array, NUM_OF_COLUMNS);
+    EXPECT_EQ(voltdb::TupleBatch::MAX_BATCH_SIZE * 2, project_table->activeTupleCount());
+    voltdb::TableTuple project_tuple(project_table->schema());
+    voltdb::TableIterator project_iterator = project_table->tableIterator();
+    int count = 0;
+    while (project_iterator.next(project_tuple)) {
+        EXPECT_EQ(true, project_tuple.isActive());
+        count++;
+    }
+    EXPECT_EQ(voltdb::TupleBatch::MAX_BATCH_SIZE * 2, count);
+    project_table->deleteAllTuples(true);
+    EXPECT_EQ(0, project_table->activeTupleCount());
+
+    delete project_table;
+}
+
 TEST_F(TableTest, TupleUpdate) {
     //
     // Loop through and randomly update values
@@ -0,0 +1,193 @@
+package edu.brown.costmodel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Column;
+import org.voltdb.catalog.ProcParameter;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.StmtParameter;
+import org.voltdb.catalog.Table;
+import org.voltdb.types.TimestampType;
+import org.voltdb.utils.VoltTypeUtil;
+
+import edu.brown.BaseTestCase;
+import edu.brown.utils.ProjectType;
+import edu.brown.workload.QueryTrace;
+import edu.brown.workload.TransactionTrace;
+import edu.brown.workload.Workload;
+import edu.brown.workload.filters.NoAbortFilter;
+import edu.brown.workload.filters.ProcedureLimitFilter;
+
+public class TestSingleSitedCostModelIncremental extends BaseTestCase {
+
+    private static final int NUM_TXNS = 500;
+    private static final int NUM_PARTITIONS = 8;
+    private static final Random rand = new Random(1);
+
+    private Workload workload;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TPCC);
+        this.addPartitions(NUM_PARTITIONS);
+        Workload.ENABLE_SHUTDOWN_HOOKS = false;
+
+        List<Procedure> procs = new ArrayList<Procedure>();
+        for (Procedure catalog_proc : catalogContext.database.getProcedures()) {
+            if (catalog_proc.getSystemproc() || catalog_proc.getStatements().isEmpty()) continue;
+            procs.add(catalog_proc);
+        } // FOR
+        assertFalse(procs.isEmpty());
+
+        this.workload = new Workload(catalog);
+        for (int i = 0; i < NUM_TXNS; i++) {
+            Procedure catalog_proc = procs.get(i % procs.size());
+            Object params[] = new Object[catalog_proc.getParameters().size()];
+            for (ProcParameter catalog_param : catalog_proc.getParameters()) {
+                params[catalog_param.getIndex()] = this.makeParam(VoltType.get((byte)catalog_param.getType()),
+                                                                  catalog_param.getIsarray());
+            } // FOR
+            TransactionTrace txn_trace = new TransactionTrace(10000 + i, catalog_proc, params);
+            txn_trace.setTimestamps((long)i, (long)i + 1);
+            if (i % 7 == 0) txn_trace.abort();
+
+            int batch_id = 0;
+            for (Statement catalog_stmt : catalog_proc.getStatements()) {
+                Object stmt_params[] = new Object[catalog_stmt.getParameters().size()];
+                for (StmtParameter catalog_param : catalog_stmt.getParameters()) {
+                    stmt_params[catalog_param.getIndex()] = this.makeParam(VoltType.get((byte)catalog_param.getJavatype()), false);
+                } // FOR
+                QueryTrace query = new QueryTrace(catalog_stmt, stmt_params, batch_id++);
+                query.setTimestamps((long)i, (long)i + 1);
+                txn_trace.addQuery(query);
+            } // FOR
+            this.workload.addTransaction(catalog_proc, txn_trace);
+        } // FOR
+        assertEquals(NUM_TXNS, this.workload.getTransactionCount());
+    }
+
+    /**
+     * Use a small domain for the numeric values so that txns end up being a
+     * mix of single-partition and multi-partition
+     */
+    private Object makeParam(VoltType type, boolean is_array) {
+        if (is_array) {
+            // getPrimitiveArray() wants Integers for all of the small types
+            VoltType inner_type = (type == VoltType.TINYINT || type == VoltType.SMALLINT ? VoltType.INTEGER : type);
+            Object inner[] = new Object[1 + rand.nextInt(3)];
+            for (int i = 0; i < inner.length; i++) {
+                inner[i] = this.makeParam(inner_type, false);
+            } // FOR
+            return (VoltTypeUtil.getPrimitiveArray(type, inner));
+        }
+        switch (type) {
+            case TINYINT:
+                return ((byte)rand.nextInt(NUM_PARTITIONS * 2));
+            case SMALLINT:
+                return ((short)rand.nextInt(NUM_PARTITIONS * 2));
+            case INTEGER:
+                return (rand.nextInt(NUM_PARTITIONS * 2));
+            case BIGINT:
+                return ((long)rand.nextInt(NUM_PARTITIONS * 2));
+            case TIMESTAMP:
+                return (new TimestampType());
+            case VOLTTABLE:
+                return (null);
+            default:
+                return (VoltTypeUtil.getRandomValue(type));
+        } // SWITCH
+    }
+
+    /**
+     * Compare the incremental estimate from the given cost model against a
+     * full estimate from a brand new cost model
+     */
+    private void checkCost(SingleSitedCostModel cost_model, NoAbortFilter filter, String msg) throws Exception {
+        double actual = cost_model.estimateWorkloadCost(catalogContext, workload, filter, null);
+        SingleSitedCostModel expected_model = new SingleSitedCostModel(catalogContext);
+        expected_model.setIncrementalEnabled(false);
+        double expected = expected_model.estimateWorkloadCost(catalogContext, workload, (filter != null ? new NoAbortFilter() : null), null);
+        assertEquals(msg, expected, actual, 0.00001);
+        assertEquals(msg, expected_model.getSinglePartitionProcedureHistogram().getSampleCount(),
+                          cost_model.getSinglePartitionProcedureHistogram().getSampleCount());
+        assertEquals(msg, expected_model.getProcedureHistogram().getSampleCount(),
+                          cost_model.getProcedureHistogram().getSampleCount());
+    }
+
+    /**
+     * testStateless
+     */
+    public void testStateless() throws Exception {
+        assertTrue(new NoAbortFilter().isStateless());
+        assertFalse(new ProcedureLimitFilter(10l).isStateless());
+        assertFalse(new NoAbortFilter().attach(new ProcedureLimitFilter(10l)).isStateless());
+    }
+
+    /**
+     * testIncrementalTables
+     */
+    public void testIncrementalTables() throws Exception {
+        SingleSitedCostModel cost_model = new SingleSitedCostModel(catalogContext);
+        assertTrue(cost_model.isCachingEnabled());
+        assertTrue(cost_model.isIncrementalEnabled());
+        NoAbortFilter filter = new NoAbortFilter();
+        this.checkCost(cost_model, filter, "Initial");
+
+        // Change the partitioning column for each table and make sure that
+        // the incremental estimate is the same as starting from scratch
+        for (Table catalog_tbl : catalogContext.getDataTables()) {
+            Column orig_col = catalog_tbl.getPartitioncolumn();
+            boolean orig_replicated = catalog_tbl.getIsreplicated();
+            for (Column catalog_col : catalog_tbl.getColumns()) {
+                catalog_tbl.setIsreplicated(false);
+                catalog_tbl.setPartitioncolumn(catalog_col);
+                cost_model.invalidateCache(catalog_tbl);
+                this.checkCost(cost_model, filter, catalog_col.fullName());
+            } // FOR
+            catalog_tbl.setIsreplicated(orig_replicated);
+            catalog_tbl.setPartitioncolumn(orig_col);
+            cost_model.invalidateCache(catalog_tbl);
+            this.checkCost(cost_model, filter, catalog_tbl.getName());
+        } // FOR
+    }
+
+    /**
+     * testIncrementalProcedures
+     */
+    public void testIncrementalProcedures() throws Exception {
+        SingleSitedCostModel cost_model = new SingleSitedCostModel(catalogContext);
+        this.checkCost(cost_model, null, "Initial");
+
+        for (Procedure catalog_proc : catalogContext.getRegularProcedures()) {
+            int orig_param = catalog_proc.getPartitionparameter();
+            for (ProcParameter catalog_param : catalog_proc.getParameters()) {
+                catalog_proc.setPartitionparameter(catalog_param.getIndex());
+                cost_model.invalidateCache(catalog_proc);
+                this.checkCost(cost_model, null, catalog_param.fullName());
+            } // FOR
+            catalog_proc.setPartitionparameter(orig_param);
+            cost_model.invalidateCache(catalog_proc);
+            this.checkCost(cost_model, null, catalog_proc.getName());
+        } // FOR
+    }
+
+    /**
+     * testStatefulFilter
+     */
+    public void testStatefulFilter() throws Exception {
+        // We can't reuse the previous pass with a filter that has state, but
+        // we should still get the same answer every time
+        SingleSitedCostModel cost_model = new SingleSitedCostModel(catalogContext);
+        ProcedureLimitFilter filter = new ProcedureLimitFilter(NUM_TXNS / 2l);
+        double expected = cost_model.estimateWorkloadCost(catalogContext, workload, filter, null);
+        for (Table catalog_tbl : catalogContext.getDataTables()) {
+            cost_model.invalidateCache(catalog_tbl);
+            double actual = cost_model.estimateWorkloadCost(catalogContext, workload, filter, null);
+            assertEquals(catalog_tbl.getName(), expected, actual, 0.00001);
+        } // FOR
+    }
+}
@@ -18,10 +18,12 @@ import edu.brown.BaseTestCase;
 import edu.brown.benchmark.AbstractProjectBuilder;
 import edu.brown.benchmark.seats.SEATSProjectBuilder;
 import edu.brown.benchmark.seats.procedures.DeleteReservation;
+import edu.brown.benchmark.seats.procedures.GetTableCounts;
 import edu.brown.benchmark.seats.procedures.LoadConfig;
 import edu.brown.catalog.CatalogUtil;
 import edu.brown.hstore.BatchPlanner.BatchPlan;
 import edu.brown.hstore.Hstoreservice.WorkFragment;
+import edu.brown.hstore.conf.HStoreConf;
 import edu.brown.statistics.FastIntHistogram;
 import edu.brown.utils.ClassUtil;
 import edu.brown.utils.CollectionUtil;
@@ -96,6 +98,24 @@ public class TestBatchPlannerComplex extends BaseTestCase {
         return (plan);
     }
     
+    /**
+     * Generate a new BatchPlan and return the WorkFragments that are waiting for input
+     */
+    private List<WorkFragment.Builder> getInputWorkFragments(int stmtCounters[]) {
+        List<WorkFragment.Builder> builders = new ArrayList<WorkFragment.Builder>();
+        this.getPlan().getWorkFragmentsBuilders(TXN_ID, stmtCounters, builders);
+        assertFalse(builders.isEmpty());
+        
+        List<WorkFragment.Builder> inputBuilders = new ArrayList<WorkFragment.Builder>();
+        for (WorkFragment.Builder builder : builders) {
+            if (builder.getNeedsInput()) {
+                assertEquals(BASE_PARTITION, builder.getPartitionId());
+                inputBuilders.add(builder);
+            }
+        } // FOR
+        return (inputBuilders);
+    }
+    
     /**
      * testReplicatedInsert
      */
@@ -128,13 +148,22 @@ public class TestBatchPlannerComplex extends BaseTestCase {
         assertNotNull(graph);
         
         // Make sure that only PlanVertexs with input dependencies have a child in the graph
-        for (BatchPlanner.PlanVertex v : graph.getVertices()) {
+        // and that the child is the one that generates that input
+        BatchPlanner.PlanVertex vertices[] = graph.getVertices();
+        assertEquals(vertices.length, graph.getVertexCount());
+        for (int i = 0; i < vertices.length; i++) {
+            BatchPlanner.PlanVertex v = vertices[i];
             assertNotNull(v);
+            BatchPlanner.PlanVertex child = graph.getChild(i);
             if (v.input_dependency_id == HStoreConstants.NULL_DEPENDENCY_ID) {
-                assertEquals(0, graph.getSuccessorCount(v));
+                assertNull(child);
             } else {
-                assertEquals(1, graph.getSuccessorCount(v));
+                assertNotNull(child);
+                assertEquals(v.input_dependency_id, child.output_dependency_id);
+                assertEquals(v.stmt_index, child.stmt_index);
+                assertEquals(v.round - 1, child.round);
             }
+            assertTrue(v.round < graph.getRoundCount());
         } // FOR
         
 //        GraphVisualizationPanel.createFrame(graph, GraphVisualizationPanel.makeVertexObserver(graph)).setVisible(true);
@@ -230,6 +259,81 @@ public class TestBatchPlannerComplex extends BaseTestCase {
         } // FOR
     }
     
+    /**
+     * testCostPacking
+     */
+    public void testCostPacking() throws Exception {
+        Procedure catalog_proc = this.getProcedure(GetTableCounts.class);
+        String stmtNames[] = { "CustomerCount", "FlightCount", "ReservationCount" };
+        this.batch = new SQLStmt[stmtNames.length];
+        this.args = new ParameterSet[stmtNames.length];
+        int stmtCounters[] = new int[stmtNames.length];
+        for (int i = 0; i < stmtNames.length; i++) {
+            this.batch[i] = new SQLStmt(this.getStatement(catalog_proc, stmtNames[i]));
+            this.args[i] = ParameterSet.EMPTY;
+        } // FOR
+        
+        HStoreConf hstore_conf = HStoreConf.singleton();
+        boolean orig = hstore_conf.site.planner_cost_packing;
+        BatchPlanner disabled = new BatchPlanner(this.batch, catalog_proc, p_estimator);
+        hstore_conf.site.planner_cost_packing = true;
+        try {
+            this.planner = new BatchPlanner(this.batch, catalog_proc, p_estimator);
+        } finally {
+            hstore_conf.site.planner_cost_packing = orig;
+        }
+        
+        // Without any costs, every query's final PlanFragment goes
+        // into its own WorkFragment because they all have different inputs
+        List<WorkFragment.Builder> builders = this.getInputWorkFragments(stmtCounters);
+        assertEquals(stmtNames.length, builders.size());
+        for (WorkFragment.Builder builder : builders) {
+            assertEquals(1, builder.getFragmentIdCount());
+        } // FOR
+        
+        // Figure out the PlanFragments that generate the inputs for each query
+        int inputFragIds[] = new int[stmtNames.length];
+        for (BatchPlanner.PlanVertex v : this.getPlan().getPlanGraph().getVertices()) {
+            if (v.round == 0) inputFragIds[v.stmt_index] = v.frag_id;
+        } // FOR
+        
+        // If all of the inputs arrive within a round-trip of each other,
+        // then they should all get packed into a single WorkFragment
+        BatchPlanner.CostModel costs = this.planner.getCostModel();
+        costs.addMessageTime(10000000l); // 10ms
+        costs.addFragmentTime(inputFragIds[0], 5000000l);
+        costs.addFragmentTime(inputFragIds[1], 8000000l);
+        costs.addFragmentTime(inputFragIds[2], 12000000l);
+        builders = this.getInputWorkFragments(stmtCounters);
+        assertEquals(1, builders.size());
+        assertEquals(stmtNames.length, builders.get(0).getFragmentIdCount());
+        assertEquals(stmtNames.length, new HashSet<Integer>(builders.get(0).getInputDepIdList()).size());
+        
+        // But if the last input takes much longer than that to arrive,
+        // then we don't want the other queries to wait for it
+        costs = new BatchPlanner.CostModel();
+        costs.addMessageTime(10000000l);
+        costs.addFragmentTime(inputFragIds[0], 5000000l);
+        costs.addFragmentTime(inputFragIds[1], 8000000l);
+        costs.addFragmentTime(inputFragIds[2], 100000000l);
+        this.planner.setCostModel(costs);
+        builders = this.getInputWorkFragments(stmtCounters);
+        assertEquals(2, builders.size());
+        for (WorkFragment.Builder builder : builders) {
+            Set<Integer> stmtIndexes = new HashSet<Integer>(builder.getStmtIndexList());
+            if (stmtIndexes.contains(2)) {
+                assertEquals(1, stmtIndexes.size());
+            } else {
+                assertEquals(2, stmtIndexes.size());
+            }
+        } // FOR
+        
+        // And nothing should get packed if the option is disabled
+        this.planner = disabled;
+        this.planner.setCostModel(costs);
+        assertEquals(stmtNames.length, this.getInputWorkFragments(stmtCounters).size());
+    }
+    
     /**
      * testBuildWorkFragments
      */
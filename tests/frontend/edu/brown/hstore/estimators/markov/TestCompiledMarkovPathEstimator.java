@@ -0,0 +1,253 @@
+package edu.brown.hstore.estimators.markov;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.voltdb.VoltType;
+import org.voltdb.catalog.ProcParameter;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.StmtParameter;
+import org.voltdb.types.TimestampType;
+import org.voltdb.utils.VoltTypeUtil;
+
+import edu.brown.BaseTestCase;
+import edu.brown.mappings.ParameterMappingsSet;
+import edu.brown.markov.MarkovEdge;
+import edu.brown.markov.MarkovGraph;
+import edu.brown.markov.MarkovVertex;
+import edu.brown.markov.containers.MarkovGraphsContainer;
+import edu.brown.utils.ProjectType;
+import edu.brown.workload.QueryTrace;
+import edu.brown.workload.TransactionTrace;
+
+/**
+ * @author pavlo
+ */
+public class TestCompiledMarkovPathEstimator extends BaseTestCase {
+
+    private static final int NUM_TXNS = 400;
+    private static final int NUM_PARTITIONS = 4;
+    private static final Random rand = new Random(1);
+
+    private static ParameterMappingsSet mappings;
+    private static MarkovGraphsContainer markovs;
+    private static final List<TransactionTrace> txns = new ArrayList<TransactionTrace>();
+
+    private MarkovPathEstimator pathEstimator;
+    private CompiledMarkovPathEstimator compiledEstimator;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TPCC);
+        this.addPartitions(NUM_PARTITIONS);
+
+        if (markovs == null) {
+            mappings = catalogContext.paramMappings;
+            if (mappings == null) {
+                File file = this.getParameterMappingsFile(ProjectType.TPCC);
+                mappings = new ParameterMappingsSet();
+                mappings.load(file, catalog_db);
+            }
+
+            List<Procedure> procs = new ArrayList<Procedure>();
+            for (Procedure catalog_proc : catalogContext.getRegularProcedures()) {
+                if (catalog_proc.getStatements().isEmpty() || catalog_proc.getPartitionparameter() < 0) continue;
+                procs.add(catalog_proc);
+            } // FOR
+            assertFalse(procs.isEmpty());
+
+            // Build the graphs from half of the txns so that the other half
+            // will have to go down paths that we haven't seen before
+            MarkovGraphsContainer m = new MarkovGraphsContainer();
+            for (int i = 0; i < NUM_TXNS; i++) {
+                TransactionTrace txn_trace = this.makeTransaction(procs.get(i % procs.size()), i);
+                txns.add(txn_trace);
+                if (i % 2 == 1) continue;
+                int base_partition = p_estimator.getBasePartition(txn_trace);
+                m.getOrCreate(base_partition, txn_trace.getCatalogItem(catalog_db), true).processTransaction(txn_trace, p_estimator);
+            } // FOR
+            m.calculateProbabilities();
+            markovs = m;
+        }
+
+        this.pathEstimator = new MarkovPathEstimator(catalogContext, p_estimator);
+        this.compiledEstimator = new CompiledMarkovPathEstimator(p_estimator);
+    }
+
+    private TransactionTrace makeTransaction(Procedure catalog_proc, int i) {
+        Object params[] = new Object[catalog_proc.getParameters().size()];
+        for (ProcParameter catalog_param : catalog_proc.getParameters()) {
+            params[catalog_param.getIndex()] = this.makeParam(VoltType.get((byte)catalog_param.getType()),
+                                                              catalog_param.getIsarray());
+        } // FOR
+        TransactionTrace txn_trace = new TransactionTrace(10000 + i, catalog_proc, params);
+        txn_trace.setTimestamps((long)i, (long)i + 10);
+        if (i % 11 == 0) txn_trace.abort();
+
+        int batch_id = 0;
+        for (Statement catalog_stmt : catalog_proc.getStatements()) {
+            Object stmt_params[] = new Object[catalog_stmt.getParameters().size()];
+            for (StmtParameter catalog_param : catalog_stmt.getParameters()) {
+                stmt_params[catalog_param.getIndex()] = this.makeParam(VoltType.get((byte)catalog_param.getJavatype()), false);
+            } // FOR
+            QueryTrace query = new QueryTrace(catalog_stmt, stmt_params, batch_id++);
+            query.setTimestamps((long)i + 1, (long)i + 2);
+            txn_trace.addQuery(query);
+        } // FOR
+        return (txn_trace);
+    }
+
+    private Object makeParam(VoltType type, boolean is_array) {
+        if (is_array) {
+            VoltType inner_type = (type == VoltType.TINYINT || type == VoltType.SMALLINT ? VoltType.INTEGER : type);
+            Object inner[] = new Object[1 + rand.nextInt(3)];
+            for (int i = 0; i < inner.length; i++) {
+                inner[i] = this.makeParam(inner_type, false);
+            } // FOR
+            return (VoltTypeUtil.getPrimitiveArray(type, inner));
+        }
+        switch (type) {
+            case TINYINT:
+                return ((byte)rand.nextInt(NUM_PARTITIONS));
+            case SMALLINT:
+                return ((short)rand.nextInt(NUM_PARTITIONS));
+            case INTEGER:
+                return (rand.nextInt(NUM_PARTITIONS));
+            case BIGINT:
+                return ((long)rand.nextInt(NUM_PARTITIONS));
+            case TIMESTAMP:
+                return (new TimestampType());
+            case VOLTTABLE:
+                return (null);
+            default:
+                return (VoltTypeUtil.getRandomValue(type));
+        } // SWITCH
+    }
+
+    private MarkovGraph getGraph(TransactionTrace txn_trace) throws Exception {
+        int base_partition = p_estimator.getBasePartition(txn_trace);
+        return (markovs.get(base_partition, txn_trace.getCatalogItem(catalog_db)));
+    }
+
+    private void compare(MarkovEstimate expected, MarkovEstimate actual) {
+        assertEquals(expected.getMarkovPath(), actual.getMarkovPath());
+        assertEquals(expected.getConfidenceCoefficient(), actual.getConfidenceCoefficient());
+        assertEquals(expected.getSinglePartitionProbability(), actual.getSinglePartitionProbability());
+        assertEquals(expected.getAbortProbability(), actual.getAbortProbability());
+        for (int p = 0; p < NUM_PARTITIONS; p++) {
+            assertEquals("Partition " + p, expected.getReadOnlyProbability(p), actual.getReadOnlyProbability(p));
+            assertEquals("Partition " + p, expected.getWriteProbability(p), actual.getWriteProbability(p));
+            assertEquals("Partition " + p, expected.getFinishProbability(p), actual.getFinishProbability(p));
+            assertEquals("Partition " + p, expected.getTouchedCounter(p), actual.getTouchedCounter(p));
+        } // FOR
+    }
+
+    /**
+     * testCompile
+     */
+    public void testCompile() throws Exception {
+        int mapped = 0;
+        for (MarkovGraph markov : markovs.getAll()) {
+            CompiledMarkovGraph compiled = new CompiledMarkovGraph(markov, mappings);
+            assertSame(markov, compiled.getMarkovGraph());
+            assertEquals(markov.getVertexCount(), compiled.getVertexCount());
+            assertEquals(markov.getEdgeCount(), compiled.getEdgeCount());
+            assertFalse(compiled.isStale());
+
+            for (MarkovVertex v : markov.getVertices()) {
+                int v_id = compiled.getVertexId(v);
+                assertTrue(v.toString(), v_id >= 0);
+                assertSame(v, compiled.vertices[v_id]);
+                int num_edges = compiled.edgeOffsets[v_id+1] - compiled.edgeOffsets[v_id];
+                assertEquals(v.toString(), markov.getOutEdges(v).size(), num_edges);
+                for (int e = compiled.edgeOffsets[v_id]; e < compiled.edgeOffsets[v_id+1]; e++) {
+                    assertSame(markov.getDest(compiled.edges[e]), compiled.vertices[compiled.edgeTargets[e]]);
+                } // FOR
+            } // FOR
+            for (CompiledMarkovGraph.CompiledStatement cstmt : compiled.nextStatements) {
+                if (cstmt.procParams != null) mapped++;
+            } // FOR
+        } // FOR
+        assert(mapped > 0);
+    }
+
+    /**
+     * testSameEstimate
+     */
+    public void testSameEstimate() throws Exception {
+        int ctr = 0;
+        for (TransactionTrace txn_trace : txns) {
+            MarkovGraph markov = this.getGraph(txn_trace);
+            if (markov == null) continue;
+            CompiledMarkovGraph compiled = new CompiledMarkovGraph(markov, mappings);
+            int base_partition = p_estimator.getBasePartition(txn_trace);
+
+            MarkovEstimate expected = new MarkovEstimate(catalogContext);
+            expected.init(markov.getStartVertex(), 0);
+            this.pathEstimator.init(markov, expected, base_partition, txn_trace.getParams());
+            this.pathEstimator.setForceTraversal(true);
+            this.pathEstimator.traverse(markov.getStartVertex());
+            this.pathEstimator.finish();
+
+            MarkovEstimate actual = new MarkovEstimate(catalogContext);
+            actual.init(markov.getStartVertex(), 0);
+            this.compiledEstimator.init(compiled, actual, base_partition, txn_trace.getParams());
+            this.compiledEstimator.setForceTraversal(true);
+            assertTrue(this.compiledEstimator.traverse(markov.getStartVertex()));
+            this.compiledEstimator.finish();
+            assertFalse(this.compiledEstimator.isInitialized());
+
+            assertFalse(expected.getMarkovPath().isEmpty());
+            this.compare(expected, actual);
+            ctr++;
+        } // FOR
+        assert(ctr > 0);
+    }
+
+    /**
+     * testStale
+     */
+    public void testStale() throws Exception {
+        TransactionTrace txn_trace = txns.get(0);
+        MarkovGraph markov = this.getGraph(txn_trace);
+        assertNotNull(markov);
+        CompiledMarkovGraph compiled = new CompiledMarkovGraph(markov, mappings);
+        assertFalse(compiled.isStale());
+
+        // Recomputing the probabilities does not change the structure
+        markov.calculateProbabilities();
+        assertFalse(compiled.isStale());
+
+        // But adding a new vertex does
+        MarkovVertex start = markov.getStartVertex();
+        MarkovVertex last = null;
+        for (MarkovVertex v : markov.getVertices()) {
+            if (v.isQueryVertex()) last = v;
+        } // FOR
+        assertNotNull(last);
+        MarkovVertex v = new MarkovVertex((Statement)last.getCatalogItem(), MarkovVertex.Type.QUERY,
+                                          last.getQueryCounter() + 100, last.getPartitions(), last.getPastPartitions());
+        markov.addVertex(v);
+        MarkovEdge e = markov.addToEdge(start, v);
+        assertTrue(compiled.isStale());
+        assertEquals(-1, compiled.getVertexId(v));
+
+        // The estimator should refuse to start from a vertex that it doesn't know about
+        MarkovEstimate estimate = new MarkovEstimate(catalogContext);
+        estimate.init(v, 0);
+        this.compiledEstimator.init(compiled, estimate, p_estimator.getBasePartition(txn_trace), txn_trace.getParams());
+        assertFalse(this.compiledEstimator.traverse(v));
+        assertTrue(estimate.getMarkovPath().isEmpty());
+        this.compiledEstimator.finish();
+
+        CompiledMarkovGraph recompiled = new CompiledMarkovGraph(markov, mappings);
+        assertFalse(recompiled.isStale());
+        assertTrue(recompiled.getVertexId(v) >= 0);
+
+        markov.removeEdge(e);
+        markov.removeVertex(v);
+    }
+}
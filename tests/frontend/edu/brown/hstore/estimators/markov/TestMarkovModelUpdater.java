@@ -0,0 +1,286 @@
+package edu.brown.hstore.estimators.markov;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.voltdb.VoltProcedure;
+import org.voltdb.VoltType;
+import org.voltdb.benchmark.tpcc.procedures.neworder;
+import org.voltdb.catalog.ProcParameter;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.StmtParameter;
+import org.voltdb.types.TimestampType;
+import org.voltdb.utils.VoltTypeUtil;
+
+import edu.brown.BaseTestCase;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.markov.MarkovEdge;
+import edu.brown.markov.MarkovGraph;
+import edu.brown.markov.MarkovVertex;
+import edu.brown.markov.containers.MarkovGraphsContainer;
+import edu.brown.utils.PartitionSet;
+import edu.brown.utils.ProjectType;
+import edu.brown.workload.QueryTrace;
+import edu.brown.workload.TransactionTrace;
+
+public class TestMarkovModelUpdater extends BaseTestCase {
+
+    private static final Class<? extends VoltProcedure> TARGET_PROCEDURE = neworder.class;
+    private static final int NUM_TXNS = 50;
+    private static final int NUM_PARTITIONS = 4;
+    private static final Random rand = new Random(1);
+
+    private Procedure catalog_proc;
+    private MarkovGraphsContainer markovs;
+    private MarkovGraph markov;
+    private final List<TransactionTrace> txns = new ArrayList<TransactionTrace>();
+    private final List<MarkovVertex> path = new ArrayList<MarkovVertex>();
+    private final List<MarkovEdge> path_edges = new ArrayList<MarkovEdge>();
+    private MarkovModelUpdater updater;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TPCC);
+        this.addPartitions(NUM_PARTITIONS);
+        this.catalog_proc = this.getProcedure(TARGET_PROCEDURE);
+
+        HStoreConf hstore_conf = HStoreConf.singleton();
+        hstore_conf.site.markov_path_caching = false;
+        hstore_conf.site.markov_fast_path = false;
+        hstore_conf.site.markov_updater_queue_limit = 100000;
+
+        // Build a MarkovGraph where every txn takes the same path
+        this.markovs = new MarkovGraphsContainer();
+        TransactionTrace txn_trace = this.makeTransaction(0);
+        int base_partition = p_estimator.getBasePartition(txn_trace);
+        this.markov = this.markovs.getOrCreate(base_partition, this.catalog_proc, true);
+        for (int i = 0; i < NUM_TXNS; i++) {
+            List<MarkovVertex> vertices = this.markov.processTransaction(txn_trace, p_estimator);
+            if (this.path.isEmpty()) this.path.addAll(vertices);
+            this.txns.add(txn_trace);
+        } // FOR
+        this.markov.calculateProbabilities();
+        for (int i = 1; i < this.path.size(); i++) {
+            MarkovEdge e = this.markov.findEdge(this.path.get(i-1), this.path.get(i));
+            assertNotNull(e);
+            this.path_edges.add(e);
+        } // FOR
+
+        this.updater = new MarkovModelUpdater(null, hstore_conf);
+    }
+
+    private TransactionTrace makeTransaction(int i) {
+        Object params[] = new Object[this.catalog_proc.getParameters().size()];
+        for (ProcParameter catalog_param : this.catalog_proc.getParameters()) {
+            params[catalog_param.getIndex()] = this.makeParam(VoltType.get((byte)catalog_param.getType()),
+                                                              catalog_param.getIsarray());
+        } // FOR
+        TransactionTrace txn_trace = new TransactionTrace(10000 + i, this.catalog_proc, params);
+        txn_trace.setTimestamps((long)i, (long)i + 10);
+
+        int batch_id = 0;
+        for (Statement catalog_stmt : this.catalog_proc.getStatements()) {
+            Object stmt_params[] = new Object[catalog_stmt.getParameters().size()];
+            for (StmtParameter catalog_param : catalog_stmt.getParameters()) {
+                stmt_params[catalog_param.getIndex()] = this.makeParam(VoltType.get((byte)catalog_param.getJavatype()), false);
+            } // FOR
+            QueryTrace query = new QueryTrace(catalog_stmt, stmt_params, batch_id++);
+            query.setTimestamps((long)i + 1, (long)i + 2);
+            txn_trace.addQuery(query);
+        } // FOR
+        return (txn_trace);
+    }
+
+    private Object makeParam(VoltType type, boolean is_array) {
+        if (is_array) {
+            VoltType inner_type = (type == VoltType.TINYINT || type == VoltType.SMALLINT ? VoltType.INTEGER : type);
+            Object inner[] = new Object[1 + rand.nextInt(3)];
+            for (int i = 0; i < inner.length; i++) {
+                inner[i] = this.makeParam(inner_type, false);
+            } // FOR
+            return (VoltTypeUtil.getPrimitiveArray(type, inner));
+        }
+        switch (type) {
+            case TINYINT:
+                return ((byte)rand.nextInt(NUM_PARTITIONS));
+            case SMALLINT:
+                return ((short)rand.nextInt(NUM_PARTITIONS));
+            case INTEGER:
+                return (rand.nextInt(NUM_PARTITIONS));
+            case BIGINT:
+                return ((long)rand.nextInt(NUM_PARTITIONS));
+            case TIMESTAMP:
+                return (new TimestampType());
+            case VOLTTABLE:
+                return (null);
+            default:
+                return (VoltTypeUtil.getRandomValue(type));
+        } // SWITCH
+    }
+
+    /**
+     * testProcessQueue
+     */
+    public void testProcessQueue() throws Exception {
+        int num_paths = 10;
+        for (int i = 0; i < num_paths; i++) {
+            assertTrue(this.updater.queue(this.markov, this.path, this.path_edges));
+        } // FOR
+        assertEquals(num_paths, this.updater.getQueueSize());
+
+        // Nothing should change until the updater thread gets to it
+        for (MarkovVertex v : this.path) {
+            assertEquals(0, v.getInstanceHits());
+        } // FOR
+
+        assertEquals(num_paths, this.updater.processQueue());
+        assertEquals(0, this.updater.getQueueSize());
+        assertEquals(num_paths, this.updater.getProcessedCount());
+        for (MarkovVertex v : this.path) {
+            assertEquals(v.toString(), num_paths, v.getInstanceHits());
+        } // FOR
+        for (MarkovEdge e : this.path_edges) {
+            assertEquals(e.toString(), num_paths, e.getInstanceHits());
+        } // FOR
+    }
+
+    /**
+     * testQueueLimit
+     */
+    public void testQueueLimit() throws Exception {
+        int limit = 5;
+        HStoreConf.singleton().site.markov_updater_queue_limit = limit;
+        for (int i = 0; i < limit * 2; i++) {
+            assertEquals(i < limit, this.updater.queue(this.markov, this.path, this.path_edges));
+        } // FOR
+        assertEquals(limit, this.updater.getQueueSize());
+        assertEquals(limit, this.updater.getDroppedCount());
+        assertEquals(limit, this.updater.processQueue());
+    }
+
+    /**
+     * testRecompute
+     */
+    public void testRecompute() throws Exception {
+        // Pretend that the graph was built from a much larger workload so that
+        // running the same txn again looks like the workload shifted
+        int orig_txn_count = this.markov.getTransactionCount();
+        this.markov.setTransactionCount(orig_txn_count * 100);
+        int num_paths = 20;
+        for (int i = 0; i < num_paths; i++) {
+            this.updater.queue(this.markov, this.path, this.path_edges);
+        } // FOR
+        this.updater.processQueue();
+        assertTrue(this.markov.shouldRecompute(num_paths, MarkovEstimator.RECOMPUTE_TOLERANCE));
+
+        // Keep the old tables so that we can make sure they were not modified
+        List<float[][]> old_tables = new ArrayList<float[][]>();
+        List<float[][]> old_copies = new ArrayList<float[][]>();
+        for (MarkovVertex v : this.path) {
+            old_tables.add(v.probabilities);
+            float copy[][] = new float[v.probabilities.length][];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = v.probabilities[i].clone();
+            } // FOR
+            old_copies.add(copy);
+        } // FOR
+        long start_hits = this.path.get(0).getTotalHits();
+        int recompute_count = this.markov.getRecomputeCount();
+
+        assertEquals(1, this.updater.recompute());
+        assertEquals(1, this.updater.getRecomputeCount());
+        assertEquals(recompute_count + 1, this.markov.getRecomputeCount());
+        assertEquals(orig_txn_count * 100 + num_paths, this.markov.getTransactionCount());
+        assertEquals(start_hits + num_paths, this.path.get(0).getTotalHits());
+        this.markov.validate();
+
+        for (int i = 0; i < this.path.size(); i++) {
+            MarkovVertex v = this.path.get(i);
+            assertNotSame(v.toString(), old_tables.get(i), v.probabilities);
+            float expected[][] = old_copies.get(i);
+            float actual[][] = old_tables.get(i);
+            for (int j = 0; j < expected.length; j++) {
+                for (int k = 0; k < expected[j].length; k++) {
+                    assertEquals(expected[j][k], actual[j][k]);
+                } // FOR
+            } // FOR
+        } // FOR
+
+        // Nothing has changed since the last round, so there is nothing to do
+        assertEquals(0, this.updater.recompute());
+    }
+
+    /**
+     * testRecomputeConcurrentAdds
+     */
+    public void testRecomputeConcurrentAdds() throws Exception {
+        // Keep adding new vertices and edges to the graph like the executors
+        // do while we recompute its probabilities over and over again
+        final int num_vertices = 500;
+        final MarkovVertex start = this.markov.getStartVertex();
+        final MarkovVertex commit = this.markov.getCommitVertex();
+        final Statement catalog_stmt = this.path.get(1).getCatalogItem();
+        final List<MarkovVertex> added = new ArrayList<MarkovVertex>();
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        Thread adder = new Thread() {
+            public void run() {
+                try {
+                    for (int i = 0; i < num_vertices; i++) {
+                        MarkovVertex v = new MarkovVertex(catalog_stmt, MarkovVertex.Type.QUERY,
+                                                          NUM_TXNS + i,
+                                                          PartitionSet.singleton(i % NUM_PARTITIONS),
+                                                          new PartitionSet());
+                        synchronized (start) {
+                            markov.addVertex(v);
+                            markov.addToEdge(start, v);
+                        } // SYNCH
+                        synchronized (v) {
+                            markov.addToEdge(v, commit);
+                        } // SYNCH
+                        added.add(v);
+                    } // FOR
+                } catch (Throwable ex) {
+                    errors.add(ex);
+                }
+            }
+        };
+        adder.start();
+        int rounds = 0;
+        while (adder.isAlive() || rounds == 0) {
+            this.markov.calculateProbabilities();
+            rounds++;
+        } // WHILE
+        adder.join();
+        assertTrue(errors.toString(), errors.isEmpty());
+
+        // Everything that the other thread added must still be in the graph
+        assertEquals(num_vertices, added.size());
+        for (MarkovVertex v : added) {
+            assertTrue(v.toString(), this.markov.containsVertex(v));
+            assertNotNull(v.toString(), this.markov.findEdge(start, v));
+            assertNotNull(v.toString(), this.markov.findEdge(v, commit));
+        } // FOR
+        this.markov.calculateProbabilities();
+        assertEquals(0, this.updater.getFailedCount());
+    }
+
+    /**
+     * testEstimator
+     */
+    public void testEstimator() throws Exception {
+        MarkovEstimator t_estimator = new MarkovEstimator(catalogContext, p_estimator, this.markovs);
+        t_estimator.setMarkovModelUpdater(this.updater);
+        MarkovEstimatorState state = t_estimator.processTransactionTrace(this.txns.get(0));
+        assertNotNull(state);
+        assertEquals(1, this.updater.getQueueSize());
+        for (MarkovVertex v : this.path) {
+            assertEquals(0, v.getInstanceHits());
+        } // FOR
+        this.updater.processQueue();
+        for (MarkovVertex v : this.path) {
+            assertEquals(v.toString(), 1, v.getInstanceHits());
+        } // FOR
+    }
+}
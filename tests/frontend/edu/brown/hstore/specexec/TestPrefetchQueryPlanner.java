@@ -27,6 +27,7 @@ import edu.brown.hstore.estimators.markov.MarkovEstimatorState;
 import edu.brown.hstore.txns.DependencyTracker;
 import edu.brown.hstore.specexec.PrefetchQueryPlanner;
 import edu.brown.hstore.txns.LocalTransaction;
+import edu.brown.utils.CollectionUtil;
 import edu.brown.utils.PartitionSet;
 import edu.brown.utils.ProjectType;
 import edu.brown.utils.StringUtil;
@@ -205,4 +206,96 @@ public class TestPrefetchQueryPlanner extends BaseTestCase {
 
     }
 
+    /**
+     * testAutoPrefetchable
+     */
+    public void testAutoPrefetchable() throws Exception {
+        Procedure catalog_proc = this.getProcedure(TARGET_PREFETCH_PROCEDURE);
+        Statement read_stmt = this.getStatement(catalog_proc, TARGET_PREFETCH_STATEMENT);
+        Statement write_stmt = this.getStatement(catalog_proc, "UpdateCustomer");
+        assertTrue(read_stmt.getReadonly());
+        assertFalse(write_stmt.getReadonly());
+        boolean orig_prefetchable = write_stmt.getPrefetchable();
+        read_stmt.setPrefetchable(false);
+        write_stmt.setPrefetchable(false);
+
+        // Only the read-only query whose input parameters can all be
+        // derived from the procedure's parameters should get picked.
+        // The planner should keep track of this itself and leave the catalog alone.
+        HStoreConf hstore_conf = HStoreConf.singleton();
+        hstore_conf.site.exec_prefetch_queries_auto = true;
+        try {
+            PrefetchQueryPlanner planner = new PrefetchQueryPlanner(catalogContext, p_estimator);
+            assertTrue(planner.isPrefetchable(catalog_proc));
+            assertTrue(planner.isPrefetchable(read_stmt));
+            assertNotNull(planner.getPrefetchCounter(read_stmt));
+            assertFalse(planner.isPrefetchable(write_stmt));
+            assertNull(planner.getPrefetchCounter(write_stmt));
+            
+            assertFalse(read_stmt.getPrefetchable());
+            assertFalse(write_stmt.getPrefetchable());
+        } finally {
+            hstore_conf.site.exec_prefetch_queries_auto = false;
+            read_stmt.setPrefetchable(true);
+            write_stmt.setPrefetchable(orig_prefetchable);
+        }
+    }
+
+    /**
+     * testMarkPrefetchResult
+     */
+    public void testMarkPrefetchResult() throws Exception {
+        HStoreConf hstore_conf = HStoreConf.singleton();
+        hstore_conf.site.exec_prefetch_queries_samples = 10;
+        hstore_conf.site.exec_prefetch_queries_threshold = 0.25;
+
+        Statement catalog_stmt = this.getStatement(this.getProcedure(TARGET_PREFETCH_PROCEDURE), TARGET_PREFETCH_STATEMENT);
+        PrefetchQueryPlanner.PrefetchCounter counter = this.prefetcher.getPrefetchCounter(catalog_stmt);
+        assertNotNull(counter);
+        int fragmentId = CollectionUtil.first(catalog_stmt.getFragments()).getId();
+
+        // Half of the results get used, so we should keep prefetching
+        for (int i = 0; i < hstore_conf.site.exec_prefetch_queries_samples; i++) {
+            this.prefetcher.markPrefetchResult(fragmentId, (i % 2 == 0));
+        } // FOR
+        assertEquals(hstore_conf.site.exec_prefetch_queries_samples, counter.getPrefetchedCount());
+        assertEquals(hstore_conf.site.exec_prefetch_queries_samples / 2, counter.getUsedCount());
+        assertFalse(counter.isDisabled());
+
+        // Then nobody uses them anymore
+        for (int i = 0; i < hstore_conf.site.exec_prefetch_queries_samples * 2; i++) {
+            this.prefetcher.markPrefetchResult(fragmentId, false);
+        } // FOR
+        assertTrue(counter.isDisabled());
+
+        // And now there is nothing left to prefetch for this txn
+        this.ts.setTransactionId(TXN_ID);
+        assertNull(this.prefetcher.plan(this.ts, this.ts.getProcedureParameters(), this.depTracker));
+    }
+
+    /**
+     * testMarkPrefetchResultNoSamples
+     */
+    public void testMarkPrefetchResultNoSamples() throws Exception {
+        HStoreConf hstore_conf = HStoreConf.singleton();
+        int orig_samples = hstore_conf.site.exec_prefetch_queries_samples;
+        hstore_conf.site.exec_prefetch_queries_samples = 0;
+
+        Statement catalog_stmt = this.getStatement(this.getProcedure(TARGET_PREFETCH_PROCEDURE), TARGET_PREFETCH_STATEMENT);
+        PrefetchQueryPlanner.PrefetchCounter counter = this.prefetcher.getPrefetchCounter(catalog_stmt);
+        assertNotNull(counter);
+        int fragmentId = CollectionUtil.first(catalog_stmt.getFragments()).getId();
+
+        // We should never disable a query if there is no sample size
+        try {
+            for (int i = 0; i < 100; i++) {
+                this.prefetcher.markPrefetchResult(fragmentId, false);
+            } // FOR
+            assertEquals(100, counter.getPrefetchedCount());
+            assertFalse(counter.isDisabled());
+        } finally {
+            hstore_conf.site.exec_prefetch_queries_samples = orig_samples;
+        }
+    }
+
 }
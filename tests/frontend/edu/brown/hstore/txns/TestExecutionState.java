@@ -0,0 +1,73 @@
+package edu.brown.hstore.txns;
+
+import org.voltdb.ParameterSet;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.benchmark.tpcc.procedures.neworder;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+
+import edu.brown.BaseTestCase;
+import edu.brown.utils.ProjectType;
+
+/**
+ * TestExecutionState
+ * @author pavlo
+ */
+public class TestExecutionState extends BaseTestCase {
+
+    private ExecutionState state;
+    private Statement catalog_stmt;
+    private Statement other_stmt;
+    private final VoltTable vt = new VoltTable(new VoltTable.ColumnInfo("X", VoltType.BIGINT));
+    
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TPCC);
+        Procedure catalog_proc = this.getProcedure(neworder.class);
+        this.catalog_stmt = this.getStatement(catalog_proc, "getItemInfo");
+        assertTrue(this.catalog_stmt.getReadonly());
+        this.other_stmt = this.getStatement(catalog_proc, "getWarehouseTaxRate");
+        assertTrue(this.other_stmt.getReadonly());
+        this.state = new ExecutionState(null);
+    }
+    
+    /**
+     * testQueryResults
+     */
+    public void testQueryResults() throws Exception {
+        Object params[] = { 1234 };
+        this.state.addQueryResult(this.catalog_stmt, new ParameterSet(params), this.vt);
+        
+        // A different ParameterSet with the same values should match, and
+        // changing the original parameters afterwards should not affect it
+        assertSame(this.vt, this.state.getQueryResult(this.catalog_stmt, new ParameterSet(1234)));
+        params[0] = 5678;
+        assertNull(this.state.getQueryResult(this.catalog_stmt, new ParameterSet(params)));
+        assertSame(this.vt, this.state.getQueryResult(this.catalog_stmt, new ParameterSet(1234)));
+        assertNull(this.state.getQueryResult(this.other_stmt, new ParameterSet(1234)));
+    }
+    
+    /**
+     * testQueryResultsArrayParams
+     */
+    public void testQueryResultsArrayParams() throws Exception {
+        this.state.addQueryResult(this.catalog_stmt, new ParameterSet(new long[]{ 1, 2, 3 }), this.vt);
+        assertSame(this.vt, this.state.getQueryResult(this.catalog_stmt, new ParameterSet(new long[]{ 1, 2, 3 })));
+        assertNull(this.state.getQueryResult(this.catalog_stmt, new ParameterSet(new long[]{ 1, 2, 4 })));
+    }
+    
+    /**
+     * testClearQueryResults
+     */
+    public void testClearQueryResults() throws Exception {
+        this.state.addQueryResult(this.catalog_stmt, new ParameterSet(1234), this.vt);
+        this.state.clearQueryResults();
+        assertNull(this.state.getQueryResult(this.catalog_stmt, new ParameterSet(1234)));
+        
+        // Finishing the txn should also throw away everything
+        this.state.addQueryResult(this.catalog_stmt, new ParameterSet(1234), this.vt);
+        this.state.finish();
+        assertNull(this.state.getQueryResult(this.catalog_stmt, new ParameterSet(1234)));
+    }
+}
@@ -4,7 +4,9 @@
 package edu.brown.hstore.txns;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
@@ -306,6 +308,55 @@ public class TestTransactionState extends BaseTestCase {
         // System.err.println(this.ts);
     }
     
+    /**
+     * testAddResultPackedInputs
+     */
+    @Test
+    public void testAddResultPackedInputs() throws Exception {
+        // Pack all of the blocked WorkFragments into a single WorkFragment just like
+        // the BatchPlanner does when it expects their inputs to arrive together
+        WorkFragment.Builder packed = null;
+        for (Iterator<WorkFragment.Builder> it = this.ftasks.iterator(); it.hasNext(); ) {
+            WorkFragment.Builder ftask = it.next();
+            if (ftask.getNeedsInput() == false) continue;
+            if (packed == null) {
+                packed = ftask;
+            } else {
+                assertEquals(packed.getPartitionId(), ftask.getPartitionId());
+                packed.mergeFrom(ftask.build());
+                it.remove();
+            }
+        } // FOR
+        assertNotNull(packed);
+        List<Integer> inputs = new ArrayList<Integer>(packed.getInputDepIdList());
+        assertEquals(NUM_DUPLICATE_STATEMENTS, inputs.size());
+        
+        this.ts.initFirstRound(UNDO_TOKEN, NUM_DUPLICATE_STATEMENTS);
+        this.addFragments();
+        this.ts.startRound(LOCAL_PARTITION);
+        assertTrue(this.depTracker.isBlocked(this.ts, packed));
+        
+        // The packed WorkFragment should not get released until all of its inputs arrive
+        for (int i = 0; i < inputs.size(); i++) {
+            int dependency_id = inputs.get(i);
+            for (int partition = 0; partition < NUM_PARTITIONS; partition++) {
+                this.depTracker.addResult(this.ts, partition, dependency_id, FAKE_RESULT);
+            } // FOR
+            DependencyInfo dinfo = this.depTrackerDbg.getDependencyInfo(this.ts, dependency_id);
+            assertNotNull(dinfo);
+            assertTrue(dinfo.hasTasksReleased());
+            assertTrue(dinfo.getResultTime() > 0);
+            assertEquals(i + 1 < inputs.size(), this.depTracker.isBlocked(this.ts, packed));
+        } // FOR
+        
+        // And it should only get released once
+        int released = 0;
+        for (Collection<WorkFragment.Builder> unblocked : this.depTracker.getUnblockedWorkFragmentsQueue(this.ts)) {
+            if (unblocked.contains(packed)) released++;
+        } // FOR
+        assertEquals(1, released);
+    }
+    
     /**
      * testAddResultsBeforeStart
      */
@@ -0,0 +1,66 @@
+package edu.brown.hstore.util;
+
+import org.voltdb.catalog.Procedure;
+
+import edu.brown.BaseTestCase;
+import edu.brown.benchmark.tm1.procedures.DeleteCallForwarding;
+import edu.brown.benchmark.tm1.procedures.GetAccessData;
+import edu.brown.statistics.Histogram;
+import edu.brown.utils.ProjectType;
+
+/**
+ * TestTransactionCounter
+ * @author pavlo
+ */
+public class TestTransactionCounter extends BaseTestCase {
+
+    Procedure catalog_proc;
+    Procedure other_proc;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+        this.catalog_proc = this.getProcedure(DeleteCallForwarding.class);
+        this.other_proc = this.getProcedure(GetAccessData.class);
+        TransactionCounter.resetAll(catalogContext);
+    }
+
+    /**
+     * testGetEmpty
+     */
+    public void testGetEmpty() throws Exception {
+        // Procedures that were never counted should come back as zero
+        for (TransactionCounter tc : TransactionCounter.values()) {
+            assertEquals(tc.toString(), 0l, tc.get(this.catalog_proc));
+            assertEquals(tc.toString(), 0, tc.get());
+        } // FOR
+        assertTrue(TransactionCounter.getAllProcedures(catalogContext).isEmpty());
+    }
+
+    /**
+     * testIncDec
+     */
+    public void testIncDec() throws Exception {
+        TransactionCounter tc = TransactionCounter.RECEIVED;
+        tc.inc(this.catalog_proc);
+        tc.inc(this.catalog_proc);
+        tc.inc(this.other_proc);
+        assertEquals(2l, tc.get(this.catalog_proc));
+        assertEquals(1l, tc.get(this.other_proc));
+        assertEquals(3, tc.get());
+        assertEquals(0l, TransactionCounter.EXECUTED.get(this.catalog_proc));
+
+        Histogram<Procedure> h = tc.getHistogram(catalogContext);
+        assertEquals(2l, h.get(this.catalog_proc).longValue());
+        assertEquals(1l, h.get(this.other_proc).longValue());
+        assertEquals(2, TransactionCounter.getAllProcedures(catalogContext).size());
+
+        tc.dec(this.other_proc);
+        assertEquals(0l, tc.get(this.other_proc));
+        assertEquals(2, tc.get());
+
+        tc.clear();
+        assertEquals(0l, tc.get(this.catalog_proc));
+        assertEquals(0, tc.get());
+    }
+}
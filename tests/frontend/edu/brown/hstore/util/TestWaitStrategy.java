@@ -0,0 +1,121 @@
+package edu.brown.hstore.util;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.voltdb.types.WaitStrategyType;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author pavlo
+ */
+public class TestWaitStrategy extends TestCase {
+
+    private static final int NUM_MESSAGES = 1000;
+    private static final int SPIN_COUNT = 10;
+
+    /**
+     * Have a producer thread push messages to a consumer that uses the
+     * given WaitStrategy and make sure that nothing gets lost
+     */
+    private void checkProducerConsumer(WaitStrategyType type) throws Exception {
+        final BlockingQueue<Integer> queue = new LinkedBlockingQueue<Integer>();
+        final WaitStrategy<Integer> strategy = WaitStrategy.create(type, SPIN_COUNT);
+        assertEquals(type, strategy.getType());
+
+        Thread producer = new Thread() {
+            public void run() {
+                for (int i = 0; i < NUM_MESSAGES; i++) {
+                    queue.offer(i);
+                    strategy.signal();
+                    if (i % 100 == 0) Thread.yield();
+                } // FOR
+            }
+        };
+        producer.start();
+
+        int expected = 0;
+        while (expected < NUM_MESSAGES) {
+            Integer next = strategy.poll(queue, 1, TimeUnit.MILLISECONDS);
+            if (next == null) continue;
+            assertEquals(type.toString(), expected, next.intValue());
+            expected++;
+        } // WHILE
+        producer.join();
+        assertTrue(queue.isEmpty());
+        assertNull(strategy.poll(queue, 1, TimeUnit.MICROSECONDS));
+    }
+
+    /**
+     * testBusySpin
+     */
+    public void testBusySpin() throws Exception {
+        this.checkProducerConsumer(WaitStrategyType.BUSY_SPIN);
+    }
+
+    /**
+     * testSpinYield
+     */
+    public void testSpinYield() throws Exception {
+        this.checkProducerConsumer(WaitStrategyType.SPIN_YIELD);
+    }
+
+    /**
+     * testSpinPark
+     */
+    public void testSpinPark() throws Exception {
+        this.checkProducerConsumer(WaitStrategyType.SPIN_PARK);
+    }
+
+    /**
+     * testBlocking
+     */
+    public void testBlocking() throws Exception {
+        this.checkProducerConsumer(WaitStrategyType.BLOCKING);
+    }
+
+    /**
+     * testSpinParkWakeup
+     */
+    public void testSpinParkWakeup() throws Exception {
+        final BlockingQueue<Integer> queue = new LinkedBlockingQueue<Integer>();
+        final WaitStrategy<Integer> strategy = WaitStrategy.create(WaitStrategyType.SPIN_PARK, SPIN_COUNT);
+
+        // Park for a really long time. The producer should wake us up
+        // right after it adds its message
+        Thread producer = new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ex) {
+                    // Ignore
+                }
+                queue.offer(1234);
+                strategy.signal();
+            }
+        };
+        producer.start();
+        long start = System.currentTimeMillis();
+        Integer next = null;
+        while (next == null) {
+            next = strategy.poll(queue, 60, TimeUnit.SECONDS);
+        } // WHILE
+        long elapsed = System.currentTimeMillis() - start;
+        assertEquals(1234, next.intValue());
+        assertTrue(Long.toString(elapsed), elapsed < 30000);
+        producer.join();
+    }
+
+    /**
+     * testGet
+     */
+    public void testGet() throws Exception {
+        for (WaitStrategyType type : WaitStrategyType.values()) {
+            assertEquals(type, WaitStrategyType.get(type.name().toLowerCase()));
+        } // FOR
+        assertNull(WaitStrategyType.get("xxx"));
+    }
+}
@@ -0,0 +1,249 @@
+package edu.brown.markov.containers;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.voltdb.VoltType;
+import org.voltdb.catalog.ProcParameter;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.StmtParameter;
+import org.voltdb.types.TimestampType;
+import org.voltdb.utils.VoltTypeUtil;
+
+import edu.brown.BaseTestCase;
+import edu.brown.markov.MarkovEdge;
+import edu.brown.markov.MarkovGraph;
+import edu.brown.markov.MarkovVertex;
+import edu.brown.utils.FileUtil;
+import edu.brown.utils.ProjectType;
+import edu.brown.workload.QueryTrace;
+import edu.brown.workload.TransactionTrace;
+
+public class TestBinaryMarkovFormat extends BaseTestCase {
+
+    private static final int NUM_TXNS = 300;
+    private static final int NUM_PARTITIONS = 4;
+    private static final Random rand = new Random(1);
+
+    private static Map<Integer, MarkovGraphsContainer> markovs;
+    private File binaryFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TPCC);
+        this.addPartitions(NUM_PARTITIONS);
+
+        if (markovs == null) {
+            List<Procedure> procs = new ArrayList<Procedure>();
+            for (Procedure catalog_proc : catalogContext.getRegularProcedures()) {
+                if (catalog_proc.getStatements().isEmpty() || catalog_proc.getPartitionparameter() < 0) continue;
+                procs.add(catalog_proc);
+            } // FOR
+            assertFalse(procs.isEmpty());
+
+            Map<Integer, MarkovGraphsContainer> m_map = new TreeMap<Integer, MarkovGraphsContainer>();
+            for (int i = 0; i < NUM_TXNS; i++) {
+                Procedure catalog_proc = procs.get(i % procs.size());
+                Object params[] = new Object[catalog_proc.getParameters().size()];
+                for (ProcParameter catalog_param : catalog_proc.getParameters()) {
+                    params[catalog_param.getIndex()] = this.makeParam(VoltType.get((byte)catalog_param.getType()),
+                                                                      catalog_param.getIsarray());
+                } // FOR
+                TransactionTrace txn_trace = new TransactionTrace(10000 + i, catalog_proc, params);
+                txn_trace.setTimestamps((long)i, (long)i + 1);
+                if (i % 9 == 0) txn_trace.abort();
+
+                int batch_id = 0;
+                for (Statement catalog_stmt : catalog_proc.getStatements()) {
+                    Object stmt_params[] = new Object[catalog_stmt.getParameters().size()];
+                    for (StmtParameter catalog_param : catalog_stmt.getParameters()) {
+                        stmt_params[catalog_param.getIndex()] = this.makeParam(VoltType.get((byte)catalog_param.getJavatype()), false);
+                    } // FOR
+                    QueryTrace query = new QueryTrace(catalog_stmt, stmt_params, batch_id++);
+                    query.setTimestamps((long)i, (long)i + 1);
+                    txn_trace.addQuery(query);
+                } // FOR
+
+                // Split the graphs by the txn's base partition
+                int base_partition = p_estimator.getBasePartition(txn_trace);
+                MarkovGraphsContainer m = m_map.get(base_partition);
+                if (m == null) {
+                    m = new MarkovGraphsContainer();
+                    m_map.put(base_partition, m);
+                }
+                m.getOrCreate(base_partition, catalog_proc, true).processTransaction(txn_trace, p_estimator);
+            } // FOR
+            MarkovGraphContainersUtil.calculateProbabilities(m_map);
+            assertFalse(m_map.isEmpty());
+            markovs = m_map;
+        }
+
+        this.binaryFile = FileUtil.getTempFile("markovs", true);
+        MarkovGraphContainersUtil.saveBinary(markovs, this.binaryFile.getAbsolutePath());
+    }
+
+    private Object makeParam(VoltType type, boolean is_array) {
+        if (is_array) {
+            VoltType inner_type = (type == VoltType.TINYINT || type == VoltType.SMALLINT ? VoltType.INTEGER : type);
+            Object inner[] = new Object[1 + rand.nextInt(3)];
+            for (int i = 0; i < inner.length; i++) {
+                inner[i] = this.makeParam(inner_type, false);
+            } // FOR
+            return (VoltTypeUtil.getPrimitiveArray(type, inner));
+        }
+        switch (type) {
+            case TINYINT:
+                return ((byte)rand.nextInt(NUM_PARTITIONS * 2));
+            case SMALLINT:
+                return ((short)rand.nextInt(NUM_PARTITIONS * 2));
+            case INTEGER:
+                return (rand.nextInt(NUM_PARTITIONS * 2));
+            case BIGINT:
+                return ((long)rand.nextInt(NUM_PARTITIONS * 2));
+            case TIMESTAMP:
+                return (new TimestampType());
+            case VOLTTABLE:
+                return (null);
+            default:
+                return (VoltTypeUtil.getRandomValue(type));
+        } // SWITCH
+    }
+
+    /**
+     * The element ids are not preserved, so we need our own key for each vertex
+     */
+    private String toKey(MarkovVertex v) {
+        return (String.format("%s[%s,%d,%s,%s,%d,%d]", v.getCatalogItem().getName(), v.getType(), v.getQueryCounter(),
+                              v.getPartitions(), v.getPastPartitions(), v.getTotalHits(), v.getInstanceHits()));
+    }
+
+    private List<String> toKeys(MarkovGraph markov) {
+        List<String> keys = new ArrayList<String>();
+        for (MarkovVertex v : markov.getVertices()) {
+            keys.add(this.toKey(v) + v.getSinglePartitionProbability());
+        } // FOR
+        for (MarkovEdge e : markov.getEdges()) {
+            keys.add(this.toKey(markov.getSource(e)) + "->" + this.toKey(markov.getDest(e)) +
+                     ":" + e.getTotalHits() + ":" + e.getProbability());
+        } // FOR
+        Collections.sort(keys);
+        return (keys);
+    }
+
+    private void compare(MarkovGraph expected, MarkovGraph actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getProcedure(), actual.getProcedure());
+        assertEquals(expected.getGraphId(), actual.getGraphId());
+        assertEquals(expected.getVertexCount(), actual.getVertexCount());
+        assertEquals(expected.getEdgeCount(), actual.getEdgeCount());
+        assertEquals(this.toKeys(expected), this.toKeys(actual));
+        assertTrue(actual.isValid());
+    }
+
+    /**
+     * testRoundTrip
+     */
+    public void testRoundTrip() throws Exception {
+        assertTrue(BinaryMarkovFormat.isBinaryMarkovFile(this.binaryFile));
+        BinaryMarkovReader reader = new BinaryMarkovReader(catalog_db, this.binaryFile);
+        assertEquals(markovs.keySet(), reader.getContainerIds());
+        assertEquals(0, reader.getSkippedCount());
+
+        int total = 0;
+        for (Integer partition : markovs.keySet()) {
+            MarkovGraphsContainer expected = markovs.get(partition);
+            assertEquals(expected.keySet(), reader.getIds(partition));
+            for (Integer id : expected.keySet()) {
+                for (MarkovGraph markov : expected.getAll(id).values()) {
+                    assertTrue(reader.contains(partition, id, markov.getProcedure()));
+                    this.compare(markov, reader.readGraph(partition, id, markov.getProcedure()));
+                    total++;
+                } // FOR
+            } // FOR
+        } // FOR
+        assertEquals(total, reader.getGraphCount());
+        reader.close();
+    }
+
+    /**
+     * testLazyLoad
+     */
+    public void testLazyLoad() throws Exception {
+        Map<Integer, MarkovGraphsContainer> clone = MarkovGraphContainersUtil.load(catalog_db, this.binaryFile);
+        assertEquals(markovs.keySet(), clone.keySet());
+        for (Integer partition : markovs.keySet()) {
+            MarkovGraphsContainer expected = markovs.get(partition);
+            MarkovGraphsContainer actual = clone.get(partition);
+            assertEquals(expected.getClass(), actual.getClass());
+            assertTrue(actual.isLazy());
+
+            // Pulling out a single graph should not load anything else
+            Integer id = expected.keySet().iterator().next();
+            Procedure catalog_proc = expected.getAll(id).keySet().iterator().next();
+            this.compare(expected.get(id, catalog_proc), actual.get(id, catalog_proc));
+            assertTrue(actual.isLazy());
+            assertSame(actual.get(id, catalog_proc), actual.get(id, catalog_proc));
+
+            // But asking for everything should
+            assertEquals(expected.totalSize(), actual.totalSize());
+            assertFalse(actual.isLazy());
+            for (Integer other_id : expected.keySet()) {
+                for (MarkovGraph markov : expected.getAll(other_id).values()) {
+                    this.compare(markov, actual.get(other_id, markov.getProcedure()));
+                } // FOR
+            } // FOR
+        } // FOR
+    }
+
+    /**
+     * testLoadIds
+     */
+    public void testLoadIds() throws Exception {
+        Integer partition = markovs.keySet().iterator().next();
+        Map<Integer, MarkovGraphsContainer> clone = MarkovGraphContainersUtil.loadIds(catalog_db, this.binaryFile,
+                                                                                      Collections.singleton(partition));
+        assertEquals(1, clone.size());
+        assertEquals(markovs.get(partition).totalSize(), clone.get(partition).totalSize());
+    }
+
+    /**
+     * testConvert
+     */
+    public void testConvert() throws Exception {
+        int total = 0;
+        for (MarkovGraphsContainer m : markovs.values()) {
+            total += m.totalSize();
+        } // FOR
+
+        File jsonFile = FileUtil.getTempFile("markovs", true);
+        assertEquals(total, ConvertMarkovGraphs.toJSON(catalog_db, this.binaryFile, jsonFile));
+        assertFalse(BinaryMarkovFormat.isBinaryMarkovFile(jsonFile));
+
+        // Make sure that the regular JSON loader can still read it
+        Map<Integer, MarkovGraphsContainer> json_markovs = MarkovGraphContainersUtil.load(catalog_db, jsonFile);
+        assertEquals(markovs.keySet(), json_markovs.keySet());
+
+        File binaryFile = FileUtil.getTempFile("markovs", true);
+        assertEquals(total, ConvertMarkovGraphs.toBinary(catalog_db, jsonFile, binaryFile));
+        assertTrue(BinaryMarkovFormat.isBinaryMarkovFile(binaryFile));
+
+        Map<Integer, MarkovGraphsContainer> clone = MarkovGraphContainersUtil.load(catalog_db, binaryFile);
+        for (Integer partition : markovs.keySet()) {
+            MarkovGraphsContainer expected = markovs.get(partition);
+            for (Integer id : expected.keySet()) {
+                for (MarkovGraph markov : expected.getAll(id).values()) {
+                    MarkovGraph actual = clone.get(partition).get(id, markov.getProcedure());
+                    assertNotNull(actual);
+                    assertEquals(markov.getVertexCount(), actual.getVertexCount());
+                    assertEquals(markov.getEdgeCount(), actual.getEdgeCount());
+                } // FOR
+            } // FOR
+        } // FOR
+    }
+}
@@ -0,0 +1,180 @@
+package edu.brown.pools;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import junit.framework.TestCase;
+
+import edu.brown.pools.TestTypedPoolableObjectFactory.MockObject;
+
+public class TestFastObjectPool extends TestCase {
+
+    private static final int NUM_OBJECTS = 100;
+
+    private TypedPoolableObjectFactory<MockObject> factory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.factory = TypedPoolableObjectFactory.makeFactory(MockObject.class, true);
+    }
+
+    /**
+     * testReuse
+     */
+    public void testReuse() throws Exception {
+        FastObjectPool<MockObject> pool = new FastObjectPool<MockObject>(this.factory, NUM_OBJECTS);
+
+        Set<MockObject> objs = new HashSet<MockObject>();
+        for (int i = 0; i < NUM_OBJECTS; i++) {
+            objs.add(pool.borrowObject());
+        } // FOR
+        assertEquals(NUM_OBJECTS, objs.size());
+        assertEquals(NUM_OBJECTS, pool.getNumActive());
+        assertEquals(0, pool.getNumIdle());
+
+        for (MockObject obj : objs) {
+            pool.returnObject(obj);
+            assertTrue(obj.finished);
+        } // FOR
+        assertEquals(0, pool.getNumActive());
+        assertEquals(NUM_OBJECTS, pool.getNumIdle());
+
+        // We should get back the same objects without creating new ones
+        for (int i = 0; i < NUM_OBJECTS; i++) {
+            assertTrue(objs.contains(pool.borrowObject()));
+        } // FOR
+        assertEquals(NUM_OBJECTS, this.factory.getCreatedCount());
+        assertEquals(2*NUM_OBJECTS, pool.getBorrowedCount());
+        assertEquals(NUM_OBJECTS, pool.getReturnedCount());
+    }
+
+    /**
+     * testMaxIdle
+     */
+    public void testMaxIdle() throws Exception {
+        int maxIdle = 4;
+        FastObjectPool<MockObject> pool = new FastObjectPool<MockObject>(this.factory, maxIdle);
+
+        List<MockObject> objs = new ArrayList<MockObject>();
+        for (int i = 0; i < NUM_OBJECTS; i++) {
+            objs.add(pool.borrowObject());
+        } // FOR
+        for (MockObject obj : objs) {
+            pool.returnObject(obj);
+        } // FOR
+
+        // The calling thread can hold two magazines plus whatever is in the depot
+        int idle = pool.getNumIdle();
+        assertTrue(Integer.toString(idle), idle <= maxIdle * 3);
+        assertEquals(NUM_OBJECTS - idle, this.factory.getDestroyedCount());
+
+        pool.clear();
+        assertEquals(0, pool.getNumIdle());
+        assertEquals(NUM_OBJECTS, this.factory.getDestroyedCount());
+    }
+
+    /**
+     * testCrossThread
+     */
+    public void testCrossThread() throws Exception {
+        final FastObjectPool<MockObject> pool = new FastObjectPool<MockObject>(this.factory, 2*NUM_OBJECTS);
+        final LinkedBlockingQueue<MockObject> queue = new LinkedBlockingQueue<MockObject>();
+        final int rounds = 10;
+
+        // One thread borrows and another thread returns, just like
+        // the network thread and the PartitionExecutor
+        Thread consumer = new Thread() {
+            public void run() {
+                try {
+                    for (int i = 0; i < NUM_OBJECTS * rounds; i++) {
+                        pool.returnObject(queue.take());
+                    } // FOR
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
+        consumer.start();
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < NUM_OBJECTS; i++) {
+                MockObject obj = pool.borrowObject();
+                obj.finished = false;
+                queue.add(obj);
+            } // FOR
+            // Wait until the other thread has returned everything
+            while (pool.getNumActive() > 0) {
+                Thread.sleep(1);
+            } // WHILE
+        } // FOR
+        consumer.join();
+
+        // The returning thread can hold on to at most two magazines
+        // of objects, so everything else should have been reused
+        assertTrue(Integer.toString(this.factory.getCreatedCount()), this.factory.getCreatedCount() <= NUM_OBJECTS + 32);
+        assertEquals(NUM_OBJECTS * rounds, pool.getBorrowedCount());
+        assertEquals(NUM_OBJECTS * rounds, pool.getReturnedCount());
+        assertEquals(0, pool.getNumActive());
+        assertEquals(this.factory.getCreatedCount() - this.factory.getDestroyedCount(), pool.getNumIdle());
+    }
+
+    /**
+     * testDeadThreads
+     */
+    public void testDeadThreads() throws Exception {
+        final FastObjectPool<MockObject> pool = new FastObjectPool<MockObject>(this.factory, 2*NUM_OBJECTS);
+        final int numThreads = 10;
+        final int perThread = 5;
+        final CountDownLatch ready = new CountDownLatch(numThreads);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        // Each short-lived thread leaves its idle objects in its own magazines.
+        // They all stay alive until everybody is finished so that none of them
+        // can pick up the objects from the other ones.
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < numThreads; t++) {
+            Thread thread = new Thread() {
+                public void run() {
+                    try {
+                        List<MockObject> objs = new ArrayList<MockObject>();
+                        for (int i = 0; i < perThread; i++) {
+                            objs.add(pool.borrowObject());
+                        } // FOR
+                        for (MockObject obj : objs) {
+                            pool.returnObject(obj);
+                        } // FOR
+                        ready.countDown();
+                        done.await();
+                    } catch (Exception ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        } // FOR
+        ready.await();
+        done.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        } // FOR
+        int total = numThreads * perThread;
+        assertEquals(total, this.factory.getCreatedCount());
+
+        // Once the threads are dead, the next thread to use the pool should
+        // get their objects back instead of creating new ones
+        for (int i = 0; i < total; i++) {
+            pool.borrowObject();
+        } // FOR
+        assertEquals(total, this.factory.getCreatedCount());
+        assertEquals(2*total, pool.getBorrowedCount());
+        assertEquals(total, pool.getReturnedCount());
+        assertEquals(total, pool.getNumActive());
+        assertEquals(0, pool.getNumIdle());
+    }
+
+}
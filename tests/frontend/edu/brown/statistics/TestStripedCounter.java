@@ -0,0 +1,103 @@
+package edu.brown.statistics;
+
+import junit.framework.TestCase;
+
+/**
+ * @author pavlo
+ */
+public class TestStripedCounter extends TestCase {
+
+    private static final int NUM_ROWS = 5;
+    private static final int NUM_COLS = 4;
+    private static final int NUM_THREADS = 4;
+    private static final int NUM_UPDATES = 10000;
+
+    private StripedCounter counter;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.counter = new StripedCounter(NUM_ROWS, NUM_COLS);
+    }
+
+    /**
+     * testIncDec
+     */
+    public void testIncDec() throws Exception {
+        this.counter.inc(1, 2);
+        this.counter.inc(1, 2);
+        this.counter.inc(1, 3);
+        this.counter.dec(1, 3);
+        this.counter.add(2, 0, 10);
+
+        assertEquals(2, this.counter.get(1, 2));
+        assertEquals(0, this.counter.get(1, 3));
+        assertEquals(10, this.counter.get(2, 0));
+        assertEquals(2, this.counter.getRowTotal(1));
+        assertEquals(10, this.counter.getRowTotal(2));
+        assertEquals(0, this.counter.getRowTotal(0));
+    }
+
+    /**
+     * testGrow
+     */
+    public void testGrow() throws Exception {
+        int col = NUM_COLS * 10;
+        this.counter.inc(0, 1);
+        this.counter.inc(0, col);
+        assertTrue(this.counter.getColumnCount() > col);
+        assertEquals(1, this.counter.get(0, 1));
+        assertEquals(1, this.counter.get(0, col));
+
+        long row[] = this.counter.getRow(0);
+        assertEquals(this.counter.getColumnCount(), row.length);
+        assertEquals(1, row[1]);
+        assertEquals(1, row[col]);
+    }
+
+    /**
+     * testClear
+     */
+    public void testClear() throws Exception {
+        for (int row = 0; row < NUM_ROWS; row++) {
+            this.counter.add(row, 1, row + 1);
+        } // FOR
+        this.counter.clear(2);
+        assertEquals(0, this.counter.get(2, 1));
+        assertEquals(2, this.counter.get(1, 1));
+
+        this.counter.inc(2, 1);
+        assertEquals(1, this.counter.get(2, 1));
+
+        this.counter.clear();
+        for (int row = 0; row < NUM_ROWS; row++) {
+            assertEquals(0, this.counter.getRowTotal(row));
+        } // FOR
+    }
+
+    /**
+     * testMultipleThreads
+     */
+    public void testMultipleThreads() throws Exception {
+        Thread threads[] = new Thread[NUM_THREADS];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < NUM_UPDATES; j++) {
+                        counter.inc(j % NUM_ROWS, j % (NUM_COLS * 2));
+                    } // FOR
+                }
+            };
+            threads[i].start();
+        } // FOR
+        for (Thread t : threads) {
+            t.join();
+        } // FOR
+
+        long total = 0;
+        for (int row = 0; row < NUM_ROWS; row++) {
+            total += this.counter.getRowTotal(row);
+        } // FOR
+        assertEquals(NUM_THREADS * NUM_UPDATES, total);
+    }
+}
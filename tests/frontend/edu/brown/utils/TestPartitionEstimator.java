@@ -358,6 +358,45 @@ public class TestPartitionEstimator extends BaseTestCase {
         assertEquals(BASE_PARTITION, CollectionUtil.first(partitions).intValue());
     }
     
+    /**
+     * testEstimationCache
+     */
+    @Test
+    public void testEstimationCache() throws Exception {
+        PartitionEstimator cached_estimator = new PartitionEstimator(catalogContext, hasher);
+        cached_estimator.setEstimationCacheSize(128);
+        PartitionEstimator p_estimator = new PartitionEstimator(catalogContext, hasher);
+
+        Procedure catalog_proc = this.getProcedure(neworder.class);
+        Statement catalog_stmt = this.getStatement(catalog_proc, "getDistrict");
+        PlanFragment fragments[] = catalog_stmt.getFragments().values();
+
+        Map<PlanFragment, PartitionSet> expected_frag = new HashMap<PlanFragment, PartitionSet>();
+        Map<PlanFragment, PartitionSet> actual_frag = new HashMap<PlanFragment, PartitionSet>();
+        PartitionSet expected = new PartitionSet();
+        PartitionSet actual = new PartitionSet();
+        for (int round = 0; round < 2; round++) {
+            for (int w_id = 1; w_id < NUM_PARTITIONS; w_id++) {
+                Object params[] = new Object[]{ new Long(2), new Long(w_id) }; // d_id, d_w_id
+                expected.clear();
+                actual.clear();
+                p_estimator.getAllFragmentPartitions(expected_frag, expected, fragments, params, BASE_PARTITION);
+                boolean cached = cached_estimator.getAllFragmentPartitions(actual_frag, actual, fragments, params, BASE_PARTITION);
+
+                // We should only get a cache hit on the second time around
+                assertEquals("W_ID=" + w_id, round > 0, cached);
+                assertEquals("W_ID=" + w_id, expected, actual);
+                assertEquals("W_ID=" + w_id, expected_frag, actual_frag);
+            } // FOR
+        } // FOR
+
+        // Make sure that we don't return stale results after the catalog is reset
+        cached_estimator.initCatalog(catalogContext);
+        assertFalse(cached_estimator.getAllFragmentPartitions(actual_frag, actual, fragments,
+                                                              new Object[]{ new Long(2), new Long(1) },
+                                                              BASE_PARTITION));
+    }
+
     /**
      * testInvalidateCache
      */
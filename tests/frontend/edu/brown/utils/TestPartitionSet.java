@@ -1,11 +1,17 @@
 package edu.brown.utils;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+
+import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.messaging.FastSerializer;
 
 import edu.brown.hstore.HStoreConstants;
 
@@ -322,4 +328,161 @@ public class TestPartitionSet extends TestCase {
         this.initialize(rand.nextInt(NUM_PARTITIONS));
         this._removeAll(new PartitionSet());
     }
+    
+    /**
+     * testForEachPartition
+     */
+    public void testForEachPartition() {
+        this.initialize(rand.nextInt(NUM_PARTITIONS*3));
+        pset.add(HStoreConstants.NULL_PARTITION_ID);
+        set.add(HStoreConstants.NULL_PARTITION_ID);
+        
+        final Set<Integer> visited = new HashSet<Integer>();
+        pset.forEachPartition(new PartitionSet.PartitionConsumer() {
+            @Override
+            public void accept(int partition) {
+                assertTrue(visited.add(partition));
+            }
+        });
+        assertEquals(set, visited);
+    }
+    
+    /**
+     * testContainsAll
+     */
+    public void testContainsAll() {
+        this.initialize(rand.nextInt(NUM_PARTITIONS*3));
+        PartitionSet other = new PartitionSet();
+        assertTrue(pset.containsAll(other));
+        for (int p : pset.values()) {
+            other.add(p);
+            assertTrue(other.toString(), pset.containsAll(other));
+        } // FOR
+        other.add(NUM_PARTITIONS + 100);
+        assertFalse(other.toString(), pset.containsAll(other));
+    }
+    
+    /**
+     * testInterning
+     */
+    public void testInterning() {
+        for (int p = 0; p < NUM_PARTITIONS; p++) {
+            PartitionSet singleton = PartitionSet.singleton(p);
+            assertSame(singleton, PartitionSet.singleton(p));
+            assertTrue(singleton.isImmutable());
+            assertEquals(1, singleton.size());
+            assertEquals(p, singleton.get());
+            
+            pset.clear();
+            pset.add(p);
+            assertSame(singleton, PartitionSet.intern(pset, NUM_PARTITIONS));
+        } // FOR
+        
+        PartitionSet all = PartitionSet.all(NUM_PARTITIONS);
+        assertSame(all, PartitionSet.all(NUM_PARTITIONS));
+        assertEquals(NUM_PARTITIONS, all.size());
+        List<Integer> list = new ArrayList<Integer>();
+        for (int p = 0; p < NUM_PARTITIONS; p++) {
+            list.add(p);
+        } // FOR
+        assertSame(all, PartitionSet.valueOf(list, NUM_PARTITIONS));
+        assertSame(all, PartitionSet.intern(new PartitionSet(list), NUM_PARTITIONS));
+        
+        // Anything else should come back as a new object
+        list.remove(0);
+        PartitionSet other = PartitionSet.valueOf(list, NUM_PARTITIONS);
+        assertNotSame(all, other);
+        assertFalse(other.isImmutable());
+        assertEquals(list.size(), other.size());
+    }
+    
+    /**
+     * testInterningConcurrent
+     */
+    public void testInterningConcurrent() throws Exception {
+        // Use partition ids that nobody else has asked for yet so that
+        // every thread has to race to grow and fill the caches
+        final int base = NUM_PARTITIONS * 10;
+        final int num_threads = 8;
+        final PartitionSet results[][] = new PartitionSet[num_threads][];
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread threads[] = new Thread[num_threads];
+        for (int i = 0; i < num_threads; i++) {
+            final int thread_id = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    PartitionSet mine[] = new PartitionSet[NUM_PARTITIONS * 2];
+                    try {
+                        start.await();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    for (int p = 0; p < NUM_PARTITIONS; p++) {
+                        mine[p] = PartitionSet.singleton(base + p);
+                        mine[NUM_PARTITIONS + p] = PartitionSet.all(base + p);
+                    } // FOR
+                    results[thread_id] = mine;
+                }
+            };
+            threads[i].start();
+        } // FOR
+        start.countDown();
+        for (Thread t : threads) t.join();
+        
+        for (int p = 0; p < NUM_PARTITIONS; p++) {
+            PartitionSet singleton = results[0][p];
+            PartitionSet all = results[0][NUM_PARTITIONS + p];
+            assertEquals(base + p, singleton.get());
+            assertEquals(base + p, all.size());
+            for (int i = 1; i < num_threads; i++) {
+                assertSame(singleton, results[i][p]);
+                assertSame(all, results[i][NUM_PARTITIONS + p]);
+            } // FOR
+            assertSame(singleton, PartitionSet.singleton(base + p));
+            assertSame(all, PartitionSet.all(base + p));
+        } // FOR
+    }
+    
+    /**
+     * testImmutable
+     */
+    public void testImmutable() {
+        PartitionSet singleton = PartitionSet.singleton(1);
+        try {
+            singleton.add(2);
+            fail("Able to modify immutable PartitionSet");
+        } catch (UnsupportedOperationException ex) {
+            // Expected
+        }
+        try {
+            singleton.clear();
+            fail("Able to modify immutable PartitionSet");
+        } catch (UnsupportedOperationException ex) {
+            // Expected
+        }
+        assertEquals(1, singleton.size());
+        
+        // Copies should always be mutable
+        PartitionSet copy = new PartitionSet(singleton);
+        assertFalse(copy.isImmutable());
+        copy.add(2);
+        assertEquals(2, copy.size());
+    }
+    
+    /**
+     * testSerialization
+     */
+    public void testSerialization() throws Exception {
+        this.initialize(rand.nextInt(NUM_PARTITIONS*3));
+        pset.add(NUM_PARTITIONS * 5);
+        pset.add(HStoreConstants.NULL_PARTITION_ID);
+        
+        byte bytes[] = FastSerializer.serialize(pset);
+        FastDeserializer fds = new FastDeserializer(bytes);
+        PartitionSet clone = fds.readObject(PartitionSet.class);
+        assertNotNull(clone);
+        assertEquals(pset, clone);
+        assertEquals(pset.size(), clone.size());
+        assertTrue(clone.contains(HStoreConstants.NULL_PARTITION_ID));
+    }
 }
@@ -0,0 +1,225 @@
+package edu.brown.workload;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.voltdb.VoltType;
+import org.voltdb.catalog.ProcParameter;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.StmtParameter;
+import org.voltdb.types.TimestampType;
+import org.voltdb.utils.VoltTypeUtil;
+
+import edu.brown.BaseTestCase;
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.utils.FileUtil;
+import edu.brown.utils.ProjectType;
+import edu.brown.workload.filters.ProcedureLimitFilter;
+
+public class TestBinaryTrace extends BaseTestCase {
+
+    private static final int NUM_TXNS = 500;
+    private static final int BLOCK_SIZE = 4096;
+    private static final Random rand = new Random(1);
+
+    private final List<TransactionTrace> txns = new ArrayList<TransactionTrace>();
+    private File binaryFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TPCC);
+        Workload.ENABLE_SHUTDOWN_HOOKS = false;
+
+        List<Procedure> procs = new ArrayList<Procedure>();
+        for (Procedure catalog_proc : catalog_db.getProcedures()) {
+            if (catalog_proc.getSystemproc() || catalog_proc.getStatements().isEmpty()) continue;
+            procs.add(catalog_proc);
+        } // FOR
+        assertFalse(procs.isEmpty());
+
+        long timestamp = 1000000l;
+        for (int i = 0; i < NUM_TXNS; i++) {
+            Procedure catalog_proc = procs.get(i % procs.size());
+            Object params[] = new Object[catalog_proc.getParameters().size()];
+            for (ProcParameter catalog_param : catalog_proc.getParameters()) {
+                params[catalog_param.getIndex()] = this.makeParam(VoltType.get((byte)catalog_param.getType()),
+                                                                  catalog_param.getIsarray());
+            } // FOR
+            TransactionTrace txn_trace = new TransactionTrace(10000 + (i * 3), catalog_proc, params);
+            timestamp += rand.nextInt(1000);
+            txn_trace.setTimestamps(timestamp, timestamp + rand.nextInt(500));
+            if (i % 7 == 0) txn_trace.aborted = true;
+            if (i % 11 == 0) txn_trace.setWeight(3);
+
+            int batch_id = 0;
+            for (Statement catalog_stmt : catalog_proc.getStatements()) {
+                Object stmt_params[] = new Object[catalog_stmt.getParameters().size()];
+                for (StmtParameter catalog_param : catalog_stmt.getParameters()) {
+                    stmt_params[catalog_param.getIndex()] = this.makeParam(VoltType.get((byte)catalog_param.getJavatype()), false);
+                } // FOR
+                QueryTrace query = new QueryTrace(catalog_stmt, stmt_params, batch_id++);
+                query.setTimestamps(timestamp + 1, (i % 5 == 0 ? null : timestamp + 2));
+                txn_trace.addQuery(query);
+            } // FOR
+            if (i % 13 == 0) {
+                txn_trace.setOutput(new Object[][]{ { 1l, "XYZ", 1.5d }, { 2l, "ABC", 3.5d } });
+            }
+            this.txns.add(txn_trace);
+        } // FOR
+
+        this.binaryFile = FileUtil.getTempFile("trace", true);
+        BinaryTraceWriter writer = new BinaryTraceWriter(catalog_db, new FileOutputStream(this.binaryFile), BLOCK_SIZE);
+        for (TransactionTrace txn_trace : this.txns) {
+            writer.write(txn_trace);
+        } // FOR
+        writer.close();
+        assertEquals(NUM_TXNS, writer.getTransactionCount());
+        assertTrue(writer.getCompressedBytes() > 0);
+    }
+
+    private Object makeParam(VoltType type, boolean is_array) {
+        if (type == VoltType.TIMESTAMP) {
+            return (is_array ? new TimestampType[]{ new TimestampType(), new TimestampType(0) } : new TimestampType());
+        }
+        if (is_array) {
+            Object inner[] = new Object[rand.nextInt(5)];
+            for (int i = 0; i < inner.length; i++) {
+                inner[i] = VoltTypeUtil.getRandomValue(type);
+            } // FOR
+            return (VoltTypeUtil.getPrimitiveArray(type, inner));
+        }
+        return (rand.nextInt(20) == 0 ? null : VoltTypeUtil.getRandomValue(type));
+    }
+
+    private void compare(AbstractTraceElement<?> expected, AbstractTraceElement<?> actual) {
+        assertEquals(expected.getCatalogItemName(), actual.getCatalogItemName());
+        assertEquals(expected.getStartTimestamp(), actual.getStartTimestamp());
+        assertEquals(expected.getStopTimestamp(), actual.getStopTimestamp());
+        assertEquals(expected.isAborted(), actual.isAborted());
+        assertEquals(expected.getWeight(), actual.getWeight());
+        assertEquals(expected.getParamCount(), actual.getParamCount());
+        for (int i = 0; i < expected.getParamCount(); i++) {
+            Object e = expected.getParam(i);
+            Object a = actual.getParam(i);
+            if (e == null) {
+                assertNull(a);
+            } else if (e.getClass().isArray()) {
+                assertEquals(e.getClass(), a.getClass());
+                assertEquals(java.lang.reflect.Array.getLength(e), java.lang.reflect.Array.getLength(a));
+                for (int j = 0, cnt = java.lang.reflect.Array.getLength(e); j < cnt; j++) {
+                    assertEquals(java.lang.reflect.Array.get(e, j).toString(), java.lang.reflect.Array.get(a, j).toString());
+                } // FOR
+            } else {
+                assertEquals(e.getClass(), a.getClass());
+                assertEquals(e.toString(), a.toString());
+            }
+        } // FOR
+        assertEquals(expected.hasOutput(), actual.hasOutput());
+        if (expected.hasOutput()) {
+            assertEquals(expected.getOutput().length, actual.getOutput().length);
+            for (int i = 0; i < expected.getOutput().length; i++) {
+                for (int j = 0; j < expected.getOutputTypes(i).length; j++) {
+                    assertEquals(expected.getOutputTypes(i)[j], actual.getOutputTypes(i)[j]);
+                } // FOR
+                Object e[][] = expected.getOutput(i);
+                Object a[][] = actual.getOutput(i);
+                assertEquals(e.length, a.length);
+                for (int j = 0; j < e.length; j++) {
+                    assertEquals(e[j].length, a[j].length);
+                    for (int k = 0; k < e[j].length; k++) {
+                        assertEquals(e[j][k], a[j][k]);
+                    } // FOR
+                } // FOR
+            } // FOR
+        }
+    }
+
+    /**
+     * testRoundTrip
+     */
+    public void testRoundTrip() throws Exception {
+        BinaryTraceReader reader = new BinaryTraceReader(catalog_db, this.binaryFile);
+        Iterator<TransactionTrace> it = reader.iterator();
+        for (TransactionTrace expected : this.txns) {
+            assertTrue(it.hasNext());
+            TransactionTrace actual = it.next();
+            assertEquals(expected.getTransactionId(), actual.getTransactionId());
+            this.compare(expected, actual);
+            assertEquals(expected.getCatalogItem(catalog_db), actual.getCatalogItem(catalog_db));
+
+            assertEquals(expected.getQueryCount(), actual.getQueryCount());
+            assertEquals(expected.getBatchCount(), actual.getBatchCount());
+            for (int i = 0; i < expected.getQueryCount(); i++) {
+                QueryTrace e = expected.getQuery(i);
+                QueryTrace a = actual.getQuery(i);
+                this.compare(e, a);
+                assertEquals(e.getBatchId(), a.getBatchId());
+                assertEquals(e.getCatalogItem(catalog_db), a.getCatalogItem(catalog_db));
+            } // FOR
+        } // FOR
+        assertFalse(it.hasNext());
+        assertEquals(NUM_TXNS, reader.getTransactionCount());
+        assertEquals(0, reader.getSkippedCount());
+        reader.close();
+    }
+
+    /**
+     * testFilter
+     */
+    public void testFilter() throws Exception {
+        int limit = NUM_TXNS / 3;
+        BinaryTraceReader reader = new BinaryTraceReader(catalog_db, this.binaryFile, new ProcedureLimitFilter((long)limit));
+        int ctr = 0;
+        for (TransactionTrace txn_trace : reader) {
+            assertEquals(this.txns.get(ctr).getTransactionId(), txn_trace.getTransactionId());
+            ctr++;
+        } // FOR
+        reader.close();
+        assertEquals(limit, ctr);
+    }
+
+    /**
+     * testWorkloadLoad
+     */
+    public void testWorkloadLoad() throws Exception {
+        assertTrue(BinaryTraceFormat.isBinaryTrace(this.binaryFile));
+        Workload workload = new Workload(catalog);
+        workload.load(this.binaryFile, catalog_db);
+        assertEquals(NUM_TXNS, workload.getTransactionCount());
+        for (TransactionTrace expected : this.txns) {
+            TransactionTrace actual = workload.getTransaction(expected.getTransactionId());
+            assertNotNull(expected.toString(), actual);
+            assertEquals(expected.getQueryCount(), actual.getQueryCount());
+        } // FOR
+    }
+
+    /**
+     * testConvert
+     */
+    public void testConvert() throws Exception {
+        File jsonFile = FileUtil.getTempFile("json", true);
+        assertEquals(NUM_TXNS, ConvertWorkloadTrace.toJSON(catalog_db, this.binaryFile, jsonFile));
+        assertFalse(BinaryTraceFormat.isBinaryTrace(jsonFile));
+
+        File binaryFile = FileUtil.getTempFile("trace", true);
+        assertEquals(NUM_TXNS, ConvertWorkloadTrace.toBinary(catalog_db, jsonFile, binaryFile));
+        assertTrue(BinaryTraceFormat.isBinaryTrace(binaryFile));
+
+        BinaryTraceReader reader = new BinaryTraceReader(catalog_db, binaryFile);
+        int ctr = 0;
+        for (TransactionTrace txn_trace : reader) {
+            TransactionTrace expected = this.txns.get(ctr++);
+            assertEquals(expected.getTransactionId(), txn_trace.getTransactionId());
+            assertEquals(CatalogUtil.getDisplayName(expected.getCatalogItem(catalog_db)),
+                         CatalogUtil.getDisplayName(txn_trace.getCatalogItem(catalog_db)));
+            assertEquals(expected.getQueryCount(), txn_trace.getQueryCount());
+        } // FOR
+        reader.close();
+        assertEquals(NUM_TXNS, ctr);
+    }
+}
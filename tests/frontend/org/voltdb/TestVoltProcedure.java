@@ -51,10 +51,14 @@
 package org.voltdb;
 
 import junit.framework.TestCase;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Date;
 
 import org.voltdb.client.ClientResponse;
 import org.voltdb.catalog.*;
+import org.voltdb.types.TimestampType;
 
 import edu.brown.catalog.CatalogUtil;
 import edu.brown.hashing.DefaultHasher;
@@ -132,6 +136,33 @@ public class TestVoltProcedure extends TestCase {
         // Blah blah blah
     }
     
+    public void testGetAcceptedParameterTypes() {
+        Class<?> accepted[] = VoltProcedure.getAcceptedParameterTypes(long.class);
+        assertEquals(Arrays.asList(Long.class, Integer.class, Short.class, Byte.class), Arrays.asList(accepted));
+        
+        // Narrowing conversions always have to go through tryToMakeCompatible 
+        accepted = VoltProcedure.getAcceptedParameterTypes(short.class);
+        assertFalse(Arrays.asList(accepted).contains(Integer.class));
+        assertFalse(Arrays.asList(accepted).contains(Long.class));
+        
+        // Long -> TimestampType requires a conversion
+        accepted = VoltProcedure.getAcceptedParameterTypes(TimestampType.class);
+        assertEquals(Arrays.asList(TimestampType.class), Arrays.asList(accepted));
+        
+        // Arrays must match exactly
+        accepted = VoltProcedure.getAcceptedParameterTypes(long[].class);
+        assertEquals(Arrays.asList(long[].class), Arrays.asList(accepted));
+        
+        // The null sigils must never be passed through
+        for (Class<?> slot : new Class<?>[]{ String.class, BigDecimal.class, VoltTable.class }) {
+            accepted = VoltProcedure.getAcceptedParameterTypes(slot);
+            assertFalse(Arrays.asList(accepted).contains(((Object)VoltType.NULL_STRING).getClass()));
+            assertFalse(Arrays.asList(accepted).contains(((Object)VoltType.NULL_DECIMAL).getClass()));
+        } // FOR
+        
+        assertEquals(0, VoltProcedure.getAcceptedParameterTypes(Date.class).length);
+    }
+    
 //    @Override
 //    public void setUp() {
 //        VoltDB manager = VoltDB.instance();
@@ -0,0 +1,150 @@
+package org.voltdb.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.StoredProcedureInvocationHints;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.benchmark.tpcc.TPCCConstants;
+import org.voltdb.catalog.Column;
+import org.voltdb.catalog.Table;
+import org.voltdb.utils.CatalogUtil;
+import org.voltdb.utils.VoltTypeUtil;
+
+import edu.brown.BaseTestCase;
+import edu.brown.hstore.HStoreConstants;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.utils.ProjectType;
+
+/**
+ * @author pavlo
+ */
+public class TestBulkLoader extends BaseTestCase {
+
+    private static final int NUM_PARTITIONS = 4;
+    private static final int NUM_TUPLES = 1000;
+    private static final int BATCH_SIZE = 50;
+    private static final String TARGET_TABLE = TPCCConstants.TABLENAME_CUSTOMER;
+    private final Random rand = new Random(0);
+
+    /**
+     * Fake client that immediately responds to every async request
+     */
+    private class LoaderClient extends MockVoltClient {
+        final List<Object[]> requests = new ArrayList<Object[]>();
+        final List<Integer> basePartitions = new ArrayList<Integer>();
+        int rejectFirst = 0;
+
+        @Override
+        public boolean callProcedure(ProcedureCallback callback, String procName, StoredProcedureInvocationHints hints, Object... parameters) {
+            Status status = Status.OK;
+            if (this.rejectFirst > 0) {
+                this.rejectFirst--;
+                status = Status.ABORT_REJECT;
+            } else {
+                this.requests.add(parameters);
+                this.basePartitions.add(hints.basePartition);
+            }
+            int partition = (hints != null ? hints.basePartition : HStoreConstants.NULL_PARTITION_ID);
+            callback.clientCallback(new ClientResponseImpl(-1, -1, partition, status, HStoreConstants.EMPTY_RESULT, ""));
+            return (true);
+        }
+    }
+
+    private LoaderClient client;
+    private BulkLoader loader;
+    private Table catalog_tbl;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TPCC);
+        this.addPartitions(NUM_PARTITIONS);
+        this.catalog_tbl = this.getTable(TARGET_TABLE);
+        this.client = new LoaderClient();
+        this.loader = new BulkLoader(this.client, catalogContext, p_estimator, BATCH_SIZE, 4);
+    }
+
+    private VoltTable makeTable(int num_tuples) {
+        VoltTable vt = CatalogUtil.getVoltTable(this.catalog_tbl);
+        Column columns[] = this.catalog_tbl.getColumns().values();
+        for (int i = 0; i < num_tuples; i++) {
+            Object row[] = new Object[columns.length];
+            for (Column catalog_col : columns) {
+                VoltType vtype = VoltType.get(catalog_col.getType());
+                Object val = VoltTypeUtil.getRandomValue(vtype, this.rand);
+                if (vtype == VoltType.STRING && val.toString().length() > catalog_col.getSize()) {
+                    val = val.toString().substring(0, catalog_col.getSize());
+                }
+                row[catalog_col.getIndex()] = val;
+            } // FOR
+            vt.addRow(row);
+        } // FOR
+        return (vt);
+    }
+
+    private int checkRequests() throws Exception {
+        int total = 0;
+        for (int i = 0; i < this.client.requests.size(); i++) {
+            Object params[] = this.client.requests.get(i);
+            int partition = (Integer)params[0];
+            assertEquals(partition, this.client.basePartitions.get(i).intValue());
+            assertEquals(this.catalog_tbl.getName(), params[1]);
+            VoltTable vt = (VoltTable)params[2];
+            assertTrue(vt.getRowCount() > 0);
+            assertTrue(vt.getRowCount() <= BATCH_SIZE);
+            while (vt.advanceRow()) {
+                assertEquals(partition, p_estimator.getTableRowPartition(this.catalog_tbl, vt));
+            } // WHILE
+            total += vt.getRowCount();
+        } // FOR
+        return (total);
+    }
+
+    /**
+     * testCanLoad
+     */
+    public void testCanLoad() throws Exception {
+        assertTrue(this.loader.canLoad(TARGET_TABLE));
+        assertFalse(this.loader.canLoad(TPCCConstants.TABLENAME_ITEM));
+        assertFalse(this.loader.canLoad("DOES_NOT_EXIST"));
+    }
+
+    /**
+     * testLoad
+     */
+    public void testLoad() throws Exception {
+        // Load it in a couple of pieces so that some of the batches
+        // will be made up of tuples from multiple VoltTables
+        int num_tuples = 0;
+        for (int i = 0; i < 3; i++) {
+            VoltTable vt = this.makeTable(NUM_TUPLES / 3);
+            num_tuples += vt.getRowCount();
+            this.loader.load(TARGET_TABLE, vt);
+        } // FOR
+        assertTrue(this.loader.getLoadedTupleCount() < num_tuples);
+
+        this.loader.drain();
+        assertEquals(num_tuples, this.loader.getLoadedTupleCount());
+        assertEquals(num_tuples, this.checkRequests());
+        assertEquals(0, this.loader.getOutstandingCount());
+        assertEquals(0, this.loader.getRetryCount());
+    }
+
+    /**
+     * testRejected
+     */
+    public void testRejected() throws Exception {
+        int num_rejects = 3;
+        this.client.rejectFirst = num_rejects;
+        VoltTable vt = this.makeTable(NUM_TUPLES);
+        this.loader.load(TARGET_TABLE, vt);
+        this.loader.drain();
+
+        assertEquals(num_rejects, this.loader.getRetryCount());
+        assertEquals(NUM_TUPLES, this.loader.getLoadedTupleCount());
+        assertEquals(NUM_TUPLES, this.checkRequests());
+    }
+}
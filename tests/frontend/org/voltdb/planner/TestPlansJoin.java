@@ -0,0 +1,145 @@
+package org.voltdb.planner;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.voltdb.catalog.CatalogMap;
+import org.voltdb.catalog.Cluster;
+import org.voltdb.catalog.Table;
+import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
+import org.voltdb.types.PlanNodeType;
+
+/**
+ * @author pavlo
+ */
+public class TestPlansJoin extends TestCase {
+
+    private PlannerTestAideDeCamp aide;
+
+    private AbstractPlanNode compile(String sql, int paramCount) {
+        AbstractPlanNode pn = null;
+        try {
+            pn =  aide.compile(sql, paramCount);
+        }
+        catch (Exception ex) {
+            ex.printStackTrace();
+            fail();
+        }
+        assertTrue(pn != null);
+        return pn;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        aide = new PlannerTestAideDeCamp(TestPlansJoin.class.getResource("testplans-join-ddl.sql"), "testplansjoin");
+
+        // Set all tables to replicated so that we get single-fragment plans
+        Cluster cluster = aide.getCatalog().getClusters().get("cluster");
+        CatalogMap<Table> tmap = cluster.getDatabases().get("database").getTables();
+        for (Table t : tmap) {
+            t.setIsreplicated(true);
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        aide.tearDown();
+    }
+
+    /**
+     * testUnindexedEquiJoin
+     */
+    public void testUnindexedEquiJoin() {
+        AbstractPlanNode pn = compile("SELECT * FROM R1, R2 WHERE R1.R1_A = R2.R2_A", 0);
+        List<AbstractPlanNode> nodes = pn.findAllNodesOfType(PlanNodeType.HASHJOIN);
+        assertEquals(1, nodes.size());
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.NESTLOOP).isEmpty());
+
+        HashJoinPlanNode hj_node = (HashJoinPlanNode)nodes.get(0);
+        assertEquals(2, hj_node.getChildPlanNodeCount());
+        assertEquals(1, hj_node.getOuterKeyExpressions().size());
+        assertEquals(1, hj_node.getInnerKeyExpressions().size());
+        assertNull(hj_node.getPredicate());
+    }
+
+    /**
+     * testUnindexedEquiJoinWithPredicate
+     */
+    public void testUnindexedEquiJoinWithPredicate() {
+        AbstractPlanNode pn = compile("SELECT * FROM R1, R2 WHERE R1.R1_A = R2.R2_A AND R1.R1_B = R2.R2_B AND R1.R1_A <> R2.R2_PKEY", 0);
+        List<AbstractPlanNode> nodes = pn.findAllNodesOfType(PlanNodeType.HASHJOIN);
+        assertEquals(1, nodes.size());
+
+        // The range clause can't be a key, so it has to be left in the predicate
+        HashJoinPlanNode hj_node = (HashJoinPlanNode)nodes.get(0);
+        assertEquals(2, hj_node.getOuterKeyExpressions().size());
+        assertNotNull(hj_node.getPredicate());
+    }
+
+    /**
+     * testIndexedJoin
+     */
+    public void testIndexedJoin() {
+        // We should still use the index when there is one
+        AbstractPlanNode pn = compile("SELECT * FROM R1, R2 WHERE R1.R1_PKEY = R2.R2_A", 0);
+        assertFalse(pn.findAllNodesOfType(PlanNodeType.NESTLOOPINDEX).isEmpty());
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.HASHJOIN).isEmpty());
+    }
+
+    /**
+     * testNonEquiJoin
+     */
+    public void testNonEquiJoin() {
+        AbstractPlanNode pn = compile("SELECT * FROM R1, R2 WHERE R1.R1_A < R2.R2_A", 0);
+        assertFalse(pn.findAllNodesOfType(PlanNodeType.NESTLOOP).isEmpty());
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.HASHJOIN).isEmpty());
+    }
+
+    /**
+     * testMismatchedTypes
+     */
+    public void testMismatchedTypes() {
+        AbstractPlanNode pn = compile("SELECT * FROM R1, R2 WHERE R1.R1_A = R2.R2_C", 0);
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.HASHJOIN).isEmpty());
+    }
+
+    /**
+     * testHashJoinOverNestLoop
+     */
+    public void testHashJoinOverNestLoop() {
+        // NestLoops are charged for reading the inner table once per outer tuple,
+        // so the cost model should pick the hash join for the unindexed join
+        AbstractPlanNode pn = compile("SELECT * FROM R1, R2, R3 WHERE R1.R1_A = R2.R2_A AND R2.R2_PKEY = R3.R3_A", 0);
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.NESTLOOP).isEmpty());
+        List<AbstractPlanNode> nodes = pn.findAllNodesOfType(PlanNodeType.HASHJOIN);
+        assertEquals(1, nodes.size());
+
+        // But the other join should still use R2's primary key index
+        HashJoinPlanNode hj_node = (HashJoinPlanNode)nodes.get(0);
+        List<AbstractPlanNode> nlij_nodes = hj_node.findAllNodesOfType(PlanNodeType.NESTLOOPINDEX);
+        assertEquals(1, nlij_nodes.size());
+        assertEquals(PlanNodeType.SEQSCAN, hj_node.getChild(0).getPlanNodeType());
+        assertSame(nlij_nodes.get(0), hj_node.getChild(1));
+    }
+
+    /**
+     * testNestLoopCost
+     */
+    public void testNestLoopCost() {
+        // Charging NestLoops for outer * inner tuples should not change the plans
+        // where there is no hash join to pick instead
+        AbstractPlanNode pn = compile("SELECT * FROM R1, R2 WHERE R2.R2_PKEY = 5 AND R1.R1_A < R2.R2_A", 0);
+        assertEquals(1, pn.findAllNodesOfType(PlanNodeType.NESTLOOPINDEX).size());
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.NESTLOOP).isEmpty());
+
+        pn = compile("SELECT * FROM R1, R2, R3 WHERE R1.R1_A < R2.R2_A AND R2.R2_A < R3.R3_A AND R3.R3_PKEY = 1", 0);
+        List<AbstractPlanNode> nodes = pn.findAllNodesOfType(PlanNodeType.NESTLOOP);
+        assertEquals(1, nodes.size());
+        assertEquals(PlanNodeType.SEQSCAN, nodes.get(0).getChild(0).getPlanNodeType());
+        assertEquals(PlanNodeType.NESTLOOPINDEX, nodes.get(0).getChild(1).getPlanNodeType());
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.HASHJOIN).isEmpty());
+    }
+}
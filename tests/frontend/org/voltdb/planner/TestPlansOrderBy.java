@@ -23,12 +23,22 @@
 
 package org.voltdb.planner;
 
+import java.util.List;
+
 import junit.framework.TestCase;
 
 import org.voltdb.catalog.CatalogMap;
 import org.voltdb.catalog.Cluster;
+import org.voltdb.catalog.Index;
 import org.voltdb.catalog.Table;
+import org.voltdb.planner.microoptimizations.InlineLimitsIntoOrderBys;
 import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.IndexScanPlanNode;
+import org.voltdb.plannodes.LimitPlanNode;
+import org.voltdb.plannodes.OrderByPlanNode;
+import org.voltdb.plannodes.ProjectionPlanNode;
+import org.voltdb.plannodes.SeqScanPlanNode;
+import org.voltdb.types.IndexType;
 import org.voltdb.types.PlanNodeType;
 
 public class TestPlansOrderBy extends TestCase {
@@ -131,6 +141,98 @@ public class TestPlansOrderBy extends TestCase {
         }
     }
 
+    public void testOrderByLimit() {
+        AbstractPlanNode pn = null;
+        pn = compile("SELECT * FROM T ORDER BY T_D2 LIMIT 10 OFFSET 5", 0);
+        if (pn != null) {
+            // The LIMIT should have been folded into the ORDER BY
+            assertTrue(pn.findAllNodesOfType(PlanNodeType.LIMIT).isEmpty());
+            List<AbstractPlanNode> orderby_nodes = pn.findAllNodesOfType(PlanNodeType.ORDERBY);
+            assertEquals(1, orderby_nodes.size());
+            LimitPlanNode limit_node = orderby_nodes.get(0).getInlinePlanNode(PlanNodeType.LIMIT);
+            assertNotNull(limit_node);
+            assertTrue(limit_node.isInline());
+            assertEquals(10, limit_node.getLimit());
+            assertEquals(5, limit_node.getOffset());
+        }
+    }
+
+    public void testOrderByLimitDistributed() {
+        Table catalog_tbl = aide.getCatalog().getClusters().get("cluster").getDatabases().get("database").getTables().get("T");
+        catalog_tbl.setIsreplicated(false);
+        catalog_tbl.setPartitioncolumn(catalog_tbl.getColumns().get("T_PKEY"));
+
+        AbstractPlanNode pn = null;
+        pn = compile("SELECT * FROM T ORDER BY T_D2 LIMIT 10", 0);
+        if (pn != null) {
+            // The coordinator's ORDER BY above the RECEIVE should still get
+            // the LIMIT folded into it
+            assertTrue(pn.findAllNodesOfType(PlanNodeType.LIMIT).isEmpty());
+            assertFalse(pn.findAllNodesOfType(PlanNodeType.RECEIVE).isEmpty());
+            List<AbstractPlanNode> orderby_nodes = pn.findAllNodesOfType(PlanNodeType.ORDERBY);
+            assertEquals(1, orderby_nodes.size());
+            LimitPlanNode limit_node = orderby_nodes.get(0).getInlinePlanNode(PlanNodeType.LIMIT);
+            assertNotNull(limit_node);
+            assertEquals(10, limit_node.getLimit());
+            assertEquals(0, limit_node.getOffset());
+        }
+    }
+
+    public void testLimitWithoutOrderBy() {
+        AbstractPlanNode pn = null;
+        pn = compile("SELECT T_D1, T_D2 FROM T WHERE T_D1 > 5 LIMIT 10", 0);
+        if (pn != null) {
+            assertTrue(pn.findAllNodesOfType(PlanNodeType.ORDERBY).isEmpty());
+        }
+    }
+
+    public void testInlineLimitSharedOrderBy() {
+        // If the ORDER BY also feeds another parent, then that parent
+        // still needs all of its tuples so we can't inline the LIMIT
+        PlannerContext context = new PlannerContext();
+        AbstractPlanNode root = new ProjectionPlanNode(context, 1);
+        AbstractPlanNode limit = new LimitPlanNode(context, 2);
+        AbstractPlanNode other = new ProjectionPlanNode(context, 3);
+        AbstractPlanNode orderby = new OrderByPlanNode(context, 4);
+        root.addAndLinkChild(limit);
+        root.addAndLinkChild(other);
+        limit.addAndLinkChild(orderby);
+        other.addAndLinkChild(orderby);
+        orderby.addAndLinkChild(new SeqScanPlanNode(context, 5));
+
+        CompiledPlan plan = new CompiledPlan();
+        CompiledPlan.Fragment fragment = new CompiledPlan.Fragment();
+        fragment.planGraph = root;
+        plan.fragments.add(fragment);
+        new InlineLimitsIntoOrderBys().apply(plan);
+
+        assertSame(root, plan.fragments.get(0).planGraph);
+        assertEquals(2, root.getChildPlanNodeCount());
+        assertSame(limit, root.getChild(0));
+        assertSame(other, root.getChild(1));
+        assertSame(orderby, limit.getChild(0));
+        assertSame(orderby, other.getChild(0));
+        assertEquals(2, orderby.getParentPlanNodeCount());
+        assertNull(orderby.getInlinePlanNode(PlanNodeType.LIMIT));
+    }
+
+    public void testBTreeIndexRangeScan() {
+        Table catalog_tbl = aide.getCatalog().getClusters().get("cluster").getDatabases().get("database").getTables().get("T");
+        Index catalog_idx = catalog_tbl.getIndexes().get("IDX_T_D1_BTREE");
+        assertNotNull(catalog_idx);
+        assertEquals(IndexType.BTREE.getValue(), catalog_idx.getType());
+
+        // The B+tree index should be usable for a range predicate
+        AbstractPlanNode pn = null;
+        pn = compile("SELECT * FROM T WHERE T_D1 > 5", 0);
+        if (pn != null) {
+            assertTrue(pn.findAllNodesOfType(PlanNodeType.SEQSCAN).isEmpty());
+            List<AbstractPlanNode> scan_nodes = pn.findAllNodesOfType(PlanNodeType.INDEXSCAN);
+            assertEquals(1, scan_nodes.size());
+            assertEquals(catalog_idx.getTypeName(), ((IndexScanPlanNode)scan_nodes.get(0)).getTargetIndexName());
+        }
+    }
+
     public void testEng450()
     {
         compile("select T.T_PKEY, " +
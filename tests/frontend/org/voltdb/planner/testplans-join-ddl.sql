@@ -0,0 +1,20 @@
+CREATE TABLE R1 (
+        R1_PKEY INTEGER NOT NULL,
+        R1_A    INTEGER NOT NULL,
+        R1_B    VARCHAR(16),
+        CONSTRAINT R1_TREE PRIMARY KEY (R1_PKEY)
+);
+
+CREATE TABLE R2 (
+        R2_PKEY INTEGER NOT NULL,
+        R2_A    INTEGER NOT NULL,
+        R2_B    VARCHAR(16),
+        R2_C    BIGINT,
+        CONSTRAINT R2_TREE PRIMARY KEY (R2_PKEY)
+);
+
+CREATE TABLE R3 (
+        R3_PKEY INTEGER NOT NULL,
+        R3_A    INTEGER NOT NULL,
+        CONSTRAINT R3_TREE PRIMARY KEY (R3_PKEY)
+);
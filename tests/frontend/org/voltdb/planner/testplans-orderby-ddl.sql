@@ -4,3 +4,5 @@ CREATE TABLE T (
         T_D2   INTEGER NOT NULL,
         CONSTRAINT T_TREE PRIMARY KEY (T_PKEY,T_D1)
 );
+
+CREATE INDEX IDX_T_D1_BTREE ON T (T_D1);
@@ -27,11 +27,15 @@ import junit.framework.Test;
 import org.voltdb.BackendTarget;
 import org.voltdb.VoltProcedure;
 import org.voltdb.client.Client;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcCallException;
 import org.voltdb.VoltTable;
 import org.voltdb.benchmark.tpcc.TPCCProjectBuilder;
 import org.voltdb.benchmark.tpcc.procedures.UpdateNewOrder;
 import org.voltdb.regressionsuites.multipartitionprocs.*;
 
+import edu.brown.hstore.Hstoreservice.Status;
+
 import java.io.IOException;
 
 /**
@@ -50,6 +54,7 @@ public class TestMultiPartitionSuite extends RegressionSuite {
         MultiSiteSelect.class,
         MultiSiteIndexSelect.class,
         MultiSiteDelete.class,
+        MultiSiteAsyncSelect.class,
         UpdateNewOrder.class
     };
 
@@ -175,6 +180,65 @@ public class TestMultiPartitionSuite extends RegressionSuite {
         }
     }
 
+    /**
+     * testAsyncScan
+     */
+    public void testAsyncScan() throws Exception {
+        Client client = getClient();
+        client.callProcedure("InsertNewOrder", 1L, 1L, 1L);
+        client.callProcedure("InsertNewOrder", 2L, 2L, 2L);
+        client.callProcedure("InsertNewOrder", 3L, 3L, 3L);
+        client.callProcedure("InsertNewOrder", 4L, 4L, 4L);
+
+        // AsyncBatch.get() should give back the same results as voltExecuteSQL()
+        ClientResponse cresponse = client.callProcedure("MultiSiteAsyncSelect", MultiSiteAsyncSelect.MODE_WAIT);
+        assertEquals(Status.OK, cresponse.getStatus());
+        VoltTable results[] = cresponse.getResults();
+        assertEquals(2, results.length);
+        assertEquals(4, results[0].getRowCount());
+        assertEquals(4, results[1].asScalarLong());
+    }
+
+    /**
+     * testAsyncNoWait
+     */
+    public void testAsyncNoWait() throws Exception {
+        Client client = getClient();
+        client.callProcedure("InsertNewOrder", 1L, 1L, 1L);
+        client.callProcedure("InsertNewOrder", 2L, 2L, 2L);
+
+        // The txn never calls AsyncBatch.get() for its last batch, so 
+        // VoltProcedure.call() has to wait for it before it can commit
+        ClientResponse cresponse = client.callProcedure("MultiSiteAsyncSelect", MultiSiteAsyncSelect.MODE_NO_WAIT);
+        assertEquals(Status.OK, cresponse.getStatus());
+        assertEquals(0, cresponse.getResults().length);
+
+        VoltTable results[] = client.callProcedure("MultiSiteSelect").getResults();
+        assertEquals(2, results[0].getRowCount());
+    }
+
+    /**
+     * testAsyncAbort
+     */
+    public void testAsyncAbort() throws Exception {
+        Client client = getClient();
+        client.callProcedure("InsertNewOrder", 1L, 1L, 1L);
+        client.callProcedure("InsertNewOrder", 2L, 2L, 2L);
+
+        // The txn aborts while its batch is still out at the other partitions.
+        // It should still abort cleanly and the next txns should not get stuck.
+        for (int i = 0; i < 2; i++) {
+            try {
+                client.callProcedure("MultiSiteAsyncSelect", MultiSiteAsyncSelect.MODE_ABORT);
+                fail("Expected MultiSiteAsyncSelect to abort");
+            } catch (ProcCallException ex) {
+                assertEquals(Status.ABORT_USER, ex.getClientResponse().getStatus());
+            }
+        } // FOR
+
+        VoltTable results[] = client.callProcedure("MultiSiteSelect").getResults();
+        assertEquals(2, results[0].getRowCount());
+    }
 
     /**
      * Build a list of the tests that will be run when TestTPCCSuite gets run by JUnit.
@@ -0,0 +1,40 @@
+package org.voltdb.regressionsuites.multipartitionprocs;
+
+import org.voltdb.*;
+
+/**
+ * Executes a distributed batch with voltExecuteSQLAsync() and then
+ * either waits for it, never waits for it, or aborts before waiting for it.
+ */
+@ProcInfo (
+    singlePartition = false
+)
+public class MultiSiteAsyncSelect extends VoltProcedure {
+
+    public static final long MODE_WAIT = 0;
+    public static final long MODE_NO_WAIT = 1;
+    public static final long MODE_ABORT = 2;
+
+    public final SQLStmt selectAll = new SQLStmt("SELECT * FROM NEW_ORDER;");
+    public final SQLStmt countAll = new SQLStmt("SELECT COUNT(*) FROM NEW_ORDER;");
+
+    public VoltTable[] run(long mode) {
+        voltQueueSQL(selectAll);
+        AsyncBatch first = voltExecuteSQLAsync();
+
+        if (mode == MODE_ABORT) {
+            throw new VoltAbortException("Aborting before waiting for the pending batch");
+        }
+
+        // Starting another batch has to wait for the first one
+        voltQueueSQL(countAll);
+        AsyncBatch second = voltExecuteSQLAsync();
+        if (first.isDone() == false) {
+            throw new VoltAbortException("The first batch was not finished before the second one started");
+        }
+        if (mode == MODE_NO_WAIT) {
+            return (new VoltTable[0]);
+        }
+        return (new VoltTable[]{ first.get()[0], second.get()[0] });
+    }
+}
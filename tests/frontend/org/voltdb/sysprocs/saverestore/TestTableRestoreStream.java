@@ -0,0 +1,321 @@
+package org.voltdb.sysprocs.saverestore;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.benchmark.tpcc.TPCCConstants;
+import org.voltdb.catalog.Column;
+import org.voltdb.catalog.Table;
+import org.voltdb.messaging.FastSerializer;
+import org.voltdb.utils.CatalogUtil;
+import org.voltdb.utils.VoltTypeUtil;
+
+import edu.brown.BaseTestCase;
+import edu.brown.utils.FileUtil;
+import edu.brown.utils.PartitionSet;
+import edu.brown.utils.ProjectType;
+
+/**
+ * @author pavlo
+ */
+public class TestTableRestoreStream extends BaseTestCase {
+
+    private static final int NUM_PARTITIONS = 4;
+    private static final int NUM_TUPLES_PER_CHUNK = 200;
+    private static final String TARGET_TABLE = TPCCConstants.TABLENAME_CUSTOMER;
+    private final Random rand = new Random(0);
+
+    private Table catalog_tbl;
+    private final List<File> files = new ArrayList<File>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TPCC);
+        this.addPartitions(NUM_PARTITIONS);
+        this.catalog_tbl = this.getTable(TARGET_TABLE);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        for (File f : this.files) {
+            f.delete();
+        } // FOR
+    }
+
+    private VoltTable makeTable(int num_tuples) {
+        VoltTable vt = CatalogUtil.getVoltTable(this.catalog_tbl);
+        Column columns[] = this.catalog_tbl.getColumns().values();
+        for (int i = 0; i < num_tuples; i++) {
+            Object row[] = new Object[columns.length];
+            for (Column catalog_col : columns) {
+                VoltType vtype = VoltType.get(catalog_col.getType());
+                Object val = VoltTypeUtil.getRandomValue(vtype, this.rand);
+                if (vtype == VoltType.STRING && val.toString().length() > catalog_col.getSize()) {
+                    val = val.toString().substring(0, catalog_col.getSize());
+                }
+                row[catalog_col.getIndex()] = val;
+            } // FOR
+            vt.addRow(row);
+        } // FOR
+        return (vt);
+    }
+
+    private static byte[] serialize(VoltTable vt) throws Exception {
+        FastSerializer fs = new FastSerializer();
+        vt.writeExternal(fs);
+        return (fs.getBytes());
+    }
+
+    private static int crc(byte bytes[], int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return ((int)crc.getValue());
+    }
+
+    /**
+     * Write out a save file in the same format as DefaultSnapshotDataTarget
+     * and the EE's table chunks
+     */
+    private File writeSaveFile(Map<Integer, List<VoltTable>> chunks, int totalPartitions) throws Exception {
+        int partitionIds[] = new int[chunks.size()];
+        int idx = 0;
+        for (Integer p : chunks.keySet()) partitionIds[idx++] = p;
+
+        FastSerializer fs = new FastSerializer();
+        fs.writeInt(0); // CRC
+        fs.writeInt(0); // Header length
+        fs.writeByte(1); // Completed
+        for (int ii = 0; ii < 4; ii++) {
+            fs.writeInt(0); // Version
+        }
+        fs.writeLong(System.currentTimeMillis());
+        fs.writeInt(0); // HostId
+        fs.writeString("localhost");
+        fs.writeString("cluster");
+        fs.writeString("database");
+        fs.writeString(this.catalog_tbl.getName());
+        fs.writeBoolean(false);
+        fs.writeArray(partitionIds);
+        fs.writeInt(totalPartitions);
+        byte header[] = fs.getBytes();
+
+        // Strip off the total table length and the row count
+        byte schema[] = serialize(CatalogUtil.getVoltTable(this.catalog_tbl));
+        ByteBuffer aggregate = ByteBuffer.allocate(header.length + schema.length - 8);
+        aggregate.put(header);
+        aggregate.put(schema, 4, schema.length - 8);
+        aggregate.putInt(4, header.length - 8);
+        aggregate.putInt(0, crc(aggregate.array(), 4, aggregate.capacity() - 4));
+
+        File f = FileUtil.getTempFile("vpt", true);
+        this.files.add(f);
+        FileOutputStream out = new FileOutputStream(f);
+        out.write(aggregate.array());
+        for (Integer partition : chunks.keySet()) {
+            for (VoltTable vt : chunks.get(partition)) {
+                // The tuple data is followed by the row count
+                byte bytes[] = serialize(vt);
+                int rowStart = 4 + 4 + ByteBuffer.wrap(bytes).getInt(4) + 4;
+                ByteBuffer data = ByteBuffer.allocate(bytes.length - rowStart + 4);
+                data.put(bytes, rowStart, bytes.length - rowStart);
+                data.putInt(vt.getRowCount());
+
+                byte partitionBytes[] = ByteBuffer.allocate(4).putInt(partition).array();
+                ByteBuffer chunkHeader = ByteBuffer.allocate(16);
+                chunkHeader.putInt(data.capacity() + 12);
+                chunkHeader.putInt(partition);
+                chunkHeader.putInt(crc(partitionBytes, 0, 4));
+                chunkHeader.putInt(crc(data.array(), 0, data.capacity()));
+                out.write(chunkHeader.array());
+                out.write(data.array());
+            } // FOR
+        } // FOR
+        out.close();
+        return (f);
+    }
+
+    private TableSaveFile openSaveFile(File f, int relevantPartitionIds[]) throws Exception {
+        FileChannel channel = new FileInputStream(f).getChannel();
+        return (new TableSaveFile(channel, 1, relevantPartitionIds, false, true));
+    }
+
+    /**
+     * Have a separate thread for each partition pull everything out of the stream
+     */
+    private Map<Integer, List<VoltTable>> drain(final TableRestoreStream stream) throws Exception {
+        final Map<Integer, List<VoltTable>> results = new TreeMap<Integer, List<VoltTable>>();
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int p = 0; p < NUM_PARTITIONS; p++) {
+            final int partition = p;
+            final List<VoltTable> tables = new ArrayList<VoltTable>();
+            results.put(partition, tables);
+            threads.add(new Thread() {
+                public void run() {
+                    try {
+                        VoltTable vt = null;
+                        while ((vt = stream.next(partition)) != null) {
+                            tables.add(vt);
+                            stream.markLoaded(partition, vt.getRowCount());
+                        } // WHILE
+                    } catch (Throwable ex) {
+                        synchronized (errors) {
+                            errors.add(ex);
+                        } // SYNCH
+                    } finally {
+                        stream.finish(partition);
+                    }
+                }
+            });
+        } // FOR
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) t.join();
+        assertTrue(errors.toString(), errors.isEmpty());
+        return (results);
+    }
+
+    /**
+     * testMemoryMappedFile
+     */
+    public void testMemoryMappedFile() throws Exception {
+        Map<Integer, List<VoltTable>> chunks = new TreeMap<Integer, List<VoltTable>>();
+        for (int p = 0; p < NUM_PARTITIONS; p++) {
+            chunks.put(p, new ArrayList<VoltTable>());
+            for (int i = 0; i <= p; i++) {
+                chunks.get(p).add(this.makeTable(NUM_TUPLES_PER_CHUNK));
+            } // FOR
+        } // FOR
+        File f = this.writeSaveFile(chunks, NUM_PARTITIONS);
+
+        TableSaveFile savefile = this.openSaveFile(f, null);
+        assertTrue(savefile.isMemoryMapped());
+        assertTrue(savefile.getCompleted());
+        assertEquals(this.catalog_tbl.getName(), savefile.getTableName());
+        assertEquals(NUM_PARTITIONS, savefile.getTotalPartitions());
+        assertFalse(savefile.isReplicated());
+
+        for (int p = 0; p < NUM_PARTITIONS; p++) {
+            for (VoltTable expected : chunks.get(p)) {
+                assertTrue(savefile.hasMoreChunks());
+                TableSaveFile.Container c = savefile.getNextChunk();
+                assertNotNull(c);
+                assertEquals(p, c.getPartitionId());
+                VoltTable vt = new VoltTable(c.b, true);
+                assertEquals(expected.getRowCount(), vt.getRowCount());
+                expected.resetRowPosition();
+                while (vt.advanceRow()) {
+                    assertTrue(expected.advanceRow());
+                    for (int col = 0; col < vt.getColumnCount(); col++) {
+                        assertEquals(expected.get(col), vt.get(col));
+                    } // FOR
+                } // WHILE
+                c.discard();
+            } // FOR
+        } // FOR
+        assertNull(savefile.getNextChunk());
+        assertFalse(savefile.hasMoreChunks());
+        assertTrue(savefile.getCorruptedPartitionIds().isEmpty());
+        savefile.close();
+
+        // Only get back the chunks for the partitions that we asked for
+        savefile = this.openSaveFile(f, new int[]{ 2 });
+        int ctr = 0;
+        TableSaveFile.Container c = null;
+        while ((c = savefile.getNextChunk()) != null) {
+            assertEquals(2, c.getPartitionId());
+            ctr++;
+        } // WHILE
+        assertEquals(chunks.get(2).size(), ctr);
+        savefile.close();
+    }
+
+    /**
+     * testRehash
+     */
+    public void testRehash() throws Exception {
+        // The snapshot was taken when there were only two partitions
+        int total = 0;
+        Map<Integer, List<VoltTable>> chunks = new TreeMap<Integer, List<VoltTable>>();
+        for (int p = 0; p < 2; p++) {
+            chunks.put(p, new ArrayList<VoltTable>());
+            for (int i = 0; i < 10; i++) {
+                VoltTable vt = this.makeTable(NUM_TUPLES_PER_CHUNK);
+                chunks.get(p).add(vt);
+                total += vt.getRowCount();
+            } // FOR
+        } // FOR
+        List<TableSaveFile> saveFiles = new ArrayList<TableSaveFile>();
+        saveFiles.add(this.openSaveFile(this.writeSaveFile(chunks, 2), null));
+
+        TableRestoreStream stream = new TableRestoreStream(this.catalog_tbl, saveFiles,
+                                                           PartitionSet.all(NUM_PARTITIONS),
+                                                           p_estimator, true);
+        assertTrue(stream.isRehashing());
+        Map<Integer, List<VoltTable>> results = this.drain(stream);
+        stream.close();
+
+        int loaded = 0;
+        for (Integer partition : results.keySet()) {
+            int partitionTotal = 0;
+            for (VoltTable vt : results.get(partition)) {
+                vt.resetRowPosition();
+                while (vt.advanceRow()) {
+                    assertEquals(partition.intValue(), p_estimator.getTableRowPartition(this.catalog_tbl, vt));
+                } // WHILE
+                partitionTotal += vt.getRowCount();
+            } // FOR
+            assertEquals(partitionTotal, stream.getLoadedTupleCount(partition));
+            loaded += partitionTotal;
+        } // FOR
+        assertEquals(total, loaded);
+        assertEquals(total, stream.getLoadedTupleCount());
+        assertEquals(20, stream.getChunksRead());
+        assertTrue(stream.getBytesRead() > 0);
+    }
+
+    /**
+     * testNoRehash
+     */
+    public void testNoRehash() throws Exception {
+        // Split the chunks across two save files like there were two hosts
+        Map<Integer, List<VoltTable>> chunks0 = new TreeMap<Integer, List<VoltTable>>();
+        Map<Integer, List<VoltTable>> chunks1 = new TreeMap<Integer, List<VoltTable>>();
+        for (int p = 0; p < NUM_PARTITIONS; p++) {
+            Map<Integer, List<VoltTable>> chunks = (p % 2 == 0 ? chunks0 : chunks1);
+            chunks.put(p, new ArrayList<VoltTable>());
+            for (int i = 0; i < 3; i++) {
+                chunks.get(p).add(this.makeTable(NUM_TUPLES_PER_CHUNK));
+            } // FOR
+        } // FOR
+        List<TableSaveFile> saveFiles = new ArrayList<TableSaveFile>();
+        saveFiles.add(this.openSaveFile(this.writeSaveFile(chunks0, NUM_PARTITIONS), null));
+        saveFiles.add(this.openSaveFile(this.writeSaveFile(chunks1, NUM_PARTITIONS), null));
+
+        TableRestoreStream stream = new TableRestoreStream(this.catalog_tbl, saveFiles,
+                                                           PartitionSet.all(NUM_PARTITIONS),
+                                                           p_estimator, false);
+        Map<Integer, List<VoltTable>> results = this.drain(stream);
+        stream.close();
+
+        for (int p = 0; p < NUM_PARTITIONS; p++) {
+            List<VoltTable> expected = (p % 2 == 0 ? chunks0 : chunks1).get(p);
+            List<VoltTable> actual = results.get(p);
+            assertEquals(expected.size(), actual.size());
+            int expectedTotal = 0;
+            for (VoltTable vt : expected) expectedTotal += vt.getRowCount();
+            assertEquals(expectedTotal, stream.getLoadedTupleCount(p));
+        } // FOR
+    }
+}
@@ -0,0 +1,112 @@
+package org.voltdb.utils;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.voltdb.StatsAgent;
+import org.voltdb.StatsSource;
+import org.voltdb.SysProcSelector;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+public class TestHTTPAdminListener extends TestCase {
+
+    private static final int PORT = 9998;
+
+    /**
+     * Fake StatsSource with one row per pool name
+     */
+    private static class MockStatsSource extends StatsSource {
+        private final List<Object> names = Arrays.asList((Object)"POOL_A", "POOL\"B");
+
+        public MockStatsSource() {
+            super(SysProcSelector.POOL.name(), false);
+        }
+        @Override
+        protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+            return (this.names.iterator());
+        }
+        @Override
+        protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+            super.populateColumnSchema(columns);
+            columns.add(new VoltTable.ColumnInfo("POOL_NAME", VoltType.STRING));
+            columns.add(new VoltTable.ColumnInfo("IS_GLOBAL", VoltType.BOOLEAN));
+            columns.add(new VoltTable.ColumnInfo("ACTIVE", VoltType.INTEGER));
+            columns.add(new VoltTable.ColumnInfo("BORROWED", VoltType.BIGINT));
+        }
+        @Override
+        protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+            int idx = this.names.indexOf(rowKey);
+            rowValues[columnNameToIndex.get("POOL_NAME")] = rowKey;
+            rowValues[columnNameToIndex.get("IS_GLOBAL")] = (idx == 0);
+            rowValues[columnNameToIndex.get("ACTIVE")] = idx + 10;
+            rowValues[columnNameToIndex.get("BORROWED")] = (idx + 1) * 1000l;
+            super.updateStatsRow(rowKey, rowValues);
+        }
+    }
+
+    private StatsAgent statsAgent;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.statsAgent = new StatsAgent();
+        this.statsAgent.registerStatsSource(SysProcSelector.POOL, 0, new MockStatsSource());
+    }
+
+    /**
+     * testFormatStats
+     */
+    public void testFormatStats() throws Exception {
+        String output = HTTPAdminListener.formatStats(this.statsAgent, EnumSet.allOf(SysProcSelector.class), 0);
+        assertFalse(output, output.isEmpty());
+
+        List<String> lines = Arrays.asList(output.split("\n"));
+        assertTrue(output, lines.contains("# TYPE hstore_pool_active gauge"));
+        assertTrue(output, lines.contains("# TYPE hstore_pool_borrowed gauge"));
+        assertFalse(output, output.contains("hstore_pool_timestamp"));
+        assertFalse(output, output.contains("hstore_pool_host_id"));
+
+        // All of the samples for a metric should be together
+        int typeIdx = lines.indexOf("# TYPE hstore_pool_active gauge");
+        assertTrue(lines.get(typeIdx+1), lines.get(typeIdx+1).startsWith("hstore_pool_active{"));
+        assertTrue(lines.get(typeIdx+1), lines.get(typeIdx+1).contains("pool_name=\"POOL_A\""));
+        assertTrue(lines.get(typeIdx+1), lines.get(typeIdx+1).contains("is_global=\"true\""));
+        assertTrue(lines.get(typeIdx+1), lines.get(typeIdx+1).endsWith(" 10"));
+        assertTrue(lines.get(typeIdx+2), lines.get(typeIdx+2).contains("pool_name=\"POOL\\\"B\""));
+        assertTrue(lines.get(typeIdx+2), lines.get(typeIdx+2).endsWith(" 11"));
+
+        // Nothing registered for this selector
+        output = HTTPAdminListener.formatStats(this.statsAgent, EnumSet.of(SysProcSelector.TXNCOUNTER), 0);
+        assertTrue(output, output.isEmpty());
+    }
+
+    /**
+     * testServeStats
+     */
+    public void testServeStats() throws Exception {
+        HTTPAdminListener listener = new HTTPAdminListener(PORT, this.statsAgent);
+        try {
+            URL url = new URL("http://localhost:" + PORT + HTTPAdminListener.STATS_URI + "/pool");
+            BufferedReader in = new BufferedReader(new InputStreamReader(url.openStream()));
+            StringBuilder sb = new StringBuilder();
+            String line = null;
+            while ((line = in.readLine()) != null) {
+                sb.append(line).append("\n");
+            } // WHILE
+            in.close();
+            assertTrue(sb.toString(), sb.toString().contains("hstore_pool_borrowed{"));
+        } finally {
+            listener.shutdown(true);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package edu.brown.microbench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.voltdb.CatalogContext;
+import org.voltdb.ParameterSet;
+import org.voltdb.SQLStmt;
+import org.voltdb.VoltProcedure;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+
+import edu.brown.benchmark.tm1.procedures.GetAccessData;
+import edu.brown.benchmark.tm1.procedures.UpdateLocation;
+import edu.brown.hashing.DefaultHasher;
+import edu.brown.hstore.BatchPlanner;
+import edu.brown.statistics.FastIntHistogram;
+import edu.brown.utils.PartitionEstimator;
+import edu.brown.utils.PartitionSet;
+import edu.brown.utils.ProjectType;
+
+/**
+ * BatchPlanner.plan() for a single-partition batch and a distributed
+ * batch from TM1.
+ * @author pavlo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BatchPlannerMicrobench {
+
+    private static final int NUM_PARTITIONS = 8;
+    private static final int BASE_PARTITION = 1;
+    private static final Long TXN_ID = 1000l;
+
+    private final FastIntHistogram touched_partitions = new FastIntHistogram();
+    private final PartitionSet singlePartition = new PartitionSet(BASE_PARTITION);
+    private final PartitionSet allPartitions = new PartitionSet();
+
+    private BatchPlanner singlePlanner;
+    private ParameterSet singleArgs[];
+    private BatchPlanner multiPlanner;
+    private ParameterSet multiArgs[];
+
+    @Setup
+    public void setUp() throws Exception {
+        CatalogContext catalogContext = MicrobenchUtil.getCatalogContext(ProjectType.TM1, NUM_PARTITIONS);
+        PartitionEstimator p_estimator = new PartitionEstimator(catalogContext, new DefaultHasher(catalogContext, NUM_PARTITIONS));
+        this.allPartitions.addAll(catalogContext.getAllPartitionIds());
+
+        Procedure catalog_proc = catalogContext.procedures.getIgnoreCase(GetAccessData.class.getSimpleName());
+        Statement catalog_stmt = catalog_proc.getStatements().get("GetData");
+        SQLStmt batch[] = { new SQLStmt(catalog_stmt, catalog_stmt.getMs_fragments()) };
+        this.singleArgs = new ParameterSet[]{ VoltProcedure.getCleanParams(batch[0], new Object[]{ 1l, 1l }) };
+        this.singlePlanner = new BatchPlanner(batch, catalog_proc, p_estimator);
+
+        catalog_proc = catalogContext.procedures.getIgnoreCase(UpdateLocation.class.getSimpleName());
+        catalog_stmt = catalog_proc.getStatements().get("update");
+        batch = new SQLStmt[]{ new SQLStmt(catalog_stmt, catalog_stmt.getMs_fragments()) };
+        this.multiArgs = new ParameterSet[]{ VoltProcedure.getCleanParams(batch[0], new Object[]{ 1l, "XXX" }) };
+        this.multiPlanner = new BatchPlanner(batch, catalog_proc, p_estimator);
+    }
+
+    @Benchmark
+    public BatchPlanner.BatchPlan singlePartition() {
+        this.touched_partitions.clear();
+        return this.singlePlanner.plan(TXN_ID, BASE_PARTITION, this.singlePartition,
+                                       this.touched_partitions, this.singleArgs);
+    }
+
+    @Benchmark
+    public BatchPlanner.BatchPlan multiPartition() {
+        this.touched_partitions.clear();
+        return this.multiPlanner.plan(TXN_ID, BASE_PARTITION, this.allPartitions,
+                                      this.touched_partitions, this.multiArgs);
+    }
+}
@@ -0,0 +1,78 @@
+package edu.brown.microbench;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.messaging.FastSerializer;
+
+/**
+ * Raw FastSerializer/FastDeserializer throughput for a record made up of
+ * the primitive types that we send around for every transaction.
+ * @author pavlo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FastSerializerMicrobench {
+
+    @Param({"16", "256"})
+    public int stringLength;
+
+    private final FastSerializer fs = new FastSerializer();
+    private final FastDeserializer fds = new FastDeserializer();
+    private String string;
+    private ByteBuffer serialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < this.stringLength; i++) {
+            sb.append((char)('a' + (i % 26)));
+        } // FOR
+        this.string = sb.toString();
+
+        this.write(this.fs);
+        this.serialized = ByteBuffer.wrap(this.fs.getBytes());
+    }
+
+    private void write(FastSerializer out) throws IOException {
+        out.clear();
+        out.writeLong(1234567890l);
+        out.writeInt(999);
+        out.writeShort(12);
+        out.writeByte(1);
+        out.writeDouble(3.14159);
+        out.writeString(this.string);
+        out.writeArray(new long[]{ 1l, 2l, 3l, 4l });
+    }
+
+    @Benchmark
+    public int serialize() throws IOException {
+        this.write(this.fs);
+        return (this.fs.size());
+    }
+
+    @Benchmark
+    public void deserialize(Blackhole bh) throws IOException {
+        this.serialized.rewind();
+        FastDeserializer in = this.fds.setBuffer(this.serialized);
+        bh.consume(in.readLong());
+        bh.consume(in.readInt());
+        bh.consume(in.readShort());
+        bh.consume(in.readByte());
+        bh.consume(in.readDouble());
+        bh.consume(in.readString());
+        bh.consume(in.readArray(long.class));
+    }
+}
@@ -0,0 +1,49 @@
+package edu.brown.microbench;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.voltdb.CatalogContext;
+import org.voltdb.catalog.Catalog;
+
+import edu.brown.BaseTestCase;
+import edu.brown.benchmark.AbstractProjectBuilder;
+import edu.brown.catalog.ClusterConfiguration;
+import edu.brown.catalog.FixCatalog;
+import edu.brown.utils.ProjectType;
+
+/**
+ * Shared setup code for the JMH microbenchmarks
+ * @author pavlo
+ */
+public abstract class MicrobenchUtil {
+
+    private static final Map<String, CatalogContext> CACHE = new HashMap<String, CatalogContext>();
+
+    /**
+     * Build the catalog for the given project with the given number of
+     * partitions on a single host. The CatalogContext is cached so that every
+     * benchmark in the same fork uses the same catalog objects.
+     * @param type
+     * @param num_partitions
+     * @return
+     * @throws Exception
+     */
+    public static synchronized CatalogContext getCatalogContext(ProjectType type, int num_partitions) throws Exception {
+        String key = type.name() + "-" + num_partitions;
+        CatalogContext catalogContext = CACHE.get(key);
+        if (catalogContext == null) {
+            AbstractProjectBuilder projectBuilder = BaseTestCase.getProjectBuilder(type);
+            Catalog catalog = projectBuilder.getFullCatalog(false);
+
+            ClusterConfiguration cc = new ClusterConfiguration();
+            for (int i = 0; i < num_partitions; i++) {
+                cc.addPartition("localhost", 0, i);
+            } // FOR
+            catalog = FixCatalog.cloneCatalog(catalog, cc);
+            catalogContext = new CatalogContext(catalog, projectBuilder.getJarPath(true));
+            CACHE.put(key, catalogContext);
+        }
+        return (catalogContext);
+    }
+}
@@ -0,0 +1,64 @@
+package edu.brown.microbench;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.voltdb.ParameterSet;
+import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.messaging.FastSerializer;
+
+/**
+ * ParameterSet serialization for a typical stored procedure invocation
+ * (scalars, a string, and a couple of arrays)
+ * @author pavlo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParameterSetMicrobench {
+
+    private final FastSerializer fs = new FastSerializer();
+    private final FastDeserializer fds = new FastDeserializer();
+    private ParameterSet params;
+    private ByteBuffer serialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.params = new ParameterSet(
+            1l,                                     // W_ID
+            7l,                                     // D_ID
+            2000l,                                  // C_ID
+            "BARBARBAR",                            // C_LAST
+            new long[]{ 1l, 2l, 3l, 4l, 5l },       // I_IDS
+            new long[]{ 1l, 1l, 1l, 1l, 1l },       // I_W_IDS
+            new double[]{ 0.5d, 1.5d, 2.5d },       // AMOUNTS
+            null
+        );
+        this.fs.clear();
+        this.params.writeExternal(this.fs);
+        this.serialized = ByteBuffer.wrap(this.fs.getBytes());
+    }
+
+    @Benchmark
+    public int serialize() throws IOException {
+        this.fs.clear();
+        this.params.writeExternal(this.fs);
+        return (this.fs.size());
+    }
+
+    @Benchmark
+    public ParameterSet deserialize() throws IOException {
+        this.serialized.rewind();
+        ParameterSet ps = new ParameterSet();
+        ps.readExternal(this.fds.setBuffer(this.serialized));
+        return (ps);
+    }
+}
@@ -0,0 +1,75 @@
+package edu.brown.microbench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.voltdb.CatalogContext;
+import org.voltdb.SQLStmt;
+import org.voltdb.VoltProcedure;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+
+import edu.brown.benchmark.tm1.procedures.GetAccessData;
+import edu.brown.benchmark.tm1.procedures.UpdateLocation;
+import edu.brown.hashing.DefaultHasher;
+import edu.brown.utils.PartitionEstimator;
+import edu.brown.utils.PartitionSet;
+import edu.brown.utils.ProjectType;
+
+/**
+ * PartitionEstimator.getAllPartitions() for a single-partition lookup
+ * and a broadcast update from TM1
+ * @author pavlo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PartitionEstimatorMicrobench {
+
+    @Param({"8", "64"})
+    public int numPartitions;
+
+    private final PartitionSet partitions = new PartitionSet();
+    private PartitionEstimator p_estimator;
+    private Statement singleStmt;
+    private Object singleParams[];
+    private Statement multiStmt;
+    private Object multiParams[];
+
+    @Setup
+    public void setUp() throws Exception {
+        CatalogContext catalogContext = MicrobenchUtil.getCatalogContext(ProjectType.TM1, this.numPartitions);
+        this.p_estimator = new PartitionEstimator(catalogContext, new DefaultHasher(catalogContext, this.numPartitions));
+
+        Procedure catalog_proc = catalogContext.procedures.getIgnoreCase(GetAccessData.class.getSimpleName());
+        this.singleStmt = catalog_proc.getStatements().get("GetData");
+        this.singleParams = VoltProcedure.getCleanParams(new SQLStmt(this.singleStmt),
+                                                         new Object[]{ 1l, 1l }).toArray();
+
+        catalog_proc = catalogContext.procedures.getIgnoreCase(UpdateLocation.class.getSimpleName());
+        this.multiStmt = catalog_proc.getStatements().get("update");
+        this.multiParams = VoltProcedure.getCleanParams(new SQLStmt(this.multiStmt),
+                                                        new Object[]{ 1l, "XXX" }).toArray();
+    }
+
+    @Benchmark
+    public PartitionSet singlePartition() throws Exception {
+        this.partitions.clear();
+        this.p_estimator.getAllPartitions(this.partitions, this.singleStmt, this.singleParams, 0);
+        return (this.partitions);
+    }
+
+    @Benchmark
+    public PartitionSet multiPartition() throws Exception {
+        this.partitions.clear();
+        this.p_estimator.getAllPartitions(this.partitions, this.multiStmt, this.multiParams, 0);
+        return (this.partitions);
+    }
+}
@@ -0,0 +1,83 @@
+package edu.brown.microbench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.voltdb.CatalogContext;
+import org.voltdb.TransactionIdManager;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Site;
+
+import edu.brown.benchmark.tm1.procedures.DeleteCallForwarding;
+import edu.brown.hstore.MockHStoreSite;
+import edu.brown.hstore.PartitionLockQueue;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.hstore.txns.AbstractTransaction;
+import edu.brown.hstore.txns.LocalTransaction;
+import edu.brown.utils.CollectionUtil;
+import edu.brown.utils.PartitionSet;
+import edu.brown.utils.ProjectType;
+
+/**
+ * Offer a batch of transactions to a PartitionLockQueue in random order
+ * and then poll them all back out again. The wait time is zero so that
+ * we only measure the queue's bookkeeping and not how long it blocks.
+ * @author pavlo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PartitionLockQueueMicrobench {
+
+    private static final int NUM_TXNS = 1000;
+    private static final int PARTITION = 0;
+
+    private final List<AbstractTransaction> txns = new ArrayList<AbstractTransaction>();
+
+    @Setup
+    public void setUp() throws Exception {
+        CatalogContext catalogContext = MicrobenchUtil.getCatalogContext(ProjectType.TM1, 2);
+        HStoreConf hstore_conf = HStoreConf.singleton(true);
+        hstore_conf.site.queue_profiling = false;
+
+        Site catalog_site = CollectionUtil.first(catalogContext.sites);
+        MockHStoreSite hstore_site = new MockHStoreSite(catalog_site.getId(), catalogContext, hstore_conf);
+        TransactionIdManager idManager = hstore_site.getTransactionIdManager(PARTITION);
+        Procedure catalog_proc = catalogContext.procedures.getIgnoreCase(DeleteCallForwarding.class.getSimpleName());
+
+        for (int i = 0; i < NUM_TXNS; i++) {
+            LocalTransaction ts = new LocalTransaction(hstore_site);
+            ts.testInit(idManager.getNextUniqueTransactionId(), PARTITION, new PartitionSet(PARTITION), catalog_proc);
+            this.txns.add(ts);
+        } // FOR
+        Collections.shuffle(this.txns, new Random(0));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_TXNS)
+    public int offerPoll() {
+        // We need a new queue every time because it won't release
+        // txns that are older than the last one that it handed out
+        PartitionLockQueue queue = new PartitionLockQueue(PARTITION, 0, NUM_TXNS * 2, 1.0);
+        for (AbstractTransaction ts : this.txns) {
+            queue.noteTransactionRecievedAndReturnLastSafeTxnId(ts.getTransactionId());
+            queue.offer(ts, false);
+        } // FOR
+        int polled = 0;
+        while (polled < NUM_TXNS) {
+            if (queue.poll() != null) polled++;
+        } // WHILE
+        return (polled);
+    }
+}
@@ -0,0 +1,69 @@
+package edu.brown.microbench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.voltdb.TheHashinator;
+
+/**
+ * TheHashinator.hashToPartition() for the value types that show up
+ * as partitioning parameters
+ * @author pavlo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TheHashinatorMicrobench {
+
+    private static final int NUM_VALUES = 1024;
+
+    @Param({"8", "64"})
+    public int numPartitions;
+
+    private final Object longs[] = new Object[NUM_VALUES];
+    private final Object ints[] = new Object[NUM_VALUES];
+    private final Object strings[] = new Object[NUM_VALUES];
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < NUM_VALUES; i++) {
+            this.longs[i] = Long.valueOf(i * 7919l);
+            this.ints[i] = Integer.valueOf(i * 31);
+            this.strings[i] = "CUSTOMER-" + i;
+        } // FOR
+    }
+
+    private int hashAll(Object values[]) {
+        int total = 0;
+        for (int i = 0; i < values.length; i++) {
+            total += TheHashinator.hashToPartition(values[i], this.numPartitions);
+        } // FOR
+        return (total);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VALUES)
+    public int hashLong() {
+        return (this.hashAll(this.longs));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VALUES)
+    public int hashInteger() {
+        return (this.hashAll(this.ints));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VALUES)
+    public int hashString() {
+        return (this.hashAll(this.strings));
+    }
+}
@@ -0,0 +1,81 @@
+package edu.brown.microbench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.messaging.FastSerializer;
+
+/**
+ * Building, iterating, and serializing VoltTables
+ * @author pavlo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VoltTableMicrobench {
+
+    private static final VoltTable.ColumnInfo COLUMNS[] = {
+        new VoltTable.ColumnInfo("ID", VoltType.BIGINT),
+        new VoltTable.ColumnInfo("COUNTER", VoltType.INTEGER),
+        new VoltTable.ColumnInfo("BALANCE", VoltType.FLOAT),
+        new VoltTable.ColumnInfo("NAME", VoltType.STRING),
+    };
+
+    @Param({"10", "1000"})
+    public int numRows;
+
+    private final FastSerializer fs = new FastSerializer();
+    private VoltTable table;
+    private byte serialized[];
+
+    @Setup
+    public void setUp() throws IOException {
+        this.table = this.build();
+        this.fs.clear();
+        this.fs.writeObject(this.table);
+        this.serialized = this.fs.getBytes();
+    }
+
+    @Benchmark
+    public VoltTable build() {
+        VoltTable vt = new VoltTable(COLUMNS);
+        for (int i = 0; i < this.numRows; i++) {
+            vt.addRow(i, i % 100, i * 1.5d, "ROW");
+        } // FOR
+        return (vt);
+    }
+
+    @Benchmark
+    public long iterate() {
+        long total = 0;
+        this.table.resetRowPosition();
+        while (this.table.advanceRow()) {
+            total += this.table.getLong(0) + this.table.getLong(1);
+            total += this.table.getString(3).length();
+        } // WHILE
+        return (total);
+    }
+
+    @Benchmark
+    public int serialize() throws IOException {
+        this.fs.clear();
+        this.fs.writeObject(this.table);
+        return (this.fs.size());
+    }
+
+    @Benchmark
+    public VoltTable deserialize() throws IOException {
+        return (FastDeserializer.deserialize(this.serialized, VoltTable.class));
+    }
+}